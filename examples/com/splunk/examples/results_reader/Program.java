@@ -0,0 +1,359 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * This example measures how fast ResultsReaderXml parses search results, in
+ * events per second, and how much memory it allocates for each event. It
+ * needs no Splunk instance: it parses either a results file saved from
+ * Splunk (--file) or a generated stream of events shaped like the results of
+ * "search index=_internal", with a segmented _raw field and a few
+ * multivalued fields. Use --reader=json or --reader=json_utf8 to measure
+ * ResultsReaderJson or ResultsReaderJsonUtf8 on results in the JSON format
+ * instead, and --reader=csv or --reader=csv_utf8 to measure ResultsReaderCsv
+ * or ResultsReaderCsvUtf8 on results in the CSV format.
+ *
+ * The stream is read both as Events and as ResultRows. Each iteration parses
+ * the whole stream once; the first iterations warm up the JIT and are not
+ * reported. Allocation is measured for the parsing
+ * thread, on JVMs that support it. Use --fields to measure reading only some
+ * of the fields, for example --fields=_time,host, and --segmented_raw to
+ * also get the segmented _raw markup of each event. Use --threads to read
+ * the stream with ParallelResultsReaderXml (or ParallelResultsReaderJson)
+ * on that many decoding threads;
+ * allocation is then not reported, since it happens on the worker threads.
+ * Use --batch to also read the stream as columnar ResultBatches of that many
+ * rows, and --dictionary to share repeated values through a StringDictionary
+ * of that capacity, whose hit rate is then reported.
+ */
+
+package com.splunk.examples.results_reader;
+
+import com.splunk.Command;
+import com.splunk.Event;
+import com.splunk.ResultBatch;
+import com.splunk.ParallelResultsReaderJson;
+import com.splunk.ParallelResultsReaderXml;
+import com.splunk.ResultRow;
+import com.splunk.ResultsReader;
+import com.splunk.ResultsReaderCsv;
+import com.splunk.ResultsReaderCsvUtf8;
+import com.splunk.ResultsReaderJson;
+import com.splunk.ResultsReaderJsonUtf8;
+import com.splunk.ResultsReaderXml;
+import com.splunk.StringDictionary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+
+public class Program {
+    static String fileText = "Results file in the format of the reader (default: generated events)";
+    static String eventsText = "Number of generated events (default: 100000)";
+    static String iterationsText = "Number of measured iterations (default: 5)";
+    static String fieldsText = "Comma-separated fields to read (default: all)";
+    static String segmentedRawText = "Get the segmented _raw markup of each event";
+    static String batchText = "Also read the stream in columnar batches of this many rows";
+    static String dictionaryText = "Share repeated values through a dictionary of this capacity";
+    static String readerText = "Reader to measure: xml, json, json_utf8, csv, or csv_utf8 (default: xml)";
+    static String threadsText = "Number of decoding threads (default: read on the calling thread)";
+
+    static int WARMUP_ITERATIONS = 3;
+
+    static boolean segmentedRaw = false;
+    static int threads = 0;
+    static String readerName = "xml";
+    static int batchSize = 0;
+    static int dictionaryCapacity = 0;
+    static StringDictionary dictionary = null;
+
+    public static void main(String[] args) {
+        try {
+            run(args);
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    static void run(String[] args) throws IOException {
+        Command command = Command.create("results_reader");
+        command.addRule("help", "Display this help message");
+        command.addRule("file", String.class, fileText);
+        command.addRule("events", Integer.class, eventsText);
+        command.addRule("iterations", Integer.class, iterationsText);
+        command.addRule("fields", String.class, fieldsText);
+        command.addRule("segmented_raw", segmentedRawText);
+        command.addRule("threads", Integer.class, threadsText);
+        command.addRule("reader", String.class, readerText);
+        command.addRule("batch", Integer.class, batchText);
+        command.addRule("dictionary", Integer.class, dictionaryText);
+        command.parse(args);
+
+        int events = 100000;
+        if (command.opts.containsKey("events"))
+            events = (Integer)command.opts.get("events");
+        int iterations = 5;
+        if (command.opts.containsKey("iterations"))
+            iterations = (Integer)command.opts.get("iterations");
+        if (command.opts.containsKey("reader"))
+            readerName = (String)command.opts.get("reader");
+        if (!Arrays.asList("xml", "json", "json_utf8", "csv", "csv_utf8")
+                .contains(readerName))
+            Command.error("Unknown reader: %s", readerName);
+        if (command.opts.containsKey("dictionary"))
+            dictionaryCapacity = (Integer)command.opts.get("dictionary");
+
+        byte[] results = command.opts.containsKey("file")
+                ? readFile((String)command.opts.get("file"))
+                : generate(events);
+        List<String> fields = command.opts.containsKey("fields")
+                ? Arrays.asList(((String)command.opts.get("fields")).split(","))
+                : null;
+        segmentedRaw = command.opts.containsKey("segmented_raw");
+        if (command.opts.containsKey("threads"))
+            threads = (Integer)command.opts.get("threads");
+        if (threads > 0 && readerName.startsWith("csv"))
+            Command.error("The CSV readers have no parallel version");
+
+        System.out.println(String.format("%8s %10s %12s %14s %16s",
+                "read as", "iteration", "events", "events/s", "bytes/event"));
+        measure(results, fields, "events", iterations);
+        measure(results, fields, "rows", iterations);
+        if (command.opts.containsKey("batch")) {
+            batchSize = (Integer)command.opts.get("batch");
+            measure(results, fields, "batches", iterations);
+        }
+        if (dictionary != null)
+            System.out.println(dictionary);
+    }
+
+    static void measure(byte[] results, List<String> fields, String mode,
+                        int iterations) throws IOException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++)
+            parse(results, fields, mode);
+
+        for (int i = 1; i <= iterations; i++) {
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            int count = parse(results, fields, mode);
+            long elapsed = System.nanoTime() - start;
+            allocated = allocatedBytes() - allocated;
+
+            System.out.println(String.format("%8s %10d %12d %14.0f %16s",
+                    mode, i, count,
+                    count / (elapsed / 1e9),
+                    allocated < 0 || threads > 0
+                            ? "n/a" : Long.toString(allocated / count)));
+        }
+    }
+
+    // Parses the results, returning the number of events read.
+    static int parse(byte[] results, List<String> fields, String mode)
+            throws IOException {
+        ResultsReader reader = createReader(
+                new ByteArrayInputStream(results), fields);
+        if (dictionaryCapacity > 0) {
+            dictionary = new StringDictionary(dictionaryCapacity,
+                    StringDictionary.DEFAULT_MAX_LENGTH);
+            reader.setStringDictionary(dictionary);
+        }
+        int count = 0;
+        if (mode.equals("batches")) {
+            ResultBatch batch;
+            while ((batch = reader.nextBatch(batchSize)) != null)
+                count += batch.getRowCount();
+        }
+        else if (mode.equals("rows")) {
+            ResultRow row;
+            while ((row = reader.getNextRow()) != null) {
+                if (segmentedRaw && row.containsKey("_raw"))
+                    row.getSegmentedRaw();
+                count++;
+            }
+        }
+        else {
+            Event event;
+            while ((event = reader.getNextEvent()) != null) {
+                if (segmentedRaw && event.containsKey("_raw"))
+                    event.getSegmentedRaw();
+                count++;
+            }
+        }
+        reader.close();
+        return count;
+    }
+
+    static ResultsReader createReader(InputStream input, List<String> fields)
+            throws IOException {
+        if (readerName.equals("xml")) {
+            return threads > 0
+                    ? new ParallelResultsReaderXml(input, threads, true, fields)
+                    : new ResultsReaderXml(input, fields);
+        }
+        if (readerName.equals("csv"))
+            return new ResultsReaderCsv(input);
+        if (readerName.equals("csv_utf8"))
+            return new ResultsReaderCsvUtf8(input, fields);
+        if (threads > 0)
+            return new ParallelResultsReaderJson(input, threads, true, fields);
+        return readerName.equals("json")
+                ? new ResultsReaderJson(input, fields)
+                : new ResultsReaderJsonUtf8(input, fields);
+    }
+
+    // Returns the bytes allocated so far by the current thread, or -1 if
+    // the JVM cannot tell.
+    static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean =
+                    (com.sun.management.ThreadMXBean)bean;
+            if (sunBean.isThreadAllocatedMemorySupported()) {
+                return sunBean.getThreadAllocatedBytes(
+                        Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    static byte[] readFile(String path) throws IOException {
+        InputStream input = new FileInputStream(path);
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = input.read(buffer)) != -1)
+                output.write(buffer, 0, n);
+            return output.toByteArray();
+        }
+        finally {
+            input.close();
+        }
+    }
+
+    static final String[] GENERATED_FIELDS = { "_cd", "_indextime", "_raw",
+            "_serial", "_si", "_sourcetype", "_time", "host", "index",
+            "linecount", "source", "sourcetype", "splunk_server" };
+
+    static byte[] generate(int events) throws IOException {
+        if (readerName.startsWith("csv"))
+            return generateCsv(events);
+        if (!readerName.equals("xml"))
+            return generateJson(events);
+        String[] fields = GENERATED_FIELDS;
+
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version='1.0' encoding='UTF-8'?>\n");
+        xml.append("<results preview='0'>\n<meta>\n<fieldOrder>\n");
+        for (String field : fields)
+            xml.append("<field>").append(field).append("</field>\n");
+        xml.append("</fieldOrder>\n</meta>\n");
+
+        for (int i = 0; i < events; i++) {
+            xml.append("\t<result offset='").append(i).append("'>\n");
+            for (String field : fields) {
+                xml.append("\t\t<field k='").append(field).append("'>\n");
+                if (field.equals("_raw")) {
+                    xml.append("\t\t\t<v xml:space='preserve' trunc='0'>")
+                       .append("01-15-2015 10:47:39.098 -0800 INFO  Metrics - ")
+                       .append("group=<sg h=\"1\">queue</sg>, name=indexqueue, ")
+                       .append("max_size_kb=500, current_size_kb=0, ")
+                       .append("current_size=").append(i % 100)
+                       .append(", largest_size=2, smallest_size=0</v>\n");
+                } else if (field.equals("_si")) {
+                    xml.append("\t\t\t<value><text>splunk-server</text></value>\n");
+                    xml.append("\t\t\t<value><text>_internal</text></value>\n");
+                } else {
+                    xml.append("\t\t\t<value><text>").append(field)
+                       .append("-value-").append(i % 1000)
+                       .append("</text></value>\n");
+                }
+                xml.append("\t\t</field>\n");
+            }
+            xml.append("\t</result>\n");
+        }
+        xml.append("</results>\n");
+        return xml.toString().getBytes("UTF-8");
+    }
+
+    // Generates the same events in the JSON output format.
+    static byte[] generateJson(int events) throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"preview\":false,\"init_offset\":0,\"messages\":[],")
+            .append("\"results\":[");
+        for (int i = 0; i < events; i++) {
+            json.append(i == 0 ? "\n" : ",\n").append('{');
+            for (String field : GENERATED_FIELDS) {
+                if (!field.equals(GENERATED_FIELDS[0]))
+                    json.append(',');
+                json.append('"').append(field).append("\":");
+                if (field.equals("_raw")) {
+                    json.append("\"01-15-2015 10:47:39.098 -0800 INFO  Metrics - ")
+                        .append("group=queue, name=indexqueue, ")
+                        .append("max_size_kb=500, current_size_kb=0, ")
+                        .append("current_size=").append(i % 100)
+                        .append(", largest_size=2, smallest_size=0\"");
+                } else if (field.equals("_si")) {
+                    json.append("[\"splunk-server\",\"_internal\"]");
+                } else {
+                    json.append('"').append(field).append("-value-")
+                        .append(i % 1000).append('"');
+                }
+            }
+            json.append('}');
+        }
+        json.append("]}\n");
+        return json.toString().getBytes("UTF-8");
+    }
+
+    // Generates the same events in the CSV output format, where multiple
+    // values are joined with newlines.
+    static byte[] generateCsv(int events) throws IOException {
+        StringBuilder csv = new StringBuilder();
+        for (String field : GENERATED_FIELDS) {
+            if (!field.equals(GENERATED_FIELDS[0]))
+                csv.append(',');
+            csv.append('"').append(field).append('"');
+        }
+        csv.append('\n');
+        for (int i = 0; i < events; i++) {
+            for (String field : GENERATED_FIELDS) {
+                if (!field.equals(GENERATED_FIELDS[0]))
+                    csv.append(',');
+                if (field.equals("_raw")) {
+                    csv.append("\"01-15-2015 10:47:39.098 -0800 INFO  Metrics - ")
+                       .append("group=queue, name=indexqueue, ")
+                       .append("max_size_kb=500, current_size_kb=0, ")
+                       .append("current_size=").append(i % 100)
+                       .append(", largest_size=2, smallest_size=0\"");
+                } else if (field.equals("_si")) {
+                    csv.append("\"splunk-server\n_internal\"");
+                } else {
+                    csv.append(field).append("-value-").append(i % 1000);
+                }
+            }
+            csv.append('\n');
+        }
+        return csv.toString().getBytes("UTF-8");
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * This example measures the cost of reconnecting to Splunk over TLS, with
+ * and without session resumption. For each scheme it opens a number of
+ * receiver sockets (as Receiver.attach does) and REST connections, and
+ * reports how many handshakes were full or resumed and the average time to
+ * reconnect.
+ *
+ * Without resumption, every connection is made with a fresh SSLContext, so
+ * each one negotiates a new session. With resumption, the service keeps
+ * its SSLContext and its session cache.
+ */
+
+package com.splunk.examples.tls_resumption;
+
+import com.splunk.Command;
+import com.splunk.Receiver;
+import com.splunk.Service;
+
+import java.io.IOException;
+import java.net.Socket;
+
+public class Program {
+    static String countText = "Number of connections of each kind (default: 20)";
+
+    public static void main(String[] args) {
+        try {
+            run(args);
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    static void run(String[] args) throws IOException {
+        Command command = Command.splunk("tls_resumption");
+        command.addRule("count", Integer.class, countText);
+        command.parse(args);
+
+        int count = 20;
+        if (command.opts.containsKey("count"))
+            count = (Integer)command.opts.get("count");
+
+        Service service = Service.connect(command.opts);
+        if (!"https".equals(service.getScheme())) {
+            Command.error("TLS session resumption requires the https scheme.");
+        }
+
+        System.out.println(String.format("%-22s %10s %8s %8s %12s",
+                "", "kind", "full", "resumed", "avg ms"));
+        measure(service, count, false);
+        measure(service, count, true);
+    }
+
+    static void measure(Service service, int count, boolean resume)
+            throws IOException {
+        String label = resume ? "with resumption" : "without resumption";
+
+        // Warm up, so that a session is cached when resuming.
+        service.setSecurityProtocol(service.getSecurityProtocol());
+        service.getConnectionPool().closeIdleConnections();
+        service.getInfo();
+
+        Receiver receiver = service.getReceiver();
+        long handshakes = service.getHandshakeCount();
+        long resumed = service.getResumedHandshakeCount();
+        long elapsed = 0;
+        for (int i = 0; i < count; i++) {
+            if (!resume)
+                service.setSecurityProtocol(service.getSecurityProtocol());
+            long start = System.nanoTime();
+            Socket socket = receiver.attach();
+            elapsed += System.nanoTime() - start;
+            socket.close();
+        }
+        report(label, "attach", service, handshakes, resumed, elapsed, count);
+
+        handshakes = service.getHandshakeCount();
+        resumed = service.getResumedHandshakeCount();
+        elapsed = 0;
+        for (int i = 0; i < count; i++) {
+            if (!resume)
+                service.setSecurityProtocol(service.getSecurityProtocol());
+            service.getConnectionPool().closeIdleConnections();
+            long start = System.nanoTime();
+            service.getInfo();
+            elapsed += System.nanoTime() - start;
+        }
+        report(label, "REST", service, handshakes, resumed, elapsed, count);
+    }
+
+    static void report(String label, String kind, Service service,
+                       long handshakes, long resumed, long elapsed, int count) {
+        long total = service.getHandshakeCount() - handshakes;
+        long abbreviated = service.getResumedHandshakeCount() - resumed;
+        System.out.println(String.format("%-22s %10s %8d %8d %12.2f",
+                label, kind, total - abbreviated, abbreviated,
+                elapsed / 1e6 / count));
+    }
+}
@@ -19,6 +19,7 @@ package com.splunk;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
@@ -30,9 +31,24 @@ public class AtomEntry extends AtomObject {
     /** The value of the Atom entry's {@code <published>} element. */
     public String published;
 
-    /** The value of the Atom entry's {@code <content>} element. */
+    /**
+     * The value of the Atom entry's {@code <content>} element.
+     *
+     * @deprecated The entries that a {@code ResourceCollection} lists, such
+     * as those passed to its {@code itemKey}, {@code itemPath}, and
+     * {@code createItem} methods, decode their content on first use, and
+     * leave this field {@code null} until then. Use {@link #getContent} or
+     * {@link #getContentValue} instead.
+     */
+    @Deprecated
     public Record content;
 
+    // While the entry is parsed with lazy content, the key names shared
+    // with the other entries of its feed; then null.
+    private Map<String, String> contentKeys;
+    // The captured content, until it is decoded.
+    private LazyContent lazyContent;
+
     /**
      * Creates a new {@code AtomEntry} instance.
      *
@@ -73,11 +89,77 @@ public class AtomEntry extends AtomObject {
      * @return An {@code AtomEntry} instance representing the parsed XML.
      */
     static AtomEntry parse(XMLStreamReader reader) {
+        return parse(reader, null);
+    }
+
+    /**
+     * Creates a new {@code AtomEntry} instance based on a given XML reader,
+     * optionally leaving its content undecoded until it is used through
+     * {@link #getContent} or {@link #getContentValue}. The {@code content}
+     * field of such an entry stays {@code null} until then.
+     *
+     * @param reader The XML reader.
+     * @param contentKeys The key names shared by the entries of the feed
+     *                    being parsed, to decode the content only when it is
+     *                    used; or {@code null} to decode it at once.
+     * @return An {@code AtomEntry} instance representing the parsed XML.
+     */
+    static AtomEntry parse(XMLStreamReader reader,
+                           Map<String, String> contentKeys) {
         AtomEntry entry = AtomEntry.create();
+        entry.contentKeys = contentKeys;
         entry.load(reader, "entry");
+        entry.contentKeys = null;
         return entry;
     }
 
+    /**
+     * Returns the value of the Atom entry's {@code <content>} element,
+     * decoding it first if it was parsed lazily.
+     *
+     * @return The content, or {@code null} if the entry has none.
+     */
+    public synchronized Record getContent() {
+        if (lazyContent != null) {
+            content = lazyContent.decode();
+            lazyContent = null;
+        }
+        return content;
+    }
+
+    /**
+     * Returns the value of a single key of the Atom entry's
+     * {@code <content>} element, without decoding the rest of the content
+     * if it was parsed lazily.
+     *
+     * @param key The key.
+     * @return The value of the key, or {@code null} if it has none.
+     */
+    public synchronized Object getContentValue(String key) {
+        if (lazyContent != null)
+            return lazyContent.get(key);
+        return content == null ? null : content.get(key);
+    }
+
+    /**
+     * Returns whether the Atom entry has a {@code <content>} element.
+     *
+     * @return {@code true} if the entry has content.
+     */
+    synchronized boolean hasContent() {
+        return content != null || lazyContent != null;
+    }
+
+    /**
+     * Returns whether the Atom entry's {@code <content>} element, if any, is
+     * already decoded into a {@code Record}.
+     *
+     * @return {@code true} unless the content is still undecoded.
+     */
+    synchronized boolean isContentDecoded() {
+        return lazyContent == null;
+    }
+
     /**
      * Initializes the current instance using the given XML reader.
      *
@@ -92,7 +174,7 @@ public class AtomEntry extends AtomObject {
             this.published = parseText(reader);
         }
         else if (name.equals("content")) {
-            this.content = parseContent(reader);
+            parseContent(reader);
         }
         else {
             super.init(reader);
@@ -103,9 +185,8 @@ public class AtomEntry extends AtomObject {
      * Parses the {@code <content>} element of an Atom entry.
      *
      * @param reader The XML reader.
-     * @return A {@code Record} object containing the parsed values.
      */
-    private Record parseContent(XMLStreamReader reader) {
+    private void parseContent(XMLStreamReader reader) {
         assert isStartElement(reader, "content");
 
         scan(reader);
@@ -115,14 +196,15 @@ public class AtomEntry extends AtomObject {
         if (!isStartElement(reader, "dict"))
             syntaxError(reader);
 
-        content = parseDict(reader);
+        if (contentKeys != null)
+            lazyContent = LazyContent.capture(reader, contentKeys);
+        else
+            content = parseDict(reader);
 
         if (!isEndElement(reader, "content"))
             syntaxError(reader);
 
         scan(reader); // Consume </content>
-
-        return content;
     }
 
     /**
@@ -38,6 +38,11 @@ public class AtomFeed extends AtomObject {
     /** The value of the Atom feed's {@code <totalResults>} element. */
     public String totalResults = null;
 
+    // When the content of the entries is decoded only as it is used, the
+    // names of their top-level content keys, which the entries share;
+    // otherwise null.
+    Map<String, String> contentKeys = null;
+
     /**
      * Creates a new {@code AtomFeed} instance.
      *
@@ -54,9 +59,23 @@ public class AtomFeed extends AtomObject {
      * @return An {@code AtomFeed} instance representing the parsed stream.
      */
     public static AtomFeed parseStream(InputStream input) {
+        return parseStream(input, false);
+    }
+
+    /**
+     * Creates a new {@code AtomFeed} instance based on the given stream,
+     * optionally leaving the content of its entries undecoded until it is
+     * used.
+     *
+     * @param input The input stream.
+     * @param lazyContent Whether to decode the content of the entries only
+     *                    when it is used.
+     * @return An {@code AtomFeed} instance representing the parsed stream.
+     */
+    static AtomFeed parseStream(InputStream input, boolean lazyContent) {
         XMLStreamReader reader = createReader(input);
 
-        AtomFeed result = AtomFeed.parse(reader);
+        AtomFeed result = AtomFeed.parse(reader, lazyContent);
 
         try {
             reader.close();
@@ -68,19 +87,55 @@ public class AtomFeed extends AtomObject {
         return result;
     }
 
+    /**
+     * Returns an iterator that parses the entries of the given stream one at
+     * a time, instead of reading them all into an {@code AtomFeed} object.
+     *
+     * @param input The input stream.
+     * @return An {@code AtomFeedIterator} over the entries of the stream.
+     */
+    public static AtomFeedIterator iterateStream(InputStream input) {
+        return iterateStream(input, false);
+    }
+
+    /**
+     * Returns an iterator that parses the entries of the given stream one at
+     * a time, optionally leaving their content undecoded until it is used.
+     *
+     * @param input The input stream.
+     * @param lazyContent Whether to decode the content of the entries only
+     *                    when it is used.
+     * @return An {@code AtomFeedIterator} over the entries of the stream.
+     */
+    static AtomFeedIterator iterateStream(InputStream input,
+                                          boolean lazyContent) {
+        AtomFeed feed = AtomFeed.create();
+        feed.setLazyContent(lazyContent);
+        return new AtomFeedIterator(createReader(input), feed);
+    }
+
     /**
      * Creates a new {@code AtomFeed} instance based on a given XML element.
      *
      * @param input The XML stream.
+     * @param lazyContent Whether to decode the content of the entries only
+     *                    when it is used.
      * @return An {@code AtomFeed} instance representing the parsed element.
      * @throws RuntimeException The runtime exception if a parse error occurs.
      */
-    static AtomFeed parse(XMLStreamReader input) {
+    static AtomFeed parse(XMLStreamReader input, boolean lazyContent) {
         AtomFeed feed = AtomFeed.create();
+        feed.setLazyContent(lazyContent);
         feed.load(input, "feed");
         return feed;
     }
 
+    // Sets whether the content of the entries is decoded only when it is
+    // used.
+    private void setLazyContent(boolean lazyContent) {
+        contentKeys = lazyContent ? new HashMap<String, String>() : null;
+    }
+
     /**
      * Initializes the current instance from a given XML element.
      *
@@ -92,7 +147,7 @@ public class AtomFeed extends AtomObject {
         String name = reader.getLocalName();
 
         if (name.equals("entry")) {
-            AtomEntry entry = AtomEntry.parse(reader);
+            AtomEntry entry = AtomEntry.parse(reader, contentKeys);
             this.entries.add(entry);
         }
         else if (name.equals("messages")) {
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.splunk;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The {@code AtomFeedIterator} class reads the entries of an Atom feed one
+ * at a time, as returned by the {@link AtomFeed#iterateStream} method.
+ * <p>
+ * Unlike {@link AtomFeed#parseStream}, which keeps every entry of the feed
+ * in memory, this iterator only parses an entry when it is asked for, so
+ * that the entries that were already returned can be garbage collected.
+ * The other elements of the feed are read into the {@code AtomFeed} object
+ * returned by {@link #getFeed}, whose list of entries stays empty.
+ */
+public class AtomFeedIterator implements Iterator<AtomEntry> {
+    private final XMLStreamReader reader;
+    private final AtomFeed feed;
+    private AtomEntry next = null;
+    private boolean closed = false;
+
+    AtomFeedIterator(XMLStreamReader reader, AtomFeed feed) {
+        this.reader = reader;
+        this.feed = feed;
+        if (!AtomObject.isStartElement(reader, "feed"))
+            AtomObject.syntaxError(reader);
+        AtomObject.scan(reader);
+        advance();
+    }
+
+    // Reads up to the next entry, or to the end of the feed.
+    private void advance() {
+        while (reader.isStartElement()) {
+            if (reader.getLocalName().equals("entry")) {
+                next = AtomEntry.parse(reader, feed.contentKeys);
+                return;
+            }
+            feed.init(reader);
+        }
+        if (!AtomObject.isEndElement(reader, "feed"))
+            AtomObject.syntaxError(reader);
+        close();
+    }
+
+    /**
+     * Returns the elements of the feed other than its entries, such as its
+     * {@code totalResults}, as read so far. Those that follow the entries
+     * are only available once the iteration is over.
+     *
+     * @return The feed, without its entries.
+     */
+    public AtomFeed getFeed() {
+        return feed;
+    }
+
+    /**
+     * Indicates whether the feed has more entries.
+     *
+     * @return {@code true} if there are more entries, {@code false} if not.
+     */
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    /**
+     * Returns the next entry of the feed.
+     *
+     * @return The entry.
+     */
+    public AtomEntry next() {
+        if (next == null)
+            throw new NoSuchElementException();
+        AtomEntry entry = next;
+        next = null;
+        if (!closed)
+            advance();
+        return entry;
+    }
+
+    /**
+     * This operation is not supported.
+     */
+    public void remove() {
+        throw new UnsupportedOperationException(
+                "remove() is not supported by this iterator.");
+    }
+
+    /**
+     * Stops reading the feed. The underlying stream is not closed.
+     */
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        next = null;
+        try {
+            reader.close();
+        }
+        catch (XMLStreamException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The {@code ChunkedOutputStream} class writes a request body with chunked
+ * transfer encoding. Writes are gathered into chunks of up to
+ * {@code CHUNK_SIZE} bytes; closing the stream writes the last chunk but
+ * leaves the underlying stream open.
+ *
+ * This class is an implementation detail and is therefore SDK-private.
+ */
+class ChunkedOutputStream extends OutputStream {
+    static final int CHUNK_SIZE = 8192;
+
+    private static final byte[] CRLF = { '\r', '\n' };
+    private static final byte[] LAST_CHUNK = { '0', '\r', '\n', '\r', '\n' };
+
+    private final OutputStream output;
+    private final byte[] buffer = new byte[CHUNK_SIZE];
+    private int count = 0;
+    private boolean closed = false;
+
+    ChunkedOutputStream(OutputStream output) {
+        this.output = output;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+        if (count == buffer.length)
+            flushChunk();
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+        // Large writes go straight out as a chunk of their own.
+        if (length >= buffer.length) {
+            flushChunk();
+            writeChunk(data, offset, length);
+            return;
+        }
+        if (length > buffer.length - count)
+            flushChunk();
+        System.arraycopy(data, offset, buffer, count, length);
+        count += length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushChunk();
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        flushChunk();
+        output.write(LAST_CHUNK);
+        output.flush();
+        closed = true;
+    }
+
+    private void flushChunk() throws IOException {
+        if (count == 0) return;
+        writeChunk(buffer, 0, count);
+        count = 0;
+    }
+
+    private void writeChunk(byte[] data, int offset, int length)
+            throws IOException {
+        output.write(Integer.toHexString(length).getBytes("ISO-8859-1"));
+        output.write(CRLF);
+        output.write(data, offset, length);
+        output.write(CRLF);
+    }
+}
@@ -65,7 +65,7 @@ public class ConfCollection
      */
     public EntityCollection<Entity> create(String name, Map args) {
         args = Args.create(args).add("__conf", name);
-        service.post(path, args);
+        service.post(path, args).closeQuietly();
         invalidate();
         return get(name);
     }
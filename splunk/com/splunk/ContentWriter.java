@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The {@code ContentWriter} interface represents a request body that is
+ * produced on demand, by writing it to the stream connected to Splunk, instead
+ * of being held in memory.
+ */
+public interface ContentWriter {
+    /**
+     * Writes the request body. The stream must not be closed.
+     *
+     * @param stream The stream to write the body to.
+     * @throws IOException On IO exception.
+     */
+    public void write(OutputStream stream) throws IOException;
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.splunk;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The {@code CsvTokenizer} class reads CSV records directly from UTF-8
+ * bytes.
+ * <p>
+ * The cells of a record are decoded into one character buffer that is
+ * reused from record to record, and are located by their offsets in it, so
+ * that reading a record allocates nothing once the buffers are large
+ * enough. Quoted cells may hold commas, line breaks, and doubled quotes, as
+ * written by Splunk.
+ *
+ * This class is an implementation detail and is therefore SDK-private.
+ */
+class CsvTokenizer extends Utf8ByteSource {
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    // Characters of the cells of the current record.
+    char[] chars = new char[1024];
+    // Offsets of the cells of the current record in chars.
+    int[] starts = new int[32];
+    int[] ends = new int[32];
+    int cellCount = 0;
+
+    CsvTokenizer(InputStream input) throws IOException {
+        super(input, BUFFER_SIZE);
+        skipByteOrderMark();
+    }
+
+    /**
+     * Reads the next record into the cell buffers.
+     *
+     * @return Whether there was a record; {@code false} at the end of the
+     *         stream.
+     * @throws IOException On IO exception.
+     */
+    boolean readRecord() throws IOException {
+        cellCount = 0;
+        if (position == limit && !fill(1))
+            return false;
+
+        int length = 0;
+        while (true) {
+            if (cellCount == starts.length) {
+                starts = grow(starts);
+                ends = grow(ends);
+            }
+            starts[cellCount] = length;
+            if (position < limit || fill(1)) {
+                if (buffer[position] == '"') {
+                    position++;
+                    length = decodeQuoted(length);
+                }
+                length = decodeUnquoted(length);
+            }
+            ends[cellCount++] = length;
+
+            // The cell ends at a comma, a line break, or the end of the
+            // stream.
+            if (position == limit && !fill(1))
+                return true;
+            byte b = buffer[position++];
+            if (b == ',')
+                continue;
+            if (b == '\r' && (position < limit || fill(1))
+                    && buffer[position] == '\n')
+                position++;
+            return true;
+        }
+    }
+
+    // Decodes the characters up to the next delimiter or line break.
+    private int decodeUnquoted(int length) throws IOException {
+        while (position < limit || fill(1)) {
+            int end = limit;
+            if (chars.length < length + end - position)
+                chars = grow(chars, length + end - position);
+            int p = position;
+            while (p < end) {
+                byte b = buffer[p];
+                if (b == ',' || b == '\n' || b == '\r' || b < 0)
+                    break;
+                chars[length++] = (char) b;
+                p++;
+            }
+            position = p;
+            if (p == end)
+                continue;
+            if (buffer[p] >= 0)
+                return length;
+            if (chars.length < length + 2)
+                chars = grow(chars, length + 2);
+            length = decodeMultibyte(chars, length);
+        }
+        return length;
+    }
+
+    // Decodes the rest of a quoted cell whose opening quote was consumed,
+    // up to its closing quote. A doubled quote stands for one quote.
+    private int decodeQuoted(int length) throws IOException {
+        while (position < limit || fill(1)) {
+            int end = limit;
+            if (chars.length < length + end - position)
+                chars = grow(chars, length + end - position);
+            int p = position;
+            while (p < end) {
+                byte b = buffer[p];
+                if (b == '"' || b < 0)
+                    break;
+                chars[length++] = (char) b;
+                p++;
+            }
+            position = p;
+            if (p == end)
+                continue;
+            if (buffer[p] == '"') {
+                if (!fill(2) || buffer[position + 1] != '"') {
+                    position++;
+                    return length;
+                }
+                position += 2;
+                chars[length++] = '"';
+                continue;
+            }
+            if (chars.length < length + 2)
+                chars = grow(chars, length + 2);
+            length = decodeMultibyte(chars, length);
+        }
+        // The stream ends within the quotes.
+        return length;
+    }
+
+    /**
+     * Returns the length of a cell of the current record.
+     *
+     * @param index The index of the cell.
+     * @return The number of characters.
+     */
+    int length(int index) {
+        return ends[index] - starts[index];
+    }
+
+    /**
+     * Returns a cell of the current record as a string.
+     *
+     * @param index The index of the cell.
+     * @param dictionary The dictionary of shared values, or {@code null}.
+     * @return The string.
+     */
+    String getString(int index, StringDictionary dictionary) {
+        int start = starts[index];
+        int length = ends[index] - start;
+        if (length == 0)
+            return "";
+        return dictionary == null
+                ? new String(chars, start, length)
+                : dictionary.intern(chars, start, length);
+    }
+
+    private static int[] grow(int[] array) {
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
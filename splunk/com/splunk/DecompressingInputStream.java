@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The {@code DecompressingInputStream} class decodes a response body sent
+ * with a {@code gzip} or {@code deflate} content encoding.
+ * <p>
+ * The decoder is created on the first read, so that an empty body does not
+ * fail while the gzip header is being read.
+ *
+ * This class is an implementation detail and is therefore SDK-private.
+ */
+class DecompressingInputStream extends InputStream {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final InputStream compressed;
+    private final boolean gzip;
+    private InputStream decoded = null;
+    private Inflater inflater = null;
+
+    /**
+     * Returns a stream that decodes the given content encoding, or the
+     * stream itself if the encoding is neither {@code gzip} nor
+     * {@code deflate}.
+     *
+     * @param stream The body as received.
+     * @param contentEncoding The value of the Content-Encoding header.
+     * @return The decoded body.
+     */
+    static InputStream decode(InputStream stream, String contentEncoding) {
+        if (contentEncoding == null)
+            return stream;
+        String encoding = contentEncoding.trim().toLowerCase();
+        if (encoding.equals("gzip") || encoding.equals("x-gzip"))
+            return new DecompressingInputStream(stream, true);
+        if (encoding.equals("deflate"))
+            return new DecompressingInputStream(stream, false);
+        return stream;
+    }
+
+    private DecompressingInputStream(InputStream compressed, boolean gzip) {
+        this.compressed = compressed;
+        this.gzip = gzip;
+    }
+
+    private InputStream decoded() throws IOException {
+        if (decoded == null) {
+            if (gzip) {
+                PushbackInputStream input = new PushbackInputStream(compressed, 1);
+                int first = input.read();
+                if (first == -1) {
+                    decoded = input;
+                } else {
+                    input.unread(first);
+                    decoded = new GZIPInputStream(input, BUFFER_SIZE);
+                }
+            } else {
+                // HTTP "deflate" is meant to be zlib-wrapped, but some servers
+                // send raw deflate data; the zlib header tells them apart.
+                PushbackInputStream input = new PushbackInputStream(compressed, 2);
+                byte[] header = new byte[2];
+                int n = input.read(header, 0, 2);
+                if (n == 1) {
+                    int second = input.read();
+                    if (second != -1) header[n++] = (byte) second;
+                }
+                if (n <= 0) {
+                    decoded = input;
+                } else {
+                    input.unread(header, 0, n);
+                    boolean zlib = n == 2 && (header[0] & 0x0f) == 8
+                            && (((header[0] & 0xff) << 8) | (header[1] & 0xff)) % 31 == 0;
+                    inflater = new Inflater(!zlib);
+                    decoded = new InflaterInputStream(input, inflater, BUFFER_SIZE);
+                }
+            }
+        }
+        return decoded;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = decoded().read();
+        if (b == -1) finish();
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int n = decoded().read(buffer, offset, length);
+        if (n == -1) finish();
+        return n;
+    }
+
+    // The decoder stops at the end of the compressed data, which may leave
+    // framing (such as the last chunk) unread; reading the body to its end
+    // lets the connection go back to the pool.
+    private void finish() throws IOException {
+        byte[] buffer = new byte[256];
+        while (compressed.read(buffer, 0, buffer.length) != -1) {
+            // Discard trailing bytes.
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        return decoded == null ? 0 : decoded.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Closing the compressed stream returns the connection to the pool.
+        try {
+            if (decoded != null)
+                decoded.close();
+            else
+                compressed.close();
+        } finally {
+            if (inflater != null)
+                inflater.end();
+        }
+    }
+}
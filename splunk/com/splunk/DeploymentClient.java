@@ -77,7 +77,7 @@ public class DeploymentClient extends Entity {
      * Reloads the deployment client from the configuration file.
      */
     public void reload() {
-        service.get(path + "/deployment-client/Reload");
+        service.get(path + "/deployment-client/Reload").closeQuietly();
         invalidate();
     }
 
@@ -17,12 +17,16 @@
 package com.splunk;
 
 import java.util.*;
+import java.util.concurrent.Future;
 
 /**
  * The {@code Entity} class represents a Splunk entity.
  */
 public class Entity extends Resource implements Map<String, Object> {
     protected Record content;
+    // The entry the entity was loaded from, while its content is not yet
+    // decoded.
+    private AtomEntry contentEntry;
     protected HashMap<String, Object> toUpdate = new LinkedHashMap<String, Object>();
 
     /**
@@ -73,7 +77,7 @@ public class Entity extends Resource implements Map<String, Object> {
      * available on almost every endpoint.
      */
     public void disable() {
-        service.post(actionPath("disable"));
+        service.post(actionPath("disable")).closeQuietly();
         invalidate();
     }
 
@@ -82,7 +86,7 @@ public class Entity extends Resource implements Map<String, Object> {
      * available on almost every endpoint.
      */
     public void enable() {
-        service.post(actionPath("enable"));
+        service.post(actionPath("enable")).closeQuietly();
         invalidate();
     }
 
@@ -154,7 +158,12 @@ public class Entity extends Resource implements Map<String, Object> {
     }
 
     protected Record getContent() {
-        return validate().content;
+        validate();
+        if (contentEntry != null) {
+            content = contentEntry.getContent();
+            contentEntry = null;
+        }
+        return content;
     }
 
     /**
@@ -357,9 +366,13 @@ public class Entity extends Resource implements Map<String, Object> {
         AtomEntry entry = (AtomEntry)value;
         if (entry == null) {
             content = new Record();
+            contentEntry = null;
         }
         else {
-            content = entry.content;
+            // Entries listed with lazy content are decoded on first use.
+            boolean decoded = entry.isContentDecoded();
+            content = decoded ? entry.getContent() : null;
+            contentEntry = decoded ? null : entry;
         }
         return this;
     }
@@ -369,6 +382,13 @@ public class Entity extends Resource implements Map<String, Object> {
         throw new UnsupportedOperationException();
     }
 
+    /** {@inheritDoc} */
+    @SuppressWarnings("unchecked")
+    @Override public Future<? extends Entity> refreshAsync() {
+        // The task returns refresh(), which is this entity.
+        return (Future<? extends Entity>)super.refreshAsync();
+    }
+
     /** {@inheritDoc} */
     public void putAll(Map<? extends String, ? extends Object> map) {
         throw new UnsupportedOperationException();
@@ -385,6 +405,8 @@ public class Entity extends Resource implements Map<String, Object> {
             feed = AtomFeed.parseStream(response.getContent());
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            response.closeQuietly();
         }
         int count = feed.entries.size();
         if (count > 1) {
@@ -435,7 +457,7 @@ public class Entity extends Resource implements Map<String, Object> {
                 throw new IllegalStateException("Cannot set 'name' on an existing entity.");
             }
 
-            service.post(actionPath("edit"), mergedArgs);
+            service.post(actionPath("edit"), mergedArgs).closeQuietly();
             toUpdate.clear();
             invalidate();
         }
@@ -454,7 +476,7 @@ public class Entity extends Resource implements Map<String, Object> {
      * Removes this entity from its corresponding collection.
      */
     public void remove() {
-        service.delete(actionPath("remove"));
+        service.delete(actionPath("remove")).closeQuietly();
     }
 
     /** {@inheritDoc} */
@@ -92,7 +92,7 @@ public class EntityCollection<T extends Entity> extends ResourceCollection<T> {
      */
     public T create(String name, Map args) {
         args = Args.create(args).add("name", name);
-        service.post(path, args);
+        service.post(path, args).closeQuietly();
         invalidate();
         return get(name);
     }
@@ -16,7 +16,9 @@
 
 package com.splunk;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 
@@ -34,12 +36,22 @@ import java.util.regex.Pattern;
  * {@link ResultsReaderXml} class, the delimiter is a comma (,).
  */
 public class Event extends HashMap<String, String> {
-    private Map<String, String[]> arrayValues = new HashMap<String, String[]>();
+    // Multiple values of the fields set by putArray; created on first use.
+    private Map<String, String[]> arrayValues = null;
     private String segmentedRaw;
+    // The row this event was created from, which holds the values of every
+    // field as an array, or null.
+    private final ResultRow row;
     
     // Prevent non-SDK instantiation.
     Event() {
-        // nothing
+        this.row = null;
+    }
+
+    Event(ResultRow row) {
+        // Size the map for the fields of the row, so that it never grows.
+        super((int) (row.capacity() / 0.75f) + 1);
+        this.row = row;
     }
     
     /**
@@ -65,10 +77,19 @@ public class Event extends HashMap<String, String> {
      * @param values The delimited set of values.
      */
     void putArray(String key, String[] values) {
+        if (arrayValues == null)
+            arrayValues = new HashMap<String, String[]>();
         arrayValues.put(key, values);
         
         // For backward compatibility with the Map interface
-        super.put(key, Util.join(",", values));
+        super.put(key, values.length == 1 ? values[0] : Util.join(",", values));
+    }
+
+    // Returns the values set by putArray for a field, or null.
+    String[] getArrayValues(String key) {
+        if (row != null)
+            return row.getArrayValues(key);
+        return arrayValues == null ? null : arrayValues.get(key);
     }
 
     /**
@@ -113,7 +134,7 @@ public class Event extends HashMap<String, String> {
      * single-valued array.
      */
     public String[] getArray(String key) {
-        String[] arrayValue = arrayValues.get(key);
+        String[] arrayValue = getArrayValues(key);
         if (arrayValue != null) {
             return arrayValue;
         }
@@ -140,6 +161,10 @@ public class Event extends HashMap<String, String> {
      * ignored). If the object <i>does</i> have a delimiter, the 
      * single/delimited value is split based on the specified delimiter and is
      * returned as an array.
+     * 
+     * Delimited values are split again on every call, into a new array, so
+     * that reading an event never modifies it. Callers that read the values
+     * of a field repeatedly should keep the returned array.
      *
      * @param key The field name.
      * @param delimiter The delimiter.
@@ -147,7 +172,7 @@ public class Event extends HashMap<String, String> {
      * array of values split by delimiter.
      */
     public String[] getArray(String key, String delimiter) {
-        String[] arrayValue = arrayValues.get(key);
+        String[] arrayValue = getArrayValues(key);
         if (arrayValue != null) {
             return arrayValue;
         }
@@ -156,7 +181,32 @@ public class Event extends HashMap<String, String> {
         if (delimitedValues == null) {
             return null;
         }
-        return delimitedValues.split(Pattern.quote(delimiter));
+        if (delimiter.length() == 0) {
+            return delimitedValues.split(Pattern.quote(delimiter));
+        }
+        return split(delimitedValues, delimiter);
+    }
+
+    // Splits values as String.split does with a literal delimiter, dropping
+    // trailing empty values, but without compiling a pattern. The result is
+    // not kept: an event may be read by several threads.
+    private static String[] split(String source, String delimiter) {
+        int index = source.indexOf(delimiter);
+        if (index < 0) {
+            return new String[] { source };
+        }
+        List<String> parts = new ArrayList<String>();
+        int start = 0;
+        while (index >= 0) {
+            parts.add(source.substring(start, index));
+            start = index + delimiter.length();
+            index = source.indexOf(delimiter, start);
+        }
+        parts.add(source.substring(start));
+        int size = parts.size();
+        while (size > 0 && parts.get(size - 1).length() == 0)
+            size--;
+        return parts.subList(0, size).toArray(new String[size]);
     }
 
     /**
@@ -177,6 +227,8 @@ public class Event extends HashMap<String, String> {
      * @return the segmented raw xml including tags and escaped characters.
      */
     public String getSegmentedRaw() {
+       if (row != null)
+           return row.getSegmentedRaw();
        if (segmentedRaw == null) {
            // ResultsReaderXml will always set this to not null. Using this
            // method for other result reader is not supported.
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * The {@code ExponentialBackoffRetryPolicy} class retries idempotent requests
+ * (GET, PUT, and DELETE) that failed with a transient error: a connection
+ * failure, such as a reset, or one of the statuses 429, 502, 503, and 504.
+ * Timeouts are not retried, since a server that is slow to answer is
+ * unlikely to answer faster when asked again.
+ * <p>
+ * The delay before each retry is chosen at random between zero and an upper
+ * bound that starts at the base delay and doubles with every attempt, up to
+ * the maximum delay ("full jitter"), so that clients failing together do not
+ * retry together. When the server sends a {@code Retry-After} header, that
+ * delay is used instead; if it is longer than the maximum delay, the request
+ * is not retried.
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+    /** The default maximum number of retries. */
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    /** The default base delay, in milliseconds. */
+    public static final long DEFAULT_BASE_DELAY = 100;
+
+    /** The default maximum delay, in milliseconds. */
+    public static final long DEFAULT_MAX_DELAY = 10000;
+
+    private final int maxRetries;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final Random random = new Random();
+
+    /**
+     * Creates a policy with the default settings.
+     */
+    public ExponentialBackoffRetryPolicy() {
+        this(DEFAULT_MAX_RETRIES, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY);
+    }
+
+    /**
+     * Creates a policy.
+     *
+     * @param maxRetries The maximum number of times a request is retried.
+     * @param baseDelay The upper bound of the first delay, in milliseconds.
+     * @param maxDelay The largest delay, in milliseconds.
+     */
+    public ExponentialBackoffRetryPolicy(int maxRetries, long baseDelay,
+                                         long maxDelay) {
+        if (maxRetries < 0 || baseDelay < 0 || maxDelay < baseDelay)
+            throw new IllegalArgumentException("Invalid retry settings.");
+        this.maxRetries = maxRetries;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Returns the maximum number of times a request is retried.
+     *
+     * @return The maximum number of retries.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Returns the upper bound of the first delay, in milliseconds.
+     *
+     * @return The base delay.
+     */
+    public long getBaseDelay() {
+        return baseDelay;
+    }
+
+    /**
+     * Returns the largest delay, in milliseconds.
+     *
+     * @return The maximum delay.
+     */
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    public long getRetryDelay(RequestMessage request, int attempt,
+                              RuntimeException failure) {
+        if (attempt > maxRetries || !isIdempotent(request.getMethod()))
+            return -1;
+
+        if (failure instanceof HttpException) {
+            HttpException e = (HttpException) failure;
+            if (!isTransient(e.getStatus()))
+                return -1;
+            String retryAfter = e.getHeader().get("Retry-After");
+            if (retryAfter != null) {
+                long delay = parseRetryAfter(retryAfter);
+                if (delay >= 0)
+                    return delay <= maxDelay ? delay : -1;
+            }
+        }
+        else if (!(failure.getCause() instanceof IOException)
+                || failure.getCause() instanceof SocketTimeoutException) {
+            return -1;
+        }
+
+        long bound = baseDelay;
+        for (int i = 1; i < attempt && bound < maxDelay; i++)
+            bound *= 2;
+        bound = Math.min(bound, maxDelay);
+        synchronized (random) {
+            return (long) (random.nextDouble() * (bound + 1));
+        }
+    }
+
+    /**
+     * Indicates whether requests with the given method can safely be sent
+     * more than once.
+     *
+     * @param method The HTTP method.
+     * @return {@code true} if the method is idempotent.
+     */
+    protected boolean isIdempotent(String method) {
+        return method.equals("GET")
+                || method.equals("HEAD")
+                || method.equals("PUT")
+                || method.equals("DELETE")
+                || method.equals("OPTIONS");
+    }
+
+    /**
+     * Indicates whether a response status reports a transient condition.
+     *
+     * @param status The HTTP status.
+     * @return {@code true} if the request may succeed when retried.
+     */
+    protected boolean isTransient(int status) {
+        return status == 429 || status == 502 || status == 503 || status == 504;
+    }
+
+    // Returns the delay given by a Retry-After header, which is either a
+    // number of seconds or an HTTP date, or -1 if it cannot be parsed.
+    static long parseRetryAfter(String value) {
+        value = value.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            // Not a number of seconds; try a date.
+        }
+        SimpleDateFormat format = new SimpleDateFormat(
+                "EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            Date date = format.parse(value);
+            return Math.max(0, date.getTime() - System.currentTimeMillis());
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+}
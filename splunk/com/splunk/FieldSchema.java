@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@code FieldSchema} class maps the field names of a result set to
+ * the positions of their values in each {@link ResultRow}, so that the rows
+ * of a set share one name-to-index map.
+ * <p>
+ * A schema starts with the fields announced by the result set, and grows if
+ * a row carries a field that was not announced.
+ *
+ * This class is an implementation detail and is therefore SDK-private.
+ */
+class FieldSchema {
+    private final Map<String, Integer> indexes =
+            new ConcurrentHashMap<String, Integer>();
+    // Replaced, never modified, so that rows can read it from any thread.
+    private volatile String[] names = new String[0];
+
+    FieldSchema() {
+    }
+
+    FieldSchema(Collection<String> fields) {
+        for (String field : fields)
+            add(field);
+    }
+
+    /**
+     * Returns the index of a field, or -1 if the schema does not have it.
+     *
+     * @param name The field name.
+     * @return The field index.
+     */
+    int indexOf(String name) {
+        Integer index = indexes.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the index of a field, adding the field if necessary.
+     *
+     * @param name The field name.
+     * @return The field index.
+     */
+    synchronized int add(String name) {
+        Integer index = indexes.get(name);
+        if (index != null)
+            return index;
+        String[] grown = Arrays.copyOf(names, names.length + 1);
+        grown[names.length] = name;
+        indexes.put(name, names.length);
+        names = grown;
+        return grown.length - 1;
+    }
+
+    /**
+     * Returns the field names, in index order.
+     *
+     * @return The field names.
+     */
+    List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    String getName(int index) {
+        return names[index];
+    }
+}
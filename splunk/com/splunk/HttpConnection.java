@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * The {@code HttpConnection} class represents a single HTTP/1.1 connection
+ * to a host, which can be kept alive and reused by an
+ * {@code HttpConnectionPool}.
+ *
+ * This class is an implementation detail and is therefore SDK-private.
+ */
+class HttpConnection {
+    private static final int BUFFER_SIZE = 8192;
+
+    final String route;
+    final Socket socket;
+    final InputStream input;
+    final OutputStream output;
+
+    // Time (in milliseconds) at which the connection was last returned to
+    // the pool.
+    long lastUsed;
+
+    // Whether the connection has already carried at least one exchange.
+    boolean reused = false;
+
+    /**
+     * Wraps an already connected socket.
+     *
+     * @param route The pool route (scheme://host:port) of the socket.
+     * @param socket The connected socket.
+     * @throws IOException On IO exception.
+     */
+    HttpConnection(String route, Socket socket) throws IOException {
+        this.route = route;
+        this.socket = socket;
+        this.input = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+        this.output = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+        this.lastUsed = System.currentTimeMillis();
+    }
+
+    /**
+     * Closes the underlying socket, ignoring any error.
+     */
+    void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing more to be done with a broken socket.
+        }
+    }
+
+    /**
+     * Returns {@code true} if the socket can no longer be used.
+     *
+     * @return {@code true} if the socket is closed or half closed.
+     */
+    boolean isClosed() {
+        return socket.isClosed()
+                || socket.isInputShutdown()
+                || socket.isOutputShutdown();
+    }
+
+    /**
+     * Reads a single CRLF (or LF) terminated line of ISO-8859-1 text.
+     *
+     * @return The line without its terminator, or {@code null} at the end of
+     *         the stream.
+     * @throws IOException On IO exception.
+     */
+    String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            int c = input.read();
+            if (c == -1) {
+                return line.length() == 0 ? null : line.toString();
+            }
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r')
+                    line.setLength(length - 1);
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * The {@code HttpConnectionPool} class keeps HTTP/1.1 connections alive
+ * between requests issued by an {@code HttpService} instance.
+ * <p>
+ * The pool caps the number of connections open to each host, closes
+ * connections that have been idle for longer than the idle timeout, and
+ * keeps counters of leased, idle, created, and evicted connections.
+ * <p>
+ * A connection is leased for the duration of a request and returned to the
+ * pool once its response body has been fully read, or when the
+ * {@code ResponseMessage} (or its content stream) is closed. Responses that
+ * are dropped without being closed are reclaimed once they have been garbage
+ * collected, so always close responses to keep connections available.
+ */
+public class HttpConnectionPool {
+    /** The default maximum number of connections per host. */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 10;
+
+    /** The default idle timeout, in milliseconds. */
+    public static final long DEFAULT_IDLE_TIMEOUT = 30000;
+
+    /** The default time to wait for a connection, in milliseconds. */
+    public static final long DEFAULT_LEASE_TIMEOUT = 60000;
+
+    // How long a waiting thread sleeps before it checks for reclaimed leases.
+    private static final long RECLAIM_INTERVAL = 1000;
+
+    private int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+    private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private long leaseTimeout = DEFAULT_LEASE_TIMEOUT;
+
+    // Idle connections per route, most recently used first.
+    private final Map<String, LinkedList<HttpConnection>> idle =
+            new HashMap<String, LinkedList<HttpConnection>>();
+    // Number of connections (idle, leased, or being opened) per route.
+    private final Map<String, Integer> allocated = new HashMap<String, Integer>();
+    private final Map<HttpConnection, Lease> leases =
+            new IdentityHashMap<HttpConnection, Lease>();
+    private final ReferenceQueue<Object> abandoned = new ReferenceQueue<Object>();
+
+    private int idleCount = 0;
+    private int leasedCount = 0;
+    private long createdCount = 0;
+    private long evictedCount = 0;
+
+    /**
+     * Creates a new {@code HttpConnectionPool} instance with default settings.
+     */
+    public HttpConnectionPool() {
+    }
+
+    /**
+     * Returns the maximum number of connections the pool opens to a single
+     * host.
+     *
+     * @return The maximum number of connections per host.
+     */
+    public synchronized int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * Sets the maximum number of connections the pool opens to a single host.
+     * Requests wait for a connection to be returned when this limit is hit.
+     *
+     * @param value The maximum number of connections per host.
+     */
+    public synchronized void setMaxConnectionsPerHost(int value) {
+        if (value < 1)
+            throw new IllegalArgumentException(
+                    "The maximum number of connections must be positive.");
+        maxConnectionsPerHost = value;
+        notifyAll();
+    }
+
+    /**
+     * Returns the time, in milliseconds, after which an idle connection is
+     * closed.
+     *
+     * @return The idle timeout.
+     */
+    public synchronized long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Sets the time, in milliseconds, after which an idle connection is
+     * closed.
+     *
+     * @param value The idle timeout.
+     */
+    public synchronized void setIdleTimeout(long value) {
+        idleTimeout = value;
+    }
+
+    /**
+     * Returns the time, in milliseconds, a request waits for a connection
+     * when all connections to its host are leased.
+     *
+     * @return The lease timeout.
+     */
+    public synchronized long getLeaseTimeout() {
+        return leaseTimeout;
+    }
+
+    /**
+     * Sets the time, in milliseconds, a request waits for a connection when
+     * all connections to its host are leased.
+     *
+     * @param value The lease timeout.
+     */
+    public synchronized void setLeaseTimeout(long value) {
+        leaseTimeout = value;
+    }
+
+    /**
+     * Returns the number of connections currently leased to requests.
+     *
+     * @return The number of leased connections.
+     */
+    public synchronized int getLeasedCount() {
+        reclaimAbandoned();
+        return leasedCount;
+    }
+
+    /**
+     * Returns the number of connections currently kept alive in the pool.
+     *
+     * @return The number of idle connections.
+     */
+    public synchronized int getIdleCount() {
+        evictExpired(System.currentTimeMillis());
+        return idleCount;
+    }
+
+    /**
+     * Returns the number of connections opened by the pool since it was
+     * created.
+     *
+     * @return The number of created connections.
+     */
+    public synchronized long getCreatedCount() {
+        return createdCount;
+    }
+
+    /**
+     * Returns the number of connections closed by the pool because they were
+     * idle for too long or because their response was never closed.
+     *
+     * @return The number of evicted connections.
+     */
+    public synchronized long getEvictedCount() {
+        return evictedCount;
+    }
+
+    /**
+     * Closes every idle connection in the pool. Leased connections are not
+     * affected.
+     */
+    public synchronized void closeIdleConnections() {
+        for (LinkedList<HttpConnection> connections : idle.values()) {
+            for (HttpConnection connection : connections) {
+                connection.close();
+                deallocate(connection.route);
+                evictedCount++;
+            }
+            connections.clear();
+        }
+        idleCount = 0;
+    }
+
+    /**
+     * Leases a connection for the given route. Returns an idle connection
+     * when one is available; otherwise reserves room for a new connection and
+     * returns {@code null}, in which case the caller must either open a
+     * connection and pass it to {@link #created} or give up the reservation
+     * with {@link #cancel}.
+     *
+     * @param route The route ({@code scheme://host:port}).
+     * @return An idle connection, or {@code null}.
+     */
+    synchronized HttpConnection lease(String route) {
+        long deadline = System.currentTimeMillis() + leaseTimeout;
+        while (true) {
+            long now = System.currentTimeMillis();
+            reclaimAbandoned();
+            evictExpired(now);
+
+            LinkedList<HttpConnection> connections = idle.get(route);
+            while (connections != null && !connections.isEmpty()) {
+                HttpConnection connection = connections.removeFirst();
+                idleCount--;
+                if (connection.isClosed()) {
+                    deallocate(route);
+                    evictedCount++;
+                    continue;
+                }
+                leasedCount++;
+                return connection;
+            }
+
+            int count = allocatedCount(route);
+            if (count < maxConnectionsPerHost) {
+                allocated.put(route, count + 1);
+                leasedCount++;
+                return null;
+            }
+
+            long remaining = deadline - now;
+            if (remaining <= 0) {
+                throw new RuntimeException(String.format(
+                        "Timed out waiting for a connection to %s " +
+                        "(%d connections leased)", route, count));
+            }
+            try {
+                wait(Math.min(remaining, RECLAIM_INTERVAL));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Records a connection opened on a reservation made by {@link #lease}.
+     *
+     * @param connection The new connection.
+     */
+    synchronized void created(HttpConnection connection) {
+        createdCount++;
+    }
+
+    /**
+     * Gives up a reservation made by {@link #lease} when the connection could
+     * not be opened.
+     *
+     * @param route The route passed to {@code lease}.
+     */
+    synchronized void cancel(String route) {
+        leasedCount--;
+        deallocate(route);
+        notifyAll();
+    }
+
+    /**
+     * Ties a leased connection to the object that owns it, typically the
+     * response content stream. If the owner is garbage collected before the
+     * connection is released, the connection is closed and its slot reused.
+     *
+     * @param connection The leased connection.
+     * @param owner The owner of the lease.
+     */
+    synchronized void track(HttpConnection connection, Object owner) {
+        if (leases.containsKey(connection)) return;
+        leases.put(connection, new Lease(owner, connection, abandoned));
+    }
+
+    /**
+     * Returns a leased connection to the pool.
+     *
+     * @param connection The leased connection.
+     * @param reusable Whether the connection can carry another request.
+     */
+    synchronized void release(HttpConnection connection, boolean reusable) {
+        Lease lease = leases.remove(connection);
+        if (lease != null) lease.clear();
+
+        leasedCount--;
+        if (reusable && !connection.isClosed()) {
+            connection.reused = true;
+            connection.lastUsed = System.currentTimeMillis();
+            LinkedList<HttpConnection> connections = idle.get(connection.route);
+            if (connections == null) {
+                connections = new LinkedList<HttpConnection>();
+                idle.put(connection.route, connections);
+            }
+            connections.addFirst(connection);
+            idleCount++;
+        }
+        else {
+            connection.close();
+            deallocate(connection.route);
+        }
+        notifyAll();
+    }
+
+    private int allocatedCount(String route) {
+        Integer count = allocated.get(route);
+        return count == null ? 0 : count;
+    }
+
+    private void deallocate(String route) {
+        int count = allocatedCount(route) - 1;
+        if (count <= 0)
+            allocated.remove(route);
+        else
+            allocated.put(route, count);
+    }
+
+    // Closes idle connections that have outlived the idle timeout. The
+    // oldest connections are at the end of each list.
+    private void evictExpired(long now) {
+        for (LinkedList<HttpConnection> connections : idle.values()) {
+            Iterator<HttpConnection> iterator = connections.descendingIterator();
+            while (iterator.hasNext()) {
+                HttpConnection connection = iterator.next();
+                if (now - connection.lastUsed < idleTimeout)
+                    break;
+                iterator.remove();
+                connection.close();
+                idleCount--;
+                deallocate(connection.route);
+                evictedCount++;
+            }
+        }
+    }
+
+    // Closes connections whose owners were dropped without being closed.
+    private void reclaimAbandoned() {
+        Reference<?> reference;
+        while ((reference = abandoned.poll()) != null) {
+            HttpConnection connection = ((Lease) reference).connection;
+            if (leases.get(connection) != reference) continue;
+            leases.remove(connection);
+            connection.close();
+            leasedCount--;
+            deallocate(connection.route);
+            evictedCount++;
+        }
+    }
+
+    private static final class Lease extends WeakReference<Object> {
+        final HttpConnection connection;
+
+        Lease(Object owner, HttpConnection connection,
+              ReferenceQueue<Object> queue) {
+            super(owner, queue);
+            this.connection = connection;
+        }
+    }
+}
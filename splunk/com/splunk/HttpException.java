@@ -20,6 +20,8 @@ import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 
 import java.io.*;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Thrown for HTTP responses that return an error status code.
@@ -27,6 +29,7 @@ import java.io.*;
 public class HttpException extends RuntimeException {
     private int status;
     private String detail; // Error message detail
+    private Map<String, String> header = null;
 
     HttpException(int status, String message, String detail) {
         super(message);
@@ -81,7 +84,9 @@ public class HttpException extends RuntimeException {
         if (detail != null && detail.length() > 0)
             message = message + " -- " + detail;
 
-        return new HttpException(status, message, detail);
+        HttpException exception = new HttpException(status, message, detail);
+        exception.getHeader().putAll(response.getHeader());
+        return exception;
     }
 
     /**
@@ -93,6 +98,19 @@ public class HttpException extends RuntimeException {
         return detail;
     }
 
+    /**
+     * Returns the headers of the HTTP error response, such as
+     * {@code Retry-After}.
+     *
+     * @return HTTP error response headers.
+     */
+    public Map<String, String> getHeader() {
+        if (this.header == null)
+            this.header =
+                new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        return this.header;
+    }
+
     /**
      * Returns the HTTP status code.
      *
@@ -18,29 +18,37 @@ package com.splunk;
 
 import javax.net.ssl.*;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.net.*;
 import java.security.cert.X509Certificate;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The {@code HttpService} class represents a generic HTTP service at a given
  * address ({@code host:port}), accessed using a given protocol scheme
  * ({@code http} or {@code https}).
+ * <p>
+ * An {@code HttpService} instance is thread-safe: once configured, it can be
+ * shared by any number of threads issuing requests concurrently.
  */
 public class HttpService {
     // For debugging purposes
     private static final boolean VERBOSE_REQUESTS = false;
-    protected static SSLSecurityProtocol sslSecurityProtocol = SSLSecurityProtocol.SSLv3;
-    private static SSLSocketFactory sslSocketFactory = createSSLFactory();
+    protected static volatile SSLSecurityProtocol sslSecurityProtocol = SSLSecurityProtocol.SSLv3;
+    private static volatile SSLSocketFactory sslSocketFactory = createSSLFactory();
     private static String HTTPS_SCHEME = "https";
-    private static String HTTP_SCHEME = "http";
+    private static final String ACCEPT_COMPRESSED = "gzip, deflate";
 
-    private static final HostnameVerifier HOSTNAME_VERIFIER = new HostnameVerifier() {
+    static final HostnameVerifier HOSTNAME_VERIFIER = new HostnameVerifier() {
         public boolean verify(String s, SSLSession sslSession) {
             return true;
         }
@@ -75,6 +83,60 @@ public class HttpService {
 
     protected SimpleCookieStore cookieStore = new SimpleCookieStore();
 
+    // TLS settings of this instance; null means the static defaults apply.
+    private volatile SSLSocketFactory secureSocketFactory = null;
+    private volatile SSLSecurityProtocol securityProtocol = null;
+
+    /**
+     * The pool of keep-alive connections used by this service.
+     */
+    protected HttpConnectionPool connectionPool = new HttpConnectionPool();
+
+    /**
+     * The default number of threads that run asynchronous requests.
+     */
+    public static final int DEFAULT_ASYNC_THREADS =
+            HttpConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+    private static final AtomicInteger executorNumber = new AtomicInteger(1);
+
+    // Whether responses may be sent compressed.
+    private volatile boolean useCompression = false;
+
+    // Timeouts in milliseconds; zero means no timeout.
+    private volatile int connectTimeout = 0;
+    private volatile int readTimeout = 0;
+
+    // Decides whether failed requests are sent again; null means never.
+    private volatile RetryPolicy retryPolicy = null;
+
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong handshakeCount = new AtomicLong();
+    private final AtomicLong resumedHandshakeCount = new AtomicLong();
+
+    // TLS session cache settings of this instance; -1 means the JDK default.
+    private volatile int sslSessionCacheSize = -1;
+    private volatile int sslSessionTimeout = -1;
+
+    // Carries requests over the network; the default transport is kept for
+    // the sockets opened by open().
+    private final PooledTransport defaultTransport = new PooledTransport(this);
+    private volatile Transport transport = defaultTransport;
+
+    // Whether concurrent identical GET requests share one exchange.
+    private volatile boolean coalesceRequests = false;
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+    // The number of requests other than GET that have completed. A GET only
+    // shares the response of a GET sent after the last of them.
+    private final AtomicLong writeCount = new AtomicLong();
+
+    private final List<RequestListener> requestListeners =
+            new CopyOnWriteArrayList<RequestListener>();
+
+    // Runs asynchronous requests; created on first use.
+    private ExecutorService executor = null;
+
     /**
      * Constructs a new {@code HttpService} instance.
      */
@@ -165,6 +227,33 @@ public class HttpService {
         return send(path, request);
     }
 
+    /**
+     * Issues an asynchronous HTTP GET request against the service using a
+     * given path.
+     *
+     * @param path The request path.
+     * @return A {@code Future} for the HTTP response.
+     * @see #sendAsync(String, RequestMessage)
+     */
+    public Future<ResponseMessage> getAsync(String path) {
+        return sendAsync(path, new RequestMessage("GET"));
+    }
+
+    /**
+     * Issues an asynchronous HTTP GET request against the service using a
+     * given path and query arguments.
+     *
+     * @param path The request path.
+     * @param args The query arguments.
+     * @return A {@code Future} for the HTTP response.
+     * @see #sendAsync(String, RequestMessage)
+     */
+    public Future<ResponseMessage> getAsync(String path, Map<String, Object> args) {
+        if (count(args) > 0)
+            path = path + "?" + Args.encode(args);
+        return sendAsync(path, new RequestMessage("GET"));
+    }
+
     /**
      * Returns the host name of this service.
      *
@@ -184,7 +273,286 @@ public class HttpService {
     }
 
     /**
-     * Returns the SSL security protocol of this service.
+     * Returns the pool of keep-alive connections used by this service. The
+     * pool can be used to tune the number of connections per host and the
+     * idle timeout, and exposes counters of leased, idle, created, and
+     * evicted connections.
+     *
+     * @return The connection pool.
+     */
+    public HttpConnectionPool getConnectionPool() {
+        return this.connectionPool;
+    }
+
+    /**
+     * Returns the time, in milliseconds, allowed for opening a connection.
+     *
+     * @return The connect timeout, or zero if there is none.
+     */
+    public int getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    /**
+     * Sets the time, in milliseconds, allowed for opening a connection
+     * (including the TLS handshake). Individual requests can override it with
+     * {@link RequestMessage#setConnectTimeout}.
+     *
+     * @param connectTimeout The connect timeout, or zero for none.
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        if (connectTimeout < 0)
+            throw new IllegalArgumentException("Timeouts must not be negative.");
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Returns the time, in milliseconds, a request waits for data from the
+     * server.
+     *
+     * @return The read timeout, or zero if there is none.
+     */
+    public int getReadTimeout() {
+        return this.readTimeout;
+    }
+
+    /**
+     * Sets the time, in milliseconds, a request waits for data from the
+     * server, either for the response to start or, once it has started, for
+     * each further part of its content. Individual requests can override it
+     * with {@link RequestMessage#setReadTimeout}.
+     * <p>
+     * A request that times out fails with a {@code RuntimeException} whose
+     * cause is a {@code SocketTimeoutException}.
+     *
+     * @param readTimeout The read timeout, or zero for none.
+     */
+    public void setReadTimeout(int readTimeout) {
+        if (readTimeout < 0)
+            throw new IllegalArgumentException("Timeouts must not be negative.");
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Returns the policy that decides whether failed requests are retried.
+     *
+     * @return The retry policy, or {@code null} if requests are not retried.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return this.retryPolicy;
+    }
+
+    /**
+     * Sets the policy that decides whether failed requests are retried, and
+     * after how long. By default, requests are not retried.
+     *
+     * @param retryPolicy The retry policy, or {@code null} to never retry.
+     * @see ExponentialBackoffRetryPolicy
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Returns the number of times a failed request has been retried by this
+     * service.
+     *
+     * @return The number of retries.
+     */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * Returns the number of requests of this service that failed because a
+     * connect or read timeout elapsed.
+     *
+     * @return The number of timeouts.
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    /**
+     * Returns the number of TLS handshakes performed by this service,
+     * including those that resumed an earlier session.
+     *
+     * @return The number of handshakes.
+     */
+    public long getHandshakeCount() {
+        return handshakeCount.get();
+    }
+
+    /**
+     * Returns the number of TLS handshakes of this service that resumed an
+     * earlier session instead of negotiating a new one.
+     *
+     * @return The number of abbreviated handshakes.
+     */
+    public long getResumedHandshakeCount() {
+        return resumedHandshakeCount.get();
+    }
+
+    /**
+     * Returns the transport that carries the requests of this service.
+     *
+     * @return The transport.
+     */
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Sets the transport that carries the requests of this service, for
+     * example an {@link HttpURLConnectionTransport}, a tuned HTTP client, or
+     * an in-memory fake for tests. By default, requests are sent over
+     * keep-alive connections from the {@link HttpConnectionPool} of this
+     * service.
+     *
+     * @param transport The transport, or {@code null} to restore the
+     *                  default transport.
+     */
+    public void setTransport(Transport transport) {
+        this.transport = transport == null ? defaultTransport : transport;
+    }
+
+    /**
+     * Indicates whether concurrent identical GET requests share a single
+     * exchange with the server.
+     *
+     * @return {@code true} if requests are coalesced, {@code false} if not.
+     * @see #setCoalesceRequests
+     */
+    public boolean getCoalesceRequests() {
+        return this.coalesceRequests;
+    }
+
+    /**
+     * Sets whether concurrent identical GET requests share a single exchange
+     * with the server. When many threads poll the same resources, such as
+     * jobs being refreshed, a GET issued while an identical one (same URL,
+     * headers, and cookies) is in flight waits for that response and gets a
+     * copy of it, instead of taking another connection.
+     * <p>
+     * A GET never shares the response of a GET that was sent before a POST
+     * or DELETE request of this service completed, so that a caller that
+     * changes a resource and then reads it gets the changed state. Changes
+     * made through other services or clients may still be missed by
+     * responses in flight, as with any concurrent read.
+     * <p>
+     * Shared responses are read into memory first; responses larger than
+     * 1 MB are not shared. Coalescing is disabled by default.
+     *
+     * @param coalesceRequests {@code true} to coalesce identical requests.
+     */
+    public void setCoalesceRequests(boolean coalesceRequests) {
+        this.coalesceRequests = coalesceRequests;
+    }
+
+    /**
+     * Returns the number of requests that were answered with the response
+     * of an identical request in flight, without a server exchange of their
+     * own.
+     *
+     * @return The number of coalesced requests.
+     * @see #setCoalesceRequests
+     */
+    public long getCoalescedCount() {
+        return coalescer.getCoalescedCount();
+    }
+
+    /**
+     * Adds a listener that is notified of every request issued by this
+     * service, with its timings, status, and byte counts.
+     *
+     * @param listener The listener to add.
+     * @see RequestMetrics
+     */
+    public void addRequestListener(RequestListener listener) {
+        if (listener == null)
+            throw new NullPointerException("listener");
+        requestListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added by {@link #addRequestListener}.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeRequestListener(RequestListener listener) {
+        requestListeners.remove(listener);
+    }
+
+    /**
+     * Indicates whether this service asks for compressed responses.
+     *
+     * @return {@code true} if gzip and deflate content encodings are
+     * accepted, {@code false} if not.
+     * @see #setUseCompression
+     */
+    public boolean getUseCompression() {
+        return this.useCompression;
+    }
+
+    /**
+     * Sets whether this service asks for compressed responses. When enabled,
+     * requests carry an {@code Accept-Encoding: gzip, deflate} header and
+     * compressed responses are decoded as they are read, so
+     * {@link ResponseMessage#getContent} always returns the plain content.
+     * Compare {@link ResponseMessage#getWireByteCount} with
+     * {@link ResponseMessage#getContentByteCount} to measure the savings.
+     * <p>
+     * Compression is disabled by default, since it trades server and client
+     * CPU time for network bandwidth.
+     *
+     * @param useCompression {@code true} to accept compressed responses.
+     */
+    public void setUseCompression(boolean useCompression) {
+        this.useCompression = useCompression;
+    }
+
+    /**
+     * Returns the executor that runs the asynchronous requests of this
+     * service. Unless one has been set with {@link #setExecutor}, a pool of
+     * {@link #DEFAULT_ASYNC_THREADS} daemon threads is created on first use.
+     *
+     * @return The executor.
+     */
+    public synchronized ExecutorService getExecutor() {
+        if (this.executor == null)
+            this.executor = Executors.newFixedThreadPool(
+                    DEFAULT_ASYNC_THREADS, new DaemonThreadFactory(
+                            "splunk-async-" + executorNumber.getAndIncrement()
+                                    + "-thread-"));
+        return this.executor;
+    }
+
+    /**
+     * Sets the executor that runs the asynchronous requests of this service.
+     * The number of requests in flight at once is bounded by the number of
+     * threads of the executor and by the connection pool limit per host.
+     *
+     * @param executor The executor.
+     */
+    public synchronized void setExecutor(ExecutorService executor) {
+        if (executor == null)
+            throw new IllegalArgumentException("The executor cannot be null.");
+        this.executor = executor;
+    }
+
+    /**
+     * Runs a task on the executor of this service.
+     *
+     * @param task The task.
+     * @return A {@code Future} for the task's result.
+     */
+    <T> Future<T> submit(Callable<T> task) {
+        return getExecutor().submit(task);
+    }
+
+    /**
+     * Returns the default SSL security protocol, used by every service that
+     * has not been given its own with {@link #setSecurityProtocol}.
      *
      * @return The SSL security protocol.
      */
@@ -193,14 +561,137 @@ public class HttpService {
     }
 
     /**
-     * Sets the SSL security protocol of this service.
+     * Sets the default SSL security protocol, used by every service that has
+     * not been given its own with {@link #setSecurityProtocol}.
      */
-    public static void setSslSecurityProtocol(SSLSecurityProtocol securityProtocol) {
+    public static synchronized void setSslSecurityProtocol(SSLSecurityProtocol securityProtocol) {
         // Only update the SSL_SOCKET_FACTORY if changing protocols
         if (sslSecurityProtocol != securityProtocol) {
             sslSecurityProtocol = securityProtocol;
-            sslSocketFactory = new SplunkHttpsSocketFactory(createSSLFactory(), securityProtocol);
+            sslSocketFactory = createSSLFactory(securityProtocol);
+        }
+    }
+
+    /**
+     * Returns the SSL security protocol used by this service instance.
+     *
+     * @return The SSL security protocol.
+     */
+    public SSLSecurityProtocol getSecurityProtocol() {
+        SSLSecurityProtocol protocol = this.securityProtocol;
+        return protocol != null ? protocol : sslSecurityProtocol;
+    }
+
+    /**
+     * Sets the SSL security protocol used by this service instance only,
+     * leaving other instances and the static default unchanged.
+     *
+     * @param securityProtocol The SSL security protocol.
+     */
+    public void setSecurityProtocol(SSLSecurityProtocol securityProtocol) {
+        if (securityProtocol == null)
+            throw new IllegalArgumentException("The securityProtocol cannot be null.");
+        SSLSocketFactory factory = createSSLFactory(securityProtocol);
+        configureSessionContext(factory);
+        this.secureSocketFactory = factory;
+        this.securityProtocol = securityProtocol;
+    }
+
+    /**
+     * Returns the TLS client session cache of this service instance, in which
+     * sessions are kept for resumption by later connections to the same
+     * host and port.
+     * <p>
+     * Services that use the default {@code SSLSocketFactory} share its cache;
+     * a service given its own security protocol or session cache settings
+     * has a cache of its own.
+     *
+     * @return The session cache, or {@code null} if this service uses a
+     * custom {@code SSLSocketFactory}, whose cache is not accessible.
+     */
+    public SSLSessionContext getSSLSessionContext() {
+        SSLSocketFactory factory = getSecureSocketFactory();
+        if (factory instanceof SplunkHttpsSocketFactory)
+            return ((SplunkHttpsSocketFactory) factory).getSessionContext();
+        return null;
+    }
+
+    /**
+     * Sets the number of TLS sessions this service instance keeps for
+     * resumption. Reconnecting to a host whose session is cached takes an
+     * abbreviated handshake (or, where the JDK supports them, a session
+     * ticket), which saves a round trip and the key exchange.
+     * <p>
+     * This gives the service a session cache of its own. It has no effect on
+     * a custom {@code SSLSocketFactory} set with
+     * {@link #setSecureSocketFactory}, whose cache is configured through its
+     * {@code SSLContext}.
+     *
+     * @param size The maximum number of cached sessions, or zero for no
+     * limit.
+     */
+    public synchronized void setSSLSessionCacheSize(int size) {
+        if (size < 0)
+            throw new IllegalArgumentException("The session cache size cannot be negative.");
+        this.sslSessionCacheSize = size;
+        useOwnSessionContext();
+    }
+
+    /**
+     * Sets the time, in seconds, a TLS session of this service instance can
+     * be resumed after it was established. See
+     * {@link #setSSLSessionCacheSize} for how the cache is shared.
+     *
+     * @param seconds The session timeout, or zero for no limit.
+     */
+    public synchronized void setSSLSessionTimeout(int seconds) {
+        if (seconds < 0)
+            throw new IllegalArgumentException("The session timeout cannot be negative.");
+        this.sslSessionTimeout = seconds;
+        useOwnSessionContext();
+    }
+
+    // Gives this instance a socket factory, and so a session cache, of its
+    // own before its cache settings are applied.
+    private void useOwnSessionContext() {
+        SSLSocketFactory factory = this.secureSocketFactory;
+        if (factory == null) {
+            factory = createSSLFactory(getSecurityProtocol());
+            this.secureSocketFactory = factory;
         }
+        configureSessionContext(factory);
+    }
+
+    private void configureSessionContext(SSLSocketFactory factory) {
+        if (!(factory instanceof SplunkHttpsSocketFactory))
+            return;
+        SSLSessionContext context = ((SplunkHttpsSocketFactory) factory).getSessionContext();
+        if (sslSessionCacheSize >= 0)
+            context.setSessionCacheSize(sslSessionCacheSize);
+        if (sslSessionTimeout >= 0)
+            context.setSessionTimeout(sslSessionTimeout);
+    }
+
+    /**
+     * Returns the {@code SSLSocketFactory} used by this service instance.
+     *
+     * @return The {@code SSLSocketFactory}.
+     */
+    public SSLSocketFactory getSecureSocketFactory() {
+        SSLSocketFactory factory = this.secureSocketFactory;
+        return factory != null ? factory : sslSocketFactory;
+    }
+
+    /**
+     * Sets the {@code SSLSocketFactory} used by this service instance only,
+     * leaving other instances and the static default unchanged.
+     *
+     * @param secureSocketFactory The {@code SSLSocketFactory}.
+     */
+    public void setSecureSocketFactory(SSLSocketFactory secureSocketFactory) {
+        if (secureSocketFactory == null)
+            throw new IllegalArgumentException("The secureSocketFactory cannot be null.");
+        this.secureSocketFactory = secureSocketFactory;
     }
 
     /**
@@ -308,6 +799,36 @@ public class HttpService {
         return send(path, request);
     }
 
+    /**
+     * Issues an asynchronous POST request against the service using a given
+     * path.
+     *
+     * @param path The request path.
+     * @return A {@code Future} for the HTTP response.
+     * @see #sendAsync(String, RequestMessage)
+     */
+    public Future<ResponseMessage> postAsync(String path) {
+        return postAsync(path, null);
+    }
+
+    /**
+     * Issues an asynchronous POST request against the service using a given
+     * path and form arguments.
+     *
+     * @param path The request path.
+     * @param args The form arguments.
+     * @return A {@code Future} for the HTTP response.
+     * @see #sendAsync(String, RequestMessage)
+     */
+    public Future<ResponseMessage> postAsync(String path, Map<String, Object> args) {
+        RequestMessage request = new RequestMessage("POST");
+        request.getHeader().put(
+                "Content-Type", "application/x-www-form-urlencoded");
+        if (count(args) > 0)
+            request.setContent(Args.encode(args));
+        return sendAsync(path, request);
+    }
+
     /**
      * Issues a DELETE request against the service using a given path.
      *
@@ -334,6 +855,33 @@ public class HttpService {
         return send(path, request);
     }
 
+    /**
+     * Issues an asynchronous DELETE request against the service using a
+     * given path.
+     *
+     * @param path The request path.
+     * @return A {@code Future} for the HTTP response.
+     * @see #sendAsync(String, RequestMessage)
+     */
+    public Future<ResponseMessage> deleteAsync(String path) {
+        return sendAsync(path, new RequestMessage("DELETE"));
+    }
+
+    /**
+     * Issues an asynchronous DELETE request against the service using a
+     * given path and query arguments.
+     *
+     * @param path The request path.
+     * @param args The query arguments.
+     * @return A {@code Future} for the HTTP response.
+     * @see #sendAsync(String, RequestMessage)
+     */
+    public Future<ResponseMessage> deleteAsync(String path, Map<String, Object> args) {
+        if (count(args) > 0)
+            path = path + "?" + Args.encode(args);
+        return sendAsync(path, new RequestMessage("DELETE"));
+    }
+
     /**
      * Opens a socket to this service.
      *
@@ -341,130 +889,252 @@ public class HttpService {
      * @throws IOException
      */
     Socket open() throws IOException {
-        if (this.scheme.equals("https")) {
-            return sslSocketFactory.createSocket(this.host, this.port);
-        }
-        return new Socket(this.host, this.port);
+        // Sockets are opened like pooled connections, so that they share
+        // the TLS session cache and the connect timeout of this service.
+        return defaultTransport.openSocket(this.connectTimeout, null);
     }
 
     /**
      * Issue an HTTP request against the service using a given path and
      * request message.
+     * <p>
+     * Requests are sent by the {@link Transport} of this service, by default
+     * over keep-alive connections from its {@link HttpConnectionPool}. The
+     * connection is returned to the pool once the response content has been
+     * read to its end or the response is closed, so callers should always
+     * close the returned response.
+     *
+     * <p>
+     * If a {@link RetryPolicy} is set, a failed request is sent again for as
+     * long as the policy allows it.
      *
      * @param path    The request path.
      * @param request The request message.
      * @return The HTTP response.
      */
-    public ResponseMessage send(String path, RequestMessage request) {
+    public ResponseMessage send(String path, final RequestMessage request) {
         // Construct a full URL to the resource
-        URL url = getUrl(path);
-
-        // Create and initialize the connection object
-        HttpURLConnection cn;
-        try {
-            cn = (HttpURLConnection) url.openConnection();
-        } catch (IOException e) {
-            throw new RuntimeException(e.getMessage(), e);
-        }
-        if (cn instanceof HttpsURLConnection) {
-            ((HttpsURLConnection) cn).setSSLSocketFactory(sslSocketFactory);
-            ((HttpsURLConnection) cn).setHostnameVerifier(HOSTNAME_VERIFIER);
+        final URL url = getUrl(path);
+
+        if (coalesceRequests && request.getMethod().equals("GET")
+                && request.getContent() == null) {
+            return coalescer.send(coalescingKey(url, request),
+                    new Callable<ResponseMessage>() {
+                        public ResponseMessage call() {
+                            return sendWithRetries(url, request);
+                        }
+                    });
         }
-        cn.setUseCaches(false);
-        cn.setAllowUserInteraction(false);
-
-        // Set the request method
-        String method = request.getMethod();
+        if (request.getMethod().equals("GET"))
+            return sendWithRetries(url, request);
         try {
-            cn.setRequestMethod(method);
-        } catch (ProtocolException e) {
-            throw new RuntimeException(e.getMessage(), e);
+            return sendWithRetries(url, request);
+        } finally {
+            writeCount.incrementAndGet();
         }
+    }
 
-        // Add headers from request message
-        Map<String, String> header = request.getHeader();
-        for (Entry<String, String> entry : header.entrySet())
-            cn.setRequestProperty(entry.getKey(), entry.getValue());
-        // Add default headers that were absent from the request message
-        for (Entry<String, String> entry : defaultHeader.entrySet()) {
-            String key = entry.getKey();
-            if (header.containsKey(key)) continue;
-            cn.setRequestProperty(key, entry.getValue());
-        }
+    // Identifies the requests that can share a response.
+    private String coalescingKey(URL url, RequestMessage request) {
+        return url.toString()
+                + '\n' + request.getHeader()
+                + '\n' + cookieStore.getCookies()
+                + '\n' + request.getConnectTimeout()
+                + '/' + request.getReadTimeout()
+                + '\n' + writeCount.get();
+    }
 
-        // Add cookies to header
-        cn.setRequestProperty("Cookie", cookieStore.getCookies());
+    private ResponseMessage sendWithRetries(URL url, RequestMessage request) {
+        RetryPolicy policy = this.retryPolicy;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return dispatch(url, request);
+            } catch (RuntimeException e) {
+                if (policy == null || !request.isContentRepeatable())
+                    throw e;
+                long delay = policy.getRetryDelay(request, attempt, e);
+                if (delay < 0)
+                    throw e;
+                retryCount.incrementAndGet();
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
 
-        // Write out request content, if any
+    private ResponseMessage dispatch(URL url, RequestMessage request) {
+        RequestEvent event = new RequestEvent(url, request, requestListeners);
+        event.started();
         try {
-            Object content = request.getContent();
-            if (content != null) {
-                cn.setDoOutput(true);
-                OutputStream stream = cn.getOutputStream();
-                OutputStreamWriter writer = new OutputStreamWriter(stream, "UTF-8");
-                writer.write((String) content);
-                writer.close();
+            // Listeners may have added headers, so build them afterwards.
+            TransportRequest transportRequest = new TransportRequest(
+                    this, url, request, requestHeader(request),
+                    request.getConnectTimeout() >= 0
+                            ? request.getConnectTimeout() : this.connectTimeout,
+                    request.getReadTimeout() >= 0
+                            ? request.getReadTimeout() : this.readTimeout,
+                    event);
+
+            String method = request.getMethod();
+            if (VERBOSE_REQUESTS) {
+                System.out.format("%s %s => ", method, url.toString());
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e.getMessage(), e);
-        }
 
-        if (VERBOSE_REQUESTS) {
-            System.out.format("%s %s => ", method, url.toString());
-        }
+            ResponseMessage response;
+            try {
+                response = transport.send(transportRequest);
+            } catch (IOException e) {
+                throw failure(e);
+            }
+            observe(response, event);
 
-        // Execute the request
-        try {
-            cn.connect();
-        } catch (IOException e) {
-            throw new RuntimeException(e.getMessage(), e);
-        }
+            int status = response.getStatus();
+            if (VERBOSE_REQUESTS) {
+                System.out.format("%d\n", status);
+                if (method.equals("POST")) {
+                    System.out.println("    " + request.getContent());
+                }
+            }
 
-        int status;
-        try {
-            status = cn.getResponseCode();
-        } catch (IOException e) {
-            throw new RuntimeException(e.getMessage(), e);
-        }
+            if (status >= 400)
+                throw HttpException.create(response);
 
-        InputStream input = null;
-        try {
-            input = status >= 400
-                    ? cn.getErrorStream()
-                    : cn.getInputStream();
-        } catch (IOException e) {
-            assert (false);
+            return response;
+        } catch (RuntimeException e) {
+            // Error responses have completed the event already, once their
+            // content was read into the exception.
+            event.completed(0, e);
+            throw e;
         }
+    }
 
-        // Add cookies to cookie Store
-        cookieStore.add(cn.getHeaderField("Set-Cookie"));
+    // Returns the headers of the request message, completed with the
+    // default headers and the cookies of this service.
+    private Map<String, String> requestHeader(RequestMessage request) {
+        Map<String, String> header = new TreeMap<String, String>(
+                String.CASE_INSENSITIVE_ORDER);
+        // Add default headers that were absent from the request message
+        header.putAll(defaultHeader);
+        if (useCompression)
+            header.put("Accept-Encoding", ACCEPT_COMPRESSED);
+        if (request.getContent() != null)
+            header.put("Content-Type", "application/x-www-form-urlencoded");
+        header.putAll(request.getHeader());
 
-        ResponseMessage response = new ResponseMessage(status, input);
+        // Add cookies to header
+        String cookies = cookieStore.getCookies();
+        if (cookies.length() > 0)
+            header.put("Cookie", cookies);
+        return header;
+    }
 
-        if (VERBOSE_REQUESTS) {
-            System.out.format("%d\n", status);
-            if (method.equals("POST")) {
-                System.out.println("    " + request.getContent());
-            }
-        }
+    // Makes the listeners of this service hear when the response content
+    // has been consumed.
+    private void observe(ResponseMessage response, RequestEvent event) {
+        int status = response.getStatus();
+        event.status = status;
+        if (response.content == null || status == 204 || status == 304
+                || "0".equals(response.getHeader().get("Content-Length")))
+            event.completed(0, null);
+        else if (!requestListeners.isEmpty())
+            response.content = new ObservedInputStream(
+                    response.content, response, event);
+    }
+
+    // Counts a TLS handshake performed by the default transport.
+    void handshakeCompleted(boolean resumed) {
+        handshakeCount.incrementAndGet();
+        if (resumed)
+            resumedHandshakeCount.incrementAndGet();
+    }
 
-        if (status >= 400)
-            throw HttpException.create(response);
+    // Wraps a transport failure, counting it if it is a timeout.
+    private RuntimeException failure(IOException e) {
+        if (e instanceof SocketTimeoutException)
+            timeoutCount.incrementAndGet();
+        return new RuntimeException(e.getMessage(), e);
+    }
 
-        return response;
+    /**
+     * Issues an asynchronous HTTP request against the service using a given
+     * path and request message. The request is run by {@link #send} on the
+     * executor of this service, so the calling thread does not wait for the
+     * response.
+     * <p>
+     * If the request fails, {@code Future.get} throws an
+     * {@code ExecutionException} whose cause is the exception {@code send}
+     * would have thrown, such as an {@code HttpException}.
+     *
+     * @param path    The request path.
+     * @param request The request message.
+     * @return A {@code Future} for the HTTP response.
+     * @see #setExecutor
+     */
+    public Future<ResponseMessage> sendAsync(final String path,
+                                             final RequestMessage request) {
+        return submit(new Callable<ResponseMessage>() {
+            public ResponseMessage call() {
+                return send(path, request);
+            }
+        });
     }
 
+    /**
+     * Sets the default {@code SSLSocketFactory}, used by every service that
+     * has not been given its own with {@link #setSecureSocketFactory}.
+     *
+     * @param sslSocketFactory The {@code SSLSocketFactory}.
+     */
     public static void setSSLSocketFactory(SSLSocketFactory sslSocketFactory) {
         if (sslSocketFactory == null)
             throw new IllegalArgumentException("The sslSocketFactory cannot be null.");
         HttpService.sslSocketFactory = sslSocketFactory;
     }
 
+    /**
+     * Returns the default {@code SSLSocketFactory}, used by every service
+     * that has not been given its own with {@link #setSecureSocketFactory}.
+     *
+     * @return The {@code SSLSocketFactory}.
+     */
     public static SSLSocketFactory getSSLSocketFactory() {
         return HttpService.sslSocketFactory;
     }
 
+    /**
+     * Creates a trust-all {@code SSLSocketFactory} for the default SSL
+     * security protocol.
+     *
+     * @return The {@code SSLSocketFactory}.
+     */
     public static SSLSocketFactory createSSLFactory() {
+        return createSSLFactory(HttpService.sslSecurityProtocol);
+    }
+
+    /**
+     * Creates a trust-all {@code SSLSocketFactory} for the given SSL security
+     * protocol.
+     *
+     * @param securityProtocol The SSL security protocol.
+     * @return The {@code SSLSocketFactory}.
+     */
+    public static SSLSocketFactory createSSLFactory(SSLSecurityProtocol securityProtocol) {
+        SSLContext context = createSSLContext(securityProtocol);
+        return new SplunkHttpsSocketFactory(context, securityProtocol);
+    }
+
+    /**
+     * Creates a trust-all {@code SSLContext} for the given SSL security
+     * protocol. Sockets from the same context share its session cache.
+     *
+     * @param securityProtocol The SSL security protocol.
+     * @return The {@code SSLContext}.
+     */
+    public static SSLContext createSSLContext(SSLSecurityProtocol securityProtocol) {
         TrustManager[] trustAll = new TrustManager[]{
                 new X509TrustManager() {
                     public X509Certificate[] getAcceptedIssuers() {
@@ -480,7 +1150,7 @@ public class HttpService {
         };
         try {
             SSLContext context;
-            switch (HttpService.sslSecurityProtocol) {
+            switch (securityProtocol) {
                 case TLSv1_2:
                 case TLSv1_1:
                 case TLSv1:
@@ -491,24 +1161,25 @@ public class HttpService {
             }
 
             context.init(null, trustAll, new java.security.SecureRandom());
-            return new SplunkHttpsSocketFactory(context.getSocketFactory(), HttpService.sslSecurityProtocol);
+            return context;
         } catch (Exception e) {
             throw new RuntimeException("Error setting up SSL socket factory: " + e, e);
         }
     }
 
     private static final class SplunkHttpsSocketFactory extends SSLSocketFactory {
+        private final SSLContext context;
         private final SSLSocketFactory delegate;
         private SSLSecurityProtocol sslSecurityProtocol;
 
-        private SplunkHttpsSocketFactory(SSLSocketFactory delegate) {
-            this.delegate = delegate;
-            this.sslSecurityProtocol = HttpService.sslSecurityProtocol;
+        private SplunkHttpsSocketFactory(SSLContext context, SSLSecurityProtocol securityProtocol) {
+            this.context = context;
+            this.delegate = context.getSocketFactory();
+            this.sslSecurityProtocol = securityProtocol;
         }
 
-        private SplunkHttpsSocketFactory(SSLSocketFactory delegate, SSLSecurityProtocol securityProtocol) {
-            this.delegate = delegate;
-            this.sslSecurityProtocol = securityProtocol;
+        private SSLSessionContext getSessionContext() {
+            return context.getClientSessionContext();
         }
 
         private Socket configure(Socket socket) {
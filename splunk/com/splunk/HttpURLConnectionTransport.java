@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import javax.net.ssl.HttpsURLConnection;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * The {@code HttpURLConnectionTransport} class sends requests through the
+ * JDK's {@code HttpURLConnection}.
+ * <p>
+ * Unlike the default transport of {@code HttpService}, it honors the
+ * system proxy settings and custom URL stream handlers, at the cost of less
+ * control over connection reuse. The default transport falls back to it
+ * for requests that need either.
+ *
+ * @see HttpService#setTransport
+ */
+public class HttpURLConnectionTransport implements Transport {
+    /**
+     * Creates a new {@code HttpURLConnectionTransport} instance.
+     */
+    public HttpURLConnectionTransport() {
+    }
+
+    public ResponseMessage send(TransportRequest request) throws IOException {
+        // Create and initialize the connection object
+        HttpURLConnection cn = (HttpURLConnection) request.getUrl().openConnection();
+        if (cn instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) cn).setSSLSocketFactory(
+                    request.getService().getSecureSocketFactory());
+            ((HttpsURLConnection) cn).setHostnameVerifier(HttpService.HOSTNAME_VERIFIER);
+        }
+        cn.setUseCaches(false);
+        cn.setAllowUserInteraction(false);
+        cn.setConnectTimeout(request.getConnectTimeout());
+        cn.setReadTimeout(request.getReadTimeout());
+        cn.setRequestMethod(request.getMethod());
+
+        for (Entry<String, String> entry : request.getHeader().entrySet())
+            cn.setRequestProperty(entry.getKey(), entry.getValue());
+
+        // Write out request content, if any
+        if (request.hasContent()) {
+            cn.setDoOutput(true);
+            long length = request.getContentLength();
+            if (length >= 0 && length <= Integer.MAX_VALUE)
+                cn.setFixedLengthStreamingMode((int) length);
+            else
+                cn.setChunkedStreamingMode(ChunkedOutputStream.CHUNK_SIZE);
+            OutputStream stream = cn.getOutputStream();
+            request.writeContent(stream);
+            stream.close();
+        }
+
+        // Execute the request
+        cn.connect();
+        int status = cn.getResponseCode();
+        request.responseStarted();
+
+        InputStream input = status >= 400
+                ? cn.getErrorStream()
+                : cn.getInputStream();
+
+        Map<String, String> header = new TreeMap<String, String>(
+                String.CASE_INSENSITIVE_ORDER);
+        for (Entry<String, List<String>> entry : cn.getHeaderFields().entrySet()) {
+            String key = entry.getKey();
+            // The status line is listed under a null key.
+            if (key == null) continue;
+            if (key.equalsIgnoreCase("Set-Cookie")) {
+                for (String setCookie : entry.getValue())
+                    request.addCookie(setCookie);
+            }
+            header.put(key, Util.join(", ", entry.getValue()));
+        }
+        return request.createResponse(status, header, input);
+    }
+}
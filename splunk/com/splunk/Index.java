@@ -17,6 +17,7 @@
 package com.splunk;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.util.Date;
@@ -693,6 +694,7 @@ public class Index extends Entity {
     public void rollHotBuckets() {
         ResponseMessage response = service.post(path + "/roll-hot-buckets");
         assert(response.getStatus() == 200);
+        response.closeQuietly();
     }
 
     /**
@@ -1097,6 +1099,34 @@ public class Index extends Entity {
         receiver.submit(getName(), args, data);
     }
 
+    /**
+     * Submits events read from a stream to this index through an HTTP POST
+     * request. The stream is sent as it is read, without being held in
+     * memory, and is closed once it has been sent.
+     *
+     * @param args Optional arguments for this request. Valid parameters are: 
+     * "host", "host_regex", "source", and "sourcetype".
+     * @param data The event data to post.
+     */
+    public void submit(Args args, InputStream data) {
+        Receiver receiver = service.getReceiver();
+        receiver.submit(getName(), args, data);
+    }
+
+    /**
+     * Submits events produced by a writer to this index through an HTTP POST
+     * request. The events are sent as they are written, without being held
+     * in memory.
+     *
+     * @param args Optional arguments for this request. Valid parameters are: 
+     * "host", "host_regex", "source", and "sourcetype".
+     * @param data The writer of the event data to post.
+     */
+    public void submit(Args args, ContentWriter data) {
+        Receiver receiver = service.getReceiver();
+        receiver.submit(getName(), args, data);
+    }
+
     /**
      * Uploads a file to this index as an event stream.
      * <p>
@@ -139,7 +139,7 @@ public class InputCollection extends EntityCollection<Input> {
     create(String name, InputKind kind, Map<String, Object> args) {
         args = Args.create(args).add("name", name);
         String path = this.path + "/" + kind.getRelativePath();
-        service.post(path, args);
+        service.post(path, args).closeQuietly();
         
         invalidate();
         
@@ -242,7 +242,12 @@ public class InputCollection extends EntityCollection<Input> {
         Set<InputKind> kinds = new HashSet<InputKind>();
         try {
             ResponseMessage response = service.get(this.path + "/" + Util.join("/", subPath));
-            AtomFeed feed = AtomFeed.parseStream(response.getContent());
+            AtomFeed feed;
+            try {
+                feed = AtomFeed.parseStream(response.getContent());
+            } finally {
+                response.closeQuietly();
+            }
             for (AtomEntry entry : feed.entries) {
                 String itemKeyName = itemKey(entry);
 
@@ -319,13 +324,13 @@ public class InputCollection extends EntityCollection<Input> {
                 if (e.getStatus() == 404) continue;
                 throw e;
             }
-            AtomFeed feed;
             try {
-                feed = AtomFeed.parseStream(response.getContent());
+                load(AtomFeed.iterateStream(response.getContent()));
             } catch (Exception e) {
                 throw new RuntimeException(e);
+            } finally {
+                response.closeQuietly();
             }
-            load(feed);
         }
 
         return this;
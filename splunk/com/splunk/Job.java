@@ -20,6 +20,7 @@ import java.io.InputStream;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * The {@code Job} class represents a job, which is an individual 
@@ -75,7 +76,7 @@ public class Job extends Entity {
      */
     public Job control(String action, Map args) {
         args = Args.create(args).add("action", action);
-        service.post(actionPath("control"), args);
+        service.post(actionPath("control"), args).closeQuietly();
         invalidate();
         return this;
     }
@@ -529,6 +530,61 @@ public class Job extends Entity {
         return getResults((Map<String, Object>) args);
     }
 
+    /**
+     * Returns an iterator over the results of this job, which must be done.
+     * The results are read a page at a time, and the next pages are fetched
+     * in the background while the current one is iterated.
+     *
+     * @param pageSize The number of results to fetch per request.
+     * @param prefetchDepth The number of pages to fetch ahead.
+     * @return The results iterator.
+     * @see JobResultsIterator
+     */
+    public JobResultsIterator resultsIterator(int pageSize, int prefetchDepth) {
+        return resultsIterator((Map) null, pageSize, prefetchDepth);
+    }
+
+    /**
+     * Returns an iterator over the results of this job, which must be done.
+     * The results are read a page at a time, and the next pages are fetched
+     * in the background while the current one is iterated.
+     *
+     * @param args Optional arguments. The {@code offset} and {@code count}
+     *             arguments bound the results to iterate, and the output
+     *             mode must be JSON (the default), XML, or CSV.
+     * @param pageSize The number of results to fetch per request.
+     * @param prefetchDepth The number of pages to fetch ahead.
+     * @return The results iterator.
+     * @see JobResultsIterator
+     */
+    public JobResultsIterator resultsIterator(Map args, int pageSize,
+                                              int prefetchDepth) {
+        checkReady();
+        return new JobResultsIterator(this, args, pageSize, prefetchDepth);
+    }
+
+    /**
+     * Returns an iterator over the results of this job, which must be done.
+     * The results are read a page at a time, and the next pages are fetched
+     * in the background while the current one is iterated.
+     *
+     * @param args Optional arguments (see {@link JobResultsArgs}). The
+     *             {@code offset} and {@code count} arguments bound the
+     *             results to iterate, and the output mode must be JSON (the
+     *             default), XML, or CSV.
+     * @param pageSize The number of results to fetch per request.
+     * @param prefetchDepth The number of pages to fetch ahead.
+     * @return The results iterator.
+     * @see JobResultsIterator
+     */
+    // NOTE: This overload exists primarily to provide better documentation
+    //       for the "args" parameter.
+    public JobResultsIterator resultsIterator(JobResultsArgs args,
+                                              int pageSize, int prefetchDepth) {
+        return resultsIterator((Map<String, Object>) args, pageSize,
+                prefetchDepth);
+    }
+
     /**
      * Returns the {@code InputStream} IO handle for the preview results from 
      * this job.
@@ -894,6 +950,7 @@ public class Job extends Entity {
         update();
         ResponseMessage response = service.get(path);
         if (response.getStatus() == 204) {
+            response.closeQuietly();
             isReady = false;
             return this;
         }
@@ -903,6 +960,8 @@ public class Job extends Entity {
             entry = AtomEntry.parseStream(response.getContent());
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            response.closeQuietly();
         }
         load(entry);
 
@@ -916,6 +975,16 @@ public class Job extends Entity {
         return this;
     }
 
+    /**
+     * Refreshes this job asynchronously.
+     *
+     * @return A {@code Future} for the search job.
+     */
+    @SuppressWarnings("unchecked")
+    @Override public Future<Job> refreshAsync() {
+        return (Future<Job>)super.refreshAsync();
+    }
+
     /**
      * Unsupported. Removes this job. This method is unsupported and will throw
      * an exception.
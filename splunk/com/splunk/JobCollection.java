@@ -81,10 +81,15 @@ public class JobCollection extends EntityCollection<Job> {
         ResponseMessage response = service.post(path, args);
         assert(response.getStatus() == 201);
 
-        String sid = Xml.parse(response.getContent())
-            .getElementsByTagName("sid")
-            .item(0)
-            .getTextContent();
+        String sid;
+        try {
+            sid = Xml.parse(response.getContent())
+                .getElementsByTagName("sid")
+                .item(0)
+                .getTextContent();
+        } finally {
+            response.closeQuietly();
+        }
 
         Job job = new Job(service, REST_PATH + "/" + sid);
         job.refresh();
@@ -125,6 +130,6 @@ public class JobCollection extends EntityCollection<Job> {
      * @return This job's SID.
      */
     @Override protected String itemKey(AtomEntry entry) {
-        return (String)entry.content.get("sid");
+        return (String)entry.getContentValue("sid");
     }
 }
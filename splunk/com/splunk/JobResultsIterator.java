@@ -0,0 +1,234 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.splunk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code JobResultsIterator} class iterates over the results of a
+ * finished search job, as returned by the {@link Job#resultsIterator}
+ * method.
+ * <p>
+ * The results are read a page at a time, using the {@code offset} and
+ * {@code count} arguments of the {@code search/jobs/{search_id}/results}
+ * endpoint. While a page is being iterated, the following pages are
+ * fetched and decoded on a pool of background threads, up to the given
+ * prefetch depth, so that the network is not idle while results are
+ * processed. Each page is read by a reader of its own, since a reader is
+ * bound to one stream; the values that repeat from page to page, which a
+ * reused reader would carry over, are shared through one
+ * {@link StringDictionary}.
+ * <p>
+ * Close the iterator to stop its threads when the results are not read to
+ * the end.
+ */
+public class JobResultsIterator implements Iterator<Event>, Closeable {
+    private static final AtomicInteger iteratorNumber = new AtomicInteger(1);
+
+    private final Job job;
+    private final Args args;
+    private final String outputMode;
+    private final int pageSize;
+    private final int prefetchDepth;
+    private final int end;
+    private final StringDictionary stringDictionary = new StringDictionary();
+    private final ExecutorService workers;
+
+    // The pages being fetched, in order.
+    private final LinkedList<Future<List<Event>>> pages =
+            new LinkedList<Future<List<Event>>>();
+    // The offset of the next page to be requested.
+    private int nextOffset;
+    private boolean exhausted = false;
+    private boolean closed = false;
+    private Iterator<Event> current = Collections.<Event>emptyList().iterator();
+
+    JobResultsIterator(Job job, Map args, int pageSize, int prefetchDepth) {
+        if (pageSize < 1 || prefetchDepth < 1)
+            throw new IllegalArgumentException(
+                "The page size and prefetch depth must be positive.");
+        if (!job.isDone())
+            throw new IllegalStateException(
+                "The results of a job can only be paged once it is done.");
+
+        this.job = job;
+        this.args = Args.create(args);
+        this.pageSize = pageSize;
+        this.prefetchDepth = prefetchDepth;
+
+        Object mode = this.args.get("output_mode");
+        this.outputMode = mode == null ? "json" : mode.toString();
+        if (!outputMode.equals("json") && !outputMode.equals("xml")
+                && !outputMode.equals("csv"))
+            throw new IllegalArgumentException(
+                "Unsupported output mode for paged results: " + outputMode);
+        this.args.put("output_mode", outputMode);
+
+        // The offset and count arguments bound the results to iterate.
+        int total = job.getResultCount();
+        this.nextOffset = intArg("offset", 0);
+        int count = intArg("count", 0);
+        this.end = count > 0 ? Math.min(total, nextOffset + count) : total;
+
+        workers = Executors.newFixedThreadPool(prefetchDepth,
+                new DaemonThreadFactory(
+                        "splunk-results-" + iteratorNumber.getAndIncrement()
+                                + "-page-"));
+        prefetch();
+    }
+
+    private int intArg(String name, int defaultValue) {
+        Object value = args.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value.toString());
+    }
+
+    // Requests pages until the prefetch depth is reached.
+    private void prefetch() {
+        while (!exhausted && pages.size() < prefetchDepth) {
+            if (nextOffset >= end) {
+                exhausted = true;
+                break;
+            }
+            final Args pageArgs = new Args(args);
+            pageArgs.put("offset", nextOffset);
+            pageArgs.put("count", Math.min(pageSize, end - nextOffset));
+            nextOffset += pageSize;
+            pages.add(workers.submit(new Callable<List<Event>>() {
+                public List<Event> call() throws IOException {
+                    return readPage(pageArgs);
+                }
+            }));
+        }
+    }
+
+    // Fetches and decodes a page. This runs on a worker thread.
+    private List<Event> readPage(Args pageArgs) throws IOException {
+        InputStream stream = job.getResults(pageArgs);
+        ResultsReader reader;
+        if (outputMode.equals("json"))
+            reader = new ResultsReaderJsonUtf8(stream);
+        else if (outputMode.equals("xml"))
+            reader = new ResultsReaderXml(stream);
+        else
+            reader = new ResultsReaderCsv(stream);
+        try {
+            reader.setStringDictionary(stringDictionary);
+            List<Event> events = new ArrayList<Event>();
+            Event event;
+            while ((event = reader.getNextEvent()) != null)
+                events.add(event);
+            return events;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Returns the dictionary shared by the readers of every page.
+     *
+     * @return The string dictionary.
+     */
+    public StringDictionary getStringDictionary() {
+        return stringDictionary;
+    }
+
+    /**
+     * Indicates whether there are more results.
+     *
+     * @return {@code true} if there are more results, {@code false} if not.
+     */
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (closed)
+                return false;
+            if (pages.isEmpty()) {
+                close();
+                return false;
+            }
+            List<Event> page;
+            try {
+                page = pages.removeFirst().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new RuntimeException("Interrupted while reading results.", e);
+            } catch (ExecutionException e) {
+                close();
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                throw new RuntimeException(cause.getMessage(), cause);
+            }
+            // A short page means the job has no more results, whatever
+            // its result count said.
+            if (page.size() < pageSize)
+                exhausted = true;
+            prefetch();
+            current = page.iterator();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the next result.
+     *
+     * @return The next result.
+     */
+    public Event next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return current.next();
+    }
+
+    /**
+     * This operation is not supported.
+     */
+    public void remove() {
+        throw new UnsupportedOperationException(
+                "remove() is not supported by this iterator.");
+    }
+
+    /**
+     * Stops fetching pages and discards the pages already fetched.
+     */
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        current = Collections.<Event>emptyList().iterator();
+        for (Future<List<Event>> page : pages)
+            page.cancel(true);
+        pages.clear();
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.splunk;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The {@code JsonTokenizer} class reads JSON directly from UTF-8 bytes.
+ * <p>
+ * It is made for the fixed shape of Splunk results, where values are mostly
+ * strings, and the same object keys come back in every row. Keys are
+ * therefore decoded into shared strings, so that only the first row of a
+ * result set allocates them.
+ *
+ * This class is an implementation detail and is therefore SDK-private.
+ */
+class JsonTokenizer extends Utf8ByteSource {
+    private static final int BUFFER_SIZE = 16 * 1024;
+    // Keys beyond this many are decoded without being shared.
+    private static final int MAX_NAMES = 4096;
+
+    // Characters of the string being decoded.
+    private char[] chars = new char[256];
+    // Open-addressing table of the keys read so far.
+    private String[] names = new String[64];
+    private int nameCount = 0;
+
+    JsonTokenizer(InputStream input) throws IOException {
+        super(input, BUFFER_SIZE);
+        skipByteOrderMark();
+    }
+
+    /**
+     * Returns the first byte of the next token, without consuming it.
+     *
+     * @return The byte, or -1 at the end of the stream.
+     * @throws IOException On IO exception.
+     */
+    int peek() throws IOException {
+        while (position < limit || fill(1)) {
+            byte b = buffer[position];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t')
+                return b;
+            position++;
+        }
+        return -1;
+    }
+
+    /**
+     * Consumes the next token if it is the given character.
+     *
+     * @param c A structural character, such as a comma or a brace.
+     * @return Whether the character was consumed.
+     * @throws IOException On IO exception.
+     */
+    boolean consume(char c) throws IOException {
+        if (peek() != c)
+            return false;
+        position++;
+        return true;
+    }
+
+    /**
+     * Consumes the next token, which must be the given character.
+     *
+     * @param c A structural character, such as a comma or a brace.
+     * @throws IOException If the next token is another one.
+     */
+    void expect(char c) throws IOException {
+        if (!consume(c))
+            throw syntaxError("'" + c + "'");
+    }
+
+    /**
+     * Reads an object key and the colon that follows it. Keys that were
+     * read before are returned as the same string instance.
+     *
+     * @return The key.
+     * @throws IOException On IO exception or if the next token is no key.
+     */
+    String nextName() throws IOException {
+        if (!consume('"'))
+            throw syntaxError("a key");
+        int length = decodeString();
+        expect(':');
+        return sharedName(length);
+    }
+
+    /**
+     * Reads a string value.
+     *
+     * @param dictionary The dictionary of shared values, or {@code null}.
+     * @return The string.
+     * @throws IOException On IO exception or if the next token is no string.
+     */
+    String nextString(StringDictionary dictionary) throws IOException {
+        if (!consume('"'))
+            throw syntaxError("a string");
+        int length = decodeString();
+        return dictionary == null
+                ? new String(chars, 0, length)
+                : dictionary.intern(chars, 0, length);
+    }
+
+    /**
+     * Reads a string, number, or boolean as text.
+     *
+     * @param dictionary The dictionary of shared values, or {@code null}.
+     * @return The text, or {@code null} for a JSON {@code null}.
+     * @throws IOException On IO exception or if the next token is no scalar.
+     */
+    String nextScalar(StringDictionary dictionary) throws IOException {
+        int next = peek();
+        if (next == '"')
+            return nextString(dictionary);
+        if (next == '{' || next == '[' || next == -1)
+            throw syntaxError("a value");
+        int length = 0;
+        while (position < limit || fill(1)) {
+            byte b = buffer[position];
+            if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n'
+                    || b == '\r' || b == '\t')
+                break;
+            if (length == chars.length)
+                chars = grow(chars, length + 1);
+            chars[length++] = (char) (b & 0xff);
+            position++;
+        }
+        if (length == 4 && chars[0] == 'n' && chars[1] == 'u'
+                && chars[2] == 'l' && chars[3] == 'l')
+            return null;
+        return dictionary == null
+                ? new String(chars, 0, length)
+                : dictionary.intern(chars, 0, length);
+    }
+
+    /**
+     * Reads a boolean.
+     *
+     * @return The boolean.
+     * @throws IOException On IO exception or if the next token is no boolean.
+     */
+    boolean nextBoolean() throws IOException {
+        String value = nextScalar(null);
+        if ("true".equals(value))
+            return true;
+        if ("false".equals(value))
+            return false;
+        throw syntaxError("a boolean");
+    }
+
+    /**
+     * Skips the next value, whether it is atomic or compound.
+     *
+     * @throws IOException On IO exception.
+     */
+    void skipValue() throws IOException {
+        int next = peek();
+        if (next != '{' && next != '[') {
+            if (next == '"') {
+                position++;
+                skipString();
+            } else {
+                nextScalar(null);
+            }
+            return;
+        }
+
+        int depth = 0;
+        while (position < limit || fill(1)) {
+            byte b = buffer[position++];
+            if (b == '"') {
+                skipString();
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                if (--depth == 0)
+                    return;
+            }
+        }
+        throw syntaxError("the end of a value");
+    }
+
+    // Skips the rest of a string whose opening quote was consumed.
+    private void skipString() throws IOException {
+        while (position < limit || fill(1)) {
+            byte b = buffer[position++];
+            if (b == '"')
+                return;
+            if (b == '\\' && (position < limit || fill(1)))
+                position++;
+        }
+        throw syntaxError("the end of a string");
+    }
+
+    // Decodes the rest of a string whose opening quote was consumed into
+    // chars, and returns its length.
+    private int decodeString() throws IOException {
+        int length = 0;
+        while (true) {
+            if (position == limit && !fill(1))
+                throw syntaxError("the end of a string");
+
+            // Copy the run of plain ASCII characters.
+            int end = limit;
+            if (chars.length < length + end - position)
+                chars = grow(chars, length + end - position);
+            int p = position;
+            while (p < end) {
+                byte b = buffer[p];
+                if (b == '"' || b == '\\' || b < 0)
+                    break;
+                chars[length++] = (char) b;
+                p++;
+            }
+            position = p;
+            if (p == end)
+                continue;
+
+            byte b = buffer[p];
+            if (b == '"') {
+                position++;
+                return length;
+            }
+            if (chars.length < length + 2)
+                chars = grow(chars, length + 2);
+            if (b == '\\')
+                length = decodeEscape(length);
+            else
+                length = decodeMultibyte(chars, length);
+        }
+    }
+
+    private int decodeEscape(int length) throws IOException {
+        if (!fill(2))
+            throw syntaxError("an escape sequence");
+        byte b = buffer[position + 1];
+        position += 2;
+        char c;
+        switch (b) {
+            case 'b': c = '\b'; break;
+            case 'f': c = '\f'; break;
+            case 'n': c = '\n'; break;
+            case 'r': c = '\r'; break;
+            case 't': c = '\t'; break;
+            case 'u':
+                if (!fill(4))
+                    throw syntaxError("an escape sequence");
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(buffer[position + i], 16);
+                    if (digit < 0)
+                        throw syntaxError("a hexadecimal digit");
+                    value = (value << 4) | digit;
+                }
+                position += 4;
+                c = (char) value;
+                break;
+            default:
+                // Quotes, slashes, and backslashes stand for themselves.
+                c = (char) (b & 0xff);
+                break;
+        }
+        chars[length++] = c;
+        return length;
+    }
+
+    // Returns the key in chars as a shared string.
+    private String sharedName(int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++)
+            hash = 31 * hash + chars[i];
+
+        int mask = names.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        String name;
+        while ((name = names[slot]) != null) {
+            if (name.hashCode() == hash && sameChars(name, length))
+                return name;
+            slot = (slot + 1) & mask;
+        }
+
+        name = new String(chars, 0, length);
+        if (nameCount < MAX_NAMES) {
+            names[slot] = name;
+            if (++nameCount * 2 > names.length)
+                rehash();
+        }
+        return name;
+    }
+
+    private boolean sameChars(String name, int length) {
+        if (name.length() != length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars[i])
+                return false;
+        }
+        return true;
+    }
+
+    private void rehash() {
+        String[] old = names;
+        names = new String[old.length * 2];
+        int mask = names.length - 1;
+        for (String name : old) {
+            if (name == null)
+                continue;
+            int hash = name.hashCode();
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (names[slot] != null)
+                slot = (slot + 1) & mask;
+            names[slot] = name;
+        }
+    }
+
+    private IOException syntaxError(String expected) {
+        return new IOException("Malformed JSON: expected " + expected + ".");
+    }
+}
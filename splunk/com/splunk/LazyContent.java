@@ -0,0 +1,312 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The {@code LazyContent} class holds the content of an Atom entry until it
+ * is used.
+ * <p>
+ * While the entry is parsed, the {@code <dict>} element of its content is
+ * captured as a compact run of characters and tokens, and only the names of
+ * its top-level keys are kept as strings. The value of a single key can be
+ * decoded on its own, and the whole dict decodes into the same
+ * {@code Record} that parsing it at once would have built. Listing a
+ * collection thus does not build the nested records, such as
+ * {@code eai:acl} and {@code eai:attributes}, of entries whose content is
+ * never read.
+ *
+ * This class is an implementation detail and is therefore SDK-private.
+ */
+class LazyContent {
+    // Token kinds. A dict is followed by a KEY token and a value for each
+    // key, then END; a list by its values, then END. A TEXT token is
+    // followed by the offset and length of the text in the characters, and
+    // a KEY token by those of the key name.
+    private static final int DICT = 0;
+    private static final int LIST = 1;
+    private static final int TEXT = 2;
+    private static final int EMPTY = 3;
+    private static final int KEY = 4;
+    private static final int END = 5;
+
+    // The buffers of the entries parsed on each thread, which are reused
+    // from entry to entry. Buffers that grew past these sizes for a large
+    // entry are dropped once it is captured, rather than kept for the life
+    // of the thread.
+    private static final int MAX_KEPT_TOKENS = 16 * 1024;
+    private static final int MAX_KEPT_CHARS = 32 * 1024;
+    private static final int MAX_KEPT_KEYS = 1024;
+    private static final ThreadLocal<Capture> captures =
+            new ThreadLocal<Capture>() {
+                @Override protected Capture initialValue() {
+                    return new Capture();
+                }
+            };
+
+    private final int[] tokens;
+    private final char[] chars;
+    // The top-level keys with a value, and the position of their value in
+    // the tokens.
+    private final String[] keys;
+    private final int[] positions;
+
+    private LazyContent(int[] tokens, char[] chars, String[] keys,
+                        int[] positions) {
+        this.tokens = tokens;
+        this.chars = chars;
+        this.keys = keys;
+        this.positions = positions;
+    }
+
+    /**
+     * Captures the {@code <dict>} element at the current cursor position of
+     * the given reader, and moves the cursor past its end element.
+     *
+     * @param reader The XML reader.
+     * @param keyNames The names of the top-level keys of the entries parsed
+     *                 so far from the same feed, so that the entries share
+     *                 the strings of the keys they have in common. New names
+     *                 are added to it.
+     * @return The captured content.
+     */
+    static LazyContent capture(XMLStreamReader reader,
+                               Map<String, String> keyNames) {
+        Capture capture = captures.get();
+        capture.tokenCount = 0;
+        capture.charCount = 0;
+        capture.keyCount = 0;
+        capture.names = keyNames;
+        try {
+            capture.dict(reader, true);
+            return new LazyContent(
+                    Arrays.copyOf(capture.tokens, capture.tokenCount),
+                    Arrays.copyOf(capture.chars, capture.charCount),
+                    Arrays.copyOf(capture.keys, capture.keyCount),
+                    Arrays.copyOf(capture.positions, capture.keyCount));
+        } finally {
+            capture.names = null;
+            if (capture.tokens.length > MAX_KEPT_TOKENS
+                    || capture.chars.length > MAX_KEPT_CHARS
+                    || capture.keys.length > MAX_KEPT_KEYS)
+                captures.remove();
+        }
+    }
+
+    /**
+     * Decodes the value of a top-level key. When a key repeats, its last
+     * value is the one that counts, as in the decoded record.
+     *
+     * @param key The key.
+     * @return The value of the key, or {@code null} if it has none.
+     */
+    Object get(String key) {
+        for (int i = keys.length - 1; i >= 0; i--) {
+            if (keys[i].equals(key))
+                return new Decoder(positions[i]).value();
+        }
+        return null;
+    }
+
+    /**
+     * Decodes the whole dict.
+     *
+     * @return A new record of the content.
+     */
+    Record decode() {
+        return (Record)new Decoder(0).value();
+    }
+
+    // Decodes a value from the tokens into strings, records, and lists. An
+    // empty element has no value, and is left out of its dict.
+    private final class Decoder {
+        private int position;
+
+        Decoder(int position) {
+            this.position = position;
+        }
+
+        Object value() {
+            int kind = tokens[position++];
+            switch (kind) {
+            case TEXT:
+                return text();
+            case EMPTY:
+                return null;
+            case DICT:
+                Record record = new Record();
+                while (tokens[position] == KEY) {
+                    position++;
+                    String key = text();
+                    Object value = value();
+                    if (value != null) record.put(key, value);
+                }
+                position++; // END
+                return record;
+            case LIST:
+                List list = new ArrayList();
+                while (tokens[position] != END)
+                    list.add(value());
+                position++; // END
+                return list;
+            default:
+                throw new IllegalStateException("Corrupt record content.");
+            }
+        }
+
+        private String text() {
+            int offset = tokens[position++];
+            int length = tokens[position++];
+            return new String(chars, offset, length);
+        }
+    }
+
+    // Captures the content of a dict into tokens and characters.
+    private static final class Capture {
+        int[] tokens = new int[256];
+        int tokenCount = 0;
+        char[] chars = new char[2048];
+        int charCount = 0;
+        String[] keys = new String[32];
+        int[] positions = new int[32];
+        int keyCount = 0;
+        // The top-level key names of the feed being parsed.
+        Map<String, String> names;
+
+        void dict(XMLStreamReader reader, boolean topLevel) {
+            if (!AtomObject.isStartElement(reader, "dict"))
+                AtomObject.syntaxError(reader);
+            add(DICT);
+
+            AtomObject.scan(reader);
+            while (AtomObject.isStartElement(reader, "key")) {
+                String key = reader.getAttributeValue(null, "name");
+                add(KEY);
+                addText(key);
+                int position = tokenCount;
+                value(reader);
+                if (topLevel && tokens[position] != EMPTY)
+                    addKey(key, position);
+            }
+
+            if (!AtomObject.isEndElement(reader, "dict"))
+                AtomObject.syntaxError(reader);
+            add(END);
+            AtomObject.scan(reader); // Consume </dict>
+        }
+
+        private void list(XMLStreamReader reader) {
+            add(LIST);
+
+            AtomObject.scan(reader);
+            while (AtomObject.isStartElement(reader, "item"))
+                value(reader);
+
+            if (!AtomObject.isEndElement(reader, "list"))
+                AtomObject.syntaxError(reader);
+            add(END);
+            AtomObject.scan(reader); // Consume </list>
+        }
+
+        private void value(XMLStreamReader reader) {
+            String name = reader.getLocalName();
+
+            AtomObject.scan(reader);
+
+            switch (reader.getEventType()) {
+            case XMLStreamConstants.CHARACTERS:
+                add(TEXT);
+                addText(reader.getTextCharacters(), reader.getTextStart(),
+                        reader.getTextLength());
+                AtomObject.scan(reader); // Advance cursor
+                break;
+
+            case XMLStreamConstants.START_ELEMENT:
+                String structure = reader.getLocalName();
+                if (structure.equals("dict"))
+                    dict(reader, false);
+                else if (structure.equals("list"))
+                    list(reader);
+                else
+                    AtomObject.syntaxError(reader);
+                break;
+
+            case XMLStreamConstants.END_ELEMENT:
+                add(EMPTY); // Empty element
+                break;
+
+            default:
+                AtomObject.syntaxError(reader);
+            }
+
+            if (!AtomObject.isEndElement(reader, name))
+                AtomObject.syntaxError(reader);
+
+            AtomObject.scan(reader); // Consume end element
+        }
+
+        private void add(int token) {
+            if (tokenCount == tokens.length)
+                tokens = Arrays.copyOf(tokens, tokens.length * 2);
+            tokens[tokenCount++] = token;
+        }
+
+        private void addText(String text) {
+            ensureChars(text.length());
+            text.getChars(0, text.length(), chars, charCount);
+            addOffsets(text.length());
+        }
+
+        private void addText(char[] text, int start, int length) {
+            ensureChars(length);
+            System.arraycopy(text, start, chars, charCount, length);
+            addOffsets(length);
+        }
+
+        private void ensureChars(int length) {
+            if (chars.length - charCount < length)
+                chars = Arrays.copyOf(chars,
+                        Math.max(chars.length * 2, charCount + length));
+        }
+
+        private void addOffsets(int length) {
+            add(charCount);
+            add(length);
+            charCount += length;
+        }
+
+        private void addKey(String key, int position) {
+            if (keyCount == keys.length) {
+                keys = Arrays.copyOf(keys, keys.length * 2);
+                positions = Arrays.copyOf(positions, positions.length * 2);
+            }
+            String name = names.get(key);
+            if (name == null) {
+                name = key;
+                names.put(key, key);
+            }
+            keys[keyCount] = name;
+            positions[keyCount++] = position;
+        }
+    }
+}
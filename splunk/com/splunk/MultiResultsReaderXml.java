@@ -18,6 +18,7 @@ package com.splunk;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 
 /**
  * The {@code MultiResultsReaderXml} class represents a streaming XML reader for
@@ -39,4 +40,19 @@ public class MultiResultsReaderXml
     public MultiResultsReaderXml(InputStream inputStream) throws IOException {
         super(new ResultsReaderXml(inputStream, true));
     }
+
+    /**
+     * Class constructor.
+     *
+     * Constructs a streaming XML reader for the event stream that only
+     * reads the given fields of each result.
+     *
+     * @param inputStream The XML stream to parse.
+     * @param fields The fields to read, or {@code null} to read every field.
+     * @throws IOException
+     */
+    public MultiResultsReaderXml(InputStream inputStream,
+                                 Collection<String> fields) throws IOException {
+        super(new ResultsReaderXml(inputStream, true, fields));
+    }
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The {@code ObservedInputStream} class completes a {@code RequestEvent}
+ * when the response content it wraps is read to its end, fails, or is
+ * closed.
+ *
+ * This class is an implementation detail and is therefore SDK-private.
+ */
+class ObservedInputStream extends FilterInputStream {
+    private final ResponseMessage response;
+    private final RequestEvent event;
+
+    ObservedInputStream(InputStream stream, ResponseMessage response,
+                        RequestEvent event) {
+        super(stream);
+        this.response = response;
+        this.event = event;
+    }
+
+    @Override
+    public int read() throws IOException {
+        try {
+            int b = super.read();
+            if (b == -1) complete(null);
+            return b;
+        } catch (IOException e) {
+            complete(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        try {
+            int n = super.read(buffer, offset, length);
+            if (n == -1) complete(null);
+            return n;
+        } catch (IOException e) {
+            complete(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        try {
+            return super.skip(n);
+        } catch (IOException e) {
+            complete(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            complete(null);
+        }
+    }
+
+    private void complete(IOException e) {
+        event.completed(response.getWireByteCount(),
+                e == null ? null : new RuntimeException(e.getMessage(), e));
+    }
+}
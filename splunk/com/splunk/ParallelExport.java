@@ -0,0 +1,414 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.splunk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code ParallelExport} class reads the events of an export search over
+ * a time range as several concurrent exports, one for each slice of the
+ * range, as returned by the {@link Service#exportParallel} method.
+ * <p>
+ * The range, given by the {@code earliest_time} and {@code latest_time}
+ * arguments of the search, is split into slices of equal length. Relative
+ * times, such as {@code -24h}, and a missing latest time, which stands for
+ * now, are first resolved by the server's time parser, so that the range is
+ * the one the server would search. At most a
+ * given number of slices are exported at a time, each on its own connection
+ * and thread, as a {@link ResumableExport}. The events are merged into one
+ * stream, either in time order or in the order they arrive:
+ * <ul>
+ * <li>In time order, the events of each slice are returned in turn, from
+ * the latest slice to the earliest, as an export returns events from the
+ * latest to the earliest. The slices after the current one are read ahead,
+ * up to a bound.</li>
+ * <li>Unordered, the events of every running slice are returned as soon as
+ * they are read.</li>
+ * </ul>
+ * Each slice holds at most {@link #BATCHES_PER_SLICE} batches of
+ * {@link #BATCH_SIZE} events that were read but not yet returned; a slice
+ * that reaches that bound waits for its events to be consumed, so that a
+ * slow consumer does not make the export grow in memory. The progress of
+ * each slice is available from {@link #getSlices}.
+ */
+public class ParallelExport extends StreamIterableBase<Event>
+        implements SearchResults {
+    /** The number of events handed over from a slice at a time. */
+    public static final int BATCH_SIZE = 256;
+    /** The number of batches a slice reads ahead of the consumer. */
+    public static final int BATCHES_PER_SLICE = 4;
+
+    private static final AtomicInteger exportNumber = new AtomicInteger(1);
+
+    private final List<Slice> slices;
+    private final boolean ordered;
+    private final ExecutorService workers;
+    // The queue of every slice, when unordered.
+    private final BlockingQueue<Batch> shared;
+    private volatile boolean closed = false;
+
+    // The slice being returned, when ordered, and the slices not finished,
+    // when unordered.
+    private int currentSlice = 0;
+    private int remaining;
+    private Iterator<Event> current = Collections.<Event>emptyList().iterator();
+
+    ParallelExport(Service service, String search, Map args, int sliceCount,
+                   int concurrency, boolean ordered) {
+        if (sliceCount < 1 || concurrency < 1)
+            throw new IllegalArgumentException(
+                "The numbers of slices and of concurrent exports must be " +
+                "positive.");
+        Args exportArgs = Args.create(args);
+        long earliest = resolveBound(service, exportArgs, "earliest_time", null);
+        long latest = resolveBound(service, exportArgs, "latest_time", "now");
+        if (latest <= earliest)
+            throw new IllegalArgumentException(
+                "The latest time must be after the earliest time.");
+
+        this.ordered = ordered;
+        this.shared = ordered ? null : new LinkedBlockingQueue<Batch>();
+        this.remaining = sliceCount;
+
+        // Slice 0 is the latest.
+        slices = new ArrayList<Slice>(sliceCount);
+        long length = latest - earliest;
+        for (int i = 0; i < sliceCount; i++) {
+            long sliceLatest = latest - length * i / sliceCount;
+            long sliceEarliest = latest - length * (i + 1) / sliceCount;
+            Args sliceArgs = new Args(exportArgs);
+            sliceArgs.put("earliest_time",
+                    ResumableExport.formatTime(sliceEarliest));
+            sliceArgs.put("latest_time",
+                    ResumableExport.formatTime(sliceLatest));
+            slices.add(new Slice(service, search, sliceArgs));
+        }
+
+        String name = "splunk-export-" + exportNumber.getAndIncrement();
+        workers = Executors.newFixedThreadPool(
+                Math.min(concurrency, sliceCount),
+                new DaemonThreadFactory(name + "-slice-"));
+        for (final Slice slice : slices) {
+            workers.execute(new Runnable() {
+                public void run() {
+                    slice.read();
+                }
+            });
+        }
+        workers.shutdown();
+    }
+
+    // Returns the absolute time that a time bound stands for now.
+    private static long resolveBound(Service service, Args args, String name,
+                                     String defaultValue) {
+        Object value = args.get(name);
+        String time = value == null ? defaultValue : value.toString().trim();
+        if (time == null)
+            throw new IllegalArgumentException(
+                "A parallel export needs an " + name + ".");
+        long millis;
+        try {
+            millis = ResumableExport.resolveTime(service, time);
+        } catch (HttpException e) {
+            throw boundError(name, time, e);
+        }
+        if (millis == Long.MIN_VALUE)
+            throw boundError(name, time, null);
+        return millis;
+    }
+
+    private static IllegalArgumentException boundError(
+            String name, String time, Exception cause) {
+        return new IllegalArgumentException(
+                "The " + name + " of a parallel export must be an absolute " +
+                "time, or a relative time that the server can resolve: " +
+                time, cause);
+    }
+
+    /**
+     * Returns the slices of the export, with their progress.
+     *
+     * @return The slices, from the latest to the earliest.
+     */
+    public List<Slice> getSlices() {
+        return Collections.unmodifiableList(slices);
+    }
+
+    /**
+     * Returns the next event of the export.
+     *
+     * @return The event, or {@code null} if the end is reached.
+     * @throws IOException On IO exception that could not be recovered from.
+     */
+    public Event getNextEvent() throws IOException {
+        return getNextElement();
+    }
+
+    @Override Event getNextElement() throws IOException {
+        while (!current.hasNext()) {
+            Batch batch = nextBatch();
+            if (batch == null)
+                return null;
+            batch.slice.permits.release();
+            if (batch.failure != null) {
+                close();
+                if (batch.failure instanceof IOException)
+                    throw (IOException) batch.failure;
+                throw (RuntimeException) batch.failure;
+            }
+            current = batch.events.iterator();
+        }
+        return current.next();
+    }
+
+    // Returns the next batch to be returned, or null at the end.
+    private Batch nextBatch() throws IOException {
+        try {
+            while (true) {
+                if (closed)
+                    return null;
+                if (ordered) {
+                    if (currentSlice == slices.size())
+                        return null;
+                    Batch batch = slices.get(currentSlice).queue.take();
+                    if (batch.events != null || batch.failure != null)
+                        return batch;
+                    currentSlice++;
+                } else {
+                    if (remaining == 0)
+                        return null;
+                    Batch batch = shared.take();
+                    if (batch.events != null || batch.failure != null)
+                        return batch;
+                    remaining--;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading an export.");
+        }
+    }
+
+    /**
+     * This method is not supported, since each slice is a separate search.
+     *
+     * @return Not applicable.
+     */
+    public boolean isPreview() {
+        return false;
+    }
+
+    /**
+     * This method is not supported, since each slice is a separate search.
+     *
+     * @return Not applicable.
+     */
+    public Collection<String> getFields() {
+        throw new UnsupportedOperationException(
+                "getFields() is not supported by this class.");
+    }
+
+    /**
+     * Stops every export and closes their connections.
+     */
+    public void close() {
+        closed = true;
+        current = Collections.<Event>emptyList().iterator();
+        resetIteration(false);
+        workers.shutdownNow();
+        // A slice waiting on a socket read does not respond to the
+        // interrupt, so its export is closed under it.
+        for (Slice slice : slices) {
+            ResumableExport export = slice.export;
+            if (export != null)
+                closeQuietly(export);
+        }
+    }
+
+    /**
+     * The {@code Slice} class represents one time slice of a
+     * {@link ParallelExport}, and its progress.
+     */
+    public final class Slice {
+        private final Service service;
+        private final String search;
+        private final Args args;
+        private final BlockingQueue<Batch> queue;
+        // Batches read but not yet returned; the bound is the backpressure.
+        private final Semaphore permits = new Semaphore(BATCHES_PER_SLICE);
+        private final AtomicLong eventCount = new AtomicLong();
+        private volatile boolean started = false;
+        private volatile boolean done = false;
+        private volatile int reconnectCount = 0;
+        // The export of the slice while it is read, so that close() can
+        // close its connection.
+        private volatile ResumableExport export = null;
+
+        Slice(Service service, String search, Args args) {
+            this.service = service;
+            this.search = search;
+            this.args = args;
+            this.queue = ordered ? new LinkedBlockingQueue<Batch>() : shared;
+        }
+
+        /**
+         * Returns the start of this slice, in seconds since the epoch.
+         *
+         * @return The earliest time.
+         */
+        public String getEarliestTime() {
+            return (String) args.get("earliest_time");
+        }
+
+        /**
+         * Returns the end of this slice, exclusive, in seconds since the
+         * epoch.
+         *
+         * @return The latest time.
+         */
+        public String getLatestTime() {
+            return (String) args.get("latest_time");
+        }
+
+        /**
+         * Returns the number of events read from this slice so far.
+         *
+         * @return The number of events.
+         */
+        public long getEventCount() {
+            return eventCount.get();
+        }
+
+        /**
+         * Returns the number of times the export of this slice was resumed.
+         *
+         * @return The number of reconnections.
+         */
+        public int getReconnectCount() {
+            return reconnectCount;
+        }
+
+        /**
+         * Indicates whether the export of this slice has started.
+         *
+         * @return {@code true} if it has started, {@code false} if it is
+         *         waiting for a connection to be free.
+         */
+        public boolean isStarted() {
+            return started;
+        }
+
+        /**
+         * Indicates whether every event of this slice has been read.
+         *
+         * @return {@code true} if the slice is done, {@code false} if not.
+         */
+        public boolean isDone() {
+            return done;
+        }
+
+        // Reads the events of the slice into its queue. This runs on a
+        // worker thread.
+        private void read() {
+            ResumableExport current = null;
+            try {
+                if (closed)
+                    return;
+                started = true;
+                current = service.exportResumable(search, args);
+                export = current;
+                // close() may have run before the export was set.
+                if (closed)
+                    return;
+                List<Event> events = new ArrayList<Event>(BATCH_SIZE);
+                Event event;
+                while (!closed && (event = current.getNextEvent()) != null) {
+                    events.add(event);
+                    eventCount.incrementAndGet();
+                    reconnectCount = current.getReconnectCount();
+                    if (events.size() == BATCH_SIZE) {
+                        publish(new Batch(this, events, null));
+                        events = new ArrayList<Event>(BATCH_SIZE);
+                    }
+                }
+                // A closed export ends early rather than at its last event.
+                if (closed)
+                    return;
+                if (!events.isEmpty())
+                    publish(new Batch(this, events, null));
+                done = true;
+            } catch (InterruptedException e) {
+                // The export is closed.
+                return;
+            } catch (Exception e) {
+                // A read fails when close() closes the export under it.
+                if (closed)
+                    return;
+                queue.add(new Batch(this, null, e));
+            } finally {
+                export = null;
+                if (current != null)
+                    closeQuietly(current);
+            }
+            // Marks the end of the slice.
+            queue.add(new Batch(this, null, null));
+        }
+
+        private void publish(Batch batch) throws InterruptedException {
+            permits.acquire();
+            queue.add(batch);
+        }
+    }
+
+    // A run of events of a slice; a batch with neither events nor a
+    // failure marks the end of the slice. The permit of a batch is given
+    // back when it is taken by the consumer, as is that of the end, which
+    // is not taken.
+    private static final class Batch {
+        final Slice slice;
+        final List<Event> events;
+        final Exception failure;
+
+        Batch(Slice slice, List<Event> events, Exception failure) {
+            this.slice = slice;
+            this.events = events;
+            this.failure = failure;
+        }
+    }
+
+    private static void closeQuietly(ResumableExport export) {
+        try {
+            export.close();
+        } catch (IOException e) {
+            // The connection is discarded anyway.
+        }
+    }
+}
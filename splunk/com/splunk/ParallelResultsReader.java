@@ -0,0 +1,289 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.splunk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code ParallelResultsReader} class is a base class for the streaming
+ * readers that decode search results on several threads.
+ * <p>
+ * A splitter thread cuts the stream into batches at result boundaries,
+ * without decoding the results, and a pool of worker threads decodes the
+ * batches in parallel. Events are returned in stream order, or, for an
+ * unordered reader, in the order their batches are decoded. At most two
+ * batches per worker are in flight at a time, so a slow consumer holds the
+ * splitter back instead of buffering the stream in memory.
+ * <p>
+ * Like a single-threaded reader, this reader skips the previews of an export
+ * stream and only returns its final results. Close the reader to stop its
+ * threads when the results are not read to the end.
+ */
+public abstract class ParallelResultsReader extends ResultsReader {
+    // Size, in bytes of the stream, above which a batch is handed to a worker.
+    static final int BATCH_SIZE = 64 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final AtomicInteger readerNumber = new AtomicInteger(1);
+
+    // Marks the end of the batches in the queue; it is never run.
+    private static final Future<List<Event>> END =
+            new FutureTask<List<Event>>(new Callable<List<Event>>() {
+                public List<Event> call() {
+                    return null;
+                }
+            });
+
+    private final int threads;
+    private final boolean ordered;
+    private ExecutorService workers = null;
+    private Thread splitter = null;
+    private volatile boolean closed = false;
+
+    // Decoded (or, when ordered, submitted) batches, in the order they are
+    // to be returned. The semaphore bounds the batches in flight.
+    private final BlockingQueue<Future<List<Event>>> batches =
+            new LinkedBlockingQueue<Future<List<Event>>>();
+    private final Semaphore inFlight;
+    // The splitter and the batches still being decoded; the last one to
+    // finish queues END when the reader is unordered.
+    private final AtomicInteger running = new AtomicInteger(1);
+    private Iterator<Event> current = Collections.<Event>emptyList().iterator();
+    private boolean finished = false;
+
+    // The splitter's view of the stream.
+    final Utf8ByteSource source;
+
+    ParallelResultsReader(InputStream inputStream, int threads,
+                          boolean ordered, Collection<String> fields)
+            throws IOException {
+        super(inputStream, false);
+        if (threads < 1)
+            throw new IllegalArgumentException(
+                    "The number of threads must be positive.");
+        this.threads = threads;
+        this.ordered = ordered;
+        this.inFlight = new Semaphore(2 * threads);
+        this.source = new Utf8ByteSource(inputStream, BUFFER_SIZE);
+        selectFields(fields);
+    }
+
+    /*
+     * Reads the stream up to the results of the first set to be returned,
+     * and starts the threads. Subclasses call this at the end of their
+     * constructors.
+     */
+    final void start() throws IOException {
+        if (!readIntoFirstSet()) {
+            finished = true;
+            resetIteration(false);
+            return;
+        }
+
+        String name = "splunk-results-" + readerNumber.getAndIncrement();
+        workers = Executors.newFixedThreadPool(
+                threads, new DaemonThreadFactory(name + "-worker-"));
+        splitter = new Thread(new Runnable() {
+            public void run() {
+                split();
+            }
+        }, name + "-splitter");
+        splitter.setDaemon(true);
+        splitter.start();
+    }
+
+    /*
+     * Reads the stream up to the results of the first set to be returned,
+     * setting the preview flag and the fields of the reader. This runs on
+     * the thread that creates the reader. Return false if there are no
+     * results.
+     */
+    abstract boolean readIntoFirstSet() throws IOException;
+
+    /*
+     * Returns the next batch of results, as a document that decode can
+     * read, or null at the end of the stream. This runs on the splitter
+     * thread.
+     */
+    abstract byte[] nextBatch() throws IOException;
+
+    /*
+     * Decodes a batch returned by nextBatch. This runs on a worker thread.
+     */
+    abstract List<Event> decode(byte[] batch) throws IOException;
+
+    /**
+     * Closes the reader, stops its threads, and closes the stream.
+     *
+     * @throws IOException On IO exception.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if (splitter != null)
+            splitter.interrupt();
+        if (workers != null)
+            workers.shutdownNow();
+        super.close();
+    }
+
+    @Override Event getNextEventInCurrentSet() throws IOException {
+        while (!current.hasNext()) {
+            if (finished)
+                return null;
+
+            Future<List<Event>> batch;
+            try {
+                batch = batches.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e.getMessage(), e);
+            }
+            if (batch == END) {
+                finished = true;
+                workers.shutdown();
+                return null;
+            }
+            inFlight.release();
+            current = decoded(batch).iterator();
+        }
+        return current.next();
+    }
+
+    private List<Event> decoded(Future<List<Event>> batch)
+            throws IOException {
+        try {
+            return batch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e.getMessage(), e);
+        } catch (ExecutionException e) {
+            finished = true;
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new RuntimeException(cause.getMessage(), cause);
+        }
+    }
+
+    // The body of the splitter thread.
+    private void split() {
+        try {
+            byte[] batch;
+            while ((batch = nextBatch()) != null) {
+                inFlight.acquire();
+                final byte[] encoded = batch;
+                Batch task = new Batch(new Callable<List<Event>>() {
+                    public List<Event> call() throws IOException {
+                        return decode(encoded);
+                    }
+                });
+                running.incrementAndGet();
+                if (ordered)
+                    batches.add(task);
+                workers.execute(task);
+            }
+        } catch (InterruptedException e) {
+            // The reader was closed.
+        } catch (Exception e) {
+            if (!closed)
+                fail(e);
+        } catch (Error e) {
+            fail(e);
+            throw e;
+        } finally {
+            if (ordered || running.decrementAndGet() == 0)
+                batches.add(END);
+        }
+    }
+
+    // Queues a batch that fails with the given exception, so that the
+    // consumer sees the error after the results read before it.
+    private void fail(final Throwable failure) {
+        FutureTask<List<Event>> task = new FutureTask<List<Event>>(
+                new Callable<List<Event>>() {
+                    public List<Event> call() throws Exception {
+                        if (failure instanceof Error)
+                            throw (Error) failure;
+                        throw (Exception) failure;
+                    }
+                });
+        task.run();
+        batches.add(task);
+    }
+
+    private final class Batch extends FutureTask<List<Event>> {
+        Batch(Callable<List<Event>> decode) {
+            super(decode);
+        }
+
+        @Override
+        protected void done() {
+            if (ordered)
+                return;
+            batches.add(this);
+            if (running.decrementAndGet() == 0)
+                batches.add(END);
+        }
+    }
+
+    // Reads every event of a decoded batch, sharing values through the
+    // dictionary of this reader.
+    final List<Event> readAll(ResultsReader reader) throws IOException {
+        reader.setStringDictionary(stringDictionary);
+        List<Event> events = new ArrayList<Event>();
+        Event event;
+        while ((event = reader.getNextEvent()) != null)
+            events.add(event);
+        reader.close();
+        return events;
+    }
+
+    // Copies the bytes from start to the position of the source into the
+    // sink, if any. Bytes before the position are dropped when the source
+    // is refilled, so callers copy them out first.
+    final void copy(int start, ByteArrayOutputStream sink) {
+        if (sink != null)
+            sink.write(source.buffer, start, source.position - start);
+    }
+
+    static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+}
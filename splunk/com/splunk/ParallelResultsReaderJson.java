@@ -0,0 +1,312 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.splunk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The {@code ParallelResultsReaderJson} class represents a streaming JSON
+ * reader for Splunk search results that decodes the results on several
+ * threads. It returns the same events as {@link ResultsReaderJson}, and is
+ * meant for large result streams, such as those of {@link Service#export},
+ * whose decoding would otherwise be bound to a single core.
+ * <p>
+ * The stream is split between its result objects, which are found without
+ * being decoded.
+ */
+public class ParallelResultsReaderJson extends ParallelResultsReader {
+    // Whether the stream is a sequence of export rows, each holding a
+    // result, rather than an array of results.
+    private boolean exportRows;
+    private boolean ended = false;
+    private int batchRows = 0;
+    private final ByteArrayOutputStream batch =
+            new ByteArrayOutputStream(BATCH_SIZE + BATCH_SIZE / 4);
+
+    /**
+     * Class constructor.
+     *
+     * Constructs a streaming JSON reader for the event stream that decodes
+     * results on as many threads as there are processors, and returns them
+     * in stream order.
+     *
+     * @param inputStream The JSON stream to parse.
+     * @throws IOException
+     */
+    public ParallelResultsReaderJson(InputStream inputStream)
+            throws IOException {
+        this(inputStream, Runtime.getRuntime().availableProcessors(), true);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * Constructs a streaming JSON reader for the event stream that decodes
+     * results on the given number of threads.
+     *
+     * @param inputStream The JSON stream to parse.
+     * @param threads The number of decoding threads.
+     * @param ordered Whether events are returned in stream order. When
+     *                {@code false}, events are returned as soon as they are
+     *                decoded.
+     * @throws IOException
+     */
+    public ParallelResultsReaderJson(InputStream inputStream, int threads,
+                                     boolean ordered) throws IOException {
+        this(inputStream, threads, ordered, null);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * Constructs a streaming JSON reader for the event stream that decodes
+     * the given fields of the results on the given number of threads.
+     *
+     * @param inputStream The JSON stream to parse.
+     * @param threads The number of decoding threads.
+     * @param ordered Whether events are returned in stream order.
+     * @param fields The fields to read, or {@code null} to read every field.
+     * @throws IOException
+     */
+    public ParallelResultsReaderJson(InputStream inputStream, int threads,
+                                     boolean ordered, Collection<String> fields)
+            throws IOException {
+        super(inputStream, threads, ordered, fields);
+        start();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isPreview() {
+        return isPreview;
+    }
+
+    /**
+     * This method is not supported.
+     * @return Not applicable.
+     */
+    @Override
+    public Collection<String> getFields() {
+        throw new UnsupportedOperationException(
+                "getFields() is not supported by this subclass.");
+    }
+
+    @Override boolean readIntoFirstSet() throws IOException {
+        source.skipByteOrderMark();
+
+        int first = peek();
+        if (first == -1)
+            return false;
+        if (isExportStream) {
+            if (first == '[')
+                throw new UnsupportedOperationException(
+                    "A stream from an export endpoint of " +
+                    "a Splunk 4.x server in the JSON output format " +
+                    "is not supported by this class. " +
+                    "Use the XML search output format, " +
+                    "and an XML result reader instead.");
+            // Previews are skipped row by row, so the results returned are
+            // final.
+            exportRows = true;
+            startBatch();
+            return true;
+        }
+
+        exportRows = false;
+        if (first == '{') {
+            // Splunk 5.0 and later: the results are at the "results" key.
+            source.position++;
+            while (true) {
+                if (peek() == '}')
+                    return false;
+                String key = readKey();
+                if (key.equals("preview")) {
+                    isPreview = readBoolean();
+                } else if (key.equals("results")) {
+                    break;
+                } else {
+                    copyValue(null);
+                }
+                if (peek() == ',')
+                    source.position++;
+            }
+        }
+        // Splunk 4.x: the results are the top level array.
+        expect('[');
+        startBatch();
+        return true;
+    }
+
+    @Override byte[] nextBatch() throws IOException {
+        while (!ended && batch.size() < BATCH_SIZE) {
+            if (exportRows)
+                readExportRow();
+            else
+                readArrayElement();
+        }
+        if (batchRows == 0)
+            return null;
+        batch.write(']');
+        byte[] result = batch.toByteArray();
+        startBatch();
+        return result;
+    }
+
+    @Override List<Event> decode(byte[] batch) throws IOException {
+        return readAll(new ResultsReaderJson(
+                new ByteArrayInputStream(batch), selectedFields));
+    }
+
+    private void startBatch() {
+        batch.reset();
+        batch.write('[');
+        batchRows = 0;
+    }
+
+    private void addResult() throws IOException {
+        if (batchRows++ > 0)
+            batch.write(',');
+        copyValue(batch);
+    }
+
+    private void readArrayElement() throws IOException {
+        int next = peek();
+        if (next == ']' || next == -1) {
+            ended = true;
+        } else if (next == ',') {
+            source.position++;
+        } else {
+            addResult();
+        }
+    }
+
+    // Reads a row of an export stream, such as
+    //     {"preview":false,"offset":0,"lastrow":true,"result":{"count":"62"}}
+    // keeping its result if the row is not a preview.
+    private void readExportRow() throws IOException {
+        if (peek() == -1) {
+            ended = true;
+            return;
+        }
+        expect('{');
+        boolean preview = false;
+        while (peek() != '}') {
+            String key = readKey();
+            if (key.equals("preview"))
+                preview = readBoolean();
+            else if (key.equals("result") && !preview)
+                addResult();
+            else
+                copyValue(null);
+            if (peek() == ',')
+                source.position++;
+        }
+        source.position++;
+    }
+
+    // Returns the next byte that is not whitespace, without moving past it,
+    // or -1 at the end of the stream.
+    private int peek() throws IOException {
+        while (source.fill(1)) {
+            if (!isWhitespace(source.buffer[source.position]))
+                return source.buffer[source.position];
+            source.position++;
+        }
+        return -1;
+    }
+
+    private void expect(char c) throws IOException {
+        if (peek() != c)
+            throw new RuntimeException("Invalid JSON format.");
+        source.position++;
+    }
+
+    // Reads an object key and the colon that follows it.
+    private String readKey() throws IOException {
+        ByteArrayOutputStream key = new ByteArrayOutputStream(16);
+        if (peek() != '"')
+            throw new RuntimeException("Invalid JSON format.");
+        copyValue(key);
+        expect(':');
+        String quoted = key.toString("UTF-8");
+        return quoted.substring(1, quoted.length() - 1);
+    }
+
+    private boolean readBoolean() throws IOException {
+        ByteArrayOutputStream value = new ByteArrayOutputStream(8);
+        peek();
+        copyValue(value);
+        return value.toString("UTF-8").equals("true");
+    }
+
+    // Copies the value at the position, whether atomic or compound, into
+    // the sink, if any.
+    private void copyValue(ByteArrayOutputStream sink) throws IOException {
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        while (true) {
+            if (!source.fill(1)) {
+                if (depth == 0 && !inString)
+                    return;
+                throw new RuntimeException("Invalid JSON format.");
+            }
+            int start = source.position;
+            boolean done = false;
+            while (source.position < source.limit && !done) {
+                byte b = source.buffer[source.position];
+                if (inString) {
+                    source.position++;
+                    if (escaped)
+                        escaped = false;
+                    else if (b == '\\')
+                        escaped = true;
+                    else if (b == '"') {
+                        inString = false;
+                        done = depth == 0;
+                    }
+                } else if (b == '"') {
+                    source.position++;
+                    inString = true;
+                } else if (b == '{' || b == '[') {
+                    source.position++;
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    if (depth == 0) {
+                        done = true;
+                    } else {
+                        source.position++;
+                        done = --depth == 0;
+                    }
+                } else if (depth == 0 && (b == ',' || b == ':' || isWhitespace(b))) {
+                    done = true;
+                } else {
+                    source.position++;
+                }
+            }
+            copy(start, sink);
+            if (done)
+                return;
+        }
+    }
+}
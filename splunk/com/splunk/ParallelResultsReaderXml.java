@@ -0,0 +1,295 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.splunk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The {@code ParallelResultsReaderXml} class represents a streaming XML
+ * reader for Splunk search results that decodes the results on several
+ * threads. It returns the same events as {@link ResultsReaderXml}, and is
+ * meant for large result streams, such as those of {@link Service#export},
+ * whose decoding would otherwise be bound to a single core.
+ * <p>
+ * The stream is split at its {@code <result>} elements without being
+ * decoded, so the splitter relies on the markup of Splunk result streams:
+ * UTF-8 text with no {@code <result>} tags within comments or CDATA
+ * sections.
+ */
+public class ParallelResultsReaderXml extends ParallelResultsReader {
+    // Kinds of the tags the splitter looks for.
+    private static final int OTHER = 0;
+    private static final int SET_START = 1;
+    private static final int SET_END = 2;
+    private static final int ROW_START = 3;
+    private static final int ROW_END = 4;
+    private static final int END_OF_STREAM = 5;
+
+    private static final byte[] RESULT = { 'r', 'e', 's', 'u', 'l', 't' };
+    private static final byte[] END_OF_SET =
+            { '<', '/', 'r', 'e', 's', 'u', 'l', 't', 's', '>' };
+
+    private Collection<String> fields = new ArrayList<String>();
+    private int setCount = 0;
+    private boolean inSet = false;
+    // The start of the current set up to its first result, with which every
+    // batch of the set begins.
+    private byte[] header;
+    private final ByteArrayOutputStream batch =
+            new ByteArrayOutputStream(BATCH_SIZE + BATCH_SIZE / 4);
+
+    /**
+     * Class constructor.
+     *
+     * Constructs a streaming XML reader for the event stream that decodes
+     * results on as many threads as there are processors, and returns them
+     * in stream order.
+     *
+     * @param inputStream The XML stream to parse.
+     * @throws IOException
+     */
+    public ParallelResultsReaderXml(InputStream inputStream)
+            throws IOException {
+        this(inputStream, Runtime.getRuntime().availableProcessors(), true);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * Constructs a streaming XML reader for the event stream that decodes
+     * results on the given number of threads.
+     *
+     * @param inputStream The XML stream to parse.
+     * @param threads The number of decoding threads.
+     * @param ordered Whether events are returned in stream order. When
+     *                {@code false}, events are returned as soon as they are
+     *                decoded.
+     * @throws IOException
+     */
+    public ParallelResultsReaderXml(InputStream inputStream, int threads,
+                                    boolean ordered) throws IOException {
+        this(inputStream, threads, ordered, null);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * Constructs a streaming XML reader for the event stream that decodes
+     * the given fields of the results on the given number of threads.
+     *
+     * @param inputStream The XML stream to parse.
+     * @param threads The number of decoding threads.
+     * @param ordered Whether events are returned in stream order.
+     * @param fields The fields to read, or {@code null} to read every field.
+     * @throws IOException
+     */
+    public ParallelResultsReaderXml(InputStream inputStream, int threads,
+                                    boolean ordered, Collection<String> fields)
+            throws IOException {
+        super(inputStream, threads, ordered, fields);
+        start();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isPreview() {
+        return isPreview;
+    }
+
+    /**
+     * Returns the fields of the first result set, in the order in which
+     * they appear in the stream.
+     *
+     * @return The field names.
+     */
+    @Override
+    public Collection<String> getFields() {
+        return fields;
+    }
+
+    @Override boolean readIntoFirstSet() throws IOException {
+        return readIntoNextSet();
+    }
+
+    @Override byte[] nextBatch() throws IOException {
+        while (true) {
+            if (!inSet && !readIntoNextSet())
+                return null;
+
+            int kind = nextTag(null);
+            if (kind == ROW_START) {
+                copyTag(batch);
+                if (nextTag(batch) != ROW_END)
+                    throw new RuntimeException("End tag of 'result' not found.");
+                copyTag(batch);
+                if (batch.size() >= BATCH_SIZE)
+                    return takeBatch();
+            } else if (kind == ROW_END) {
+                copyTag(null);
+            } else {
+                // The set ends here. A start tag belongs to the next set.
+                if (kind == SET_END)
+                    copyTag(null);
+                inSet = false;
+                if (batch.size() > header.length)
+                    return takeBatch();
+            }
+        }
+    }
+
+    @Override List<Event> decode(byte[] batch) throws IOException {
+        return readAll(new ResultsReaderXml(
+                new ByteArrayInputStream(batch), selectedFields));
+    }
+
+    private byte[] takeBatch() {
+        batch.write(END_OF_SET, 0, END_OF_SET.length);
+        byte[] result = batch.toByteArray();
+        batch.reset();
+        batch.write(header, 0, header.length);
+        return result;
+    }
+
+    // Moves to the first result of the next set to be returned. As in the
+    // single-threaded reader, final sets are read one after the other, the
+    // previews of an export stream are skipped, and a stream that starts
+    // with a preview ends with it.
+    private boolean readIntoNextSet() throws IOException {
+        if (setCount > 0 && isPreview)
+            return false;
+
+        while (true) {
+            int kind;
+            while ((kind = nextTag(null)) != SET_START) {
+                if (kind == END_OF_STREAM)
+                    return false;
+                copyTag(null);
+            }
+
+            ByteArrayOutputStream start = new ByteArrayOutputStream();
+            copyTag(start);
+            kind = nextTag(start);
+            byte[] setHeader = start.toByteArray();
+
+            // The single-threaded reader reads the preview flag and the
+            // fields of the set from its header.
+            start.write(END_OF_SET, 0, END_OF_SET.length);
+            ResultsReaderXml reader = new ResultsReaderXml(
+                    new ByteArrayInputStream(start.toByteArray()));
+            boolean preview = reader.isPreview();
+            Collection<String> setFields = reader.getFields();
+            reader.close();
+
+            if (isExportStream && preview) {
+                // Skip the rest of the preview.
+                while (kind != SET_END && kind != END_OF_STREAM) {
+                    copyTag(null);
+                    kind = nextTag(null);
+                }
+                continue;
+            }
+
+            if (setCount++ == 0) {
+                isPreview = preview;
+                fields = setFields;
+            }
+            header = setHeader;
+            batch.reset();
+            batch.write(header, 0, header.length);
+            inSet = true;
+            return true;
+        }
+    }
+
+    // Copies the stream into the sink up to the next results or result tag,
+    // leaves the position on its '<', and returns its kind.
+    private int nextTag(ByteArrayOutputStream sink) throws IOException {
+        int start = source.position;
+        while (true) {
+            while (source.position < source.limit
+                    && source.buffer[source.position] != '<')
+                source.position++;
+            if (source.limit - source.position < END_OF_SET.length) {
+                // Move the bytes read so far out of the buffer, so that it
+                // can be refilled.
+                copy(start, sink);
+                if (source.position == source.limit) {
+                    if (!source.fill(1))
+                        return END_OF_STREAM;
+                    start = source.position;
+                    continue;
+                }
+                source.fill(END_OF_SET.length);
+                start = source.position;
+            }
+
+            int kind = tagKind();
+            if (kind != OTHER) {
+                copy(start, sink);
+                return kind;
+            }
+            source.position++;
+        }
+    }
+
+    private int tagKind() {
+        int i = source.position + 1;
+        boolean end = i < source.limit && source.buffer[i] == '/';
+        if (end)
+            i++;
+        if (source.limit - i <= RESULT.length)
+            return OTHER;
+        for (int j = 0; j < RESULT.length; j++, i++) {
+            if (source.buffer[i] != RESULT[j])
+                return OTHER;
+        }
+        boolean set = source.buffer[i] == 's';
+        if (set && ++i == source.limit)
+            return OTHER;
+        byte next = source.buffer[i];
+        if (next != '>' && next != '/' && !isWhitespace(next))
+            return OTHER;
+        if (set)
+            return end ? SET_END : SET_START;
+        return end ? ROW_END : ROW_START;
+    }
+
+    // Copies the tag at the position, up to its '>', into the sink.
+    private void copyTag(ByteArrayOutputStream sink) throws IOException {
+        while (true) {
+            int start = source.position;
+            while (source.position < source.limit
+                    && source.buffer[source.position] != '>')
+                source.position++;
+            if (source.position < source.limit) {
+                source.position++;
+                copy(start, sink);
+                return;
+            }
+            copy(start, sink);
+            if (!source.fill(1))
+                throw new RuntimeException("Invalid XML format.");
+        }
+    }
+}
@@ -76,6 +76,6 @@ public class PasswordCollection extends EntityCollection<Password> {
      * @return The username.
      */
     @Override protected String itemKey(AtomEntry entry) {
-        return (String)entry.content.get("username");
+        return (String)entry.getContentValue("username");
     }
 }
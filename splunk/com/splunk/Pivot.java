@@ -32,11 +32,11 @@ public class Pivot {
 
     private Pivot(Service service, AtomEntry entry) {
         this.service = service;
-        this.openInSearch = entry.content.getString("open_in_search");
-        this.drilldownSearch = entry.content.getString("drilldown_search");
-        this.pivotSearch = entry.content.getString("pivot_search");
-        this.search = entry.content.getString("search");
-        this.tstatsSearch = entry.content.getString("tstats_search", null);
+        this.openInSearch = entry.getContent().getString("open_in_search");
+        this.drilldownSearch = entry.getContent().getString("drilldown_search");
+        this.pivotSearch = entry.getContent().getString("pivot_search");
+        this.search = entry.getContent().getString("search");
+        this.tstatsSearch = entry.getContent().getString("tstats_search", null);
     }
 
     /**
@@ -480,7 +480,11 @@ public class PivotSpecification {
         if (response.getStatus() != 200) {
             throw HttpException.create(response);
         } else {
-            return Pivot.parseStream(service, response.getContent());
+            try {
+                return Pivot.parseStream(service, response.getContent());
+            } finally {
+                response.closeQuietly();
+            }
         }
     }
 }
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The {@code PooledResponseStream} class reads the body of an HTTP/1.1
+ * response from a pooled connection, honoring its {@code Content-Length} or
+ * chunked framing. The connection is returned to the pool as soon as the body
+ * has been read to its end, or when the stream is closed.
+ *
+ * This class is an implementation detail and is therefore SDK-private.
+ */
+class PooledResponseStream extends InputStream {
+    /** Framing of a body whose length is given by Content-Length. */
+    static final int FIXED_LENGTH = 0;
+    /** Framing of a body sent with chunked transfer encoding. */
+    static final int CHUNKED = 1;
+    /** Framing of a body delimited by the server closing the connection. */
+    static final int UNTIL_CLOSE = 2;
+
+    // Bodies with more than this many unread bytes are not drained on close;
+    // the connection is closed instead.
+    static final long DRAIN_LIMIT = 64 * 1024;
+
+    private final HttpConnectionPool pool;
+    private final HttpConnection connection;
+    private final InputStream input;
+    private final int framing;
+    private final boolean keepAlive;
+
+    // Bytes left in the body (FIXED_LENGTH) or in the current chunk (CHUNKED).
+    private long remaining;
+    private boolean eof = false;
+    private boolean released = false;
+    private final byte[] single = new byte[1];
+
+    /**
+     * Creates a body stream over a leased connection.
+     *
+     * @param pool The pool that leased the connection.
+     * @param connection The connection.
+     * @param framing One of {@code FIXED_LENGTH}, {@code CHUNKED}, or
+     *                {@code UNTIL_CLOSE}.
+     * @param length The body length, for {@code FIXED_LENGTH} framing.
+     * @param keepAlive Whether the server allows the connection to be reused.
+     */
+    PooledResponseStream(HttpConnectionPool pool, HttpConnection connection,
+                         int framing, long length, boolean keepAlive) {
+        this.pool = pool;
+        this.connection = connection;
+        this.input = connection.input;
+        this.framing = framing;
+        this.keepAlive = keepAlive && framing != UNTIL_CLOSE;
+        this.remaining = framing == FIXED_LENGTH ? length : 0;
+
+        pool.track(connection, this);
+        if (framing == FIXED_LENGTH && length == 0)
+            finish();
+    }
+
+    @Override
+    public int read() throws IOException {
+        int n = read(single, 0, 1);
+        return n == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (eof || released) return -1;
+        if (length == 0) return 0;
+
+        try {
+            if (framing == CHUNKED && remaining == 0 && !nextChunk())
+                return -1;
+
+            int count = length;
+            if (framing != UNTIL_CLOSE && count > remaining)
+                count = (int) remaining;
+
+            int n = input.read(buffer, offset, count);
+            if (n == -1) {
+                if (framing != UNTIL_CLOSE)
+                    throw new IOException("Premature end of response body");
+                finish();
+                return -1;
+            }
+
+            if (framing != UNTIL_CLOSE) {
+                remaining -= n;
+                if (framing == FIXED_LENGTH && remaining == 0)
+                    finish();
+            }
+            return n;
+        } catch (IOException e) {
+            abort();
+            throw e;
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (eof || released) return 0;
+        int available = input.available();
+        if (framing != UNTIL_CLOSE && available > remaining)
+            available = (int) remaining;
+        return available;
+    }
+
+    /**
+     * Drains what is left of the body and returns the connection to the pool.
+     * Large remainders are not drained; the connection is closed instead.
+     *
+     * @throws IOException On IO exception.
+     */
+    @Override
+    public void close() throws IOException {
+        if (released) return;
+        if (framing == UNTIL_CLOSE || remaining > DRAIN_LIMIT) {
+            abort();
+            return;
+        }
+
+        long drained = 0;
+        byte[] buffer = new byte[4096];
+        try {
+            while (!released && drained <= DRAIN_LIMIT) {
+                int n = read(buffer, 0, buffer.length);
+                if (n == -1) break;
+                drained += n;
+            }
+        } catch (IOException e) {
+            // The connection has already been discarded by read().
+            return;
+        }
+        if (!released) abort();
+    }
+
+    // Reads the next chunk header, returning false (and releasing the
+    // connection) at the last chunk.
+    private boolean nextChunk() throws IOException {
+        // Consume the CRLF that terminates the previous chunk, if any.
+        String line = connection.readLine();
+        if (line != null && line.length() == 0)
+            line = connection.readLine();
+        if (line == null)
+            throw new IOException("Premature end of chunked response body");
+
+        int extension = line.indexOf(';');
+        if (extension >= 0)
+            line = line.substring(0, extension);
+        long size;
+        try {
+            size = Long.parseLong(line.trim(), 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid chunk size: " + line);
+        }
+
+        if (size == 0) {
+            // Skip any trailer headers up to the terminating empty line.
+            String trailer;
+            do {
+                trailer = connection.readLine();
+            } while (trailer != null && trailer.length() > 0);
+            finish();
+            return false;
+        }
+        remaining = size;
+        return true;
+    }
+
+    private void finish() {
+        eof = true;
+        if (!released) {
+            released = true;
+            pool.release(connection, keepAlive);
+        }
+    }
+
+    private void abort() {
+        eof = true;
+        if (!released) {
+            released = true;
+            pool.release(connection, false);
+        }
+    }
+}
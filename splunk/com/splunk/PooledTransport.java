@@ -0,0 +1,354 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * The {@code PooledTransport} class is the default transport of an
+ * {@code HttpService} instance. It speaks HTTP/1.1 over keep-alive
+ * connections from the {@link HttpConnectionPool} of the service.
+ * <p>
+ * A custom HTTPS handler or a proxy is only honored by the URL connection
+ * machinery, so requests that need either are sent through an
+ * {@link HttpURLConnectionTransport} instead.
+ *
+ * This class is an implementation detail and is therefore SDK-private.
+ */
+class PooledTransport implements Transport {
+    private static final String HTTPS_SCHEME = "https";
+    private static final String HTTP_SCHEME = "http";
+
+    private final HttpService service;
+    private final Transport fallback = new HttpURLConnectionTransport();
+
+    PooledTransport(HttpService service) {
+        this.service = service;
+    }
+
+    public ResponseMessage send(TransportRequest request) throws IOException {
+        URL url = request.getUrl();
+        if (service.httpsHandler != null || !isDirect(url))
+            return fallback.send(request);
+
+        String method = request.getMethod();
+        boolean repeatable = request.isContentRepeatable();
+        HttpConnectionPool pool = service.getConnectionPool();
+
+        while (true) {
+            HttpConnection connection = leaseConnection(pool, request);
+            boolean reused = connection.reused;
+            boolean bodyStarted = false;
+            boolean responded = false;
+            if (reused)
+                request.connectionReused();
+            try {
+                connection.socket.setSoTimeout(request.getReadTimeout());
+                writeHead(connection, request);
+                bodyStarted = true;
+                writeBody(connection, request);
+                String statusLine = connection.readLine();
+                request.responseStarted();
+                // Skip interim (1xx) responses.
+                while (statusLine != null && isInterim(statusLine)) {
+                    readHeader(connection);
+                    statusLine = connection.readLine();
+                }
+                if (statusLine == null)
+                    throw new SocketException("Connection closed by server");
+                responded = true;
+                return readResponse(pool, connection, request, statusLine);
+            } catch (IOException e) {
+                pool.release(connection, false);
+                // A kept-alive connection may have been closed by the server
+                // while it sat in the pool; retry once on a fresh connection,
+                // unless part of a body that cannot be sent again is gone.
+                if (reused && !responded && (repeatable || !bodyStarted)
+                        && !(e instanceof SocketTimeoutException))
+                    continue;
+                throw e;
+            } catch (RuntimeException e) {
+                pool.release(connection, false);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Opens a socket to the service, layering TLS over it when the scheme
+     * is https. The connect timeout also bounds the handshake.
+     *
+     * @param connectTimeout The connect timeout, in milliseconds.
+     * @param request The request the socket is opened for, which is told
+     *                the connection timings, or {@code null}.
+     * @return The socket.
+     * @throws IOException On IO exception.
+     */
+    Socket openSocket(int connectTimeout, TransportRequest request)
+            throws IOException {
+        String host = service.getHost();
+        int port = service.getPort();
+        long start = System.nanoTime();
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        long resolved = System.nanoTime();
+        if (address.isUnresolved())
+            throw new UnknownHostException(host);
+
+        Socket socket = new Socket();
+        try {
+            socket.connect(address, connectTimeout);
+            long connected = System.nanoTime();
+            if (HTTPS_SCHEME.equals(service.getScheme())) {
+                socket.setSoTimeout(connectTimeout);
+                // The host and port key the TLS session cache, so later
+                // connections to this service can resume the session.
+                SSLSocket sslSocket = (SSLSocket) service.getSecureSocketFactory()
+                        .createSocket(socket, host, port, true);
+                handshake(sslSocket);
+                socket.setSoTimeout(0);
+                if (request != null)
+                    request.connectionOpened(resolved - start,
+                            connected - resolved, System.nanoTime() - connected);
+                return sslSocket;
+            }
+            if (request != null)
+                request.connectionOpened(resolved - start, connected - resolved, -1);
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    // Returns true if no proxy is configured for the given URL.
+    private static boolean isDirect(URL url) {
+        ProxySelector selector = ProxySelector.getDefault();
+        if (selector == null)
+            return true;
+        try {
+            // Proxy selection only depends on the scheme, host, and port;
+            // leave the path out, since it may not be a valid URI path.
+            URI uri = new URI(url.getProtocol(), null, url.getHost(),
+                    url.getPort(), "/", null, null);
+            for (Proxy proxy : selector.select(uri)) {
+                if (proxy.type() != Proxy.Type.DIRECT)
+                    return false;
+            }
+            return true;
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+
+    // Leases a connection from the pool, opening a new one if necessary.
+    private HttpConnection leaseConnection(HttpConnectionPool pool,
+                                           TransportRequest request)
+            throws IOException {
+        String route = service.getPrefix();
+        HttpConnection connection = pool.lease(route);
+        if (connection != null)
+            return connection;
+        try {
+            connection = new HttpConnection(
+                    route, openSocket(request.getConnectTimeout(), request));
+        } catch (IOException e) {
+            pool.cancel(route);
+            throw e;
+        } catch (RuntimeException e) {
+            pool.cancel(route);
+            throw e;
+        }
+        pool.created(connection);
+        return connection;
+    }
+
+    // Performs the TLS handshake, counting it as resumed if it reused a
+    // session established before it started.
+    private void handshake(SSLSocket socket) throws IOException {
+        long start = System.currentTimeMillis();
+        socket.startHandshake();
+        service.handshakeCompleted(socket.getSession().getCreationTime() < start);
+    }
+
+    // Writes the request line and headers.
+    private void writeHead(HttpConnection connection, TransportRequest request)
+            throws IOException {
+        String host = service.getHost();
+        int port = service.getPort();
+        String scheme = service.getScheme();
+
+        StringBuilder head = new StringBuilder();
+        head.append(request.getMethod()).append(' ')
+            .append(request.getUrl().getFile()).append(" HTTP/1.1\r\n");
+
+        boolean defaultPort =
+                (HTTPS_SCHEME.equals(scheme) && port == 443) ||
+                (HTTP_SCHEME.equals(scheme) && port == 80);
+        head.append("Host: ").append(host);
+        if (!defaultPort)
+            head.append(':').append(port);
+        head.append("\r\n");
+
+        for (Entry<String, String> entry : request.getHeader().entrySet())
+            appendHeader(head, entry.getKey(), entry.getValue());
+
+        boolean hasBody = request.hasContent();
+        if (hasBody) {
+            long length = request.getContentLength();
+            if (length >= 0)
+                appendHeader(head, "Content-Length", Long.toString(length));
+            else
+                appendHeader(head, "Transfer-Encoding", "chunked");
+        }
+        head.append("\r\n");
+
+        OutputStream output = connection.output;
+        output.write(head.toString().getBytes("ISO-8859-1"));
+        // Make sure the connection is still usable before consuming a body
+        // that cannot be sent again.
+        if (hasBody && !request.isContentRepeatable())
+            output.flush();
+    }
+
+    // Writes the request body, if any, framed as announced by writeHead.
+    private void writeBody(HttpConnection connection, TransportRequest request)
+            throws IOException {
+        OutputStream output = connection.output;
+        if (request.hasContent()) {
+            if (request.getContentLength() >= 0) {
+                request.writeContent(output);
+            } else {
+                ChunkedOutputStream chunked = new ChunkedOutputStream(output);
+                request.writeContent(chunked);
+                chunked.close();
+            }
+        }
+        output.flush();
+    }
+
+    private static void appendHeader(StringBuilder head, String key, String value) {
+        head.append(key).append(": ").append(value).append("\r\n");
+    }
+
+    private static boolean isInterim(String statusLine) {
+        return parseStatus(statusLine) / 100 == 1;
+    }
+
+    private static int parseStatus(String statusLine) {
+        // Status-Line = HTTP-Version SP Status-Code SP Reason-Phrase
+        String[] parts = statusLine.split(" ", 3);
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/"))
+            throw new RuntimeException("Malformed HTTP status line: " + statusLine);
+        try {
+            return Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Malformed HTTP status line: " + statusLine);
+        }
+    }
+
+    // Reads response headers up to the empty line that ends them. Header
+    // names are mapped to the list of their values in arrival order.
+    private static Map<String, List<String>> readHeader(HttpConnection connection)
+            throws IOException {
+        Map<String, List<String>> header = new TreeMap<String, List<String>>(
+                String.CASE_INSENSITIVE_ORDER);
+        String line;
+        while ((line = connection.readLine()) != null && line.length() > 0) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) continue;
+            String key = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            List<String> values = header.get(key);
+            if (values == null) {
+                values = new ArrayList<String>(1);
+                header.put(key, values);
+            }
+            values.add(value);
+        }
+        if (line == null)
+            throw new SocketException("Connection closed by server");
+        return header;
+    }
+
+    // Reads the response header and wraps the body in a stream that returns
+    // the connection to the pool once the body has been consumed.
+    private ResponseMessage readResponse(HttpConnectionPool pool,
+                                         HttpConnection connection,
+                                         TransportRequest request,
+                                         String statusLine)
+            throws IOException {
+        int status = parseStatus(statusLine);
+        Map<String, List<String>> values = readHeader(connection);
+
+        Map<String, String> header = new TreeMap<String, String>(
+                String.CASE_INSENSITIVE_ORDER);
+        for (Entry<String, List<String>> entry : values.entrySet())
+            header.put(entry.getKey(), Util.join(", ", entry.getValue()));
+
+        // Add cookies to cookie Store
+        List<String> setCookies = values.get("Set-Cookie");
+        if (setCookies != null) {
+            for (String setCookie : setCookies)
+                request.addCookie(setCookie);
+        }
+
+        String connectionHeader = header.get("Connection");
+        boolean keepAlive = statusLine.startsWith("HTTP/1.1")
+                ? !"close".equalsIgnoreCase(connectionHeader)
+                : "keep-alive".equalsIgnoreCase(connectionHeader);
+
+        String transferEncoding = header.get("Transfer-Encoding");
+        String contentLength = header.get("Content-Length");
+        int framing;
+        long length = 0;
+        if (request.getMethod().equals("HEAD") || status == 204 || status == 304) {
+            framing = PooledResponseStream.FIXED_LENGTH;
+        } else if (transferEncoding != null &&
+                transferEncoding.toLowerCase().contains("chunked")) {
+            framing = PooledResponseStream.CHUNKED;
+        } else if (contentLength != null) {
+            framing = PooledResponseStream.FIXED_LENGTH;
+            try {
+                length = Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid Content-Length: " + contentLength);
+            }
+        } else {
+            framing = PooledResponseStream.UNTIL_CLOSE;
+        }
+
+        return request.createResponse(status, header, new PooledResponseStream(
+                pool, connection, framing, length, keepAlive));
+    }
+}
@@ -17,6 +17,7 @@
 package com.splunk;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
@@ -156,9 +157,44 @@ public class Receiver {
      * "host", "host_regex", "source", and "sourcetype".
      */
     public void submit(String indexName, Args args, String data) {
-        String sendString = "";
         RequestMessage request = new RequestMessage("POST");
         request.setContent(data);
+        submit(indexName, args, request);
+    }
+
+    /**
+     * Submits events read from a stream to this index through HTTP POST.
+     * The stream is sent as it is read, without being held in memory, and is
+     * closed once it has been sent.
+     *
+     * @param indexName The index to write to.
+     * @param args Optional arguments for this stream. Valid parameters are:
+     * "host", "host_regex", "source", and "sourcetype".
+     * @param data A stream of event data.
+     */
+    public void submit(String indexName, Args args, InputStream data) {
+        RequestMessage request = new RequestMessage("POST");
+        request.setContent(data);
+        submit(indexName, args, request);
+    }
+
+    /**
+     * Submits events produced by a writer to this index through HTTP POST.
+     * The events are sent as they are written, without being held in memory.
+     *
+     * @param indexName The index to write to.
+     * @param args Optional arguments for this stream. Valid parameters are:
+     * "host", "host_regex", "source", and "sourcetype".
+     * @param data A writer of event data.
+     */
+    public void submit(String indexName, Args args, ContentWriter data) {
+        RequestMessage request = new RequestMessage("POST");
+        request.setContent(data);
+        submit(indexName, args, request);
+    }
+
+    private void submit(String indexName, Args args, RequestMessage request) {
+        String sendString = "";
         if (indexName !=null) {
             sendString = String.format("?index=%s", indexName);
         }
@@ -168,11 +204,7 @@ public class Receiver {
         }
         ResponseMessage response = service.send(service.simpleReceiverEndPoint
                 + sendString, request);
-        try {
-            response.getContent().close();
-        } catch (IOException e) {
-            // noop
-        }
+        response.closeQuietly();
     }
 
     /**
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code RequestCoalescer} class lets concurrent identical requests
+ * share a single exchange with the server. The first caller sends the
+ * request; callers that arrive while it is in flight wait for its response
+ * and each get a copy of it.
+ * <p>
+ * To be shared, a response body is read into memory. Bodies larger than
+ * {@code BUFFER_LIMIT} are not shared: the first caller gets the body as a
+ * stream, and the waiting callers send requests of their own.
+ *
+ * This class is an implementation detail and is therefore SDK-private.
+ */
+class RequestCoalescer {
+    static final int BUFFER_LIMIT = 1024 * 1024;
+
+    private final ConcurrentMap<String, Call> calls =
+            new ConcurrentHashMap<String, Call>();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * Returns the number of requests that were answered with the response
+     * of an identical request in flight.
+     *
+     * @return The number of coalesced requests.
+     */
+    long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Sends a request, or waits for the response of an identical request
+     * that is already in flight.
+     *
+     * @param key The identity of the request.
+     * @param exchange Sends the request.
+     * @return The response.
+     */
+    ResponseMessage send(String key, Callable<ResponseMessage> exchange) {
+        Call call = new Call();
+        Call inFlight = calls.putIfAbsent(key, call);
+        if (inFlight != null) {
+            ResponseMessage response;
+            try {
+                response = inFlight.await();
+            } catch (RuntimeException e) {
+                coalescedCount.incrementAndGet();
+                throw e;
+            }
+            if (response != null) {
+                coalescedCount.incrementAndGet();
+                return response;
+            }
+            // The response was too large to share.
+            return invoke(exchange);
+        }
+
+        try {
+            ResponseMessage response = invoke(exchange);
+            call.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            call.fail(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    private static ResponseMessage invoke(Callable<ResponseMessage> exchange) {
+        try {
+            return exchange.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    // A request in flight, and eventually its outcome.
+    private static final class Call {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private int status;
+        private Map<String, String> header;
+        private byte[] body;
+        private RuntimeException failure;
+
+        // Reads the body of the response so that it can be shared, leaving
+        // the response readable by its own caller.
+        void complete(ResponseMessage response) {
+            try {
+                status = response.getStatus();
+                header = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+                header.putAll(response.getHeader());
+                // The shared body is decoded.
+                header.remove("Content-Encoding");
+                InputStream content = response.getContent();
+                if (content != null) {
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                    byte[] chunk = new byte[8192];
+                    int n = 0;
+                    while (buffer.size() <= BUFFER_LIMIT
+                            && (n = content.read(chunk)) != -1)
+                        buffer.write(chunk, 0, n);
+                    InputStream prefix = new ByteArrayInputStream(buffer.toByteArray());
+                    if (n == -1) {
+                        body = buffer.toByteArray();
+                        response.content = prefix;
+                    } else {
+                        response.content = new SequenceInputStream(prefix, content);
+                    }
+                }
+                else {
+                    body = new byte[0];
+                }
+            } catch (IOException e) {
+                failure = new RuntimeException(e.getMessage(), e);
+                throw failure;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        void fail(RuntimeException e) {
+            if (done.getCount() == 0) return;
+            failure = e;
+            done.countDown();
+        }
+
+        // Returns a copy of the response, or null if it could not be shared.
+        ResponseMessage await() {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e.getMessage(), e);
+            }
+            if (failure instanceof HttpException) {
+                HttpException e = (HttpException) failure;
+                HttpException copy = new HttpException(
+                        e.getStatus(), e.getMessage(), e.getDetail());
+                copy.getHeader().putAll(e.getHeader());
+                throw copy;
+            }
+            if (failure != null)
+                throw new RuntimeException(failure.getMessage(), failure);
+            if (body == null)
+                return null;
+
+            ResponseMessage response = new ResponseMessage(status);
+            response.getHeader().putAll(header);
+            response.content = new ByteArrayInputStream(body);
+            return response;
+        }
+    }
+}
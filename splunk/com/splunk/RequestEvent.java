@@ -0,0 +1,218 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The {@code RequestEvent} class describes a single HTTP request issued by
+ * an {@code HttpService} instance, as reported to a {@link RequestListener}.
+ * <p>
+ * All times are in nanoseconds. Times that do not apply to a request, such
+ * as the connect time of a request sent over a kept-alive connection, or that
+ * cannot be measured, are reported as -1.
+ */
+public class RequestEvent {
+    private final URL url;
+    private final RequestMessage request;
+    private final List<RequestListener> listeners;
+    private final long start = System.nanoTime();
+    private final AtomicBoolean completed = new AtomicBoolean(false);
+
+    volatile long dnsNanos = -1;
+    volatile long connectNanos = -1;
+    volatile long handshakeNanos = -1;
+    volatile long timeToFirstByteNanos = -1;
+    volatile long totalNanos = -1;
+    volatile boolean connectionReused = false;
+    volatile int status = -1;
+    volatile long bytesOut = 0;
+    volatile long bytesIn = 0;
+    volatile RuntimeException failure = null;
+
+    RequestEvent(URL url, RequestMessage request,
+                 List<RequestListener> listeners) {
+        this.url = url;
+        this.request = request;
+        this.listeners = listeners;
+    }
+
+    /**
+     * Returns the HTTP method of the request.
+     *
+     * @return The HTTP method.
+     */
+    public String getMethod() {
+        return request.getMethod();
+    }
+
+    /**
+     * Returns the URL of the request.
+     *
+     * @return The URL.
+     */
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the path of the request, without its query.
+     *
+     * @return The path.
+     */
+    public String getPath() {
+        return url.getPath();
+    }
+
+    /**
+     * Returns the request message.
+     *
+     * @return The request message.
+     */
+    public RequestMessage getRequest() {
+        return request;
+    }
+
+    /**
+     * Returns the status of the response.
+     *
+     * @return The HTTP status, or -1 if no response was received.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the exception that made the request fail, if it did not get a
+     * response or if reading the response failed.
+     *
+     * @return The failure, or {@code null}.
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns the time taken to resolve the host name of a new connection.
+     *
+     * @return The DNS lookup time, or -1.
+     */
+    public long getDnsNanos() {
+        return dnsNanos;
+    }
+
+    /**
+     * Returns the time taken to open the TCP connection of a new connection.
+     *
+     * @return The connect time, or -1.
+     */
+    public long getConnectNanos() {
+        return connectNanos;
+    }
+
+    /**
+     * Returns the time taken by the TLS handshake of a new connection.
+     *
+     * @return The handshake time, or -1.
+     */
+    public long getHandshakeNanos() {
+        return handshakeNanos;
+    }
+
+    /**
+     * Returns the time from the start of the request to the arrival of the
+     * response status line, which includes connecting and sending the
+     * request.
+     *
+     * @return The time to first byte, or -1.
+     */
+    public long getTimeToFirstByteNanos() {
+        return timeToFirstByteNanos;
+    }
+
+    /**
+     * Returns the time from the start of the request until the response
+     * content was read to its end or closed, or until the request failed.
+     *
+     * @return The total time, or -1 if the request is not complete.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Indicates whether the request was sent over a kept-alive connection.
+     *
+     * @return {@code true} if the connection was reused.
+     */
+    public boolean isConnectionReused() {
+        return connectionReused;
+    }
+
+    /**
+     * Returns the number of request body bytes sent.
+     *
+     * @return The number of bytes sent.
+     */
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * Returns the number of response body bytes received, before any
+     * decompression.
+     *
+     * @return The number of bytes received.
+     */
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    long elapsed() {
+        return System.nanoTime() - start;
+    }
+
+    // Notifies the listeners that the request is starting.
+    void started() {
+        for (RequestListener listener : listeners) {
+            try {
+                listener.requestStarted(this);
+            } catch (RuntimeException e) {
+                // A faulty listener must not break the request.
+            }
+        }
+    }
+
+    // Notifies the listeners that the request is complete; only the first
+    // call has an effect.
+    void completed(long bytesIn, RuntimeException failure) {
+        if (!completed.compareAndSet(false, true))
+            return;
+        this.totalNanos = elapsed();
+        this.bytesIn = bytesIn;
+        this.failure = failure;
+        for (RequestListener listener : listeners) {
+            try {
+                listener.requestCompleted(this);
+            } catch (RuntimeException e) {
+                // A faulty listener must not break the request.
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+/**
+ * The {@code RequestListener} interface is notified of the requests issued
+ * by an {@code HttpService} instance, for example to collect metrics or to
+ * trace calls.
+ * <p>
+ * Listeners are called on the thread that issues the request, or on the
+ * thread that finishes reading the response, and must therefore be
+ * thread-safe. Exceptions thrown by a listener are ignored.
+ *
+ * @see HttpService#addRequestListener
+ * @see RequestMetrics
+ */
+public interface RequestListener {
+    /**
+     * Called before a request is sent. The listener can add headers to the
+     * request message, such as a trace identifier.
+     *
+     * @param event The event describing the request.
+     */
+    public void requestStarted(RequestEvent event);
+
+    /**
+     * Called once a request is complete: when its response content has been
+     * read to its end or closed, or when the request failed.
+     *
+     * @param event The event describing the request, with its timings.
+     */
+    public void requestCompleted(RequestEvent event);
+}
@@ -16,18 +16,39 @@
 
 package com.splunk;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.TreeMap;
 
 /**
  * The {@code RequestMessage} class represents an HTTP request message including 
  * method, headers, and body content.
+ * <p>
+ * The body content can be a string, which is sent encoded as UTF-8, or raw
+ * bytes given as an array, a {@code ByteBuffer}, an {@code InputStream}, or a
+ * {@link ContentWriter}. Streams and writers are copied to the connection as
+ * they are sent rather than being buffered in memory; they are sent with a
+ * {@code Content-Length} header when their length is known and with chunked
+ * transfer encoding otherwise.
  */
 public class RequestMessage {
+    private static final int COPY_BUFFER_SIZE = 8192;
+
     String method = "GET";  // "GET" | "PUT" | "POST" | "DELETE"
     Map<String, String> header = null;
     Object content = null;
+    long contentLength = -1;
+    int connectTimeout = -1;
+    int readTimeout = -1;
+
+    // The UTF-8 encoding of string content, computed when first needed.
+    private byte[] encoded = null;
+    private Object encodedContent = null;
 
     /** Creates a new {@code RequestMessage} instance. */
     public RequestMessage() {}
@@ -85,6 +106,53 @@ public class RequestMessage {
         this.method = value;
     }
 
+    /**
+     * Returns the connect timeout of this request, in milliseconds.
+     *
+     * @return The connect timeout, or -1 if the timeout of the service
+     * applies.
+     */
+    public int getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    /**
+     * Sets the connect timeout of this request, in milliseconds, overriding
+     * the timeout of the service.
+     *
+     * @param value The connect timeout, zero for none, or -1 to use the
+     * timeout of the service.
+     * @see HttpService#setConnectTimeout
+     */
+    public void setConnectTimeout(int value) {
+        if (value < -1)
+            throw new IllegalArgumentException("Invalid timeout: " + value);
+        this.connectTimeout = value;
+    }
+
+    /**
+     * Returns the read timeout of this request, in milliseconds.
+     *
+     * @return The read timeout, or -1 if the timeout of the service applies.
+     */
+    public int getReadTimeout() {
+        return this.readTimeout;
+    }
+
+    /**
+     * Sets the read timeout of this request, in milliseconds, overriding the
+     * timeout of the service.
+     *
+     * @param value The read timeout, zero for none, or -1 to use the timeout
+     * of the service.
+     * @see HttpService#setReadTimeout
+     */
+    public void setReadTimeout(int value) {
+        if (value < -1)
+            throw new IllegalArgumentException("Invalid timeout: " + value);
+        this.readTimeout = value;
+    }
+
     /**
      * Returns the message body content.
      *
@@ -100,11 +168,190 @@ public class RequestMessage {
      * @param value The message content.
      */
     public void setContent(String value) {
-        this.content = value;
+        setContentObject(value, -1);
     }
 
+    /**
+     * Sets the message body content to the bytes written so far to the
+     * given stream, which must be a {@code ByteArrayOutputStream}.
+     *
+     * @param value The message content.
+     */
     public void setContent(OutputStream value) {
+        setContentObject(value, -1);
+    }
+
+    /**
+     * Sets the message body content to the given bytes.
+     *
+     * @param value The message content.
+     */
+    public void setContent(byte[] value) {
+        setContentObject(value, value == null ? -1 : value.length);
+    }
+
+    /**
+     * Sets the message body content to the remaining bytes of the given
+     * buffer. The position of the buffer is not changed.
+     *
+     * @param value The message content.
+     */
+    public void setContent(ByteBuffer value) {
+        setContentObject(value, value == null ? -1 : value.remaining());
+    }
+
+    /**
+     * Sets the message body content to the bytes read from the given stream
+     * up to its end. The body is sent with chunked transfer encoding, and the
+     * stream is closed once it has been sent.
+     * <p>
+     * A stream can only be sent once, so a request with stream content is
+     * not retried.
+     *
+     * @param value The message content.
+     */
+    public void setContent(InputStream value) {
+        setContentObject(value, -1);
+    }
+
+    /**
+     * Sets the message body content to the given number of bytes read from
+     * the given stream. The body is sent with a {@code Content-Length}
+     * header, and the stream is closed once it has been sent.
+     * <p>
+     * A stream can only be sent once, so a request with stream content is
+     * not retried.
+     *
+     * @param value The message content.
+     * @param length The number of bytes to send.
+     */
+    public void setContent(InputStream value, long length) {
+        if (length < 0)
+            throw new IllegalArgumentException("Content length must not be negative.");
+        setContentObject(value, length);
+    }
+
+    /**
+     * Sets the message body content to the bytes produced by the given
+     * writer when the request is sent. The body is sent with chunked
+     * transfer encoding.
+     * <p>
+     * The writer is called once, so a request with writer content is not
+     * retried.
+     *
+     * @param value The message content.
+     */
+    public void setContent(ContentWriter value) {
+        setContentObject(value, -1);
+    }
+
+    private void setContentObject(Object value, long length) {
         this.content = value;
+        this.contentLength = length;
+        this.encoded = null;
+        this.encodedContent = null;
+    }
+
+    /**
+     * Returns the length of the body content in bytes.
+     *
+     * @return The content length, or -1 if it is not known in advance.
+     */
+    long getContentLength() {
+        if (content instanceof String || content instanceof OutputStream)
+            return contentBytes().length;
+        return contentLength;
+    }
+
+    /**
+     * Indicates whether the body content can be sent more than once.
+     *
+     * @return {@code true} if the request can be retried.
+     */
+    boolean isContentRepeatable() {
+        return !(content instanceof InputStream)
+                && !(content instanceof ContentWriter);
+    }
+
+    /**
+     * Writes the body content to the given stream.
+     *
+     * @param stream The stream to write to.
+     * @throws IOException On IO exception.
+     */
+    void writeContent(OutputStream stream) throws IOException {
+        if (content == null)
+            return;
+        if (content instanceof String || content instanceof OutputStream) {
+            stream.write(contentBytes());
+        } else if (content instanceof byte[]) {
+            stream.write((byte[]) content);
+        } else if (content instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) content).duplicate();
+            if (buffer.hasArray()) {
+                stream.write(buffer.array(),
+                        buffer.arrayOffset() + buffer.position(),
+                        buffer.remaining());
+            } else {
+                byte[] bytes = new byte[Math.min(buffer.remaining(), COPY_BUFFER_SIZE)];
+                while (buffer.hasRemaining()) {
+                    int n = Math.min(buffer.remaining(), bytes.length);
+                    buffer.get(bytes, 0, n);
+                    stream.write(bytes, 0, n);
+                }
+            }
+        } else if (content instanceof InputStream) {
+            InputStream input = (InputStream) content;
+            try {
+                copy(input, stream, contentLength);
+            } finally {
+                input.close();
+            }
+        } else if (content instanceof ContentWriter) {
+            ((ContentWriter) content).write(stream);
+        }
+    }
+
+    // Copies the stream to its end, or exactly length bytes if length is
+    // not negative.
+    private static void copy(InputStream input, OutputStream output,
+                             long length) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long remaining = length;
+        while (length < 0 || remaining > 0) {
+            int count = buffer.length;
+            if (length >= 0 && remaining < count)
+                count = (int) remaining;
+            int n = input.read(buffer, 0, count);
+            if (n == -1) {
+                if (length >= 0)
+                    throw new IOException(String.format(
+                            "Request content ended %d bytes short of its length",
+                            remaining));
+                break;
+            }
+            output.write(buffer, 0, n);
+            remaining -= n;
+        }
+    }
+
+    private byte[] contentBytes() {
+        if (encoded == null || encodedContent != content) {
+            if (content instanceof ByteArrayOutputStream) {
+                encoded = ((ByteArrayOutputStream) content).toByteArray();
+            } else if (content instanceof OutputStream) {
+                throw new IllegalArgumentException(
+                        "Only a ByteArrayOutputStream can be used as content.");
+            } else {
+                try {
+                    encoded = ((String) content).getBytes("UTF-8");
+                } catch (UnsupportedEncodingException e) {
+                    throw new RuntimeException(e.getMessage(), e);
+                }
+            }
+            encodedContent = content;
+        }
+        return encoded;
     }
 }
 
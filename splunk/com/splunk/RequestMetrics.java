@@ -0,0 +1,215 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The {@code RequestMetrics} class is a {@link RequestListener} that keeps a
+ * {@link LatencyHistogram} of the total time of the requests made to each
+ * endpoint.
+ * <p>
+ * Endpoints are identified by the request method and a path template, in
+ * which entity names and search IDs are replaced by placeholders and the
+ * owner and app namespace is elided, for example
+ * {@code GET /services/search/jobs/{sid}/results}. Templates are provided for
+ * the collections the SDK knows about; {@link #addPathTemplate} adds more.
+ * <p>
+ * Usage:
+ * <pre>
+ *     RequestMetrics metrics = new RequestMetrics();
+ *     service.addRequestListener(metrics);
+ *     ...
+ *     for (Map.Entry&lt;String, LatencyHistogram&gt; entry :
+ *             metrics.getHistograms().entrySet())
+ *         System.out.println(entry.getKey() + ": " + entry.getValue());
+ * </pre>
+ */
+public class RequestMetrics implements RequestListener {
+    private static final String[] DEFAULT_TEMPLATES = {
+        "alerts/fired_alerts/{name}",
+        "apps/local/{name}",
+        "authentication/users/{name}",
+        "authorization/roles/{name}",
+        "configs/{file}/{stanza}",
+        "data/indexes/{name}",
+        "data/inputs/{kind}/{name}",
+        "data/inputs/tcp/cooked/{name}",
+        "data/inputs/tcp/raw/{name}",
+        "data/inputs/win-event-log-collections/{name}",
+        "data/inputs/win-perfmon/{name}",
+        "data/inputs/win-wmi-collections/{name}",
+        "data/modular-inputs/{name}",
+        "data/outputs/tcp/group/{name}",
+        "data/outputs/tcp/server/{name}",
+        "data/outputs/tcp/syslog/{name}",
+        "deployment/client/{name}",
+        "deployment/server/{name}",
+        "deployment/serverclass/{name}",
+        "deployment/tenants/{name}",
+        "licenser/groups/{name}",
+        "licenser/licenses/{name}",
+        "licenser/messages/{name}",
+        "licenser/pools/{name}",
+        "licenser/slaves/{name}",
+        "licenser/stacks/{name}",
+        "messages/{name}",
+        "properties/{file}/{stanza}",
+        "saved/eventtypes/{name}",
+        "saved/searches/{name}",
+        "scheduled/views/{name}",
+        "search/distributed/peers/{name}",
+        "search/jobs/export",
+        "search/jobs/{sid}",
+        "server/logger/{name}",
+        "storage/passwords/{name}",
+    };
+
+    private final CopyOnWriteArrayList<String[]> templates =
+            new CopyOnWriteArrayList<String[]>();
+    private final ConcurrentMap<String, LatencyHistogram> histograms =
+            new ConcurrentHashMap<String, LatencyHistogram>();
+
+    /**
+     * Creates a new {@code RequestMetrics} instance with the default path
+     * templates.
+     */
+    public RequestMetrics() {
+        for (String template : DEFAULT_TEMPLATES)
+            addPathTemplate(template);
+    }
+
+    /**
+     * Adds a path template, relative to {@code /services/} (or to
+     * {@code /servicesNS/{owner}/{app}/}). Segments in braces match any
+     * segment. A path is reported under the template that matches the most
+     * of its leading segments, preferring templates with more literal
+     * segments; segments past the end of the template are kept.
+     *
+     * @param template The path template, such as
+     *                 {@code "saved/searches/{name}"}.
+     */
+    public void addPathTemplate(String template) {
+        templates.add(template.split("/"));
+    }
+
+    /**
+     * Returns the histogram of an endpoint.
+     *
+     * @param endpoint The endpoint, such as
+     *                 {@code "GET /services/search/jobs/{sid}"}.
+     * @return The histogram, or {@code null} if no request was made to the
+     *         endpoint.
+     */
+    public LatencyHistogram getHistogram(String endpoint) {
+        return histograms.get(endpoint);
+    }
+
+    /**
+     * Returns the histograms of all the endpoints called so far, sorted by
+     * endpoint.
+     *
+     * @return A map from endpoint to histogram.
+     */
+    public Map<String, LatencyHistogram> getHistograms() {
+        return new TreeMap<String, LatencyHistogram>(histograms);
+    }
+
+    /**
+     * Clears all histograms.
+     */
+    public void reset() {
+        histograms.clear();
+    }
+
+    public void requestStarted(RequestEvent event) {
+    }
+
+    public void requestCompleted(RequestEvent event) {
+        String endpoint = event.getMethod() + " " + getPathTemplate(event.getPath());
+        LatencyHistogram histogram = histograms.get(endpoint);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            LatencyHistogram existing = histograms.putIfAbsent(endpoint, histogram);
+            if (existing != null)
+                histogram = existing;
+        }
+        histogram.record(event.getTotalNanos() / 1000);
+    }
+
+    /**
+     * Returns the template of a request path.
+     *
+     * @param path The request path.
+     * @return The path template.
+     */
+    public String getPathTemplate(String path) {
+        String[] segments = path.split("/", -1);
+        // segments[0] is the empty string before the leading slash.
+        int root;
+        StringBuilder template = new StringBuilder();
+        if (segments.length > 3 && segments[1].equals("servicesNS")) {
+            template.append("/servicesNS/{owner}/{app}");
+            root = 4;
+        } else if (segments.length > 1 && segments[1].equals("services")) {
+            template.append("/services");
+            root = 2;
+        } else {
+            return path;
+        }
+
+        String[] best = null;
+        int bestLiterals = -1;
+        for (String[] candidate : templates) {
+            if (root + candidate.length > segments.length)
+                continue;
+            int literals = 0;
+            boolean matches = true;
+            for (int i = 0; i < candidate.length && matches; i++) {
+                if (isPlaceholder(candidate[i]))
+                    continue;
+                matches = candidate[i].equals(segments[root + i]);
+                literals++;
+            }
+            if (!matches)
+                continue;
+            if (best == null || candidate.length > best.length
+                    || (candidate.length == best.length && literals > bestLiterals)) {
+                best = candidate;
+                bestLiterals = literals;
+            }
+        }
+
+        for (int i = root; i < segments.length; i++) {
+            int index = i - root;
+            template.append('/');
+            if (best != null && index < best.length)
+                template.append(best[index]);
+            else
+                template.append(segments[i]);
+        }
+        return template.toString();
+    }
+
+    private static boolean isPlaceholder(String segment) {
+        return segment.startsWith("{") && segment.endsWith("}");
+    }
+}
@@ -18,6 +18,8 @@ package com.splunk;
 
 
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  * The {@code Resource} abstract base class represents a Splunk resource.
@@ -164,6 +166,23 @@ public abstract class Resource {
      */
     public abstract Resource refresh();
 
+    /**
+     * Refreshes the local state of this resource asynchronously, on the
+     * executor of the {@code Service} instance. This lets a caller refresh
+     * many resources at once; the resource must not be read until the
+     * returned {@code Future} completes.
+     *
+     * @return A {@code Future} for the current {@code Resource} instance.
+     * @see HttpService#setExecutor
+     */
+    public Future<? extends Resource> refreshAsync() {
+        return service.submit(new Callable<Resource>() {
+            public Resource call() {
+                return refresh();
+            }
+        });
+    }
+
     /**
      * Ensures that the local state of the resource is current,
      * calling {@code refresh} if necessary.
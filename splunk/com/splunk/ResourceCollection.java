@@ -19,6 +19,12 @@ package com.splunk;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The {@code ResourceCollection} abstract base class represents a collection of
@@ -32,6 +38,12 @@ public class ResourceCollection<T extends Resource>
     protected LinkedHashMap<String, LinkedList<T>>
             items = new LinkedHashMap<String, LinkedList<T>>();
     protected Class itemClass;
+    // Number of members to list per request, or 0 to list them all in one
+    // request.
+    private int pageSize = 0;
+    private int pageConcurrency = 1;
+
+    private static final AtomicInteger collectionNumber = new AtomicInteger(1);
 
     /**
      * Class constructor.
@@ -254,11 +266,11 @@ public class ResourceCollection<T extends Resource>
         Args namespace = new Args();
 
         // no content? return an empty namespace.
-        if (entry.content == null)
+        if (!entry.hasContent())
             return namespace;
 
         HashMap<String, String> entityMetadata =
-                (HashMap<String, String>)entry.content.get("eai:acl");
+                (HashMap<String, String>)entry.getContentValue("eai:acl");
         if (entityMetadata.containsKey("owner"))
             namespace.put("owner", entityMetadata.get("owner"));
         if (entityMetadata.containsKey("app"))
@@ -279,7 +291,22 @@ public class ResourceCollection<T extends Resource>
      * @return The list response message.
      */
     public ResponseMessage list() {
-        return service.get(path, this.refreshArgs);
+        return list(this.refreshArgs);
+    }
+
+    /**
+     * Issues an HTTP request to list the contents of the collection resource
+     * with the given arguments. When the collection is listed in pages, each
+     * page is requested through this method, with its own offset and count;
+     * subclasses that change how the collection is listed should override
+     * this method rather than {@link #list()}.
+     *
+     * @param args Collection arguments that specify the members to list
+     * (see {@link CollectionArgs}).
+     * @return The list response message.
+     */
+    public ResponseMessage list(Args args) {
+        return service.get(path, args);
     }
 
     /**
@@ -291,20 +318,43 @@ public class ResourceCollection<T extends Resource>
     ResourceCollection<T> load(AtomFeed value) {
         super.load(value);
         for (AtomEntry entry : value.entries) {
-            String key = itemKey(entry);
-            T item = createItem(entry);
-            if (items.containsKey(key)) {
-                LinkedList<T> list = items.get(key);
-                list.add(item);
-            } else {
-                LinkedList<T> list = new LinkedList<T>();
-                list.add(item);
-                items.put(key, list);
+            loadItem(entry);
+        }
+        return this;
+    }
+
+    /**
+     * Loads the collection resource from the entries of an Atom feed, read
+     * one at a time, so that the whole feed is never held in memory.
+     *
+     * @param entries The iterator over the entries of the feed.
+     * @return The current {@code ResourceCollection} instance.
+     */
+    ResourceCollection<T> load(AtomFeedIterator entries) {
+        try {
+            while (entries.hasNext()) {
+                loadItem(entries.next());
             }
+        } finally {
+            entries.close();
         }
+        super.load(entries.getFeed());
         return this;
     }
 
+    private void loadItem(AtomEntry entry) {
+        String key = itemKey(entry);
+        T item = createItem(entry);
+        if (items.containsKey(key)) {
+            LinkedList<T> list = items.get(key);
+            list.add(item);
+        } else {
+            LinkedList<T> list = new LinkedList<T>();
+            list.add(item);
+            items.put(key, list);
+        }
+    }
+
     /** {@inheritDoc} */
     public T put(String key, T value) {
         throw new UnsupportedOperationException();
@@ -319,22 +369,213 @@ public class ResourceCollection<T extends Resource>
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Lists the members of the collection and passes them to a handler one
+     * at a time, as their Atom entries are read, without keeping them or the
+     * feed in memory. The members that are entities are loaded from their
+     * entries, so that reading their properties does not request them
+     * again.
+     * <p>
+     * The contents of this collection, as returned by its {@code Map}
+     * methods, are not changed.
+     *
+     * @param handler The handler of the members.
+     * @return The number of members that were handled.
+     */
+    public int stream(ResourceHandler<? super T> handler) {
+        ResponseMessage response = list();
+        int count = 0;
+        try {
+            AtomFeedIterator entries =
+                    AtomFeed.iterateStream(response.getContent(), true);
+            try {
+                while (entries.hasNext()) {
+                    AtomEntry entry = entries.next();
+                    T item = createItem(entry);
+                    if (item instanceof Entity)
+                        ((Entity) item).load(entry);
+                    handler.handle(item);
+                    count++;
+                }
+            } finally {
+                entries.close();
+            }
+        } finally {
+            response.closeQuietly();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of members listed per request by {@link #refresh}.
+     *
+     * @return The page size, or 0 if the members are listed in one request.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Sets the number of members listed per request by {@link #refresh}. By
+     * default, the collection is listed in one request, whose response is
+     * parsed as it is read.
+     * <p>
+     * With a page size, the first page is requested alone, and tells how
+     * many members the collection has. The other pages are then requested
+     * and parsed concurrently, up to the page concurrency, and their members
+     * are added in order. If members are created or removed while the pages
+     * are read, some may be missed or listed twice.
+     * <p>
+     * The pages are requested through {@link #list(Args)}, so an override of
+     * {@link #list()} alone is not used in paged mode.
+     *
+     * @param pageSize The number of members per request, or 0 to list them
+     *                 in one request.
+     */
+    public void setPageSize(int pageSize) {
+        if (pageSize < 0)
+            throw new IllegalArgumentException(
+                "The page size must not be negative.");
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Returns the number of pages requested at a time by {@link #refresh}.
+     *
+     * @return The page concurrency.
+     */
+    public int getPageConcurrency() {
+        return pageConcurrency;
+    }
+
+    /**
+     * Sets the number of pages requested at a time by {@link #refresh}, when
+     * the collection is listed in pages. The default is 1.
+     *
+     * @param pageConcurrency The number of concurrent requests.
+     * @see #setPageSize
+     */
+    public void setPageConcurrency(int pageConcurrency) {
+        if (pageConcurrency < 1)
+            throw new IllegalArgumentException(
+                "The page concurrency must be positive.");
+        this.pageConcurrency = pageConcurrency;
+    }
+
     /** {@inheritDoc} */
     @Override public ResourceCollection refresh() {
+        if (pageSize > 0)
+            return refreshInPages();
+
         items.clear();
         ResponseMessage response = list();
         assert(response.getStatus() == 200);
 
-        AtomFeed feed = null;
         try {
-            feed = AtomFeed.parseStream(response.getContent());
+            load(AtomFeed.iterateStream(response.getContent(), true));
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            response.closeQuietly();
         }
-        load(feed);
         return this;
     }
 
+    // Lists the collection a page at a time, within the offset and count
+    // of the refresh arguments.
+    private ResourceCollection refreshInPages() {
+        int offset = intArg("offset", 0);
+        int count = intArg("count", 0);
+        int end = count > 0 ? offset + count : Integer.MAX_VALUE;
+
+        AtomFeed first = listPage(offset, Math.min(pageSize, end - offset));
+        List<AtomFeed> pages = new ArrayList<AtomFeed>();
+        if (first.totalResults != null) {
+            int last = Math.min(end, Integer.parseInt(first.totalResults.trim()));
+            pages = listPages(offset + pageSize, last);
+        } else {
+            // Without a total, pages are read until one is short.
+            AtomFeed page = first;
+            for (int next = offset + pageSize;
+                 page.entries.size() >= pageSize && next < end;
+                 next += pageSize) {
+                page = listPage(next, Math.min(pageSize, end - next));
+                pages.add(page);
+            }
+        }
+
+        items.clear();
+        load(first);
+        for (AtomFeed page : pages) {
+            for (AtomEntry entry : page.entries) {
+                loadItem(entry);
+            }
+        }
+        return this;
+    }
+
+    // Lists the pages from an offset up to an end, concurrently.
+    private List<AtomFeed> listPages(int offset, int end) {
+        List<AtomFeed> pages = new ArrayList<AtomFeed>();
+        if (offset >= end)
+            return pages;
+
+        int pageCount = (end - offset + pageSize - 1) / pageSize;
+        ExecutorService workers = Executors.newFixedThreadPool(
+                Math.min(pageConcurrency, pageCount),
+                new DaemonThreadFactory(
+                        "splunk-collection-"
+                                + collectionNumber.getAndIncrement()
+                                + "-page-"));
+        try {
+            List<Future<AtomFeed>> futures = new ArrayList<Future<AtomFeed>>();
+            for (int next = offset; next < end; next += pageSize) {
+                final int pageOffset = next;
+                final int pageLength = Math.min(pageSize, end - next);
+                futures.add(workers.submit(new Callable<AtomFeed>() {
+                    public AtomFeed call() {
+                        return listPage(pageOffset, pageLength);
+                    }
+                }));
+            }
+            for (Future<AtomFeed> future : futures) {
+                pages.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new RuntimeException(cause);
+        } finally {
+            workers.shutdownNow();
+        }
+        return pages;
+    }
+
+    // Requests and parses a page of the collection.
+    private AtomFeed listPage(int offset, int count) {
+        Args args = new Args(this.refreshArgs);
+        args.put("offset", offset);
+        args.put("count", count);
+        ResponseMessage response = list(args);
+        try {
+            return AtomFeed.parseStream(response.getContent(), true);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            response.closeQuietly();
+        }
+    }
+
+    private int intArg(String name, int defaultValue) {
+        Object value = refreshArgs.get(name);
+        return value == null
+                ? defaultValue : Integer.parseInt(value.toString().trim());
+    }
+
     /** {@inheritDoc} */
     public T remove(Object key) {
         throw new UnsupportedOperationException();
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.splunk;
+
+/**
+ * The {@code ResourceHandler} interface receives the members of a
+ * collection one at a time, as they are read by the
+ * {@link ResourceCollection#stream} method.
+ *
+ * @param <T> The type of members of the collection.
+ */
+public interface ResourceHandler<T extends Resource> {
+    /**
+     * Handles a member of the collection. The collection does not keep the
+     * member once this method returns.
+     *
+     * @param resource The member.
+     */
+    public void handle(T resource);
+}
@@ -16,6 +16,8 @@
 
 package com.splunk;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Map;
 import java.util.TreeMap;
@@ -24,7 +26,7 @@ import java.util.TreeMap;
  * The {@code ResponseMessage} class represents an HTTP response message that 
  * includes status codes, response headers, and body content.
  */
-public class ResponseMessage {
+public class ResponseMessage implements Closeable {
     int status;
     Map<String, String> header = null;
     InputStream content;
@@ -48,6 +50,30 @@ public class ResponseMessage {
         this.content = content;
     }
 
+    // Counters of the body bytes as received and as returned by getContent.
+    private CountingInputStream wireCounter = null;
+    private CountingInputStream contentCounter = null;
+
+    /**
+     * Sets the body content stream as received, decoding it according to
+     * the {@code Content-Encoding} header and counting its bytes.
+     *
+     * @param input The body content stream as received.
+     */
+    void setContent(InputStream input) {
+        if (input == null) {
+            this.content = null;
+            return;
+        }
+        this.wireCounter = new CountingInputStream(input);
+        InputStream decoded = DecompressingInputStream.decode(
+                wireCounter, getHeader().get("Content-Encoding"));
+        this.contentCounter = decoded == wireCounter
+                ? wireCounter
+                : new CountingInputStream(decoded);
+        this.content = contentCounter;
+    }
+
     /**
      * Returns the body content stream.
      *
@@ -77,4 +103,47 @@ public class ResponseMessage {
     public int getStatus() {
         return this.status;
     }
+
+    /**
+     * Returns the number of body bytes received over the network so far. For
+     * a compressed response, this is the compressed size.
+     *
+     * @return The number of body bytes received.
+     */
+    public long getWireByteCount() {
+        return wireCounter == null ? 0 : wireCounter.getCount();
+    }
+
+    /**
+     * Returns the number of body bytes read from the content stream so far,
+     * after any decompression.
+     *
+     * @return The number of content bytes read.
+     */
+    public long getContentByteCount() {
+        return contentCounter == null ? 0 : contentCounter.getCount();
+    }
+
+    /**
+     * Closes the body content stream. Any unread content is drained so that
+     * the underlying connection can be reused for later requests.
+     *
+     * @throws IOException On IO exception.
+     */
+    public void close() throws IOException {
+        if (this.content != null)
+            this.content.close();
+    }
+
+    /**
+     * Closes the body content stream, ignoring any IO error. Used for
+     * responses whose content is of no interest.
+     */
+    void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            // noop
+        }
+    }
 }
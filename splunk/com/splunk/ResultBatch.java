@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.splunk;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@code ResultBatch} class represents a run of consecutive results in
+ * columnar form, as returned by the {@link ResultsReader#nextBatch} method.
+ * <p>
+ * The batch has one {@link ResultColumn} per field, holding the values of
+ * that field for every row of the batch, so that the results can be
+ * processed one field at a time instead of one map per result.
+ */
+public final class ResultBatch {
+    private final int rowCount;
+    private final List<String> fields;
+    private final ResultColumn[] columns;
+    private final Map<String, Integer> indexes =
+            new HashMap<String, Integer>();
+
+    private ResultBatch(int rowCount, List<String> fields,
+                        ResultColumn[] columns) {
+        this.rowCount = rowCount;
+        this.fields = Collections.unmodifiableList(fields);
+        this.columns = columns;
+        for (int i = 0; i < columns.length; i++)
+            indexes.put(fields.get(i), i);
+    }
+
+    /**
+     * Creates a batch from rows.
+     *
+     * @param fields The fields of the result set, which come first and in
+     *               this order. Other fields of the rows follow them.
+     * @param rows The rows.
+     * @return The batch.
+     */
+    static ResultBatch create(Collection<String> fields, List<ResultRow> rows) {
+        Set<String> names = new LinkedHashSet<String>(fields);
+        FieldSchema last = null;
+        for (ResultRow row : rows) {
+            // The rows of a set share their schema.
+            if (row.getSchema() != last) {
+                last = row.getSchema();
+                names.addAll(last.getNames());
+            }
+        }
+
+        int rowCount = rows.size();
+        List<String> batchFields = new ArrayList<String>(names);
+        ResultColumn[] columns = new ResultColumn[batchFields.size()];
+        Object[] cells = new Object[rowCount];
+        for (int i = 0; i < columns.length; i++) {
+            String field = batchFields.get(i);
+            last = null;
+            int index = -1;
+            for (int row = 0; row < rowCount; row++) {
+                ResultRow resultRow = rows.get(row);
+                if (resultRow.getSchema() != last) {
+                    last = resultRow.getSchema();
+                    index = last.indexOf(field);
+                }
+                cells[row] = resultRow.getValue(index);
+            }
+            columns[i] = ResultColumn.create(field, cells, rowCount);
+        }
+        return new ResultBatch(rowCount, batchFields, columns);
+    }
+
+    /**
+     * Returns the number of rows in this batch.
+     *
+     * @return The number of rows.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the fields of this batch, in the order of its columns.
+     *
+     * @return The field names.
+     */
+    public List<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns the column of a field.
+     *
+     * @param index The index of the field in {@link #getFields}.
+     * @return The column.
+     */
+    public ResultColumn getColumn(int index) {
+        return columns[index];
+    }
+
+    /**
+     * Returns the column of a field, or {@code null} if the batch has no
+     * such field.
+     *
+     * @param field The field name.
+     * @return The column.
+     */
+    public ResultColumn getColumn(String field) {
+        Integer index = indexes.get(field);
+        return index == null ? null : columns[index];
+    }
+}
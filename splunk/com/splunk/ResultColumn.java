@@ -0,0 +1,410 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.splunk;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The {@code ResultColumn} class represents the values of one field across
+ * the rows of a {@link ResultBatch}.
+ * <p>
+ * The values of a column are held in a single typed array: a
+ * {@link LongColumn} when every value of the batch is an integer, a
+ * {@link DoubleColumn} when every value is a number, and a
+ * {@link StringColumn} otherwise. Rows without a value for the field are
+ * marked in a null bitmap.
+ */
+public abstract class ResultColumn {
+    /** The types of the values of a column. */
+    public enum Type { LONG, DOUBLE, STRING };
+
+    private final String name;
+    private final int size;
+    // Bit i is set if row i has no value.
+    private final long[] nulls;
+    private final int nullCount;
+
+    ResultColumn(String name, int size, long[] nulls, int nullCount) {
+        this.name = name;
+        this.size = size;
+        this.nulls = nulls;
+        this.nullCount = nullCount;
+    }
+
+    /**
+     * Returns the name of the field of this column.
+     *
+     * @return The field name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of rows in this column.
+     *
+     * @return The number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the type of the values of this column.
+     *
+     * @return The type.
+     */
+    public abstract Type getType();
+
+    /**
+     * Indicates whether a row has no value for the field.
+     *
+     * @param row The row index.
+     * @return {@code true} if the value is missing, {@code false} if not.
+     */
+    public boolean isNull(int row) {
+        checkRow(row);
+        return (nulls[row >> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Returns the number of rows without a value for the field. When it is
+     * 0, the typed values can be used without checking {@link #isNull}.
+     *
+     * @return The number of missing values.
+     */
+    public int getNullCount() {
+        return nullCount;
+    }
+
+    /**
+     * Returns the value of a row as text, with multiple values joined by
+     * commas as {@link ResultRow#get} does, or {@code null} if the row has no
+     * value.
+     *
+     * @param row The row index.
+     * @return The value.
+     */
+    public abstract String getString(int row);
+
+    void checkRow(int row) {
+        if (row < 0 || row >= size)
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+    }
+
+    /**
+     * Creates a column from the values of a field, each a {@code String}, a
+     * {@code String[]}, or {@code null}, choosing the narrowest type that
+     * holds them all.
+     *
+     * @param name The field name.
+     * @param cells The values, one per row.
+     * @param size The number of rows.
+     * @return The column.
+     */
+    static ResultColumn create(String name, Object[] cells, int size) {
+        long[] nulls = new long[(size + 63) >> 6];
+        int nullCount = 0;
+        boolean isText = false;
+        for (int i = 0; i < size; i++) {
+            if (cells[i] == null) {
+                nulls[i >> 6] |= 1L << i;
+                nullCount++;
+            } else if (cells[i] instanceof String[]) {
+                isText = true;
+            }
+        }
+
+        if (!isText) {
+            long[] longs = new long[size];
+            if (parseLongs(cells, size, longs))
+                return new LongColumn(name, size, nulls, nullCount, longs);
+            double[] doubles = new double[size];
+            if (parseDoubles(cells, size, doubles))
+                return new DoubleColumn(name, size, nulls, nullCount, doubles);
+        }
+        return new StringColumn(name, size, nulls, nullCount, cells);
+    }
+
+    private static boolean parseLongs(Object[] cells, int size, long[] longs) {
+        for (int i = 0; i < size; i++) {
+            String cell = (String) cells[i];
+            if (cell == null)
+                continue;
+            if (!isInteger(cell))
+                return false;
+            try {
+                longs[i] = Long.parseLong(cell);
+            } catch (NumberFormatException e) {
+                // Out of the range of a long.
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean parseDoubles(Object[] cells, int size,
+                                        double[] doubles) {
+        for (int i = 0; i < size; i++) {
+            String cell = (String) cells[i];
+            if (cell == null)
+                continue;
+            if (!isDecimal(cell))
+                return false;
+            doubles[i] = Double.parseDouble(cell);
+        }
+        return true;
+    }
+
+    // Whether the text is an integer that reads back as the same text, so
+    // that values such as "007" stay text.
+    private static boolean isInteger(String text) {
+        int start = text.startsWith("-") ? 1 : 0;
+        int length = text.length() - start;
+        if (length == 0 || length > 19)
+            return false;
+        if (text.charAt(start) == '0' && (length > 1 || start > 0))
+            return false;
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9')
+                return false;
+        }
+        return true;
+    }
+
+    // Whether the text is a plain decimal number, with an optional
+    // exponent and no leading zeros. Unlike Double.parseDouble, it rejects
+    // spaces, "NaN", "Infinity", hexadecimal forms, and type suffixes.
+    private static boolean isDecimal(String text) {
+        int i = 0;
+        int length = text.length();
+        if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+'))
+            i++;
+        int digits = 0;
+        while (i < length && Character.isDigit(text.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (digits > 1 && text.charAt(i - digits) == '0')
+            return false;
+        if (i < length && text.charAt(i) == '.') {
+            i++;
+            while (i < length && Character.isDigit(text.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0)
+            return false;
+        if (i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+'))
+                i++;
+            int exponentDigits = 0;
+            while (i < length && Character.isDigit(text.charAt(i))) {
+                i++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0)
+                return false;
+        }
+        return i == length;
+    }
+
+    /**
+     * The {@code LongColumn} class represents a column of integer values.
+     */
+    public static final class LongColumn extends ResultColumn {
+        private final long[] values;
+
+        LongColumn(String name, int size, long[] nulls, int nullCount,
+                   long[] values) {
+            super(name, size, nulls, nullCount);
+            this.values = values;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Type getType() {
+            return Type.LONG;
+        }
+
+        /**
+         * Returns the values of this column, one per row. Rows without a
+         * value hold 0.
+         *
+         * @return The values. The array is not copied.
+         */
+        public long[] getValues() {
+            return values;
+        }
+
+        /**
+         * Returns the value of a row.
+         *
+         * @param row The row index.
+         * @return The value, or 0 if the row has no value.
+         */
+        public long getLong(int row) {
+            checkRow(row);
+            return values[row];
+        }
+
+        /** {@inheritDoc} */
+        @Override public String getString(int row) {
+            return isNull(row) ? null : Long.toString(values[row]);
+        }
+    }
+
+    /**
+     * The {@code DoubleColumn} class represents a column of numeric values.
+     */
+    public static final class DoubleColumn extends ResultColumn {
+        private final double[] values;
+
+        DoubleColumn(String name, int size, long[] nulls, int nullCount,
+                     double[] values) {
+            super(name, size, nulls, nullCount);
+            this.values = values;
+        }
+
+        /** {@inheritDoc} */
+        @Override public Type getType() {
+            return Type.DOUBLE;
+        }
+
+        /**
+         * Returns the values of this column, one per row. Rows without a
+         * value hold 0.
+         *
+         * @return The values. The array is not copied.
+         */
+        public double[] getValues() {
+            return values;
+        }
+
+        /**
+         * Returns the value of a row.
+         *
+         * @param row The row index.
+         * @return The value, or 0 if the row has no value.
+         */
+        public double getDouble(int row) {
+            checkRow(row);
+            return values[row];
+        }
+
+        /** {@inheritDoc} */
+        @Override public String getString(int row) {
+            return isNull(row) ? null : Double.toString(values[row]);
+        }
+    }
+
+    /**
+     * The {@code StringColumn} class represents a column of text values,
+     * encoded as indexes into a dictionary of the distinct values of the
+     * batch.
+     */
+    public static final class StringColumn extends ResultColumn {
+        private final int[] codes;
+        private final String[] dictionary;
+        // The values of the rows with multiple values, or null if no row
+        // has any.
+        private String[][] arrays;
+
+        StringColumn(String name, int size, long[] nulls, int nullCount,
+                     Object[] cells) {
+            super(name, size, nulls, nullCount);
+            codes = new int[size];
+            Map<String, Integer> indexes = new HashMap<String, Integer>();
+            for (int i = 0; i < size; i++) {
+                Object cell = cells[i];
+                if (cell == null) {
+                    codes[i] = -1;
+                    continue;
+                }
+                String text;
+                if (cell instanceof String[]) {
+                    if (arrays == null)
+                        arrays = new String[size][];
+                    arrays[i] = (String[]) cell;
+                    text = Util.join(",", arrays[i]);
+                } else {
+                    text = (String) cell;
+                }
+                Integer code = indexes.get(text);
+                if (code == null) {
+                    code = indexes.size();
+                    indexes.put(text, code);
+                }
+                codes[i] = code;
+            }
+            dictionary = new String[indexes.size()];
+            for (Map.Entry<String, Integer> entry : indexes.entrySet())
+                dictionary[entry.getValue()] = entry.getKey();
+        }
+
+        /** {@inheritDoc} */
+        @Override public Type getType() {
+            return Type.STRING;
+        }
+
+        /**
+         * Returns the dictionary codes of this column, one per row. Rows
+         * without a value hold -1.
+         *
+         * @return The indexes into {@link #getDictionary}. The array is not
+         *         copied.
+         */
+        public int[] getCodes() {
+            return codes;
+        }
+
+        /**
+         * Returns the distinct values of this column, in order of first
+         * appearance.
+         *
+         * @return The values. The array is not copied.
+         */
+        public String[] getDictionary() {
+            return dictionary;
+        }
+
+        /** {@inheritDoc} */
+        @Override public String getString(int row) {
+            checkRow(row);
+            return codes[row] < 0 ? null : dictionary[codes[row]];
+        }
+
+        /**
+         * Returns the values of a row, or {@code null} if the row has no
+         * value.
+         *
+         * @param row The row index.
+         * @return The values.
+         * @see ResultRow#getArray
+         */
+        public String[] getArray(int row) {
+            checkRow(row);
+            if (arrays != null && arrays[row] != null)
+                return arrays[row];
+            return codes[row] < 0 ? null : new String[] { dictionary[codes[row]] };
+        }
+    }
+}
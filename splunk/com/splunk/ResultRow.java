@@ -0,0 +1,379 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * The {@code ResultRow} class is a compact form of a single event or result,
+ * as returned by the {@link ResultsReader#getNextRow} method.
+ * <p>
+ * The rows of a result set share the mapping of field names to positions,
+ * and each row keeps its values in an array. Unlike an {@link Event}, a row
+ * does not join multi-valued fields into delimited strings until asked to,
+ * and it offers typed accessors for numeric and time fields.
+ */
+public final class ResultRow {
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private final FieldSchema schema;
+    // Per field index: a String, a String[] for multiple values, or null.
+    private Object[] values;
+    private SegmentedRaw segmentedRaw;
+    // Whether a single value may hold several values joined by a delimiter
+    // that only the caller knows, as in the JSON format.
+    private final boolean delimited;
+
+    ResultRow(FieldSchema schema) {
+        this(schema, false);
+    }
+
+    ResultRow(FieldSchema schema, boolean delimited) {
+        this.schema = schema;
+        this.values = new Object[schema.size()];
+        this.delimited = delimited;
+    }
+
+    /**
+     * Sets the single value or delimited set of values of a field.
+     *
+     * @param field The field name.
+     * @param value The value.
+     */
+    void put(String field, String value) {
+        set(field, value);
+    }
+
+    /**
+     * Sets the values of a field.
+     *
+     * @param field The field name.
+     * @param values The values.
+     */
+    void putArray(String field, String[] values) {
+        // A single value of a delimited row is split by Event.getArray, so
+        // an array keeps its single value as is.
+        set(field, values.length == 1 && !delimited ? values[0] : values);
+    }
+
+    void putSegmentedRaw(SegmentedRaw value) {
+        segmentedRaw = value;
+    }
+
+    private void set(String field, Object value) {
+        int index = schema.indexOf(field);
+        if (index < 0)
+            index = schema.add(field);
+        if (index >= values.length)
+            values = Arrays.copyOf(values, schema.size());
+        values[index] = value;
+    }
+
+    // Returns the number of fields this row has room for.
+    int capacity() {
+        return values.length;
+    }
+
+    private Object value(String field) {
+        int index = schema.indexOf(field);
+        return index < 0 || index >= values.length ? null : values[index];
+    }
+
+    FieldSchema getSchema() {
+        return schema;
+    }
+
+    // Returns the String or String[] value at a schema index, or null.
+    Object getValue(int index) {
+        return index < 0 || index >= values.length ? null : values[index];
+    }
+
+    /**
+     * Returns the names of the fields that have a value in this row, in the
+     * order of the result set.
+     *
+     * @return The field names.
+     */
+    public List<String> getFields() {
+        List<String> fields = new ArrayList<String>(values.length);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null)
+                fields.add(schema.getName(i));
+        }
+        return fields;
+    }
+
+    /**
+     * Indicates whether this row has a value for the specified field.
+     *
+     * @param field The field name.
+     * @return {@code true} if the field is present, {@code false} if not.
+     */
+    public boolean containsKey(String field) {
+        return value(field) != null;
+    }
+
+    /**
+     * Returns the value of the specified field, with multiple values joined
+     * by commas as {@link Event#get} does, or {@code null} if the field is
+     * not present.
+     *
+     * @param field The field name.
+     * @return The value.
+     */
+    public String get(String field) {
+        Object value = value(field);
+        if (value instanceof String[])
+            return Util.join(",", (String[]) value);
+        return (String) value;
+    }
+
+    /**
+     * Returns the values of the specified field, or {@code null} if the
+     * field is not present.
+     *
+     * @param field The field name.
+     * @return The values.
+     * @see Event#getArray(String)
+     */
+    public String[] getArray(String field) {
+        Object value = value(field);
+        if (value == null)
+            return null;
+        if (value instanceof String[])
+            return (String[]) value;
+        return new String[] { (String) value };
+    }
+
+    // Returns the values of a field, or null for the single value of a
+    // delimited row, which Event.getArray(key, delimiter) then splits.
+    String[] getArrayValues(String field) {
+        Object value = value(field);
+        if (value == null || (delimited && value instanceof String))
+            return null;
+        return getArray(field);
+    }
+
+    /**
+     * Returns the first value of the specified field as a {@code long}.
+     *
+     * @param field The field name.
+     * @return The value.
+     * @throws NumberFormatException If the field is absent or not an
+     *                               integer.
+     */
+    public long getLong(String field) {
+        return Long.parseLong(first(field));
+    }
+
+    /**
+     * Returns the first value of the specified field as a {@code long}, or
+     * a default value if the field is not present.
+     *
+     * @param field The field name.
+     * @param defaultValue The value to return if the field is absent.
+     * @return The value.
+     * @throws NumberFormatException If the field is not an integer.
+     */
+    public long getLong(String field, long defaultValue) {
+        String value = first(field);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    /**
+     * Returns the first value of the specified field as a {@code double}.
+     *
+     * @param field The field name.
+     * @return The value.
+     * @throws NumberFormatException If the field is absent or not a number.
+     */
+    public double getDouble(String field) {
+        String value = first(field);
+        if (value == null)
+            throw new NumberFormatException("Field " + field + " is absent.");
+        return Double.parseDouble(value);
+    }
+
+    /**
+     * Returns the first value of the specified field as a {@code double},
+     * or a default value if the field is not present.
+     *
+     * @param field The field name.
+     * @param defaultValue The value to return if the field is absent.
+     * @return The value.
+     * @throws NumberFormatException If the field is not a number.
+     */
+    public double getDouble(String field, double defaultValue) {
+        String value = first(field);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    /**
+     * Returns the time of the event, from its {@code _time} field, or
+     * {@code null} if the field is not present.
+     * <p>
+     * The time can be either in ISO 8601 form, as in
+     * {@code 2012-11-27T16:44:22.581-08:00}, or a number of seconds since
+     * the epoch.
+     *
+     * @return The time of the event.
+     * @throws IllegalArgumentException If the time cannot be parsed.
+     */
+    public Date getTime() {
+        String value = first("_time");
+        return value == null ? null : new Date(parseTime(value));
+    }
+
+    /**
+     * Returns the XML markup of the {@code _raw} field value.
+     *
+     * @return The segmented raw XML, including tags and escaped characters.
+     * @see Event#getSegmentedRaw
+     */
+    public String getSegmentedRaw() {
+        if (segmentedRaw == null) {
+            throw new UnsupportedOperationException(
+                "The value is not available. Use ResultsReaderXml instead.");
+        }
+        return segmentedRaw.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("{");
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null)
+                continue;
+            if (text.length() > 1)
+                text.append(", ");
+            text.append(schema.getName(i)).append('=');
+            if (values[i] instanceof String[])
+                text.append(Arrays.toString((String[]) values[i]));
+            else
+                text.append(values[i]);
+        }
+        return text.append('}').toString();
+    }
+
+    /**
+     * Creates an {@code Event} with the values of this row.
+     *
+     * @return The event.
+     */
+    Event toEvent() {
+        // The event reads multiple values and the segmented raw from this
+        // row, so its map only needs the joined values.
+        Event event = new Event(this);
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value instanceof String[])
+                event.putSingleOrDelimited(schema.getName(i),
+                        Util.join(",", (String[]) value));
+            else if (value != null)
+                event.putSingleOrDelimited(schema.getName(i), (String) value);
+        }
+        return event;
+    }
+
+    /**
+     * Creates a row with the values of an {@code Event}.
+     *
+     * @param schema The schema of the result set of the event.
+     * @param event The event.
+     * @return The row.
+     */
+    static ResultRow fromEvent(FieldSchema schema, Event event) {
+        ResultRow row = new ResultRow(schema);
+        for (String field : event.keySet()) {
+            String[] values = event.getArrayValues(field);
+            if (values != null)
+                row.putArray(field, values);
+            else
+                row.put(field, event.get(field));
+        }
+        return row;
+    }
+
+    private String first(String field) {
+        Object value = value(field);
+        if (value instanceof String[]) {
+            String[] array = (String[]) value;
+            return array.length == 0 ? null : array[0];
+        }
+        return (String) value;
+    }
+
+    // Parses an ISO 8601 time, as in 2012-11-27T16:44:22.581-08:00, or a
+    // number of seconds since the epoch, into milliseconds since the epoch.
+    static long parseTime(String value) {
+        try {
+            if (value.length() < 19 || value.charAt(4) != '-')
+                return (long) (Double.parseDouble(value) * 1000);
+
+            Calendar calendar = new GregorianCalendar(UTC);
+            calendar.clear();
+            calendar.set(
+                    Integer.parseInt(value.substring(0, 4)),
+                    Integer.parseInt(value.substring(5, 7)) - 1,
+                    Integer.parseInt(value.substring(8, 10)),
+                    Integer.parseInt(value.substring(11, 13)),
+                    Integer.parseInt(value.substring(14, 16)),
+                    Integer.parseInt(value.substring(17, 19)));
+            long millis = calendar.getTimeInMillis();
+
+            int position = 19;
+            if (position < value.length() && value.charAt(position) == '.') {
+                int start = ++position;
+                while (position < value.length() &&
+                        Character.isDigit(value.charAt(position)))
+                    position++;
+                String fraction = (value.substring(start, position) + "000")
+                        .substring(0, 3);
+                millis += Integer.parseInt(fraction);
+            }
+
+            if (position < value.length()) {
+                char sign = value.charAt(position);
+                if (sign == 'Z') {
+                    position++;
+                } else {
+                    String offset = value.substring(position + 1).replace(":", "");
+                    int minutes = Integer.parseInt(offset.substring(0, 2)) * 60
+                            + Integer.parseInt(offset.substring(2, 4));
+                    if (sign == '+')
+                        millis -= minutes * 60000L;
+                    else if (sign == '-')
+                        millis += minutes * 60000L;
+                    else
+                        throw new IllegalArgumentException();
+                    position = value.length();
+                }
+            }
+            if (position != value.length())
+                throw new IllegalArgumentException();
+            return millis;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid time: " + value, e);
+        }
+    }
+}
@@ -19,7 +19,12 @@ package com.splunk;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 
 /**
  * The {@code ResultsReader} class is a base class for the streaming readers
@@ -34,6 +39,14 @@ public abstract class ResultsReader
     boolean isPreview;
     boolean isExportStream;
     private boolean isInMultiReader;
+    // Schema of the rows converted from the events of the current set.
+    private FieldSchema rowSchema = null;
+    // Fields to read, or null to read every field.
+    Set<String> selectedFields = null;
+    // Whether nextBatch has reached the end.
+    private boolean batchesEnded = false;
+    // Dictionary of repeated values, or null to not share them.
+    StringDictionary stringDictionary = null;
 
     ResultsReader(InputStream inputStream, boolean isInMultiReader)
             throws IOException {
@@ -42,6 +55,45 @@ public abstract class ResultsReader
         this.isInMultiReader = isInMultiReader;
     }
 
+    // Restricts the fields that are read to the given ones; null selects
+    // every field.
+    void selectFields(Collection<String> fields) {
+        selectedFields = fields == null ? null : new HashSet<String>(fields);
+    }
+
+    boolean isSelected(String field) {
+        return selectedFields == null || selectedFields.contains(field);
+    }
+
+    /**
+     * Sets a dictionary through which this reader shares the instances of
+     * values that repeat across results, such as the {@code host} and
+     * {@code sourcetype} of events. By default, every value is a new string.
+     * <p>
+     * The dictionary applies to the results read after this call.
+     *
+     * @param dictionary The dictionary, or {@code null} to not share values.
+     */
+    public void setStringDictionary(StringDictionary dictionary) {
+        stringDictionary = dictionary;
+    }
+
+    /**
+     * Returns the dictionary set with {@link #setStringDictionary}, whose
+     * statistics tell how often values were shared.
+     *
+     * @return The dictionary, or {@code null} if there is none.
+     */
+    public StringDictionary getStringDictionary() {
+        return stringDictionary;
+    }
+
+    // Returns the shared instance of a value, if there is a dictionary.
+    String intern(String value) {
+        return stringDictionary == null
+                ? value : stringDictionary.intern(value);
+    }
+
     /**
      * Closes the reader and returns resources.
      *
@@ -64,6 +116,65 @@ public abstract class ResultsReader
         return getNextElement();
     }
 
+    /**
+     * Returns the next event in the event stream as a {@link ResultRow}, a
+     * compact alternative to {@link #getNextEvent} for reading many results.
+     *
+     * @return The next row, or {@code null} if the end is reached.
+     * @throws IOException On IO exception.
+     */
+    final public ResultRow getNextRow() throws IOException {
+        ResultRow row;
+        while (true) {
+            row = getNextRowInCurrentSet();
+
+            // The sets are walked as in getNextElement.
+            if (row != null || isPreview || !advanceStreamToNextSet())
+                break;
+            rowSchema = null;
+        }
+        return row;
+    }
+
+    /**
+     * Returns up to the given number of the next events as a columnar
+     * {@link ResultBatch}, with a column for each field of the result set,
+     * in the order of {@link #getFields} when the reader supports it.
+     *
+     * @param maxRows The maximum number of rows of the batch.
+     * @return The next batch, or {@code null} if the end is reached.
+     * @throws IOException On IO exception.
+     */
+    public ResultBatch nextBatch(int maxRows) throws IOException {
+        if (maxRows <= 0)
+            throw new IllegalArgumentException(
+                "The number of rows must be positive.");
+
+        // Once reaching the end, don't advance any more. Otherwise the
+        // underlying reader may throw.
+        List<ResultRow> rows = new ArrayList<ResultRow>(Math.min(maxRows, 1024));
+        while (!batchesEnded && rows.size() < maxRows) {
+            ResultRow row = getNextRow();
+            if (row == null)
+                batchesEnded = true;
+            else
+                rows.add(row);
+        }
+        if (rows.isEmpty())
+            return null;
+
+        List<String> fields = new ArrayList<String>();
+        try {
+            for (String field : getFields()) {
+                if (isSelected(field))
+                    fields.add(field);
+            }
+        } catch (UnsupportedOperationException e) {
+            // The fields are then learned from the rows.
+        }
+        return ResultBatch.create(fields, rows);
+    }
+
     /**
      * Returns an iterator over the events from this reader.
      * @return an Iterator.
@@ -119,10 +230,33 @@ public abstract class ResultsReader
      */
     abstract Event getNextEventInCurrentSet() throws IOException;
 
+    /*
+     * Get the next row in the current result set. Return null if the end is
+     * reached. Readers that do not build rows natively convert their events.
+     */
+    ResultRow getNextRowInCurrentSet() throws IOException {
+        Event event = getNextEventInCurrentSet();
+        if (event == null)
+            return null;
+        if (rowSchema == null)
+            rowSchema = createRowSchema();
+        return ResultRow.fromEvent(rowSchema, event);
+    }
+
+    private FieldSchema createRowSchema() {
+        try {
+            return new FieldSchema(getFields());
+        } catch (UnsupportedOperationException e) {
+            // The fields are then learned from the events.
+            return new FieldSchema();
+        }
+    }
+
     /*
      * Return false if the end is reached.
      */
     final boolean resetIteratorToNextSet() throws IOException {
+        rowSchema = null;
 
         // Get to the beginning of the next set in the stream
         // skipping remaining event(s) if any in the current set.
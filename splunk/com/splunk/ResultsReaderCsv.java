@@ -106,7 +106,7 @@ public class ResultsReaderCsv extends ResultsReader {
             returnData = new Event();
             int count = 0;
             for (String key : keys) {
-                String delimitedValues = line[count++];
+                String delimitedValues = intern(line[count++]);
                 returnData.putSingleOrDelimited(key, delimitedValues);
             }
         }
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.splunk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The {@code ResultsReaderCsvUtf8} class represents a streaming CSV reader
+ * for Splunk search results that scans the UTF-8 bytes of the stream
+ * directly, instead of going through a {@code Reader} and opencsv like
+ * {@link ResultsReaderCsv} does.
+ * <p>
+ * Each result is decoded into a character buffer that is reused for the
+ * next one. The cells of the current result can be read in place with
+ * {@link #nextRecord} and {@link #getCell}, as character sequences that
+ * are only copied into strings when they are materialized; the other
+ * methods of the reader materialize the selected fields of each result into
+ * a {@link ResultRow} or {@link Event}.
+ * <p>
+ * Like the JSON format, the CSV format joins the values of a multi-valued
+ * field with newlines; use {@link Event#getArray(String, String)} with a
+ * newline delimiter to read them. This reader does not support export
+ * streams.
+ */
+public class ResultsReaderCsvUtf8 extends ResultsReader {
+    private CsvTokenizer tokenizer;
+    private final List<String> keys;
+    private final boolean[] selected;
+    private FieldSchema schema;
+    // Views of the cells of the current record, created on first use.
+    private Cell[] cells = new Cell[0];
+
+    /**
+     * Class constructor.
+     *
+     * Constructs a streaming CSV reader for the event stream. You should only
+     * attempt to parse a CSV stream with this reader. If you attempt to parse
+     * a different type of stream, unpredictable results may occur.
+     *
+     * @param inputStream The CSV stream to parse.
+     * @throws IOException
+     */
+    public ResultsReaderCsvUtf8(InputStream inputStream) throws IOException {
+        this(inputStream, null);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * Constructs a streaming CSV reader for the event stream that only
+     * materializes the given fields. The cells of other fields are scanned
+     * but never copied into strings.
+     *
+     * @param inputStream The CSV stream to parse.
+     * @param fields The fields to read, or {@code null} to read every field.
+     * @throws IOException
+     */
+    public ResultsReaderCsvUtf8(InputStream inputStream,
+                                Collection<String> fields)
+            throws IOException {
+        super(inputStream, false);
+        if (isExportStream)
+            throw new UnsupportedOperationException(
+                "A stream from an export endpoint is not supported " +
+                "by a CSV result reader. Use XML or JSON search output "+
+                "format and matching reader instead."
+            );
+        selectFields(fields);
+        tokenizer = new CsvTokenizer(inputStream);
+        keys = new ArrayList<String>();
+        // The first record holds the field names, except for oneshot, which
+        // starts with a blank line before them.
+        if (tokenizer.readRecord() && isBlankRecord(true))
+            tokenizer.readRecord();
+        for (int i = 0; i < tokenizer.cellCount; i++)
+            keys.add(tokenizer.getString(i, null));
+        selected = new boolean[keys.size()];
+        for (int i = 0; i < selected.length; i++)
+            selected[i] = isSelected(keys.get(i));
+        schema = new FieldSchema(keys);
+        tokenizer.cellCount = 0;
+    }
+
+    private boolean isBlankRecord(boolean trim) {
+        if (tokenizer.cellCount != 1)
+            return false;
+        if (!trim)
+            return tokenizer.length(0) == 0;
+        for (int i = tokenizer.starts[0]; i < tokenizer.ends[0]; i++) {
+            if (tokenizer.chars[i] > ' ')
+                return false;
+        }
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override public void close() throws IOException {
+        super.close();
+        tokenizer = null;
+    }
+
+    /**
+     * This method is not supported.
+     * @return Not applicable.
+     */
+    public boolean isPreview(){
+        throw new UnsupportedOperationException(
+                "isPreview() is not supported by this subclass.");
+    }
+
+    /** {@inheritDoc} */
+    public Collection<String> getFields(){
+       return keys;
+    }
+
+    /**
+     * Moves to the next result without materializing its cells, which are
+     * then read with {@link #getCell}.
+     *
+     * @return {@code true} if there is a next result, {@code false} at the
+     *         end of the stream.
+     * @throws IOException On IO exception.
+     */
+    public boolean nextRecord() throws IOException {
+        if (tokenizer == null)
+            return false;
+        // Blank lines between results are skipped.
+        while (tokenizer.readRecord()) {
+            if (!isBlankRecord(false))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of cells of the current result.
+     *
+     * @return The number of cells.
+     */
+    public int getCellCount() {
+        return tokenizer == null ? 0 : tokenizer.cellCount;
+    }
+
+    /**
+     * Returns a cell of the current result, in the order of
+     * {@link #getFields}, as a view of the buffer of this reader. The view
+     * is only valid until the next result is read; call its
+     * {@code toString} method to keep its value.
+     *
+     * @param index The index of the cell.
+     * @return The characters of the cell.
+     * @throws IndexOutOfBoundsException If there is no such cell.
+     */
+    public CharSequence getCell(int index) {
+        if (index < 0 || index >= getCellCount())
+            throw new IndexOutOfBoundsException("No cell at index " + index);
+        if (index >= cells.length) {
+            Cell[] grown = new Cell[tokenizer.starts.length];
+            System.arraycopy(cells, 0, grown, 0, cells.length);
+            cells = grown;
+        }
+        if (cells[index] == null)
+            cells[index] = new Cell(index);
+        return cells[index];
+    }
+
+    @Override Event getNextEventInCurrentSet() throws IOException {
+        ResultRow row = getNextRowInCurrentSet();
+        return row == null ? null : row.toEvent();
+    }
+
+    @Override ResultRow getNextRowInCurrentSet() throws IOException {
+        if (!nextRecord())
+            return null;
+        ResultRow row = new ResultRow(schema, true);
+        int count = Math.min(tokenizer.cellCount, keys.size());
+        for (int i = 0; i < count; i++) {
+            if (selected[i])
+                row.put(keys.get(i), tokenizer.getString(i, stringDictionary));
+        }
+        return row;
+    }
+
+    // A view of a cell of the current record.
+    private final class Cell implements CharSequence {
+        private final int index;
+
+        Cell(int index) {
+            this.index = index;
+        }
+
+        public int length() {
+            return tokenizer.length(index);
+        }
+
+        public char charAt(int i) {
+            if (i < 0 || i >= length())
+                throw new IndexOutOfBoundsException("No character at " + i);
+            return tokenizer.chars[tokenizer.starts[index] + i];
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return tokenizer.getString(index, null);
+        }
+    }
+}
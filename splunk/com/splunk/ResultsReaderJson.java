@@ -52,12 +52,35 @@ public class ResultsReaderJson extends ResultsReader {
      * @throws IOException
      */
     public ResultsReaderJson(InputStream inputStream) throws IOException {
-        this(inputStream, false);
+        this(inputStream, false, null);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * Constructs a streaming JSON reader for the event stream that only
+     * reads the given fields. The values of other fields are skipped by the
+     * parser without being decoded.
+     *
+     * @param inputStream The JSON stream to parse.
+     * @param fields The fields to read, or {@code null} to read every field.
+     * @throws IOException
+     */
+    public ResultsReaderJson(InputStream inputStream, Collection<String> fields)
+            throws IOException {
+        this(inputStream, false, fields);
     }
 
     ResultsReaderJson(InputStream inputStream, boolean isInMultiReader)
             throws IOException {
+        this(inputStream, isInMultiReader, null);
+    }
+
+    ResultsReaderJson(InputStream inputStream, boolean isInMultiReader,
+                      Collection<String> fields)
+            throws IOException {
         super(inputStream, isInMultiReader);
+        selectFields(fields);
         jsonReader = new JsonReader(new InputStreamReader(inputStream, "UTF-8"));
         // if stream is empty, return a null reader.
         jsonReader.setLenient(true);
@@ -273,7 +296,7 @@ public class ResultsReaderJson extends ResultsReader {
                 while (jsonReader.hasNext()) {
                     JsonToken jsonToken2 = jsonReader.peek();
                     if (jsonToken2 == JsonToken.STRING) {
-                        values.add(jsonReader.nextString());
+                        values.add(intern(jsonReader.nextString()));
                     }
                 }
                 jsonReader.endArray();
@@ -285,10 +308,12 @@ public class ResultsReaderJson extends ResultsReader {
                 values.clear();
             }
             if (jsonReader.peek() == JsonToken.NAME) {
-                name = jsonReader.nextName();
+                name = intern(jsonReader.nextName());
+                if (!isSelected(name))
+                    jsonReader.skipValue();
             }
             if (jsonReader.peek() == JsonToken.STRING) {
-                String delimitedValues = jsonReader.nextString();
+                String delimitedValues = intern(jsonReader.nextString());
                 returnData.putSingleOrDelimited(name, delimitedValues);
             }
             if (jsonReader.peek() == JsonToken.END_OBJECT) {
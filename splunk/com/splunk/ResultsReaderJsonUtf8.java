@@ -0,0 +1,275 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.splunk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The {@code ResultsReaderJsonUtf8} class represents a streaming JSON reader
+ * for Splunk search results that parses the UTF-8 bytes of the stream
+ * directly, instead of going through a {@code Reader} and a general JSON
+ * parser like {@link ResultsReaderJson} does.
+ * <p>
+ * The reader knows the shape of results in the JSON output format: rows are
+ * read straight into {@link ResultRow} objects, and field names are shared
+ * across the rows of the stream. It reads the same streams as
+ * {@link ResultsReaderJson}, with the same limitations, but does not
+ * support multi-readers.
+ */
+public class ResultsReaderJsonUtf8 extends ResultsReader {
+    private JsonTokenizer tokenizer;
+    private FieldSchema schema;
+    // Whether the 'preview' flag is read
+    private boolean previewFlagRead;
+    // Export streams only: whether the last row of the current set was
+    // read. Initially true so that the first row starts a new set.
+    private boolean lastRow = true;
+    // Export streams only: whether the stream is within a row object.
+    private boolean inRow;
+
+    /**
+     * Class constructor.
+     *
+     * Constructs a streaming JSON reader for the event stream. You should only
+     * attempt to parse a JSON stream with this reader. If you attempt to parse
+     * a different type of stream, unpredictable results may occur.
+     *
+     * @param inputStream The JSON stream to parse.
+     * @throws IOException
+     */
+    public ResultsReaderJsonUtf8(InputStream inputStream) throws IOException {
+        this(inputStream, null);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * Constructs a streaming JSON reader for the event stream that only
+     * reads the given fields. The values of other fields are skipped without
+     * being decoded.
+     *
+     * @param inputStream The JSON stream to parse.
+     * @param fields The fields to read, or {@code null} to read every field.
+     * @throws IOException
+     */
+    public ResultsReaderJsonUtf8(InputStream inputStream,
+                                 Collection<String> fields)
+            throws IOException {
+        super(inputStream, false);
+        selectFields(fields);
+        tokenizer = new JsonTokenizer(inputStream);
+        finishInitialization();
+    }
+
+    /** {@inheritDoc} */
+    @Override public void close() throws IOException {
+        super.close();
+        tokenizer = null;
+    }
+
+    /** {@inheritDoc} */
+    public boolean isPreview(){
+        if (!previewFlagRead)
+            throw new UnsupportedOperationException(
+                "isPreview() is not supported " +
+                "with a stream from a Splunk 4.x server by this class. " +
+                "Use the XML format and an XML result reader instead.");
+        return isPreview;
+    }
+
+    /**
+     * This method is not supported.
+     * @return Not applicable.
+     */
+    public Collection<String> getFields(){
+        throw new UnsupportedOperationException(
+                "getFields() is not supported by this subclass.");
+    }
+
+    @Override Event getNextEventInCurrentSet() throws IOException {
+        ResultRow row = getNextRowInCurrentSet();
+        return row == null ? null : row.toEvent();
+    }
+
+    @Override ResultRow getNextRowInCurrentSet() throws IOException {
+        if (tokenizer == null)
+            return null;
+
+        if (isExportStream) {
+            // If the last row has been passed and advanceStreamToNextSet
+            // has not been called, end the current set.
+            if (lastRow && !inRow)
+                return null;
+            if (!readIntoRow())
+                return null;
+            ResultRow row = readRow();
+            skipRestOfRow();
+            return row;
+        }
+
+        // The results are the elements of an array.
+        if (tokenizer.consume(']')) {
+            close();
+            return null;
+        }
+        ResultRow row = readRow();
+        tokenizer.consume(',');
+        return row;
+    }
+
+    // Reads a result object into a row.
+    private ResultRow readRow() throws IOException {
+        ResultRow row = new ResultRow(schema, true);
+        tokenizer.expect('{');
+        if (tokenizer.consume('}'))
+            return row;
+        do {
+            String name = tokenizer.nextName();
+            int next = tokenizer.peek();
+            if (!isSelected(name) || next == '{') {
+                tokenizer.skipValue();
+            } else if (next == '[') {
+                row.putArray(name, readValues());
+            } else {
+                String value = tokenizer.nextScalar(stringDictionary);
+                if (value != null)
+                    row.put(name, value);
+            }
+        } while (tokenizer.consume(','));
+        tokenizer.expect('}');
+        return row;
+    }
+
+    // Reads an array of values, skipping any that are not strings.
+    private String[] readValues() throws IOException {
+        List<String> values = new ArrayList<String>();
+        tokenizer.expect('[');
+        if (!tokenizer.consume(']')) {
+            do {
+                if (tokenizer.peek() == '"')
+                    values.add(tokenizer.nextString(stringDictionary));
+                else
+                    tokenizer.skipValue();
+            } while (tokenizer.consume(','));
+            tokenizer.expect(']');
+        }
+        return values.toArray(new String[values.size()]);
+    }
+
+    @Override boolean advanceStreamToNextSet() throws IOException {
+        if (tokenizer == null)
+            return false;
+        schema = new FieldSchema();
+
+        if (isExportStream) {
+            if (tokenizer.peek() == '[')
+                throw new UnsupportedOperationException(
+                    "A stream from an export endpoint of " +
+                    "a Splunk 4.x server in the JSON output format " +
+                    "is not supported by this class. " +
+                    "Use the XML search output format, " +
+                    "and an XML result reader instead.");
+            // Each row is a top level object; read into the first row of
+            // the next set.
+            while (true) {
+                boolean endPassed = lastRow;
+                skipRestOfRow();
+                if (!readIntoRow())
+                    return false;
+                if (endPassed)
+                    return true;
+            }
+        }
+
+        int next = tokenizer.peek();
+        if (next == '{') {
+            // Splunk 5 and later: the results are an array at the key
+            // "results" of the top level object.
+            tokenizer.expect('{');
+            while (tokenizer.peek() != -1) {
+                String key = tokenizer.nextName();
+                if (key.equals("preview")) {
+                    readPreviewFlag();
+                } else if (key.equals("results")) {
+                    tokenizer.expect('[');
+                    return true;
+                } else {
+                    tokenizer.skipValue();
+                }
+                tokenizer.consume(',');
+            }
+            return false;
+        } else if (next == '[') {
+            // Splunk 4.x: the array of results is the top level.
+            tokenizer.expect('[');
+            return true;
+        }
+        return false;
+    }
+
+    private void readPreviewFlag() throws IOException {
+        isPreview = tokenizer.nextBoolean();
+        previewFlagRead = true;
+    }
+
+    // Reads the metadata of a row object from an export endpoint, up to its
+    // "result" key. Returns false if the end of the stream is encountered.
+    private boolean readIntoRow() throws IOException {
+        if (inRow)
+            return true;
+        if (!tokenizer.consume('{'))
+            return false;
+        inRow = true;
+        // The lastrow key does not appear if the row is not the last in
+        // the set.
+        lastRow = false;
+        while (tokenizer.peek() == '"') {
+            String key = tokenizer.nextName();
+            if (key.equals("preview")) {
+                readPreviewFlag();
+            } else if (key.equals("lastrow")) {
+                lastRow = tokenizer.nextBoolean();
+            } else if (key.equals("result")) {
+                return true;
+            } else {
+                tokenizer.skipValue();
+            }
+            tokenizer.consume(',');
+        }
+        return false;
+    }
+
+    private void skipRestOfRow() throws IOException {
+        if (!inRow)
+            return;
+        inRow = false;
+        while (!tokenizer.consume('}')) {
+            if (tokenizer.peek() == -1)
+                return;
+            if (tokenizer.consume(','))
+                continue;
+            if (tokenizer.peek() == '"')
+                tokenizer.nextName();
+            tokenizer.skipValue();
+        }
+    }
+}
@@ -16,16 +16,16 @@
 
 package com.splunk;
 
-import javax.xml.namespace.QName;
-import javax.xml.stream.*;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
-import java.io.*;
-import java.nio.ByteBuffer;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -37,10 +37,34 @@ import java.util.List;
 public class ResultsReaderXml
     extends ResultsReader {
 
-    private XMLEventReader xmlReader = null;
+    // Looking up a StAX implementation is costly, so the factory is created
+    // once; it is not modified after this, and creating readers from it is
+    // safe from any thread.
+    private static final XMLInputFactory inputFactory = createInputFactory();
+
+    private XMLStreamReader xmlReader = null;
     private ArrayList<String> fields = new ArrayList<String>();
+    // Field positions shared by the rows of the current result set.
+    private FieldSchema schema = new FieldSchema();
     private PushbackInputStream pushbackInputStream;
 
+    // Whether the current event of the cursor was looked at, but is still to
+    // be returned by nextEvent. The cursor API has no peek, so this is how
+    // a read stops before the end element of the current level.
+    private boolean pending = false;
+
+    // Buffers reused from one result to the next.
+    private final List<String> values = new ArrayList<String>();
+    private final StringBuilder rawText = new StringBuilder();
+    private final StringBuilder tag = new StringBuilder();
+    private int[] markupOffsets = new int[16];
+    private String[] markup = new String[16];
+    private int markupCount = 0;
+    // The tags of segmented _raw values are the same few strings in every
+    // result, so each reader shares one copy of them.
+    private final List<String> markupCache = new ArrayList<String>();
+    private static final int MARKUP_CACHE_SIZE = 32;
+
     /**
      * Class constructor.
      *
@@ -56,19 +80,44 @@ public class ResultsReaderXml
      * @throws IOException
      */
     public ResultsReaderXml(InputStream inputStream) throws IOException {
-        this(inputStream, false);
+        this(inputStream, false, null);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * Constructs a streaming XML reader for the event stream that only
+     * reads the given fields. Other fields are skipped by the parser without
+     * being decoded, which makes reading a few fields of wide results, or
+     * results without their {@code _raw} field, much cheaper.
+     *
+     * @param inputStream The XML stream to parse.
+     * @param fields The fields to read, or {@code null} to read every field.
+     * @throws IOException
+     */
+    public ResultsReaderXml(InputStream inputStream, Collection<String> fields)
+            throws IOException {
+        this(inputStream, false, fields);
     }
 
     ResultsReaderXml(
             InputStream inputStream,
             boolean isInMultiReader)
             throws IOException {
+        this(inputStream, isInMultiReader, null);
+    }
+
+    ResultsReaderXml(
+            InputStream inputStream,
+            boolean isInMultiReader,
+            Collection<String> fields)
+            throws IOException {
         super(inputStream, isInMultiReader);
+        selectFields(fields);
 
         // We need to do read-ahead, so we have to use a PushbackInputStream for everything
         // in this class.
         this.pushbackInputStream = new PushbackInputStream(inputStream);
-        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
 
         int ch = this.pushbackInputStream.read();
         if (ch == -1) {
@@ -77,16 +126,21 @@ public class ResultsReaderXml
             ((PushbackInputStream)this.pushbackInputStream).unread(ch);
         }
 
-        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
         try {
             InputStream filteredStream = new InsertRootElementFilterInputStream(this.pushbackInputStream);
-            xmlReader = inputFactory.createXMLEventReader(filteredStream);
+            xmlReader = inputFactory.createXMLStreamReader(filteredStream);
             finishInitialization();
         } catch (XMLStreamException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
     /** {@inheritDoc} */
     @Override public void close() throws IOException {
         if (xmlReader != null) {
@@ -112,92 +166,77 @@ public class ResultsReaderXml
     }
 
     @Override Event getNextEventInCurrentSet() throws IOException {
+        ResultRow row = getNextRowInCurrentSet();
+        return row == null ? null : row.toEvent();
+    }
+
+    @Override ResultRow getNextRowInCurrentSet() throws IOException {
         // Handle empty stream or other cases where xmlReader is
         // not constructed.
         if (xmlReader == null) {
             return null;
         }
         try {
-            Event event = null;
-            XMLEvent xmlEvent = readToStartOfElementAtSameLevelWithName("result");
-            if (xmlEvent != null) {
-                event = getResultKVPairs();
+            ResultRow row = null;
+            if (readToStartOfElementAtSameLevelWithName("result")) {
+                row = getResultKVPairs();
             }
-            return event;
+            return row;
         } catch (XMLStreamException e) {
            throw new RuntimeException(e);
         }
     }
 
+    private boolean hasNextEvent() throws XMLStreamException {
+        return pending || xmlReader.hasNext();
+    }
+
+    // Moves the cursor to the next event and returns its type.
+    private int nextEvent() throws XMLStreamException {
+        if (pending) {
+            pending = false;
+            return xmlReader.getEventType();
+        }
+        return xmlReader.next();
+    }
+
     // Reads the preview flag and field name list, and position in the middle of
     // the result element for reading actual results later.
     // Return value indicates whether the next 'results' element is found.
     boolean readIntoNextResultsElement()
             throws XMLStreamException, IOException {
-        XMLEvent xmlEvent = readToStartOfElementWithName("results");
-        if (xmlEvent == null) {
+        if (!readToStartOfElementWithName("results")) {
             return false;
         }
 
-        if (xmlEvent != null &&
-            xmlEvent.asStartElement()
-                .getAttributeByName(QName.valueOf("preview"))
-                .getValue()
-                .equals("0") ){
-            isPreview = false;
-        } else {
-            isPreview = true;
-        }
+        isPreview = !"0".equals(xmlReader.getAttributeValue(null, "preview"));
+        schema = new FieldSchema();
 
         // Read <meta> element.
         final String meta = "meta";
-        if (readToStartOfElementAtSameLevelWithName(meta) != null) {
+        if (readToStartOfElementAtSameLevelWithName(meta)) {
             readFieldOrderElement();
             readToEndElementWithName(meta);
         }
         return true;
     }
 
-    XMLEvent readToStartOfElementWithName(String elementName)
+    boolean readToStartOfElementWithName(String elementName)
         throws XMLStreamException {
-        while (xmlReader.hasNext()) {
-            XMLEvent xmlEvent = xmlReader.nextEvent();
-            int eType = xmlEvent.getEventType();
-            if (eType != XMLStreamConstants.START_ELEMENT){
-                continue;
-            }
-
-            StartElement startElement = xmlEvent.asStartElement();
-            if(startElement
-                    .getName()
-                    .getLocalPart()
-                    .equals(elementName)){
-                return xmlEvent;
+        while (hasNextEvent()) {
+            if (nextEvent() == XMLStreamConstants.START_ELEMENT &&
+                    xmlReader.getLocalName().equals(elementName)) {
+                return true;
             }
         }
-        return null;
+        return false;
     }
 
     void readToEndElementWithName(String elementName) throws XMLStreamException {
-        XMLEvent xmlEvent;
-        int eType;
-
-        while (xmlReader.hasNext()) {
-            xmlEvent = xmlReader.nextEvent();
-            eType = xmlEvent.getEventType();
-            switch (eType) {
-                case XMLStreamConstants.START_ELEMENT:
-                    break;
-                case XMLStreamConstants.END_ELEMENT:
-                    if (xmlEvent.asEndElement()
-                            .getName()
-                            .getLocalPart()
-                            .equals(elementName)) {
-                        return;
-                    }
-                    break;
-                default:
-                    break;
+        while (hasNextEvent()) {
+            if (nextEvent() == XMLStreamConstants.END_ELEMENT &&
+                    xmlReader.getLocalName().equals(elementName)) {
+                return;
             }
         }
 
@@ -210,40 +249,31 @@ public class ResultsReaderXml
      * before the end element of the current level.
      * 
      * @param elementName The name of the start element.
-     * @return  The start element, or {@code null} if not found.
+     * @return  {@code true} if the start element was found.
      * @throws XMLStreamException
      */
-    XMLEvent readToStartOfElementAtSameLevelWithName(String elementName)
+    boolean readToStartOfElementAtSameLevelWithName(String elementName)
             throws XMLStreamException {
-        XMLEvent xmlEvent;
-        int eType;
         int level = 0;
-        while (xmlReader.hasNext()) {
-            xmlEvent = xmlReader.peek();
-            eType = xmlEvent.getEventType();
-            switch (eType) {
+        while (hasNextEvent()) {
+            switch (nextEvent()) {
                 case XMLStreamConstants.START_ELEMENT:
                     if (level++ > 0){
                         break;
                     }
-                    StartElement startElement = xmlEvent.asStartElement();
-                    if (startElement
-                            .getName()
-                            .getLocalPart()
-                            .equals(elementName)) {
-                        xmlReader.nextEvent();
-                        return xmlEvent;
+                    if (xmlReader.getLocalName().equals(elementName)) {
+                        return true;
                     }
                     break;
                 case XMLStreamConstants.END_ELEMENT:
                     if (level-- == 0) {
-                        return  null;
+                        pending = true;
+                        return false;
                     }
                     break;
                 default:
                     break;
             }
-            xmlReader.nextEvent();
         }
 
         throw new RuntimeException("Parent end element not found:" + elementName);
@@ -252,32 +282,28 @@ public class ResultsReaderXml
     // At the end, move off the end element of 'fieldOrder'
     private void readFieldOrderElement()
             throws IOException, XMLStreamException {
-        XMLEvent xmlEvent;
-        int eType;
         int level = 0;
 
-        if (readToStartOfElementAtSameLevelWithName("fieldOrder") == null)
+        if (!readToStartOfElementAtSameLevelWithName("fieldOrder"))
             return;
 
-        while (xmlReader.hasNext()) {
-            xmlEvent = xmlReader.nextEvent();
-            eType = xmlEvent.getEventType();
-            switch (eType) {
+        while (hasNextEvent()) {
+            switch (nextEvent()) {
                 case XMLStreamConstants.START_ELEMENT:
                     level++;
                     break;
                 case XMLStreamConstants.END_ELEMENT:
-                    if (xmlEvent.asEndElement()
-                            .getName()
-                            .getLocalPart()
-                            .equals("fieldOrder")) {
+                    if (xmlReader.getLocalName().equals("fieldOrder")) {
                         return;
                     }
                     level--;
                     break;
                 case XMLStreamConstants.CHARACTERS:
                     if (level == 1) {
-                        fields.add(xmlEvent.asCharacters().getData());
+                        String field = xmlReader.getText();
+                        fields.add(field);
+                        if (isSelected(field))
+                            schema.add(field);
                     }
                     break;
                 default:
@@ -289,51 +315,40 @@ public class ResultsReaderXml
     }
 
     // At the end, move off the end tag of 'result'
-    private Event getResultKVPairs()
+    private ResultRow getResultKVPairs()
             throws IOException, XMLStreamException {
         
-        Event returnData = new Event();
-        XMLEvent xmlEvent;
-        int eType;
+        ResultRow returnData = new ResultRow(schema);
         String key = null;
-        List<String> values = new ArrayList<String>();
+        values.clear();
         int level = 0;
 
         // Event results are flat, so extract k/v pairs based on XML indentation
         // level throwing away the uninteresting non-data.
 
-        while (xmlReader.hasNext()) {
-            xmlEvent = xmlReader.nextEvent();
-            eType = xmlEvent.getEventType();
-            switch (eType) {
+        while (hasNextEvent()) {
+            switch (nextEvent()) {
                 case XMLStreamConstants.START_ELEMENT:
-                    final StartElement startElement = xmlEvent.asStartElement();
-                    @SuppressWarnings("unchecked")
-                    Iterator<Attribute> attrIttr =
-                        startElement.getAttributes();
                     if (level == 0) {
-                        if (attrIttr.hasNext())
-                            key =  attrIttr.next().getValue();
+                        if (xmlReader.getAttributeCount() > 0)
+                            key = xmlReader.getAttributeValue(0);
+                        if (key != null && !isSelected(key)) {
+                            skipElement();
+                            key = null;
+                            break;
+                        }
                     } else if (level == 1 &&
                             key.equals("_raw") &&
-                            startElement
-                                .getName()
-                                .getLocalPart()
-                                .equals("v")) {
-                        StringBuilder asString = new StringBuilder();
-                        StringWriter asXml = new StringWriter();
-                        readSubtree(startElement, asString, asXml);
-                        values.add(asString.toString());
-                        returnData.putSegmentedRaw(asXml.toString());
+                            xmlReader.getLocalName().equals("v")) {
+                        SegmentedRaw raw = readSubtree();
+                        values.add(raw.getText());
+                        returnData.putSegmentedRaw(raw);
                         level--;
                     }
                     level++;
                     break;
                 case XMLStreamConstants.END_ELEMENT:
-                    if (xmlEvent.asEndElement()
-                            .getName()
-                            .getLocalPart()
-                            .equals("result"))
+                    if (xmlReader.getLocalName().equals("result"))
                         return returnData;
                     
                     if (--level == 0) {
@@ -347,7 +362,12 @@ public class ResultsReaderXml
                     break;
                 case XMLStreamConstants.CHARACTERS:
                     if (level > 1) {
-                        values.add(xmlEvent.asCharacters().getData());
+                        values.add(stringDictionary == null
+                                ? xmlReader.getText()
+                                : stringDictionary.intern(
+                                        xmlReader.getTextCharacters(),
+                                        xmlReader.getTextStart(),
+                                        xmlReader.getTextLength()));
                     }
                     break;
                 default:
@@ -381,48 +401,138 @@ public class ResultsReaderXml
         }
     }
 
+    // Moves the cursor from a start element to its end element, without
+    // decoding the content in between.
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            switch (xmlReader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
     /**
      * Read the whole element including those contained in the outer element.
-     * @param startElement start element (tag) of the outer element.
-     * @param asString output builder that the element's inner-text
-     *                 will be appended to, with markup removed and
-     *                 characters un-escaped
-     * @param asXml    output builder that full xml including markups
-     *                 will be appended to. Characters are escaped as
-     *                 needed.
+     * The cursor must be on the start element of the outer element, and is
+     * left on its end element.
+     * @return the element's inner-text, with markup removed and characters
+     *         un-escaped, along with the markup needed to build its full
+     *         xml on demand
      * @throws IOException
      * @throws XMLStreamException
      */
-    void readSubtree(
-            StartElement startElement,
-            StringBuilder asString,
-            StringWriter asXml)
+    SegmentedRaw readSubtree()
             throws IOException, XMLStreamException {
-        XMLEventWriter xmlWriter = XMLOutputFactory.newInstance().
-                createXMLEventWriter(asXml);
-        XMLEvent xmlEvent = startElement;
+        rawText.setLength(0);
+        markupCount = 0;
         int level = 0;
-        do {
-            xmlWriter.add(xmlEvent);
-            int eType = xmlEvent.getEventType();
-            switch (eType) {
+        while (true) {
+            switch (xmlReader.getEventType()) {
                 case XMLStreamConstants.START_ELEMENT:
+                    tag.setLength(0);
+                    appendStartElement(tag);
+                    addMarkup();
                     level++;
                     break;
                 case XMLStreamConstants.END_ELEMENT:
+                    tag.setLength(0);
+                    tag.append("</");
+                    appendName(tag, xmlReader.getPrefix(), xmlReader.getLocalName());
+                    tag.append('>');
+                    addMarkup();
                     if (--level == 0) {
-                        xmlWriter.close();
-                        return;
+                        return new SegmentedRaw(rawText.toString(),
+                                Arrays.copyOf(markupOffsets, markupCount),
+                                Arrays.copyOf(markup, markupCount));
                     }
                     break;
                 case XMLStreamConstants.CHARACTERS:
-                    asString.append(xmlEvent.asCharacters().getData());
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    rawText.append(xmlReader.getTextCharacters(),
+                            xmlReader.getTextStart(),
+                            xmlReader.getTextLength());
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    tag.setLength(0);
+                    tag.append("<!--").append(xmlReader.getText()).append("-->");
+                    addMarkup();
+                    break;
                 default:
                     break;
             }
-            xmlEvent = xmlReader.nextEvent();
-        } while (xmlReader.hasNext());
+            if (!xmlReader.hasNext())
+                break;
+            xmlReader.next();
+        }
         throw new RuntimeException("Invalid XML format.");
     }
-}
 
+    // Records the markup in 'tag' at the current position of the text.
+    private void addMarkup() {
+        if (markupCount == markup.length) {
+            markupOffsets = Arrays.copyOf(markupOffsets, markupCount * 2);
+            markup = Arrays.copyOf(markup, markupCount * 2);
+        }
+        markupOffsets[markupCount] = rawText.length();
+        markup[markupCount] = sharedMarkup();
+        markupCount++;
+    }
+
+    private String sharedMarkup() {
+        for (int i = 0; i < markupCache.size(); i++) {
+            String cached = markupCache.get(i);
+            if (cached.contentEquals(tag))
+                return cached;
+        }
+        String value = tag.toString();
+        if (markupCache.size() < MARKUP_CACHE_SIZE)
+            markupCache.add(value);
+        return value;
+    }
+
+    // Appends the start tag at the cursor, with its namespace declarations
+    // and attributes in document order.
+    private void appendStartElement(StringBuilder asXml) {
+        asXml.append('<');
+        appendName(asXml, xmlReader.getPrefix(), xmlReader.getLocalName());
+        for (int i = 0; i < xmlReader.getNamespaceCount(); i++) {
+            String prefix = xmlReader.getNamespacePrefix(i);
+            asXml.append(" xmlns");
+            if (prefix != null && prefix.length() > 0)
+                asXml.append(':').append(prefix);
+            asXml.append("=\"");
+            appendEscaped(asXml, xmlReader.getNamespaceURI(i));
+            asXml.append('"');
+        }
+        for (int i = 0; i < xmlReader.getAttributeCount(); i++) {
+            asXml.append(' ');
+            appendName(asXml, xmlReader.getAttributePrefix(i),
+                    xmlReader.getAttributeLocalName(i));
+            asXml.append("=\"");
+            appendEscaped(asXml, xmlReader.getAttributeValue(i));
+            asXml.append('"');
+        }
+        asXml.append('>');
+    }
+
+    private static void appendName(StringBuilder asXml, String prefix,
+                                   String localName) {
+        if (prefix != null && prefix.length() > 0)
+            asXml.append(prefix).append(':');
+        asXml.append(localName);
+    }
+
+    private static void appendEscaped(StringBuilder asXml, String value) {
+        if (value != null)
+            SegmentedRaw.appendEscaped(asXml, value, 0, value.length(), true);
+    }
+}
@@ -0,0 +1,509 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.splunk;
+
+import org.w3c.dom.NodeList;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The {@code ResumableExport} class reads the events of an export search,
+ * as returned by the {@link Service#exportResumable} method, and resumes the
+ * export where it stopped if the connection fails.
+ * <p>
+ * While the events are read, the export keeps track of the {@code _time} of
+ * the last event returned, and of the events returned with that time. When
+ * reading fails with a connection error, the export search is run again,
+ * limited to the events from that time on: its {@code latest_time} is
+ * adjusted when the events come in descending time order, as they do by
+ * default, and its {@code earliest_time} when they come in ascending order.
+ * (Until two times have been read, the order is unknown, and the search is
+ * run again as it was.)
+ * The events of the boundary time that were already returned are then
+ * skipped, so that each event is returned once.
+ * <p>
+ * The time window of the search is fixed when the export is created:
+ * relative bounds of its {@code earliest_time} and {@code latest_time}
+ * arguments, such as {@code -24h} or {@code now}, and a missing
+ * {@code latest_time}, are resolved to absolute times by the server, so that
+ * a resumed search neither drops nor adds events at the ends of the window.
+ * Relative bounds that the server cannot resolve are rejected. Time bounds
+ * written in the search string itself are not resolved, and real-time
+ * bounds are left as they are.
+ * <p>
+ * Resuming relies on the {@code _time} field, so it is only possible for
+ * searches that return events in time order. Once an event without a time,
+ * or out of order, has been read, failures are no longer recovered from.
+ * Results must be exported in the XML or JSON output format; XML is
+ * recommended, since a JSON stream that breaks between two events cannot be
+ * told apart from its end.
+ */
+public class ResumableExport extends StreamIterableBase<Event>
+        implements SearchResults {
+    /** The default maximum number of reconnections without progress. */
+    public static final int DEFAULT_MAX_RECONNECTS = 5;
+
+    private static final RequestMessage RECONNECT = new RequestMessage("GET");
+
+    private final Service service;
+    private final String search;
+    private final Args args;
+    private final boolean json;
+    private RetryPolicy reconnectPolicy = new ExponentialBackoffRetryPolicy(
+            DEFAULT_MAX_RECONNECTS, 1000, 30000);
+    private volatile ResultsReader reader;
+    // Set once the export is closed, possibly by another thread while a
+    // read waits on the connection.
+    private volatile boolean closed = false;
+
+    // The time of the last event returned, in milliseconds since the epoch,
+    // and the events returned with that time, by identity.
+    private String lastTime = null;
+    private long lastMillis;
+    private final Map<String, Integer> boundary = new HashMap<String, Integer>();
+    private int offset = 0;
+    // The boundary events still to be skipped after a reconnection.
+    private Map<String, Integer> duplicates = null;
+    // 1 for ascending time order, -1 for descending, 0 until known.
+    private int order = 0;
+    private boolean resumable = true;
+
+    private int failures = 0;
+    private int reconnectCount = 0;
+    private long eventCount = 0;
+
+    ResumableExport(Service service, String search, Map args)
+            throws IOException {
+        this.service = service;
+        this.search = search;
+        this.args = Args.create(args);
+        Object outputMode = this.args.get("output_mode");
+        if (outputMode == null)
+            this.args.put("output_mode", "xml");
+        else if (!"xml".equals(outputMode.toString())
+                && !"json".equals(outputMode.toString()))
+            throw new IllegalArgumentException(
+                "Resumable exports need the XML or JSON output format.");
+        json = "json".equals(this.args.get("output_mode").toString());
+        resolveTimeBounds();
+
+        try {
+            open(this.args);
+        } catch (RuntimeException e) {
+            reconnect(connectionFailure(e), null);
+        }
+    }
+
+    /**
+     * Returns the policy that decides whether, and after how long, the
+     * export is resumed after a failure. Its attempt count is the number of
+     * consecutive failures, without an event read in between.
+     *
+     * @return The reconnection policy.
+     */
+    public RetryPolicy getReconnectPolicy() {
+        return reconnectPolicy;
+    }
+
+    /**
+     * Sets the policy that decides whether, and after how long, the export
+     * is resumed after a failure. By default, the export is resumed up to
+     * {@link #DEFAULT_MAX_RECONNECTS} times in a row, with an exponential
+     * backoff of up to 30 seconds.
+     *
+     * @param reconnectPolicy The reconnection policy.
+     */
+    public void setReconnectPolicy(RetryPolicy reconnectPolicy) {
+        if (reconnectPolicy == null)
+            throw new IllegalArgumentException("The policy must not be null.");
+        this.reconnectPolicy = reconnectPolicy;
+    }
+
+    /**
+     * Returns the next event of the export.
+     *
+     * @return The event, or {@code null} if the end is reached.
+     * @throws IOException On IO exception that could not be recovered from.
+     */
+    public Event getNextEvent() throws IOException {
+        return getNextElement();
+    }
+
+    @Override Event getNextElement() throws IOException {
+        ResultsReader current;
+        while (!closed && (current = reader) != null) {
+            Event event;
+            try {
+                event = current.getNextEvent();
+            } catch (IOException e) {
+                // A read fails when the export is closed under it.
+                if (closed)
+                    break;
+                reconnect(new RuntimeException(e.getMessage(), e), e);
+                continue;
+            } catch (RuntimeException e) {
+                if (closed)
+                    break;
+                reconnect(connectionFailure(e), null);
+                continue;
+            }
+
+            if (event == null) {
+                close();
+                break;
+            }
+            if (isDuplicate(event))
+                continue;
+            track(event);
+            failures = 0;
+            eventCount++;
+            return event;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the {@code _time} of the last event returned, which is where
+     * the export resumes after a failure.
+     *
+     * @return The time, or {@code null} if no event was returned.
+     */
+    public String getLastTime() {
+        return lastTime;
+    }
+
+    /**
+     * Returns the number of events returned with the time of
+     * {@link #getLastTime}, which are skipped when the export resumes.
+     *
+     * @return The number of events.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the number of events returned so far.
+     *
+     * @return The number of events.
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Returns the number of times the export was resumed.
+     *
+     * @return The number of reconnections.
+     */
+    public int getReconnectCount() {
+        return reconnectCount;
+    }
+
+    /** {@inheritDoc} */
+    public boolean isPreview() {
+        return reader != null && reader.isPreview();
+    }
+
+    /** {@inheritDoc} */
+    public Collection<String> getFields() {
+        if (reader == null)
+            throw new UnsupportedOperationException(
+                "The fields are not available after the end of the export.");
+        return reader.getFields();
+    }
+
+    /**
+     * Closes the export and its connection. This method may be called from
+     * another thread to stop a read that is waiting on the connection,
+     * which then returns {@code null} rather than reconnecting.
+     *
+     * @throws IOException On IO exception.
+     */
+    public void close() throws IOException {
+        closed = true;
+        resetIteration(false);
+        ResultsReader current = reader;
+        reader = null;
+        if (current != null)
+            current.close();
+    }
+
+    private void open(Args exportArgs) {
+        InputStream stream = service.export(search, exportArgs);
+        try {
+            reader = json ? new ResultsReaderJson(stream)
+                          : new ResultsReaderXml(stream);
+        } catch (IOException e) {
+            closeQuietly(stream);
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    // Replaces relative time bounds, and a missing latest time, with the
+    // absolute times they stand for now. A resumed search copies the other
+    // bound, which would otherwise be evaluated again against a later now.
+    private void resolveTimeBounds() {
+        if (isRealTime(args.get("earliest_time"))
+                || isRealTime(args.get("latest_time")))
+            return;
+        resolveTimeBound("earliest_time", null);
+        resolveTimeBound("latest_time", "now");
+    }
+
+    private void resolveTimeBound(String name, String defaultValue) {
+        Object value = args.get(name);
+        String time = value == null ? defaultValue : value.toString().trim();
+        if (time == null || !isRelative(time))
+            return;
+
+        long millis;
+        try {
+            millis = resolveTime(service, time);
+        } catch (HttpException e) {
+            throw relativeTimeError(name, time, e);
+        }
+        if (millis == Long.MIN_VALUE)
+            throw relativeTimeError(name, time, null);
+        args.put(name, formatTime(millis));
+    }
+
+    /**
+     * Returns the time that a search time bound stands for now. Relative
+     * times, such as {@code -24h@h} or {@code now}, are resolved by the
+     * server's time parser, so that they are evaluated against its clock
+     * rather than the client's.
+     *
+     * @param service The service to resolve relative times with.
+     * @param time The time bound.
+     * @return The time in milliseconds since the epoch, or
+     *         {@code Long.MIN_VALUE} if it cannot be resolved.
+     * @throws HttpException If the server rejects a relative time.
+     */
+    static long resolveTime(Service service, String time) {
+        if (!isRelative(time))
+            return parseTime(time);
+
+        Args parserArgs = new Args();
+        parserArgs.put("time", time);
+        parserArgs.put("output_time_format", "%s.%Q");
+        String resolved;
+        ResponseMessage response = service.get("search/timeparser", parserArgs);
+        try {
+            NodeList keys = Xml.parse(response.getContent())
+                    .getElementsByTagName("key");
+            resolved = keys.getLength() == 0
+                    ? null : keys.item(0).getTextContent();
+        } finally {
+            response.closeQuietly();
+        }
+        return resolved == null ? Long.MIN_VALUE : parseTime(resolved.trim());
+    }
+
+    // Whether a time is a relative time modifier, such as -24h@h or now,
+    // rather than an absolute time.
+    private static boolean isRelative(String time) {
+        if (parseTime(time) != Long.MIN_VALUE)
+            return false;
+        char first = time.length() == 0 ? ' ' : time.charAt(0);
+        return first == '-' || first == '+' || first == '@'
+                || time.equalsIgnoreCase("now");
+    }
+
+    private static boolean isRealTime(Object time) {
+        return time != null && time.toString().trim().startsWith("rt");
+    }
+
+    private static IllegalArgumentException relativeTimeError(
+            String name, String time, Exception cause) {
+        return new IllegalArgumentException(
+                "The " + name + " of a resumable export must be an absolute " +
+                "time, or a relative time that the server can resolve: " +
+                time, cause);
+    }
+
+    // Waits as long as the policy says and runs the export again from the
+    // last time returned, or throws the failure if it cannot be resumed.
+    private void reconnect(RuntimeException failure, IOException original)
+            throws IOException {
+        if (reader != null) {
+            closeQuietly(reader);
+            reader = null;
+        }
+
+        while (true) {
+            long delay = resumable ? reconnectPolicy.getRetryDelay(
+                    RECONNECT, ++failures, failure) : -1;
+            if (delay < 0) {
+                resetIteration(false);
+                if (original != null)
+                    throw original;
+                throw failure;
+            }
+            sleep(delay);
+            if (closed)
+                return;
+
+            // Until the order is known, every event returned has the same
+            // time, so the export is run again as it was and those events
+            // are skipped.
+            Args resumed = new Args(args);
+            if (order > 0)
+                resumed.put("earliest_time", formatTime(lastMillis));
+            else if (order < 0)
+                resumed.put("latest_time", formatTime(lastMillis + 1));
+            try {
+                open(resumed);
+            } catch (RuntimeException e) {
+                failure = connectionFailure(e);
+                original = null;
+                continue;
+            }
+            if (closed) {
+                // Closed while the export was being opened again.
+                closeQuietly(reader);
+                reader = null;
+                return;
+            }
+            reconnectCount++;
+            duplicates = new HashMap<String, Integer>(boundary);
+            return;
+        }
+    }
+
+    // Whether the event was returned before the last reconnection.
+    private boolean isDuplicate(Event event) {
+        if (duplicates == null)
+            return false;
+        String time = event.get("_time");
+        if (time != null && parseTime(time) == lastMillis) {
+            String identity = identity(event);
+            Integer count = duplicates.get(identity);
+            if (count != null) {
+                if (count == 1)
+                    duplicates.remove(identity);
+                else
+                    duplicates.put(identity, count - 1);
+                return true;
+            }
+            return false;
+        }
+        // The boundary is passed.
+        duplicates = null;
+        return false;
+    }
+
+    private void track(Event event) {
+        String time = event.get("_time");
+        long millis = time == null ? Long.MIN_VALUE : parseTime(time);
+        if (millis == Long.MIN_VALUE) {
+            resumable = false;
+            return;
+        }
+        if (lastTime != null && millis != lastMillis) {
+            int direction = millis > lastMillis ? 1 : -1;
+            if (order == 0)
+                order = direction;
+            else if (order != direction)
+                resumable = false;
+        }
+        if (lastTime == null || millis != lastMillis) {
+            boundary.clear();
+            lastTime = time;
+            lastMillis = millis;
+            offset = 0;
+        }
+        String identity = identity(event);
+        Integer count = boundary.get(identity);
+        boundary.put(identity, count == null ? 1 : count + 1);
+        offset++;
+    }
+
+    // Identifies an event by its bucket and address in the index when
+    // available, as they are unique, or else by its raw text.
+    private static String identity(Event event) {
+        String bucket = event.get("_bkt");
+        String address = event.get("_cd");
+        if (bucket != null && address != null)
+            return bucket + "\n" + address;
+        String raw = event.get("_raw");
+        return raw != null ? raw : event.toString();
+    }
+
+    private static long parseTime(String time) {
+        try {
+            return ResultRow.parseTime(time);
+        } catch (IllegalArgumentException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    // Formats a time as seconds since the epoch, which both time bounds of
+    // a search accept.
+    static String formatTime(long millis) {
+        long seconds = millis / 1000;
+        long fraction = millis % 1000;
+        if (fraction < 0) {
+            seconds--;
+            fraction += 1000;
+        }
+        return String.format("%d.%03d", seconds, fraction);
+    }
+
+    // Returns a failure that comes from the connection, rather than from
+    // the results themselves, as the RuntimeException wrapping an
+    // IOException that retry policies expect.
+    private static RuntimeException connectionFailure(RuntimeException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof XMLStreamException) {
+            IOException failure = new IOException(e.getMessage(), cause);
+            return new RuntimeException(e.getMessage(), failure);
+        }
+        return e;
+    }
+
+    private static void sleep(long delay) throws IOException {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while resuming an export.");
+        }
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            // The connection is discarded anyway.
+        }
+    }
+
+    private static void closeQuietly(ResultsReader reader) {
+        try {
+            reader.close();
+        } catch (Exception e) {
+            // The connection is discarded anyway.
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+/**
+ * The {@code RetryPolicy} interface decides whether, and after how long, a
+ * failed request is sent again by an {@code HttpService} instance.
+ *
+ * @see ExponentialBackoffRetryPolicy
+ * @see HttpService#setRetryPolicy
+ */
+public interface RetryPolicy {
+    /**
+     * Returns the time to wait before retrying a failed request.
+     * <p>
+     * Requests whose content is a stream or a {@link ContentWriter} cannot be
+     * sent again; the policy is not consulted for them.
+     *
+     * @param request The request that failed.
+     * @param attempt The number of times the request has been sent so far,
+     *                starting at 1.
+     * @param failure The failure, which is an {@link HttpException} if the
+     *                server returned an error status and a
+     *                {@code RuntimeException} wrapping an
+     *                {@code IOException} if the request could not be
+     *                completed.
+     * @return The delay in milliseconds before the request is sent again, or
+     *         a negative value to give up and rethrow the failure.
+     */
+    public long getRetryDelay(RequestMessage request, int attempt,
+                              RuntimeException failure);
+}
@@ -39,7 +39,7 @@ public class SavedSearch extends Entity {
      * and resumes alerting.
      */
     public void acknowledge() {
-        service.post(actionPath("acknowledge"));
+        service.post(actionPath("acknowledge")).closeQuietly();
         invalidate();
     }
 
@@ -80,7 +80,12 @@ public class SavedSearch extends Entity {
     public Job dispatch(Map args) throws InterruptedException {
         ResponseMessage response = service.post(actionPath("dispatch"), args);
         invalidate();
-        String sid = Job.getSid(response);
+        String sid;
+        try {
+            sid = Job.getSid(response);
+        } finally {
+            response.closeQuietly();
+        }
 
         Job job;
         JobCollection jobs = service.getJobs();
@@ -118,6 +123,8 @@ public class SavedSearch extends Entity {
             feed = AtomFeed.parseStream(response.getContent());
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            response.closeQuietly();
         }
         int count = feed.entries.size();
         Job[] result = new Job[count];
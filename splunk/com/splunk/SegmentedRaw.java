@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.splunk;
+
+/**
+ * The {@code SegmentedRaw} class holds the segmented form of a {@code _raw}
+ * value, as its plain text and the markup found between its characters. The
+ * XML fragment is only built when it is asked for, so that reading results
+ * does not keep a second, escaped copy of every {@code _raw} value.
+ *
+ * This class is an implementation detail and is therefore SDK-private.
+ */
+final class SegmentedRaw {
+    private final String text;
+    // Markup[i] goes before the character of the text at offsets[i].
+    private final int[] offsets;
+    private final String[] markup;
+    private String xml = null;
+
+    SegmentedRaw(String text, int[] offsets, String[] markup) {
+        this.text = text;
+        this.offsets = offsets;
+        this.markup = markup;
+    }
+
+    /**
+     * Returns the text of the value, with markup removed and characters
+     * unescaped.
+     *
+     * @return The plain text.
+     */
+    String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the XML fragment, including tags and escaped characters.
+     *
+     * @return The segmented raw XML.
+     */
+    @Override
+    public String toString() {
+        if (xml == null) {
+            StringBuilder builder = new StringBuilder(text.length() + 64);
+            int start = 0;
+            for (int i = 0; i < offsets.length; i++) {
+                appendEscaped(builder, text, start, offsets[i], false);
+                builder.append(markup[i]);
+                start = offsets[i];
+            }
+            appendEscaped(builder, text, start, text.length(), false);
+            xml = builder.toString();
+        }
+        return xml;
+    }
+
+    // Escapes markup characters, as an XMLStreamWriter does.
+    static void appendEscaped(StringBuilder builder, String value,
+                              int start, int end, boolean inAttribute) {
+        int run = start;
+        for (int i = start; i < end; i++) {
+            String entity;
+            switch (value.charAt(i)) {
+                case '&': entity = "&amp;"; break;
+                case '<': entity = "&lt;"; break;
+                case '>': entity = "&gt;"; break;
+                case '"': entity = inAttribute ? "&quot;" : null; break;
+                default: entity = null; break;
+            }
+            if (entity != null) {
+                builder.append(value, run, i).append(entity);
+                run = i + 1;
+            }
+        }
+        builder.append(value, run, end);
+    }
+}
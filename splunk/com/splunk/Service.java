@@ -16,6 +16,7 @@
 
 package com.splunk;
 
+import javax.net.ssl.SSLSocketFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
@@ -37,13 +38,18 @@ import java.util.Map;
  * authenticated by presenting credentials using the {@code login} method, or
  * by constructing the {@code Service} instance using the {@code connect}
  * method, which both creates and authenticates the instance.
+ * <p>
+ * A {@code Service} instance is thread-safe and is meant to be shared: log in
+ * once and issue requests from any number of threads. When the session of a
+ * logged-in instance expires, the first request to be rejected logs in again
+ * on behalf of all threads and is then retried.
  */
 public class Service extends BaseService {
     /** The current app context. */
     protected String app = null;
 
     /** The current session token. */
-    protected String token = null;
+    protected volatile String token = null;
 
     /** The current owner context. A value of "nobody" means that all users
      * have access to the resource.
@@ -52,10 +58,12 @@ public class Service extends BaseService {
 
     /** The Splunk account username, which is used to authenticate the Splunk
      * instance. */
-    protected String username = null;
+    protected volatile String username = null;
 
     /** The password, which is used to authenticate the Splunk instance. */
-    protected String password = null;
+    protected volatile String password = null;
+
+    private static final String LOGIN_PATH = "/services/auth/login";
 
     /** The default simple receiver endpoint. */
     protected String simpleReceiverEndPoint = "receivers/simple";
@@ -64,7 +72,10 @@ public class Service extends BaseService {
     protected String passwordEndPoint = "admin/passwords";
 
     /** The version of this Splunk instance, once logged in. */
-    public String version = null;
+    public volatile String version = null;
+
+    // Serializes logins, so that an expired session is renewed only once.
+    private final Object loginLock = new Object();
 
     /** The default host name, which is used when a host name is not provided.*/
     public static String DEFAULT_HOST = "localhost";
@@ -149,7 +160,8 @@ public class Service extends BaseService {
         this.username = (String)args.get("username");
         this.password = (String)args.get("password");
         this.httpsHandler = Args.<URLStreamHandler>get(args, "httpsHandler", null);
-        this.setSslSecurityProtocol(Args.get(args, "SSLSecurityProtocol", Service.getSslSecurityProtocol()));
+        initSecurity(args);
+        initConnection(args);
         this.addCookie((String)args.get("cookie"));
     }
 
@@ -169,10 +181,41 @@ public class Service extends BaseService {
         this.username = (String)args.get("username");
         this.password = (String)args.get("password");
         this.httpsHandler = Args.<URLStreamHandler>get(args, "httpsHandler", null);
-        this.setSslSecurityProtocol(Args.get(args, "SSLSecurityProtocol", Service.getSslSecurityProtocol()));
+        initSecurity(args);
+        initConnection(args);
         this.addCookie((String)args.get("cookie"));
     }
 
+    // Applies the transport, compression, coalescing, timeout, and retry
+    // settings given in the constructor arguments.
+    private void initConnection(Map<String, Object> args) {
+        this.setUseCompression(Args.<Boolean>get(args, "useCompression", false));
+        this.setCoalesceRequests(Args.<Boolean>get(args, "coalesceRequests", false));
+        this.setConnectTimeout(Args.<Integer>get(args, "connectTimeout", 0));
+        this.setReadTimeout(Args.<Integer>get(args, "readTimeout", 0));
+        this.setRetryPolicy(Args.<RetryPolicy>get(args, "retryPolicy", null));
+        this.setTransport(Args.<Transport>get(args, "transport", null));
+    }
+
+    // Applies the TLS settings given in the constructor arguments to this
+    // instance only.
+    private void initSecurity(Map<String, Object> args) {
+        SSLSecurityProtocol securityProtocol =
+                Args.<SSLSecurityProtocol>get(args, "SSLSecurityProtocol", null);
+        if (securityProtocol != null)
+            this.setSecurityProtocol(securityProtocol);
+        SSLSocketFactory secureSocketFactory =
+                Args.<SSLSocketFactory>get(args, "SSLSocketFactory", null);
+        if (secureSocketFactory != null)
+            this.setSecureSocketFactory(secureSocketFactory);
+        Integer sessionCacheSize = Args.<Integer>get(args, "SSLSessionCacheSize", null);
+        if (sessionCacheSize != null)
+            this.setSSLSessionCacheSize(sessionCacheSize);
+        Integer sessionTimeout = Args.<Integer>get(args, "SSLSessionTimeout", null);
+        if (sessionTimeout != null)
+            this.setSSLSessionTimeout(sessionTimeout);
+    }
+
     /**
      * Establishes a connection to a Splunk service using a map of arguments.
      * This member creates a new {@code Service} instance and authenticates
@@ -237,6 +280,98 @@ public class Service extends BaseService {
         return export(search, (Map<String, Object>) args);
     }
 
+    /**
+     * Runs an export search with arguments (using the
+     * {@code search/jobs/export} endpoint), and reads its events with a
+     * reader that resumes the export where it stopped if the connection
+     * fails.
+     *
+     * @param search The search query to run.
+     * @param args Additional search arguments. The output mode must be XML
+     *             (the default) or JSON.
+     * @return The {@code ResumableExport} object that reads the events.
+     * @throws IOException On IO exception that could not be recovered from.
+     * @see ResumableExport
+     */
+    public ResumableExport exportResumable(String search, Map args)
+            throws IOException {
+        return new ResumableExport(this, search, args);
+    }
+
+    /**
+     * Runs an export search with arguments (using the
+     * {@code search/jobs/export} endpoint), and reads its events with a
+     * reader that resumes the export where it stopped if the connection
+     * fails.
+     *
+     * @param search The search query to run.
+     * @param args Additional search arguments (see {@code JobExportArgs}).
+     *             The output mode must be XML (the default) or JSON.
+     * @return The {@code ResumableExport} object that reads the events.
+     * @throws IOException On IO exception that could not be recovered from.
+     * @see ResumableExport
+     */
+    // NOTE: This overload exists primarily to provide better documentation
+    //       for the "args" parameter.
+    public ResumableExport exportResumable(String search, JobExportArgs args)
+            throws IOException {
+        return exportResumable(search, (Map<String, Object>) args);
+    }
+
+    /**
+     * Runs an export search over a time range as several concurrent exports
+     * (using the {@code search/jobs/export} endpoint), one for each of a
+     * number of equal slices of the range, and reads their events as one
+     * stream.
+     *
+     * @param search The search query to run.
+     * @param args Additional search arguments. The earliest time is required
+     *             and, like the latest time, may be absolute or relative;
+     *             relative times are resolved by the server when the export
+     *             starts. The output mode must be XML (the default) or JSON.
+     * @param slices The number of slices to split the time range into.
+     * @param concurrency The maximum number of slices exported at a time.
+     * @param ordered {@code true} to return the events in time order, from
+     *                the latest slice to the earliest, {@code false} to
+     *                return them as they are read.
+     * @return The {@code ParallelExport} object that reads the events.
+     * @see ParallelExport
+     */
+    public ParallelExport exportParallel(String search, Map args, int slices,
+                                         int concurrency, boolean ordered) {
+        return new ParallelExport(this, search, args, slices, concurrency,
+                ordered);
+    }
+
+    /**
+     * Runs an export search over a time range as several concurrent exports
+     * (using the {@code search/jobs/export} endpoint), one for each of a
+     * number of equal slices of the range, and reads their events as one
+     * stream.
+     *
+     * @param search The search query to run.
+     * @param args Additional search arguments (see {@code JobExportArgs}).
+     *             The earliest time is required and, like the latest time,
+     *             may be absolute or relative; relative times are resolved
+     *             by the server when the export starts. The output mode must
+     *             be XML (the default) or JSON.
+     * @param slices The number of slices to split the time range into.
+     * @param concurrency The maximum number of slices exported at a time.
+     * @param ordered {@code true} to return the events in time order, from
+     *                the latest slice to the earliest, {@code false} to
+     *                return them as they are read.
+     * @return The {@code ParallelExport} object that reads the events.
+     * @see ParallelExport
+     */
+    // NOTE: This overload exists primarily to provide better documentation
+    //       for the "args" parameter.
+    public ParallelExport exportParallel(String search, JobExportArgs args,
+                                         int slices, int concurrency,
+                                         boolean ordered) {
+        return exportParallel(search, (Map<String, Object>) args, slices,
+                concurrency, ordered);
+    }
+
     /**
      * Ensures that the given path is fully qualified, prepending a path
      * prefix if necessary. The path prefix is constructed using the current
@@ -1112,24 +1247,41 @@ public class Service extends BaseService {
      * @return The current {@code Service} instance.
      */
     public Service login(String username, String password) {
-        this.username = username;
-        this.password = password;
-
-        Args args = new Args();
-        args.put("username", username);
-        args.put("password", password);
-        args.put("cookie", "1");
-        ResponseMessage response = post("/services/auth/login", args);
-        String sessionKey = Xml.parse(response.getContent())
-            .getElementsByTagName("sessionKey")
-            .item(0)
-            .getTextContent();
-        this.token = "Splunk " + sessionKey;
-        this.version = this.getInfo().getVersion();
-        if (versionCompare("4.3") >= 0)
-            this.passwordEndPoint = "storage/passwords";
+        synchronized (loginLock) {
+            this.username = username;
+            this.password = password;
+
+            Args args = new Args();
+            args.put("username", username);
+            args.put("password", password);
+            args.put("cookie", "1");
+            ResponseMessage response = post(LOGIN_PATH, args);
+            String sessionKey;
+            try {
+                sessionKey = Xml.parse(response.getContent())
+                    .getElementsByTagName("sessionKey")
+                    .item(0)
+                    .getTextContent();
+            } finally {
+                response.closeQuietly();
+            }
+            this.token = "Splunk " + sessionKey;
+            this.version = this.getInfo().getVersion();
+            if (versionCompare("4.3") >= 0)
+                this.passwordEndPoint = "storage/passwords";
 
-        return this;
+            return this;
+        }
+    }
+
+    // Logs in again after a request made with the given session was
+    // rejected, unless another thread has already renewed the session.
+    private void renewSession(String expiredToken) {
+        synchronized (loginLock) {
+            String current = this.token;
+            if (current == null ? expiredToken == null : current.equals(expiredToken))
+                login(this.username, this.password);
+        }
     }
 
     /**
@@ -1280,19 +1432,41 @@ public class Service extends BaseService {
      * This method overrides the base {@code HttpService.send} method
      * and applies the Splunk authorization header, which is required for
      * authenticated interactions with the Splunk service.
+     * <p>
+     * If the request is rejected because the session has expired, and the
+     * username and password are known, the instance logs in again and
+     * retries the request once. Requests whose content is a stream or a
+     * {@link ContentWriter} cannot be sent again and are not retried.
      *
      * @param path The request path.
      * @param request The request message.
      * @return The HTTP response.
      */
     @Override public ResponseMessage send(String path, RequestMessage request) {
+        String sessionToken = this.token;
         // cookieStore is a protected member of HttpService
-        if (token != null && cookieStore.isEmpty()) {
-            request.getHeader().put("Authorization", token);
+        boolean authenticated = !cookieStore.isEmpty() || sessionToken != null;
+        applyAuthorization(request, sessionToken);
+        try {
+            return super.send(fullpath(path), request);
+        } catch (HttpException e) {
+            if (e.getStatus() != 401 || !authenticated
+                    || !request.isContentRepeatable()
+                    || username == null || password == null
+                    || LOGIN_PATH.equals(path))
+                throw e;
         }
+        renewSession(sessionToken);
+        applyAuthorization(request, this.token);
         return super.send(fullpath(path), request);
     }
 
+    private void applyAuthorization(RequestMessage request, String sessionToken) {
+        if (sessionToken != null && cookieStore.isEmpty()) {
+            request.getHeader().put("Authorization", sessionToken);
+        }
+    }
+
     /**
      * Provides a session token for use by this {@code Service} instance.
      * Session tokens can be shared across multiple {@code Service} instances.
@@ -16,6 +16,7 @@
 
 package com.splunk;
 
+import javax.net.ssl.SSLSocketFactory;
 import java.net.URLStreamHandler;
 
 /**
@@ -134,12 +135,94 @@ public class ServiceArgs extends Args {
 
     /**
      * @param securityProtocol
-     *      The SSL security protocol for the service.
+     *      The SSL security protocol for the service. It applies to this
+     *      service only, not to other {@code Service} instances.
      */
     public void setSSLSecurityProtocol(SSLSecurityProtocol securityProtocol) {
         this.put("SSLSecurityProtocol", securityProtocol);
     }
 
+    /**
+     * @param sslSocketFactory
+     *      The {@code SSLSocketFactory} for the service. It applies to this
+     *      service only, not to other {@code Service} instances.
+     */
+    public void setSSLSocketFactory(SSLSocketFactory sslSocketFactory) {
+        this.put("SSLSocketFactory", sslSocketFactory);
+    }
+
+    /**
+     * @param sessionCacheSize
+     *      The number of TLS sessions the service keeps for resumption, or
+     *      zero for no limit.
+     */
+    public void setSSLSessionCacheSize(int sessionCacheSize) {
+        this.put("SSLSessionCacheSize", sessionCacheSize);
+    }
+
+    /**
+     * @param sessionTimeout
+     *      The time, in seconds, a TLS session can be resumed after it was
+     *      established, or zero for no limit.
+     */
+    public void setSSLSessionTimeout(int sessionTimeout) {
+        this.put("SSLSessionTimeout", sessionTimeout);
+    }
+
+    /**
+     * @param coalesceRequests
+     *      Whether concurrent identical GET requests share a single exchange
+     *      with the server.
+     */
+    public void setCoalesceRequests(boolean coalesceRequests) {
+        this.put("coalesceRequests", coalesceRequests);
+    }
+
+    /**
+     * @param connectTimeout
+     *      The time, in milliseconds, allowed for opening a connection, or
+     *      zero for none.
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.put("connectTimeout", connectTimeout);
+    }
+
+    /**
+     * @param readTimeout
+     *      The time, in milliseconds, a request waits for data from the
+     *      server, or zero for none.
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.put("readTimeout", readTimeout);
+    }
+
+    /**
+     * @param retryPolicy
+     *      The policy that decides whether failed requests are retried, such
+     *      as an {@code ExponentialBackoffRetryPolicy}.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.put("retryPolicy", retryPolicy);
+    }
+
+    /**
+     * @param transport
+     *      The transport that carries requests over the network, such as an
+     *      {@code HttpURLConnectionTransport}.
+     */
+    public void setTransport(Transport transport) {
+        this.put("transport", transport);
+    }
+
+    /**
+     * @param useCompression
+     *      Whether to ask for gzip or deflate compressed responses, which are
+     *      decoded transparently.
+     */
+    public void setUseCompression(boolean useCompression) {
+        this.put("useCompression", useCompression);
+    }
+
     /**
      * @param token
      *      A Splunk authentication token to use for the session.
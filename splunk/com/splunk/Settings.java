@@ -274,7 +274,7 @@ public class Settings extends Entity {
         HashMap<String, Object> mergedArgs = new HashMap<String, Object>();
         mergedArgs.putAll(toUpdate);
         mergedArgs.putAll(args);
-        service.post(path + "/settings", mergedArgs);
+        service.post(path + "/settings", mergedArgs).closeQuietly();
         toUpdate.clear();
         invalidate();
     }
@@ -283,7 +283,7 @@ public class Settings extends Entity {
      * {@inheritDoc}
      */
     @Override public void update() {
-        service.post(path + "/settings", toUpdate);
+        service.post(path + "/settings", toUpdate).closeQuietly();
         invalidate();
     }
 }
@@ -20,15 +20,16 @@ package com.splunk;
 import java.util.List;
 import java.net.HttpCookie;
 import java.util.Map;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.lang.StringBuilder;
 
 /**
  * The {@code SimpleCookieStore} class stores cookies for authentication.
+ * It is safe to use from several threads at once.
  */
 class SimpleCookieStore {
 
-    private Map<String, String> cookieJar = new HashMap<String, String>();
+    private Map<String, String> cookieJar = new ConcurrentHashMap<String, String>();
     /**
      * Adds cookies from a "Set-Cookie" header to the cookie store.
      *
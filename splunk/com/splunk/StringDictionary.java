@@ -0,0 +1,238 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.splunk;
+
+/**
+ * The {@code StringDictionary} class is a bounded dictionary of strings that
+ * lets a {@link ResultsReader} return the same {@code String} instance for
+ * values that repeat across results, such as the {@code host},
+ * {@code source}, and {@code sourcetype} of events.
+ * <p>
+ * The dictionary holds at most its capacity of strings, and only strings no
+ * longer than its maximum length. When it is full, a new string replaces
+ * one that has not been looked up since it was last considered for
+ * eviction (a "second chance" policy), so that frequent values stay while
+ * values seen only once, such as serial numbers, pass through.
+ * <p>
+ * A dictionary may be shared by readers on several threads. Its statistics
+ * are then approximate.
+ */
+public final class StringDictionary {
+    /** The capacity of a dictionary created with the default constructor. */
+    public static final int DEFAULT_CAPACITY = 4096;
+    /** The maximum length of a string kept by default. */
+    public static final int DEFAULT_MAX_LENGTH = 64;
+
+    // Strings are stored in sets of two slots, chosen by hash.
+    private final String[] slots;
+    // Whether the string of a slot was looked up since it was last
+    // considered for eviction.
+    private final boolean[] referenced;
+    private final int mask;
+    private final int maxLength;
+
+    private long lookups = 0;
+    private long hits = 0;
+    private long evictions = 0;
+
+    /**
+     * Creates a dictionary with the default capacity and maximum length.
+     */
+    public StringDictionary() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * Creates a dictionary.
+     *
+     * @param capacity The maximum number of strings, which is rounded up to
+     *                 a power of two.
+     * @param maxLength The length of the longest strings to keep. Longer
+     *                  strings are returned as they are.
+     */
+    public StringDictionary(int capacity, int maxLength) {
+        if (capacity < 2)
+            throw new IllegalArgumentException(
+                "The capacity must be at least 2.");
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        slots = new String[size];
+        referenced = new boolean[size];
+        mask = size - 1;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Returns the instance of the dictionary equal to a string, adding the
+     * string if there is none.
+     *
+     * @param value The string, or {@code null}.
+     * @return The shared instance, or the string itself if it is not kept.
+     */
+    public String intern(String value) {
+        if (value == null || value.length() > maxLength)
+            return value;
+        lookups++;
+        int hash = value.hashCode();
+        int slot = setOf(hash);
+        for (int i = slot; i < slot + 2; i++) {
+            String candidate = slots[i];
+            if (candidate != null && candidate.hashCode() == hash
+                    && candidate.equals(value)) {
+                hit(i);
+                return candidate;
+            }
+        }
+        add(slot, value);
+        return value;
+    }
+
+    /**
+     * Returns the instance of the dictionary equal to a run of characters,
+     * creating a string only if there is none.
+     *
+     * @param chars The characters.
+     * @param offset The offset of the first character.
+     * @param length The number of characters.
+     * @return The string.
+     */
+    String intern(char[] chars, int offset, int length) {
+        if (length > maxLength)
+            return new String(chars, offset, length);
+        lookups++;
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++)
+            hash = 31 * hash + chars[i];
+        int slot = setOf(hash);
+        for (int i = slot; i < slot + 2; i++) {
+            String candidate = slots[i];
+            if (candidate != null && candidate.hashCode() == hash
+                    && sameChars(candidate, chars, offset, length)) {
+                hit(i);
+                return candidate;
+            }
+        }
+        String value = new String(chars, offset, length);
+        add(slot, value);
+        return value;
+    }
+
+    private int setOf(int hash) {
+        return ((hash ^ (hash >>> 16)) << 1) & mask;
+    }
+
+    private void hit(int slot) {
+        hits++;
+        referenced[slot] = true;
+    }
+
+    private void add(int slot, String value) {
+        int victim;
+        if (slots[slot] == null) {
+            victim = slot;
+        } else if (slots[slot + 1] == null) {
+            victim = slot + 1;
+        } else {
+            if (!referenced[slot]) {
+                victim = slot;
+            } else if (!referenced[slot + 1]) {
+                victim = slot + 1;
+            } else {
+                // Both were looked up: give them another chance, and
+                // replace the older one.
+                referenced[slot] = false;
+                victim = slot + 1;
+            }
+            evictions++;
+        }
+        // The newest string of a set is kept first.
+        if (victim == slot + 1) {
+            slots[slot + 1] = slots[slot];
+            referenced[slot + 1] = referenced[slot];
+        }
+        slots[slot] = value;
+        referenced[slot] = false;
+    }
+
+    private static boolean sameChars(String value, char[] chars, int offset,
+                                     int length) {
+        if (value.length() != length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != chars[offset + i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the maximum number of strings of this dictionary.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Returns the number of lookups of strings short enough to be kept.
+     *
+     * @return The number of lookups.
+     */
+    public long getLookups() {
+        return lookups;
+    }
+
+    /**
+     * Returns the number of lookups that found a shared instance.
+     *
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of strings that were replaced by newer ones.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the share of lookups that found a shared instance.
+     *
+     * @return The hit rate, between 0 and 1.
+     */
+    public double getHitRate() {
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Returns the statistics of this dictionary.
+     *
+     * @return A description of the lookups, hits, and evictions.
+     */
+    @Override
+    public String toString() {
+        return String.format("StringDictionary{capacity=%d, lookups=%d, " +
+                "hits=%d, hitRate=%.3f, evictions=%d}", getCapacity(),
+                lookups, hits, getHitRate(), evictions);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import java.io.IOException;
+
+/**
+ * The {@code Transport} interface carries the requests of an
+ * {@code HttpService} instance over the network.
+ * <p>
+ * The service prepares each request, including its default headers and
+ * cookies, and hands it to its transport as a {@link TransportRequest}. It
+ * then takes care of everything that does not depend on how bytes are moved:
+ * retries, request coalescing, listeners, and turning error statuses into
+ * {@link HttpException}s. A transport can therefore be swapped for a tuned
+ * HTTP client, or for an in-memory fake in tests.
+ * <p>
+ * Transports are shared by all the threads that use a service and must be
+ * thread-safe.
+ *
+ * @see HttpService#setTransport
+ * @see HttpURLConnectionTransport
+ */
+public interface Transport {
+    /**
+     * Sends a request and returns its response, whatever its status.
+     * <p>
+     * The response is created with
+     * {@link TransportRequest#createResponse}, and its content stream should
+     * release any resource held by the exchange once it has been read to its
+     * end or closed. Cookies set by the server are passed to
+     * {@link TransportRequest#addCookie}.
+     *
+     * @param request The request to send.
+     * @return The response.
+     * @throws IOException If the request could not be completed.
+     */
+    public ResponseMessage send(TransportRequest request) throws IOException;
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * The {@code TransportRequest} class is a request prepared by an
+ * {@code HttpService} instance for its {@link Transport}.
+ * <p>
+ * Besides the request itself, it carries the callbacks through which a
+ * transport reports cookies and connection timings back to the service and
+ * its {@link RequestListener}s.
+ */
+public final class TransportRequest {
+    private final HttpService service;
+    private final URL url;
+    private final RequestMessage request;
+    private final Map<String, String> header;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final RequestEvent event;
+
+    TransportRequest(HttpService service, URL url, RequestMessage request,
+                     Map<String, String> header, int connectTimeout,
+                     int readTimeout, RequestEvent event) {
+        this.service = service;
+        this.url = url;
+        this.request = request;
+        this.header = Collections.unmodifiableMap(header);
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.event = event;
+    }
+
+    /**
+     * Returns the service issuing the request, for instance to reach its
+     * {@code SSLSocketFactory}.
+     *
+     * @return The service.
+     */
+    public HttpService getService() {
+        return service;
+    }
+
+    /**
+     * Returns the full URL of the request.
+     *
+     * @return The URL.
+     */
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the HTTP method of the request.
+     *
+     * @return The HTTP method.
+     */
+    public String getMethod() {
+        return request.getMethod();
+    }
+
+    /**
+     * Returns the request message as given to the service.
+     *
+     * @return The request message.
+     */
+    public RequestMessage getRequest() {
+        return request;
+    }
+
+    /**
+     * Returns the headers to send: those of the request message, completed
+     * with the default headers of the service and its cookies. The headers
+     * that frame the content ({@code Content-Length} and
+     * {@code Transfer-Encoding}) and the {@code Host} header are left to the
+     * transport.
+     *
+     * @return An unmodifiable map of header names to values.
+     */
+    public Map<String, String> getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns whether the request has content to send.
+     *
+     * @return {@code true} if the request has content.
+     */
+    public boolean hasContent() {
+        return request.getContent() != null;
+    }
+
+    /**
+     * Returns the length of the content, or -1 if it is unknown, in which
+     * case the content should be sent with chunked transfer encoding.
+     *
+     * @return The content length.
+     */
+    public long getContentLength() {
+        return request.getContentLength();
+    }
+
+    /**
+     * Returns whether the content can be written more than once, for
+     * example to send the request again over a fresh connection.
+     *
+     * @return {@code true} if the content can be written again.
+     */
+    public boolean isContentRepeatable() {
+        return request.isContentRepeatable();
+    }
+
+    /**
+     * Writes the content of the request to a stream, counting the bytes
+     * written for the listeners of the service.
+     *
+     * @param stream The stream to write to.
+     * @throws IOException On IO exception.
+     */
+    public void writeContent(OutputStream stream) throws IOException {
+        CountingOutputStream counter = new CountingOutputStream(stream);
+        try {
+            request.writeContent(counter);
+        } finally {
+            event.bytesOut = counter.getCount();
+        }
+    }
+
+    /**
+     * Returns the connect timeout of the request, in milliseconds; zero
+     * means no timeout.
+     *
+     * @return The connect timeout.
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Returns the read timeout of the request, in milliseconds; zero means
+     * no timeout.
+     *
+     * @return The read timeout.
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Records a cookie set by the server, so that the service sends it with
+     * its later requests.
+     *
+     * @param setCookieHeader The value of a {@code Set-Cookie} header.
+     */
+    public void addCookie(String setCookieHeader) {
+        service.cookieStore.add(setCookieHeader);
+    }
+
+    /**
+     * Reports that the request is sent over a connection that was kept
+     * alive from an earlier request.
+     */
+    public void connectionReused() {
+        event.connectionReused = true;
+        event.dnsNanos = -1;
+        event.connectNanos = -1;
+        event.handshakeNanos = -1;
+    }
+
+    /**
+     * Reports the timings of a newly opened connection. Timings that do not
+     * apply or were not measured are given as -1.
+     *
+     * @param dnsNanos The time spent resolving the host name.
+     * @param connectNanos The time spent opening the connection.
+     * @param handshakeNanos The time spent in the TLS handshake.
+     */
+    public void connectionOpened(long dnsNanos, long connectNanos,
+                                 long handshakeNanos) {
+        event.connectionReused = false;
+        event.dnsNanos = dnsNanos;
+        event.connectNanos = connectNanos;
+        event.handshakeNanos = handshakeNanos;
+    }
+
+    /**
+     * Reports that the first byte of the response has been received.
+     */
+    public void responseStarted() {
+        event.timeToFirstByteNanos = event.elapsed();
+    }
+
+    /**
+     * Creates the response to return from {@link Transport#send}. The
+     * content is decoded according to the {@code Content-Encoding} header.
+     *
+     * @param status The response status.
+     * @param header The response headers; a header sent more than once has
+     *               its values joined by commas.
+     * @param content The response body as received, or {@code null}.
+     * @return The response.
+     */
+    public ResponseMessage createResponse(int status, Map<String, String> header,
+                                          InputStream content) {
+        ResponseMessage response = new ResponseMessage(status);
+        if (header != null) {
+            for (Entry<String, String> entry : header.entrySet()) {
+                if (entry.getKey() != null)
+                    response.getHeader().put(entry.getKey(), entry.getValue());
+            }
+        }
+        response.setContent(content);
+        return response;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The {@code Utf8ByteSource} class buffers a stream of UTF-8 bytes for the
+ * byte-level readers, and decodes its multibyte characters.
+ * <p>
+ * The buffer, the position of the next byte in it, and the limit of the
+ * bytes read into it are open to the readers, so that their inner loops can
+ * scan the bytes directly. Bytes before the position are dropped when the
+ * buffer is refilled.
+ *
+ * This class is an implementation detail and is therefore SDK-private.
+ */
+class Utf8ByteSource {
+    private final InputStream input;
+    final byte[] buffer;
+    int position = 0;
+    int limit = 0;
+
+    Utf8ByteSource(InputStream input, int bufferSize) {
+        this.input = input;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Skips a byte order mark at the position, if there is one.
+     *
+     * @throws IOException On IO exception.
+     */
+    void skipByteOrderMark() throws IOException {
+        if (fill(3) && buffer[position] == (byte) 0xEF
+                && buffer[position + 1] == (byte) 0xBB
+                && buffer[position + 2] == (byte) 0xBF)
+            position += 3;
+    }
+
+    /**
+     * Makes at least count bytes available from the position, moving what
+     * is left of the buffer to its start.
+     *
+     * @param count The number of bytes.
+     * @return Whether the bytes are available; {@code false} if the stream
+     *         ends first.
+     * @throws IOException On IO exception.
+     */
+    boolean fill(int count) throws IOException {
+        if (limit - position >= count)
+            return true;
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        while (limit < count) {
+            int n = input.read(buffer, limit, buffer.length - limit);
+            if (n == -1)
+                return false;
+            limit += n;
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the character encoded on several bytes at the position into
+     * a character buffer, which must have room for two characters.
+     * Malformed sequences decode to U+FFFD, as with an
+     * {@code InputStreamReader}.
+     *
+     * @param chars The character buffer.
+     * @param length The number of characters already in it.
+     * @return The new number of characters.
+     */
+    int decodeMultibyte(char[] chars, int length) {
+        try {
+            fill(4);
+        } catch (IOException e) {
+            // The bytes that could be read are decoded; the error is seen
+            // again on the next read.
+        }
+        int lead = buffer[position] & 0xff;
+        int count;
+        int codePoint;
+        if (lead >= 0xF0 && lead <= 0xF4) {
+            count = 4;
+            codePoint = lead & 0x07;
+        } else if (lead >= 0xE0 && lead < 0xF0) {
+            count = 3;
+            codePoint = lead & 0x0F;
+        } else if (lead >= 0xC2 && lead < 0xE0) {
+            count = 2;
+            codePoint = lead & 0x1F;
+        } else {
+            position++;
+            chars[length++] = '\uFFFD';
+            return length;
+        }
+
+        for (int i = 1; i < count; i++) {
+            int p = position + i;
+            if (p >= limit || (buffer[p] & 0xC0) != 0x80) {
+                position += i;
+                chars[length++] = '\uFFFD';
+                return length;
+            }
+            codePoint = (codePoint << 6) | (buffer[p] & 0x3F);
+        }
+        position += count;
+
+        if (codePoint < 0x10000) {
+            chars[length++] = (char) codePoint;
+        } else {
+            codePoint -= 0x10000;
+            chars[length++] = (char) (0xD800 + (codePoint >> 10));
+            chars[length++] = (char) (0xDC00 + (codePoint & 0x3FF));
+        }
+        return length;
+    }
+
+    void close() throws IOException {
+        input.close();
+    }
+
+    /**
+     * Returns a copy of a character buffer with room for at least the given
+     * number of characters.
+     *
+     * @param array The buffer.
+     * @param minimum The number of characters.
+     * @return The larger buffer.
+     */
+    static char[] grow(char[] array, int minimum) {
+        char[] grown = new char[Math.max(minimum, array.length * 2)];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
@@ -21,7 +21,9 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
 import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
 
 import java.io.InputStream;
 import java.util.*;
@@ -88,6 +90,69 @@ public class AtomFeedTest {
         }
     }
 
+    @Test
+    public void testAtomFeedIterator() {
+        AtomFeed expectedFeed = AtomFeed.parseStream(this.xmlStream);
+        AtomFeedIterator entries = AtomFeed.iterateStream(
+                SDKTestCase.openResource("data/atom/" + testName + ".xml"));
+
+        for (AtomEntry expectedEntry : expectedFeed.entries) {
+            assertTrue(entries.hasNext());
+            AtomEntry actualEntry = entries.next();
+            assertEquals(expectedEntry.id, actualEntry.id);
+            assertEquals(expectedEntry.title, actualEntry.title);
+            assertEquals(expectedEntry.updated, actualEntry.updated);
+            assertEquals(expectedEntry.links, actualEntry.links);
+            assertEquals(expectedEntry.content, actualEntry.content);
+        }
+        assertFalse(entries.hasNext());
+
+        AtomFeed actualFeed = entries.getFeed();
+        assertEquals(0, actualFeed.entries.size());
+        assertEquals(expectedFeed.title, actualFeed.title);
+        assertEquals(expectedFeed.links, actualFeed.links);
+        assertEquals(expectedFeed.itemsPerPage, actualFeed.itemsPerPage);
+        assertEquals(expectedFeed.startIndex, actualFeed.startIndex);
+        assertEquals(expectedFeed.totalResults, actualFeed.totalResults);
+    }
+
+    @Test
+    public void testLazyContent() {
+        List<Map<String, Object>> expectedEntries = (List<Map<String, Object>>)expectedFeed.get("entries");
+        AtomFeed lazyFeed = AtomFeed.parseStream(this.xmlStream, true);
+
+        for (int i = 0; i < lazyFeed.entries.size(); i++) {
+            AtomEntry entry = lazyFeed.entries.get(i);
+            Map<String, Object> expectedEntry = expectedEntries.get(i);
+            assertNull(entry.content);
+            if (!expectedEntry.containsKey("content")) {
+                assertFalse(entry.hasContent());
+                assertNull(entry.getContent());
+                continue;
+            }
+            assertTrue(entry.hasContent());
+
+            // Single values are decoded without the rest of the content.
+            Map<String, Object> expectedContent = (Map<String, Object>)expectedEntry.get("content");
+            for (String key : expectedContent.keySet()) {
+                if (!key.startsWith("eai:")) {
+                    assertEquals("Mismatch on " + key, expectedContent.get(key), entry.getContentValue(key));
+                }
+            }
+            assertNull(entry.getContentValue("no such key"));
+            assertNull(entry.content);
+
+            Record content = entry.getContent();
+            assertTrue(content == entry.content);
+            for (String key : content.keySet()) {
+                if (!key.startsWith("eai:")) {
+                    assertEquals("Mismatch on " + key, expectedContent.get(key), content.get(key));
+                }
+                assertEquals(content.get(key), entry.getContentValue(key));
+            }
+        }
+    }
+
     @Parameterized.Parameters(name="{0}")
     public static Collection<Object[]> testCases() {
         Collection<Object[]> cases = new ArrayList<Object[]>();
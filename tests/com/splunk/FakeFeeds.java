@@ -0,0 +1,243 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the responses of the in-memory services and jobs that the offline
+ * tests use in place of a Splunk server, and logs the requests they serve.
+ */
+class FakeFeeds {
+    private FakeFeeds() {}
+
+    /**
+     * Returns a results document in the XML output format.
+     *
+     * @param firstOffset The offset of the first row.
+     * @param fields The field names.
+     * @param rows The rows, each with a value for every field.
+     * @return The document.
+     */
+    static String resultsXml(int firstOffset, String[] fields,
+                             List<String[]> rows) {
+        StringBuilder text = new StringBuilder();
+        text.append("<?xml version='1.0' encoding='UTF-8'?>\n")
+            .append("<results preview='0'>\n<meta><fieldOrder>");
+        for (String field : fields)
+            text.append("<field>").append(field).append("</field>");
+        text.append("</fieldOrder></meta>\n");
+        for (int i = 0; i < rows.size(); i++) {
+            text.append("<result offset='").append(firstOffset + i).append("'>");
+            String[] row = rows.get(i);
+            for (int j = 0; j < fields.length; j++)
+                text.append("<field k='").append(fields[j])
+                    .append("'><value><text>").append(row[j])
+                    .append("</text></value></field>");
+            text.append("</result>\n");
+        }
+        return text.append("</results>\n").toString();
+    }
+
+    /**
+     * Returns a results document in the JSON output format of Splunk 5.0
+     * and later.
+     *
+     * @param firstOffset The offset of the first row.
+     * @param fields The field names.
+     * @param rows The rows, each with a value for every field.
+     * @return The document.
+     */
+    static String resultsJson(int firstOffset, String[] fields,
+                              List<String[]> rows) {
+        StringBuilder text = new StringBuilder();
+        text.append("{\"preview\":false,\"init_offset\":").append(firstOffset)
+            .append(",\"fields\":[");
+        for (int j = 0; j < fields.length; j++)
+            text.append(j > 0 ? "," : "")
+                .append("{\"name\":\"").append(fields[j]).append("\"}");
+        text.append("],\"results\":[");
+        for (int i = 0; i < rows.size(); i++) {
+            text.append(i > 0 ? "," : "");
+            appendJsonRow(text, fields, rows.get(i));
+        }
+        return text.append("]}").toString();
+    }
+
+    /**
+     * Returns the stream of an export search in the JSON output format,
+     * with one final row per line.
+     *
+     * @param fields The field names.
+     * @param rows The rows, each with a value for every field.
+     * @return The stream text.
+     */
+    static String exportJson(String[] fields, List<String[]> rows) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < rows.size(); i++) {
+            text.append("{\"preview\":false,\"offset\":").append(i)
+                .append(i == rows.size() - 1 ? ",\"lastrow\":true" : "")
+                .append(",\"result\":");
+            appendJsonRow(text, fields, rows.get(i));
+            text.append("}\n");
+        }
+        return text.toString();
+    }
+
+    private static void appendJsonRow(StringBuilder text, String[] fields,
+                                      String[] row) {
+        text.append('{');
+        for (int j = 0; j < fields.length; j++)
+            text.append(j > 0 ? "," : "")
+                .append('"').append(fields[j]).append("\":\"")
+                .append(row[j].replace("\\", "\\\\").replace("\"", "\\\""))
+                .append('"');
+        text.append('}');
+    }
+
+    /**
+     * Returns an Atom feed that lists a page of a collection, with an entry
+     * for each member name, whose path is below the collection's.
+     *
+     * @param path The path of the collection.
+     * @param totalResults The number of members of the collection, or -1 to
+     *                     leave it out.
+     * @param itemsPerPage The requested page size.
+     * @param startIndex The offset of the page.
+     * @param names The names of the members of the page.
+     * @return The feed.
+     */
+    static String atomFeed(String path, int totalResults, int itemsPerPage,
+                           int startIndex, List<String> names) {
+        StringBuilder text = new StringBuilder();
+        text.append("<?xml version='1.0' encoding='UTF-8'?>\n")
+            .append("<feed xmlns='http://www.w3.org/2005/Atom' ")
+            .append("xmlns:s='http://dev.splunk.com/ns/rest' ")
+            .append("xmlns:opensearch='http://a9.com/-/spec/opensearch/1.1/'>\n")
+            .append("<title>feed</title>\n");
+        if (totalResults >= 0)
+            text.append("<opensearch:totalResults>").append(totalResults)
+                .append("</opensearch:totalResults>\n");
+        text.append("<opensearch:itemsPerPage>").append(itemsPerPage)
+            .append("</opensearch:itemsPerPage>\n")
+            .append("<opensearch:startIndex>").append(startIndex)
+            .append("</opensearch:startIndex>\n");
+        for (String name : names)
+            text.append("<entry><title>").append(name).append("</title>")
+                .append("<link href='").append(path).append('/').append(name)
+                .append("' rel='alternate'/></entry>\n");
+        return text.append("</feed>\n").toString();
+    }
+
+    /**
+     * Returns the response of the {@code search/timeparser} endpoint for a
+     * time.
+     *
+     * @param time The time that was parsed.
+     * @param seconds The time it stands for, in seconds since the epoch, or
+     *                {@code null} if it cannot be parsed.
+     * @return The response.
+     */
+    static String timeParser(String time, Double seconds) {
+        if (seconds == null)
+            return "<response><dict></dict></response>";
+        return "<response><dict><key name='" + time + "'>"
+                + ResumableExport.formatTime((long) (seconds * 1000))
+                + "</key></dict></response>";
+    }
+
+    /**
+     * Returns the UTF-8 bytes of a text as a stream.
+     *
+     * @param text The text.
+     * @return The stream.
+     */
+    static InputStream stream(String text) {
+        try {
+            return new ByteArrayInputStream(text.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Logs the arguments of the requests a fake serves, and how many of
+     * them are served at once.
+     */
+    static final class RequestLog {
+        private final List<Map> requests =
+                Collections.synchronizedList(new ArrayList<Map>());
+        private int running = 0;
+        private int maxRunning = 0;
+
+        /**
+         * Logs a request that is served at once.
+         *
+         * @param args The arguments of the request.
+         */
+        void add(Map args) {
+            requests.add(new Args(args));
+        }
+
+        /**
+         * Logs a request, as being served until {@link #finished} is
+         * called.
+         *
+         * @param args The arguments of the request.
+         */
+        void started(Map args) {
+            add(args);
+            synchronized (this) {
+                running++;
+                maxRunning = Math.max(maxRunning, running);
+            }
+        }
+
+        synchronized void finished() {
+            running--;
+        }
+
+        /**
+         * Returns the arguments of the requests, in the order they came.
+         *
+         * @return A copy of the request arguments.
+         */
+        List<Map> getRequests() {
+            synchronized (requests) {
+                return new ArrayList<Map>(requests);
+            }
+        }
+
+        int size() {
+            return requests.size();
+        }
+
+        Map get(int index) {
+            return requests.get(index);
+        }
+
+        synchronized int getMaxRunning() {
+            return maxRunning;
+        }
+    }
+}
@@ -24,6 +24,8 @@ import javax.net.ssl.*;
 import java.io.ByteArrayOutputStream;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
 
 public class HttpServiceTest extends SDKTestCase {
     private HttpService httpService;
@@ -75,6 +77,99 @@ public class HttpServiceTest extends SDKTestCase {
         Assert.assertNotNull(request.getContent());
     }
 
+    @Test
+    public void testConnectionPoolReusesConnections() throws Exception {
+        HttpConnectionPool pool = httpService.getConnectionPool();
+        for (int i = 0; i < 5; i++) {
+            ResponseMessage response = httpService.get("/");
+            Assert.assertEquals(200, response.getStatus());
+            response.close();
+            Assert.assertEquals(0, pool.getLeasedCount());
+        }
+        Assert.assertEquals(1, pool.getCreatedCount());
+        Assert.assertEquals(1, pool.getIdleCount());
+
+        pool.closeIdleConnections();
+        Assert.assertEquals(0, pool.getIdleCount());
+        Assert.assertEquals(1, pool.getEvictedCount());
+    }
+
+    @Test
+    public void testConnectionPoolReleasesOnError() {
+        HttpConnectionPool pool = service.getConnectionPool();
+        try {
+            service.get("/services/this/does/not/exist");
+            Assert.fail("Expected HttpException");
+        } catch (HttpException e) {
+            Assert.assertEquals(404, e.getStatus());
+        }
+        Assert.assertEquals(0, pool.getLeasedCount());
+    }
+
+    @Test
+    public void testCompressedResponse() throws Exception {
+        ResponseMessage plain = service.get("/services/server/info");
+        String expected = streamToString(plain.getContent());
+        Assert.assertEquals(expected.getBytes("UTF-8").length,
+                plain.getContentByteCount());
+        Assert.assertEquals(plain.getWireByteCount(),
+                plain.getContentByteCount());
+
+        service.setUseCompression(true);
+        try {
+            ResponseMessage response = service.get("/services/server/info");
+            String actual = streamToString(response.getContent());
+            Assert.assertTrue(actual.startsWith("<?xml"));
+            Assert.assertEquals(actual.getBytes("UTF-8").length,
+                    response.getContentByteCount());
+            if (response.getHeader().containsKey("Content-Encoding")) {
+                Assert.assertTrue(response.getWireByteCount()
+                        < response.getContentByteCount());
+            }
+        } finally {
+            service.setUseCompression(false);
+        }
+    }
+
+    @Test
+    public void testRequestListener() throws Exception {
+        RequestMetrics metrics = new RequestMetrics();
+        final List<RequestEvent> events = new ArrayList<RequestEvent>();
+        httpService.addRequestListener(metrics);
+        httpService.addRequestListener(new RequestListener() {
+            public void requestStarted(RequestEvent event) {
+            }
+
+            public void requestCompleted(RequestEvent event) {
+                synchronized (events) {
+                    events.add(event);
+                }
+            }
+        });
+
+        ResponseMessage response = httpService.get("/services/server/info");
+        Assert.assertTrue(events.isEmpty());
+        streamToString(response.getContent());
+        Assert.assertEquals(1, events.size());
+
+        RequestEvent event = events.get(0);
+        Assert.assertEquals("GET", event.getMethod());
+        Assert.assertEquals(200, event.getStatus());
+        Assert.assertNull(event.getFailure());
+        Assert.assertTrue(event.getBytesIn() > 0);
+        Assert.assertTrue(event.getTimeToFirstByteNanos() > 0);
+        Assert.assertTrue(event.getTotalNanos() >= event.getTimeToFirstByteNanos());
+
+        LatencyHistogram histogram =
+                metrics.getHistogram("GET /services/server/info");
+        Assert.assertNotNull(histogram);
+        Assert.assertEquals(1, histogram.getCount());
+        Assert.assertEquals(
+                "/servicesNS/{owner}/{app}/search/jobs/{sid}/results",
+                metrics.getPathTemplate(
+                        "/servicesNS/admin/search/search/jobs/1423.5/results"));
+    }
+
     @Test
     public void testResponseMessage() {
         ResponseMessage response = new ResponseMessage(200);
@@ -167,6 +262,49 @@ public class HttpServiceTest extends SDKTestCase {
         }
     }
 
+    @Test
+    public void testPerInstanceSecurityProtocol() {
+        SSLSecurityProtocol defaultProtocol = Service.getSslSecurityProtocol();
+
+        ServiceArgs args = new ServiceArgs();
+        args.setHost(service.getHost());
+        args.setPort(service.getPort());
+        args.setSSLSecurityProtocol(SSLSecurityProtocol.TLSv1_2);
+        Service s = new Service(args);
+
+        Assert.assertEquals(SSLSecurityProtocol.TLSv1_2, s.getSecurityProtocol());
+        Assert.assertEquals(defaultProtocol, Service.getSslSecurityProtocol());
+        Assert.assertEquals(defaultProtocol, service.getSecurityProtocol());
+        Assert.assertNotSame(Service.getSSLSocketFactory(), s.getSecureSocketFactory());
+
+        s.login(service.getUsername(), service.getPassword());
+        Assert.assertEquals(service.getInfo().getVersion(), s.getInfo().getVersion());
+    }
+
+    @Test
+    public void testTlsSessionResumption() {
+        if (!"https".equals(service.getScheme()))
+            return;
+
+        ServiceArgs args = new ServiceArgs();
+        args.setHost(service.getHost());
+        args.setPort(service.getPort());
+        args.setSSLSecurityProtocol(SSLSecurityProtocol.TLSv1_2);
+        args.setSSLSessionCacheSize(4);
+        args.setSSLSessionTimeout(600);
+        Service s = new Service(args);
+        Assert.assertEquals(4, s.getSSLSessionContext().getSessionCacheSize());
+        Assert.assertEquals(600, s.getSSLSessionContext().getSessionTimeout());
+
+        s.login(service.getUsername(), service.getPassword());
+        for (int i = 0; i < 3; i++) {
+            s.getConnectionPool().closeIdleConnections();
+            s.getInfo();
+        }
+        Assert.assertTrue(s.getHandshakeCount() >= 3);
+        Assert.assertTrue(s.getResumedHandshakeCount() >= 2);
+    }
+
     public void validateSSLProtocol(Service s, SSLSecurityProtocol securityProtocol) {
         // Backup the old value
         SSLSecurityProtocol old = Service.getSslSecurityProtocol();
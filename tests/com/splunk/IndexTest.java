@@ -540,6 +540,44 @@ public class IndexTest extends SDKTestCase {
         });
     }
 
+    @Test
+    public void testSubmitStream() throws Exception {
+        Assert.assertTrue(getResultCountOfIndex(service) == 0);
+
+        String events =
+                createTimestamp() + " Hello world!\u0150" + "\r\n" +
+                createTimestamp() + " Goodbye world!\u0150";
+        index.submit(new Args(), new ByteArrayInputStream(events.getBytes("UTF-8")));
+
+        assertEventuallyTrue(new EventuallyTrueBehavior() {
+            @Override
+            public boolean predicate() {
+                return getResultCountOfIndex(service) == 2;
+            }
+        });
+    }
+
+    @Test
+    public void testSubmitWriter() throws Exception {
+        Assert.assertTrue(getResultCountOfIndex(service) == 0);
+
+        index.submit(new Args(), new ContentWriter() {
+            public void write(OutputStream stream) throws IOException {
+                for (int i = 0; i < 3; i++) {
+                    String event = createTimestamp() + " Event " + i + "\r\n";
+                    stream.write(event.getBytes("UTF-8"));
+                }
+            }
+        });
+
+        assertEventuallyTrue(new EventuallyTrueBehavior() {
+            @Override
+            public boolean predicate() {
+                return getResultCountOfIndex(service) == 3;
+            }
+        });
+    }
+
     @Test
     public void testAttach() throws IOException {
 
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JobResultsIteratorTest {
+
+    // A done job with a given number of results, numbered from 0, which
+    // serves its pages from memory.
+    private static class PagedJob extends Job {
+        final int resultCount;
+        final FakeFeeds.RequestLog log = new FakeFeeds.RequestLog();
+
+        PagedJob(int resultCount) {
+            super(new Service("localhost"), "search/jobs/1");
+            this.resultCount = resultCount;
+        }
+
+        @Override public boolean isReady() { return true; }
+        @Override public boolean isDone() { return true; }
+        @Override public int getResultCount() { return resultCount; }
+
+        @Override
+        public InputStream getResults(Map args) {
+            log.add(args);
+            int offset = Integer.parseInt(args.get("offset").toString());
+            int count = Integer.parseInt(args.get("count").toString());
+            String[] fields = { "n" };
+            List<String[]> rows = new ArrayList<String[]>();
+            for (int i = offset; i < Math.min(resultCount, offset + count); i++)
+                rows.add(new String[] { Integer.toString(i) });
+            return FakeFeeds.stream("json".equals(args.get("output_mode"))
+                    ? FakeFeeds.resultsJson(offset, fields, rows)
+                    : FakeFeeds.resultsXml(offset, fields, rows));
+        }
+    }
+
+    private static void assertResults(int first, int count,
+                                      JobResultsIterator iterator) {
+        for (int i = first; i < first + count; i++) {
+            assertTrue(iterator.hasNext());
+            assertEquals(Integer.toString(i), iterator.next().get("n"));
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testJson() {
+        PagedJob job = new PagedJob(1050);
+        assertResults(0, 1050, job.resultsIterator(100, 3));
+        assertEquals(11, job.log.size());
+        assertEquals("json", job.log.get(0).get("output_mode"));
+    }
+
+    @Test
+    public void testXmlWithBounds() {
+        PagedJob job = new PagedJob(1000);
+        JobResultsArgs args = new JobResultsArgs();
+        args.put("output_mode", "xml");
+        args.setOffset(120);
+        args.setCount(250);
+        assertResults(120, 250, job.resultsIterator(args, 100, 2));
+        assertEquals(3, job.log.size());
+        // The pages are requested concurrently, so in no particular order.
+        Map<Object, Object> counts = new HashMap<Object, Object>();
+        for (Map request : job.log.getRequests())
+            counts.put(request.get("offset"), request.get("count"));
+        assertEquals(100, counts.get(120));
+        assertEquals(100, counts.get(220));
+        assertEquals(50, counts.get(320));
+    }
+
+    @Test
+    public void testEmpty() {
+        PagedJob job = new PagedJob(0);
+        assertFalse(job.resultsIterator(10, 2).hasNext());
+        assertEquals(0, job.log.size());
+    }
+
+    @Test
+    public void testClose() {
+        PagedJob job = new PagedJob(1000);
+        JobResultsIterator iterator = job.resultsIterator(10, 4);
+        for (int i = 0; i < 15; i++)
+            assertEquals(Integer.toString(i), iterator.next().get("n"));
+        iterator.close();
+        assertFalse(iterator.hasNext());
+        assertTrue(job.log.size() <= 6);
+    }
+
+    @Test
+    public void testFailure() {
+        PagedJob job = new PagedJob(100) {
+            @Override
+            public InputStream getResults(Map args) {
+                throw new HttpException(500, "Internal error", "");
+            }
+        };
+        JobResultsIterator iterator = job.resultsIterator(10, 2);
+        try {
+            iterator.hasNext();
+            fail("Expected the failure of a page to be thrown.");
+        } catch (HttpException e) {
+            assertEquals(500, e.getStatus());
+        }
+    }
+}
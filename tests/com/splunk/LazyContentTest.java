@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LazyContentTest {
+
+    // An entry whose content has nested dicts and lists, empty values, and
+    // a repeated key.
+    private static final String FEED =
+            "<?xml version='1.0' encoding='UTF-8'?>\n"
+            + "<feed xmlns='http://www.w3.org/2005/Atom' "
+            + "xmlns:s='http://dev.splunk.com/ns/rest'>\n"
+            + "<title>items</title>\n"
+            + "<entry><title>item0</title>"
+            + "<link href='/services/items/item0' rel='alternate'/>"
+            + "<content type='text/xml'><s:dict>"
+            + "<s:key name='name'>item0</s:key>"
+            + "<s:key name='empty'></s:key>"
+            + "<s:key name='repeated'>first</s:key>"
+            + "<s:key name='eai:acl'><s:dict>"
+            + "<s:key name='app'>search</s:key>"
+            + "<s:key name='owner'>admin</s:key>"
+            + "<s:key name='perms'><s:dict>"
+            + "<s:key name='read'><s:list><s:item>*</s:item></s:list></s:key>"
+            + "<s:key name='write'><s:list><s:item>admin</s:item>"
+            + "<s:item>power</s:item></s:list></s:key>"
+            + "</s:dict></s:key>"
+            + "<s:key name='sharing'>app</s:key>"
+            + "</s:dict></s:key>"
+            + "<s:key name='list'><s:list><s:item>a &amp; b</s:item>"
+            + "<s:item><s:dict><s:key name='k'>v</s:key></s:dict></s:item>"
+            + "</s:list></s:key>"
+            + "<s:key name='repeated'>last</s:key>"
+            + "</s:dict></content></entry>\n"
+            + "<entry><title>item1</title>"
+            + "<link href='/services/items/item1' rel='alternate'/></entry>\n"
+            + "</feed>\n";
+
+    private static Record expectedContent() {
+        Record perms = new Record();
+        perms.put("read", Arrays.asList("*"));
+        perms.put("write", Arrays.asList("admin", "power"));
+        Record acl = new Record();
+        acl.put("app", "search");
+        acl.put("owner", "admin");
+        acl.put("perms", perms);
+        acl.put("sharing", "app");
+        Record item = new Record();
+        item.put("k", "v");
+        List<Object> list = new ArrayList<Object>();
+        list.add("a & b");
+        list.add(item);
+        Record content = new Record();
+        content.put("name", "item0");
+        content.put("repeated", "last");
+        content.put("eai:acl", acl);
+        content.put("list", list);
+        return content;
+    }
+
+    private static InputStream feed() {
+        return FakeFeeds.stream(FEED);
+    }
+
+    @Test
+    public void testDecodedContent() {
+        AtomFeed feed = AtomFeed.parseStream(feed());
+        assertEquals(expectedContent(), feed.entries.get(0).content);
+        assertNull(feed.entries.get(1).content);
+    }
+
+    @Test
+    public void testLazyContent() {
+        AtomFeed feed = AtomFeed.parseStream(feed(), true);
+        AtomEntry entry = feed.entries.get(0);
+        assertNull(entry.content);
+        assertTrue(entry.hasContent());
+        assertEquals("last", entry.getContentValue("repeated"));
+        assertEquals(expectedContent().get("eai:acl"),
+                entry.getContentValue("eai:acl"));
+        assertNull(entry.getContentValue("empty"));
+        assertNull(entry.content);
+
+        Record content = entry.getContent();
+        assertEquals(expectedContent(), content);
+        assertTrue(content == entry.content);
+
+        assertFalse(feed.entries.get(1).hasContent());
+        assertNull(feed.entries.get(1).getContent());
+    }
+
+    @Test
+    public void testLargeContent() {
+        StringBuilder search = new StringBuilder();
+        for (int i = 0; i < 100000; i++)
+            search.append('x');
+        String feed = FEED.replace("<s:key name='name'>item0</s:key>",
+                "<s:key name='name'>item0</s:key><s:key name='search'>"
+                + search + "</s:key>");
+        AtomEntry large = AtomFeed.parseStream(
+                FakeFeeds.stream(feed), true).entries.get(0);
+
+        // The buffers that grew for the large entry are not reused by the
+        // next feed, which still captures its entries correctly.
+        AtomEntry entry = AtomFeed.parseStream(feed(), true).entries.get(0);
+        assertEquals(expectedContent(), entry.getContent());
+        assertEquals(search.toString(), large.getContentValue("search"));
+        Record content = expectedContent();
+        content.put("search", search.toString());
+        assertEquals(content, large.getContent());
+    }
+
+    @Test
+    public void testCollectionEntitiesDecodeOnFirstUse() {
+        AtomFeed feed = AtomFeed.parseStream(feed(), true);
+        Service service = new Service("localhost");
+        Entity entity = new Entity(service, "/services/items/item0");
+        entity.load(feed.entries.get(0));
+        assertNull(feed.entries.get(0).content);
+
+        assertEquals("item0", entity.getString("name"));
+        assertEquals(expectedContent(), entity.getContent());
+        assertEquals(expectedContent(), feed.entries.get(0).content);
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import org.junit.Test;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParallelExportTest {
+
+    // Exports one event a second, from 1999 down to 1000 seconds, within
+    // the time bounds of each request. Its clock, against which relative
+    // times (now, or -<n>s) are evaluated, is far behind the client's.
+    private static class TimedService extends Service {
+        final FakeFeeds.RequestLog log = new FakeFeeds.RequestLog();
+        final double now = 2000;
+        // The reads of "hang" searches waiting on their connection.
+        int waiting = 0;
+
+        TimedService() {
+            super("localhost");
+        }
+
+        @Override
+        public ResponseMessage get(String path, Map<String, Object> args) {
+            if (!path.equals("search/timeparser"))
+                return super.get(path, args);
+            String time = (String) args.get("time");
+            Double seconds = null;
+            if (time.equals("now"))
+                seconds = now;
+            else if (time.matches("-[0-9]+s"))
+                seconds = now - Double.parseDouble(
+                        time.substring(1, time.length() - 1));
+            return new ResponseMessage(200, FakeFeeds.stream(
+                    FakeFeeds.timeParser(time, seconds)));
+        }
+
+        synchronized void awaitWaiting(int count) {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (waiting != count) {
+                long left = deadline - System.currentTimeMillis();
+                assertTrue("Expected " + count + " waiting reads.", left > 0);
+                try {
+                    wait(left);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e.getMessage(), e);
+                }
+            }
+        }
+
+        @Override
+        public InputStream export(String search, Map args) {
+            log.started(args);
+            if ("fail".equals(search)) {
+                log.finished();
+                throw new RuntimeException("Search failed.");
+            }
+            double earliest = Double.parseDouble((String) args.get("earliest_time"));
+            double latest = Double.parseDouble((String) args.get("latest_time"));
+
+            List<String[]> rows = new ArrayList<String[]>();
+            for (int time = 1999; time >= 1000; time--) {
+                if (time >= earliest && time < latest)
+                    rows.add(new String[] { "1:" + time, time + ".000" });
+            }
+            String text = FakeFeeds.resultsXml(
+                    0, new String[] { "_cd", "_time" }, rows);
+            if ("hang".equals(search)) {
+                // The connection stalls after the first event.
+                text = text.substring(0, text.indexOf("</result>") + 10);
+                return new HangingStream(this, FakeFeeds.stream(text));
+            }
+
+            // The request is served until its stream is closed.
+            return new FilterInputStream(FakeFeeds.stream(text)) {
+                boolean closed = false;
+
+                @Override
+                public void close() throws IOException {
+                    synchronized (this) {
+                        if (!closed)
+                            log.finished();
+                        closed = true;
+                    }
+                }
+            };
+        }
+    }
+
+    // Returns its text, then waits until it is closed, ignoring interrupts
+    // as a socket read does.
+    private static class HangingStream extends InputStream {
+        private final TimedService service;
+        private final InputStream text;
+        private boolean closed = false;
+
+        HangingStream(TimedService service, InputStream text) {
+            this.service = service;
+            this.text = text;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len)
+                throws IOException {
+            int n = closed ? -1 : text.read(b, off, len);
+            if (n > 0)
+                return n;
+            setWaiting(1);
+            while (!closed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // Ignored, as by a blocked socket read.
+                }
+            }
+            setWaiting(-1);
+            throw new IOException("Socket closed");
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed)
+                service.log.finished();
+            closed = true;
+            notifyAll();
+        }
+
+        private void setWaiting(int delta) {
+            synchronized (service) {
+                service.waiting += delta;
+                service.notifyAll();
+            }
+        }
+    }
+
+    private static List<String> readTimes(ParallelExport export)
+            throws IOException {
+        List<String> times = new ArrayList<String>();
+        for (Event event : export)
+            times.add(event.get("_time"));
+        export.close();
+        return times;
+    }
+
+    private static Args range(String earliest, String latest) {
+        Args args = new Args();
+        args.put("earliest_time", earliest);
+        args.put("latest_time", latest);
+        return args;
+    }
+
+    @Test
+    public void testOrdered() throws IOException {
+        TimedService service = new TimedService();
+        ParallelExport export = service.exportParallel(
+                "search *", range("1000", "2000"), 7, 3, true);
+        List<String> times = readTimes(export);
+
+        assertEquals(1000, times.size());
+        for (int i = 0; i < times.size(); i++)
+            assertEquals((1999 - i) + ".000", times.get(i));
+
+        assertEquals(7, service.log.size());
+        assertTrue(service.log.getMaxRunning() <= 3);
+        List<ParallelExport.Slice> slices = export.getSlices();
+        assertEquals(7, slices.size());
+        assertEquals("2000.000", slices.get(0).getLatestTime());
+        assertEquals("1000.000", slices.get(6).getEarliestTime());
+        long total = 0;
+        for (int i = 0; i < slices.size(); i++) {
+            ParallelExport.Slice slice = slices.get(i);
+            assertTrue(slice.isDone());
+            if (i > 0)
+                assertEquals(slice.getLatestTime(),
+                        slices.get(i - 1).getEarliestTime());
+            total += slice.getEventCount();
+        }
+        assertEquals(1000, total);
+    }
+
+    @Test
+    public void testUnordered() throws IOException {
+        TimedService service = new TimedService();
+        ParallelExport export = service.exportParallel(
+                "search *", range("1500", "2000"), 4, 4, false);
+        List<String> times = readTimes(export);
+
+        assertEquals(500, times.size());
+        Set<String> unique = new HashSet<String>(times);
+        assertEquals(500, unique.size());
+        for (int time = 1500; time < 2000; time++)
+            assertTrue(unique.contains(time + ".000"));
+    }
+
+    @Test
+    public void testCloseEarly() throws IOException {
+        TimedService service = new TimedService();
+        ParallelExport export = service.exportParallel(
+                "search *", range("1000", "2000"), 10, 2, true);
+        for (int i = 0; i < 10; i++)
+            export.getNextEvent();
+        export.close();
+        assertEquals(null, export.getNextEvent());
+    }
+
+    @Test
+    public void testFailure() throws IOException {
+        TimedService service = new TimedService();
+        ParallelExport export = service.exportParallel(
+                "fail", range("1000", "2000"), 2, 2, true);
+        try {
+            export.getNextEvent();
+            fail("Expected the failure of a slice to be thrown.");
+        } catch (RuntimeException e) {
+            assertEquals("Search failed.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCloseStopsWaitingReads() throws IOException {
+        TimedService service = new TimedService();
+        ParallelExport export = service.exportParallel(
+                "hang", range("1000", "2000"), 2, 2, false);
+        service.awaitWaiting(2);
+
+        export.close();
+        service.awaitWaiting(0);
+        assertEquals(null, export.getNextEvent());
+        // The failed reads are not taken for broken connections.
+        assertEquals(2, service.log.size());
+        for (ParallelExport.Slice slice : export.getSlices())
+            assertFalse(slice.isDone());
+    }
+
+    @Test
+    public void testRelativeTimes() throws IOException {
+        // The bounds are resolved by the server, whose clock is far behind
+        // the client's, and a missing latest time is its now.
+        TimedService service = new TimedService();
+        Args args = new Args("earliest_time", "-300s");
+        ParallelExport export = service.exportParallel(
+                "search *", args, 3, 2, true);
+        List<String> times = readTimes(export);
+        assertEquals(300, times.size());
+        assertEquals("1999.000", times.get(0));
+        assertEquals("1700.000", times.get(299));
+        assertEquals("2000.000", export.getSlices().get(0).getLatestTime());
+        assertEquals("1700.000", export.getSlices().get(2).getEarliestTime());
+
+        try {
+            service.exportParallel("search *", range("-1d@d", "now"), 2, 2, true);
+            fail("Expected an unresolved relative time to be rejected.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        try {
+            service.exportParallel("search *", new Args(), 2, 2, true);
+            fail("Expected a missing earliest time to be rejected.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+}
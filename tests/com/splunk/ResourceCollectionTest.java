@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResourceCollectionTest {
+
+    // Lists a collection of members named "item0" to "item<size - 1>",
+    // honoring the offset and count of each request.
+    private static class PagedService extends Service {
+        final int size;
+        final boolean withTotal;
+        final FakeFeeds.RequestLog log = new FakeFeeds.RequestLog();
+
+        PagedService(int size, boolean withTotal) {
+            super("localhost");
+            this.size = size;
+            this.withTotal = withTotal;
+        }
+
+        @Override
+        public ResponseMessage get(String path, Map<String, Object> args) {
+            int offset = intArg(args, "offset", 0);
+            int count = intArg(args, "count", 0);
+            log.started(args);
+            try {
+                if (offset < 0)
+                    throw new RuntimeException("Bad offset.");
+                // Keep the requests outstanding for a moment, so that
+                // concurrent ones overlap.
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                log.finished();
+            }
+
+            List<String> names = new ArrayList<String>();
+            for (int i = offset; i < size && (count <= 0 || i < offset + count); i++)
+                names.add("item" + i);
+            return new ResponseMessage(200, FakeFeeds.stream(FakeFeeds.atomFeed(
+                    path, withTotal ? size : -1, count, offset, names)));
+        }
+
+        // Returns the "offset/count" of each request, in the order they came.
+        List<String> pages() {
+            List<String> pages = new ArrayList<String>();
+            for (Map args : log.getRequests())
+                pages.add(intArg(args, "offset", 0) + "/"
+                        + intArg(args, "count", 0));
+            return pages;
+        }
+    }
+
+    private static int intArg(Map args, String name, int defaultValue) {
+        Object value = args.get(name);
+        return value == null
+                ? defaultValue : Integer.parseInt(value.toString());
+    }
+
+    private static List<String> expectedKeys(int from, int to) {
+        List<String> keys = new ArrayList<String>();
+        for (int i = from; i < to; i++)
+            keys.add("item" + i);
+        return keys;
+    }
+
+    private static ResourceCollection<Entity> collection(
+            Service service, Args args) {
+        return new ResourceCollection<Entity>(
+                service, "/services/items", Entity.class, args);
+    }
+
+    @Test
+    public void testSingleRequestByDefault() {
+        PagedService service = new PagedService(25, true);
+        ResourceCollection<Entity> items = collection(service,
+                new Args("count", 0));
+        items.refresh();
+
+        assertEquals(expectedKeys(0, 25), new ArrayList<String>(items.keySet()));
+        assertEquals(1, service.log.size());
+    }
+
+    @Test
+    public void testPagesInOrder() {
+        PagedService service = new PagedService(95, true);
+        ResourceCollection<Entity> items = collection(service,
+                new Args("count", 0));
+        items.setPageSize(10);
+        items.setPageConcurrency(4);
+        items.refresh();
+
+        assertEquals(expectedKeys(0, 95), new ArrayList<String>(items.keySet()));
+        assertEquals("/services/items/item42", items.get("item42").getPath());
+        assertEquals(10, service.log.size());
+        assertEquals("0/10", service.pages().get(0));
+        assertTrue(service.pages().contains("90/5"));
+        assertTrue(service.log.getMaxRunning() > 1);
+        assertTrue(service.log.getMaxRunning() <= 4);
+
+        // A second refresh replaces the members rather than adding to them.
+        items.refresh();
+        assertEquals(95, items.size());
+    }
+
+    @Test
+    public void testPagesWithinOffsetAndCount() {
+        PagedService service = new PagedService(95, true);
+        Args args = new Args();
+        args.put("offset", 12);
+        args.put("count", 30);
+        ResourceCollection<Entity> items = collection(service, args);
+        items.setPageSize(8);
+        items.setPageConcurrency(2);
+        items.refresh();
+
+        assertEquals(expectedKeys(12, 42), new ArrayList<String>(items.keySet()));
+        assertEquals(4, service.log.size());
+        assertTrue(service.pages().contains("36/6"));
+    }
+
+    @Test
+    public void testPagesWithoutTotal() {
+        PagedService service = new PagedService(30, false);
+        ResourceCollection<Entity> items = collection(service,
+                new Args("count", 0));
+        items.setPageSize(10);
+        items.setPageConcurrency(4);
+        items.refresh();
+
+        // Without a total, pages are read one after another until the
+        // first empty or short page.
+        assertEquals(expectedKeys(0, 30), new ArrayList<String>(items.keySet()));
+        assertEquals(4, service.log.size());
+        assertEquals(1, service.log.getMaxRunning());
+    }
+
+    @Test
+    public void testPageFailure() {
+        PagedService service = new PagedService(30, true) {
+            @Override
+            public ResponseMessage get(String path, Map<String, Object> args) {
+                if (intArg(args, "offset", 0) == 20)
+                    throw new RuntimeException("Page failed.");
+                return super.get(path, args);
+            }
+        };
+        ResourceCollection<Entity> items = collection(service,
+                new Args("count", 0));
+        items.setPageSize(10);
+        items.setPageConcurrency(3);
+        try {
+            items.refresh();
+            fail("Expected the failed page to fail the refresh.");
+        } catch (RuntimeException e) {
+            assertEquals("Page failed.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testPagesListedThroughOverride() {
+        PagedService service = new PagedService(25, true);
+        final List<Object> listed =
+                Collections.synchronizedList(new ArrayList<Object>());
+        ResourceCollection<Entity> items = new ResourceCollection<Entity>(
+                service, "/services/items", Entity.class, new Args("count", 0)) {
+            @Override
+            public ResponseMessage list(Args args) {
+                listed.add(args.get("offset"));
+                return super.list(args);
+            }
+        };
+
+        items.refresh();
+        assertEquals(1, listed.size());
+
+        items.setPageSize(10);
+        items.setPageConcurrency(2);
+        items.refresh();
+        assertEquals(expectedKeys(0, 25), new ArrayList<String>(items.keySet()));
+        assertEquals(4, listed.size());
+    }
+
+    @Test
+    public void testInvalidSettings() {
+        ResourceCollection<Entity> items = collection(
+                new PagedService(0, true), new Args());
+        try {
+            items.setPageSize(-1);
+            fail("Expected a negative page size to be rejected.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        try {
+            items.setPageConcurrency(0);
+            fail("Expected a page concurrency of 0 to be rejected.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        assertEquals(0, items.getPageSize());
+        assertEquals(1, items.getPageConcurrency());
+    }
+}
@@ -19,6 +19,7 @@ package com.splunk;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
@@ -61,6 +62,178 @@ public class ResultsReaderTest extends SDKTestCase {
         reader.close();
     }
 
+    @Test
+    public void testReadRows() throws Exception {
+        ResultsReaderXml events = new ResultsReaderXml(openResource("resultsMV.xml"));
+        ResultsReaderXml rows = new ResultsReaderXml(openResource("resultsMV.xml"));
+
+        Event event;
+        while ((event = events.getNextEvent()) != null) {
+            ResultRow row = rows.getNextRow();
+            Assert.assertNotNull(row);
+            Assert.assertEquals(event.keySet(), new HashSet<String>(row.getFields()));
+            for (String field : event.keySet()) {
+                Assert.assertEquals(event.get(field), row.get(field));
+                Assert.assertArrayEquals(event.getArray(field), row.getArray(field));
+            }
+            Assert.assertEquals(event.getSegmentedRaw(), row.getSegmentedRaw());
+            Assert.assertEquals(Long.parseLong(event.get("_serial")), row.getLong("_serial"));
+            Assert.assertEquals(-1, row.getLong("no_such_field", -1));
+        }
+        Assert.assertNull(rows.getNextRow());
+        events.close();
+        rows.close();
+
+        ResultsReaderCsv csv = new ResultsReaderCsv(openResource("results.csv"));
+        ResultRow row = csv.getNextRow();
+        Assert.assertEquals(Arrays.asList("sum(kb)", "series"), row.getFields());
+        Assert.assertEquals(14372242.758775, row.getDouble("sum(kb)"), 1e-6);
+        Assert.assertNull(row.getTime());
+        csv.close();
+    }
+
+    @Test
+    public void testParseRowTime() {
+        Assert.assertEquals(1354063462581L,
+                ResultRow.parseTime("2012-11-27T16:44:22.581-08:00"));
+        Assert.assertEquals(1354063462000L,
+                ResultRow.parseTime("2012-11-28T00:44:22Z"));
+        Assert.assertEquals(1354063462581L,
+                ResultRow.parseTime("1354063462.581"));
+        try {
+            ResultRow.parseTime("yesterday");
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testReadBatches() throws Exception {
+        ResultsReaderCsv csv = new ResultsReaderCsv(openResource("results.csv"));
+        ResultBatch batch = csv.nextBatch(2);
+        Assert.assertEquals(2, batch.getRowCount());
+        Assert.assertEquals(Arrays.asList("sum(kb)", "series"), batch.getFields());
+        ResultColumn.DoubleColumn sums =
+                (ResultColumn.DoubleColumn) batch.getColumn("sum(kb)");
+        Assert.assertEquals(0, sums.getNullCount());
+        Assert.assertEquals(267802.333926, sums.getValues()[1], 1e-6);
+        ResultColumn.StringColumn series =
+                (ResultColumn.StringColumn) batch.getColumn(1);
+        Assert.assertEquals("twitter", series.getString(0));
+        Assert.assertEquals(1, series.getCodes()[1]);
+        Assert.assertEquals(1, csv.nextBatch(2).getRowCount());
+        Assert.assertNull(csv.nextBatch(2));
+        csv.close();
+
+        String json = "{\"preview\":false,\"results\":[" +
+                "{\"count\":\"3\",\"host\":\"a\",\"code\":\"007\"}," +
+                "{\"count\":\"-12\",\"host\":[\"a\",\"b\"]}," +
+                "{\"count\":\"4\",\"host\":\"a\",\"code\":\"8\"}]}";
+        ResultsReader reader = new ResultsReaderJsonUtf8(
+                new ByteArrayInputStream(json.getBytes("UTF-8")));
+        batch = reader.nextBatch(100);
+        reader.close();
+        Assert.assertEquals(3, batch.getRowCount());
+        Assert.assertEquals(Arrays.asList("count", "host", "code"), batch.getFields());
+
+        ResultColumn.LongColumn counts =
+                (ResultColumn.LongColumn) batch.getColumn("count");
+        Assert.assertArrayEquals(new long[] { 3, -12, 4 }, counts.getValues());
+        ResultColumn.StringColumn hosts =
+                (ResultColumn.StringColumn) batch.getColumn("host");
+        Assert.assertArrayEquals(new String[] { "a", "b" }, hosts.getArray(1));
+        Assert.assertEquals("a,b", hosts.getString(1));
+        Assert.assertArrayEquals(new int[] { 0, 1, 0 }, hosts.getCodes());
+        ResultColumn codes = batch.getColumn("code");
+        Assert.assertEquals(ResultColumn.Type.STRING, codes.getType());
+        Assert.assertTrue(codes.isNull(1));
+        Assert.assertEquals(1, codes.getNullCount());
+        Assert.assertEquals("007", codes.getString(0));
+        Assert.assertNull(batch.getColumn("no_such_field"));
+    }
+
+    @Test
+    public void testStringDictionary() throws Exception {
+        StringDictionary dictionary = new StringDictionary(2, 8);
+        String host = dictionary.intern(new String("host-1"));
+        Assert.assertSame(host, dictionary.intern(new String("host-1")));
+        char[] chars = "a host-1".toCharArray();
+        Assert.assertSame(host, dictionary.intern(chars, 2, 6));
+        // Values seen once replace each other, not the value that repeats.
+        for (int i = 0; i < 10; i++)
+            dictionary.intern("serial" + i);
+        Assert.assertSame(host, dictionary.intern(new String("host-1")));
+        String raw = "longer than eight";
+        Assert.assertSame(raw, dictionary.intern(raw));
+        Assert.assertEquals(14, dictionary.getLookups());
+        Assert.assertEquals(3, dictionary.getHits());
+        Assert.assertEquals(9, dictionary.getEvictions());
+
+        Map<String, Class<? extends ResultsReader>> files =
+                new HashMap<String, Class<? extends ResultsReader>>();
+        files.put("resultsMV.xml", ResultsReaderXml.class);
+        files.put("resultsMV5.json", ResultsReaderJson.class);
+        files.put("results.csv", ResultsReaderCsv.class);
+        for (Map.Entry<String, Class<? extends ResultsReader>> file :
+                files.entrySet()) {
+            ResultsReader plain = createResultsReader(
+                    file.getValue(), openResource(file.getKey()));
+            ResultsReader shared = createResultsReader(
+                    file.getValue(), openResource(file.getKey()));
+            dictionary = new StringDictionary();
+            shared.setStringDictionary(dictionary);
+            Assert.assertSame(dictionary, shared.getStringDictionary());
+            assertSameValues(plain, shared);
+            Assert.assertTrue(dictionary.getLookups() > 0);
+        }
+
+        String json = "{\"preview\":false,\"results\":[" +
+                "{\"host\":\"a\",\"count\":\"1\"}," +
+                "{\"host\":\"a\",\"count\":\"2\"}]}";
+        ResultsReader reader = new ResultsReaderJsonUtf8(
+                new ByteArrayInputStream(json.getBytes("UTF-8")));
+        reader.setStringDictionary(new StringDictionary());
+        Event first = reader.getNextEvent();
+        Event second = reader.getNextEvent();
+        Assert.assertSame(first.get("host"), second.get("host"));
+        Assert.assertEquals(0.25, reader.getStringDictionary().getHitRate(), 0);
+        reader.close();
+    }
+
+    @Test
+    public void testReadSelectedFields() throws Exception {
+        List<String> fields = Arrays.asList("_serial", "_si", "_time");
+        ResultsReaderXml all = new ResultsReaderXml(openResource("resultsMV.xml"));
+        ResultsReaderXml xml = new ResultsReaderXml(
+                openResource("resultsMV.xml"), fields);
+        Event expected = all.getNextEvent();
+
+        Event event = xml.getNextEvent();
+        Assert.assertEquals(new HashSet<String>(fields), event.keySet());
+        for (String field : fields) {
+            Assert.assertArrayEquals(expected.getArray(field), event.getArray(field));
+        }
+        try {
+            event.getSegmentedRaw();
+            Assert.fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // Expected: _raw was not selected.
+        }
+        Assert.assertNull(xml.getNextEvent());
+        Assert.assertEquals(all.getFields(), xml.getFields());
+        all.close();
+        xml.close();
+
+        ResultsReaderJson json = new ResultsReaderJson(
+                openResource("resultsMV5.json"), fields);
+        event = json.getNextEvent();
+        Assert.assertEquals(new HashSet<String>(fields), event.keySet());
+        Assert.assertEquals("0", event.get("_serial"));
+        Assert.assertArrayEquals(expected.getArray("_si"), event.getArray("_si", "\n"));
+        json.close();
+    }
+
     @Test
     public void testReadCsvFromOneshot() throws Exception {
         InputStream input = service.oneshotSearch(
@@ -177,6 +350,8 @@ public class ResultsReaderTest extends SDKTestCase {
                 ResultsReaderXml.class, "resultsMV.xml");
         testReadMultivalue(
                 ResultsReaderCsv.class, "resultsMV.csv");
+        testReadMultivalue(
+                ResultsReaderCsvUtf8.class, "resultsMV.csv");
         testReadMultivalue(
                 ResultsReaderJson.class, "resultsMV4.json");
         testReadMultivalue(
@@ -188,6 +363,8 @@ public class ResultsReaderTest extends SDKTestCase {
                 ResultsReaderXml.class, "resultsMVOneshot.xml");
         testReadMultivalue(
                 ResultsReaderCsv.class, "resultsMVOneshot.csv");
+        testReadMultivalue(
+                ResultsReaderCsvUtf8.class, "resultsMVOneshot.csv");
         testReadMultivalue(
                 ResultsReaderJson.class, "resultsMVOneshot4.json");
         testReadMultivalue(
@@ -398,6 +575,216 @@ public class ResultsReaderTest extends SDKTestCase {
         testExportMultiReader(multiReader, 15);
     }
 
+    @Test
+    public void testExportParallelReaderXml() throws Exception {
+        testExportSingleReader(
+            new ParallelResultsReaderXml(
+                getExportResultsStream(resultsExportXml), 2, true));
+    }
+
+    @Test
+    public void testExportParallelReaderJson() throws Exception {
+        testExportSingleReader(
+            new ParallelResultsReaderJson(
+                getExportResultsStream(resultsExportJson), 2, true));
+    }
+
+    @Test
+    public void testParallelReaderXml() throws Exception {
+        // Large enough to be split into several batches.
+        StringBuilder xml = new StringBuilder(
+                "<?xml version='1.0' encoding='UTF-8'?>\n<results preview='0'>\n" +
+                "<meta>\n<fieldOrder>\n<field>host</field>\n<field>_raw</field>\n" +
+                "</fieldOrder>\n</meta>\n");
+        for (int i = 0; i < 5000; i++) {
+            xml.append("<result offset='").append(i).append("'>")
+               .append("<field k='host'><value><text>a").append(i)
+               .append("</text></value><value><text>b &amp; c</text></value></field>")
+               .append("<field k='_raw'><v xml:space='preserve' trunc='0'>")
+               .append("GET <sg h='1'>/").append(i).append("</sg> &lt;200&gt;</v></field>")
+               .append("</result>\n");
+        }
+        xml.append("</results>\n");
+        byte[] results = xml.toString().getBytes("UTF-8");
+
+        for (boolean ordered : new boolean[] { true, false }) {
+            assertSameEvents(
+                new ResultsReaderXml(openResource("resultsMV.xml")),
+                new ParallelResultsReaderXml(
+                        openResource("resultsMV.xml"), 2, ordered),
+                ordered);
+            assertSameEvents(
+                new ResultsReaderXml(new ByteArrayInputStream(results)),
+                new ParallelResultsReaderXml(
+                        new ByteArrayInputStream(results), 4, ordered),
+                ordered);
+        }
+    }
+
+    @Test
+    public void testParallelReaderJson() throws Exception {
+        StringBuilder json = new StringBuilder(
+                "{\"preview\":false,\"init_offset\":0,\"results\":[");
+        for (int i = 0; i < 5000; i++) {
+            json.append(i == 0 ? "\n" : ",\n")
+                .append("{\"host\":[\"a").append(i).append("\",\"b\"],")
+                .append("\"_raw\":\"GET /").append(i).append(" \\\"}]\\\"\"}");
+        }
+        json.append("]}");
+        byte[] results = json.toString().getBytes("UTF-8");
+
+        for (boolean ordered : new boolean[] { true, false }) {
+            assertSameEvents(
+                new ResultsReaderJson(openResource("resultsMV5.json")),
+                new ParallelResultsReaderJson(
+                        openResource("resultsMV5.json"), 2, ordered),
+                ordered);
+            assertSameEvents(
+                new ResultsReaderJson(new ByteArrayInputStream(results)),
+                new ParallelResultsReaderJson(
+                        new ByteArrayInputStream(results), 4, ordered),
+                ordered);
+        }
+    }
+
+    @Test
+    public void testExportUtf8ReaderJson() throws Exception {
+        testExportSingleReader(
+            new ResultsReaderJsonUtf8(
+                getExportResultsStream(resultsExportJson)));
+    }
+
+    @Test
+    public void testUtf8ReaderJson() throws Exception {
+        String[] fileNames = {
+            "results4.json", "results5.json", "resultsMV4.json",
+            "resultsMV5.json", "resultsMVOneshot4.json",
+            "resultsMVOneshot5.json", "resultsMVFuture.json",
+            "resultsMVOneshotFuture.json" };
+        for (String fileName : fileNames) {
+            assertSameValues(
+                new ResultsReaderJson(openResource(fileName)),
+                new ResultsReaderJsonUtf8(openResource(fileName)));
+        }
+
+        // Escapes, and characters encoded on two, three, and four bytes.
+        String json = "{\"preview\":true,\"results\":[" +
+                "{\"a\":\"caf\u00e9 \u20ac \ud83d\ude00\",\"b\":[\"x\\ny\"]}," +
+                "{\"a\":\"\\\"\\\\\\/\\t\\u00e9\\ud83d\\ude00\"," +
+                "\"b\":[\"1\",\"2\"],\"c\":\"x\\ny\"}, {}]}";
+        byte[] results = json.getBytes("UTF-8");
+        ResultsReader reader =
+                new ResultsReaderJsonUtf8(new ByteArrayInputStream(results));
+        Assert.assertTrue(reader.isPreview());
+        assertSameValues(
+            new ResultsReaderJson(new ByteArrayInputStream(results)),
+            reader);
+
+        ResultsReader selected = new ResultsReaderJsonUtf8(
+                openResource("resultsMV5.json"), Arrays.asList("_si"));
+        for (Event event : selected)
+            Assert.assertEquals(Collections.singleton("_si"), event.keySet());
+        selected.close();
+    }
+
+    @Test
+    public void testUtf8ReaderCsv() throws Exception {
+        String[] fileNames = {
+            "results.csv", "resultsMV.csv", "resultsMVOneshot.csv" };
+        for (String fileName : fileNames) {
+            assertSameValues(
+                new ResultsReaderCsv(openResource(fileName)),
+                new ResultsReaderCsvUtf8(openResource(fileName)));
+        }
+
+        // Quoted delimiters and quotes, line breaks, blank lines, and
+        // characters encoded on two, three, and four bytes.
+        String csv = "a,\"b\",c\r\n" +
+                "caf\u00e9 \u20ac \ud83d\ude00,\"x,\"\"y\"\"\",\"1\n2\"\r\n" +
+                "\n" +
+                ",,\"\"\n" +
+                "last,\"\",\"\n\"";
+        byte[] results = csv.getBytes("UTF-8");
+        assertSameValues(
+            new ResultsReaderCsv(new ByteArrayInputStream(results)),
+            new ResultsReaderCsvUtf8(new ByteArrayInputStream(results)));
+
+        ResultsReaderCsvUtf8 reader =
+                new ResultsReaderCsvUtf8(new ByteArrayInputStream(results));
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), reader.getFields());
+        Assert.assertTrue(reader.nextRecord());
+        Assert.assertEquals(3, reader.getCellCount());
+        CharSequence cell = reader.getCell(1);
+        Assert.assertEquals(5, cell.length());
+        Assert.assertEquals('"', cell.charAt(2));
+        Assert.assertEquals("x,\"y\"", cell.toString());
+        Assert.assertEquals("1\n2", reader.getCell(2).toString());
+        Assert.assertTrue(reader.nextRecord());
+        Assert.assertEquals(0, reader.getCell(0).length());
+        Event event = reader.getNextEvent();
+        Assert.assertEquals("last", event.get("a"));
+        Assert.assertEquals("", event.get("b"));
+        Assert.assertArrayEquals(new String[0], event.getArray("c", "\n"));
+        Assert.assertNull(reader.getNextEvent());
+        Assert.assertFalse(reader.nextRecord());
+        reader.close();
+
+        ResultsReader selected = new ResultsReaderCsvUtf8(
+                openResource("resultsMV.csv"), Arrays.asList("_si"));
+        for (Event selectedEvent : selected) {
+            Assert.assertEquals(
+                    Collections.singleton("_si"), selectedEvent.keySet());
+            Assert.assertEquals(
+                    "_internal", selectedEvent.getArray("_si", "\n")[1]);
+        }
+        selected.close();
+    }
+
+    // Compares events read by two readers, including how their values are
+    // split.
+    private void assertSameValues(
+            ResultsReader expected,
+            ResultsReader actual) throws IOException {
+        Iterator<Event> actualEvents = actual.iterator();
+        for (Event event : expected) {
+            Assert.assertTrue(actualEvents.hasNext());
+            Event actualEvent = actualEvents.next();
+            Assert.assertEquals(event, actualEvent);
+            for (String key : event.keySet()) {
+                Assert.assertArrayEquals(
+                    event.getArray(key), actualEvent.getArray(key));
+                Assert.assertArrayEquals(
+                    event.getArray(key, "\n"),
+                    actualEvent.getArray(key, "\n"));
+            }
+        }
+        Assert.assertFalse(actualEvents.hasNext());
+        expected.close();
+        actual.close();
+    }
+
+    private void assertSameEvents(
+            ResultsReader expected,
+            ResultsReader actual,
+            boolean ordered) throws IOException {
+        List<Event> expectedEvents = new ArrayList<Event>();
+        for (Event event : expected)
+            expectedEvents.add(event);
+        List<Event> actualEvents = new ArrayList<Event>();
+        for (Event event : actual)
+            actualEvents.add(event);
+        expected.close();
+        actual.close();
+
+        Assert.assertEquals(expected.isPreview(), actual.isPreview());
+        if (ordered) {
+            Assert.assertEquals(expectedEvents, actualEvents);
+        } else {
+            Assert.assertEquals(expectedEvents.size(), actualEvents.size());
+            Assert.assertTrue(actualEvents.containsAll(expectedEvents));
+        }
+    }
+
     private ExportResultsStream getExportResultsStream(String fileName) {
         return new ExportResultsStream(
             openResource(fileName));
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import org.junit.Test;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class ResumableExportTest {
+
+    // Exports events with two per second, from 1009 down to 1000 seconds
+    // (or up, if ascending), and breaks the first connections after a
+    // given number of bytes. Its clock moves a few seconds forward with
+    // each export, and relative times (now, or -<n>s) are evaluated against
+    // it.
+    private static class FlakyService extends Service {
+        final boolean ascending;
+        final int breakAfter;
+        int breaksLeft;
+        final FakeFeeds.RequestLog log = new FakeFeeds.RequestLog();
+        double now = 2000;
+
+        FlakyService(boolean ascending, int breakAfter, int breaks) {
+            super("localhost");
+            this.ascending = ascending;
+            this.breakAfter = breakAfter;
+            this.breaksLeft = breaks;
+        }
+
+        @Override
+        public InputStream export(String search, Map args) {
+            log.add(args);
+            double earliest = time((String) args.get("earliest_time"), 0);
+            double latest = time((String) args.get("latest_time"), now);
+            now += 3;
+            boolean json = "json".equals(String.valueOf(args.get("output_mode")));
+
+            List<String[]> rows = new ArrayList<String[]>();
+            for (int i = 0; i < 20; i++) {
+                int event = ascending ? i : 19 - i;
+                double time = 1000 + event / 2;
+                if (time >= earliest && time < latest)
+                    rows.add(new String[] {
+                            "main~1", "1:" + event, (1000 + event / 2) + ".000" });
+            }
+            String[] fields = { "_bkt", "_cd", "_time" };
+            String text = json
+                    ? FakeFeeds.exportJson(fields, rows)
+                    : FakeFeeds.resultsXml(0, fields, rows);
+
+            final int limit = breaksLeft-- > 0 ? breakAfter : Integer.MAX_VALUE;
+            InputStream body = FakeFeeds.stream(text);
+            return new ExportResultsStream(new FilterInputStream(body) {
+                int position = 0;
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (position >= limit)
+                        throw new IOException("Connection reset");
+                    int n = super.read(b, off, Math.min(len, limit - position));
+                    if (n > 0) position += n;
+                    return n;
+                }
+            });
+        }
+
+        @Override
+        public ResponseMessage get(String path, Map<String, Object> args) {
+            if (!path.equals("search/timeparser"))
+                return super.get(path, args);
+            String time = (String) args.get("time");
+            return new ResponseMessage(200, FakeFeeds.stream(
+                    FakeFeeds.timeParser(time, time(time, now))));
+        }
+
+        double time(String value, double defaultValue) {
+            if (value == null)
+                return defaultValue;
+            if (value.equals("now"))
+                return now;
+            if (value.startsWith("-") && value.endsWith("s"))
+                return now - Double.parseDouble(
+                        value.substring(1, value.length() - 1));
+            return Double.parseDouble(value);
+        }
+    }
+
+    private static List<String> readAll(ResumableExport export)
+            throws IOException {
+        List<String> addresses = new ArrayList<String>();
+        Event event;
+        while ((event = export.getNextEvent()) != null)
+            addresses.add(event.get("_cd"));
+        assertNull(export.getNextEvent());
+        return addresses;
+    }
+
+    private static List<String> expected(boolean ascending) {
+        List<String> addresses = new ArrayList<String>();
+        for (int i = 0; i < 20; i++)
+            addresses.add("1:" + (ascending ? i : 19 - i));
+        return addresses;
+    }
+
+    @Test
+    public void testResumesDescendingXmlExport() throws IOException {
+        FlakyService service = new FlakyService(false, 1000, 3);
+        ResumableExport export = service.exportResumable("search *", (Map) null);
+        export.setReconnectPolicy(new ExponentialBackoffRetryPolicy(3, 0, 0));
+
+        assertEquals(expected(false), readAll(export));
+        assertEquals(3, export.getReconnectCount());
+        assertEquals(20, export.getEventCount());
+        assertEquals("1000.000", export.getLastTime());
+        assertEquals(2, export.getOffset());
+        Map last = service.log.get(service.log.size() - 1);
+        assertNull(last.get("earliest_time"));
+        assertNotNull(last.get("latest_time"));
+    }
+
+    @Test
+    public void testResumesAscendingXmlExport() throws IOException {
+        FlakyService service = new FlakyService(true, 1000, 2);
+        ResumableExport export = service.exportResumable("search *", (Map) null);
+        export.setReconnectPolicy(new ExponentialBackoffRetryPolicy(3, 0, 0));
+
+        assertEquals(expected(true), readAll(export));
+        assertEquals(2, export.getReconnectCount());
+        Map last = service.log.get(service.log.size() - 1);
+        assertNotNull(last.get("earliest_time"));
+        // The latest time stays where it was when the export started.
+        assertEquals("2000.000", last.get("latest_time"));
+    }
+
+    @Test
+    public void testResumesWithRelativeTimeBounds() throws IOException {
+        // Events from 1002 seconds on, as seen when the export starts.
+        FlakyService service = new FlakyService(false, 600, 3);
+        service.now = 1010;
+        Args args = new Args();
+        args.put("earliest_time", "-8s");
+        ResumableExport export = service.exportResumable("search *", args);
+        export.setReconnectPolicy(new ExponentialBackoffRetryPolicy(3, 0, 0));
+
+        List<String> expected = expected(false).subList(0, 16);
+        assertEquals(expected, readAll(export));
+        assertEquals(3, export.getReconnectCount());
+        for (Map request : service.log.getRequests()) {
+            assertEquals("1002.000", request.get("earliest_time"));
+        }
+        assertEquals("1010.000", service.log.get(0).get("latest_time"));
+    }
+
+    @Test
+    public void testRejectsUnresolvedRelativeTimeBounds() throws IOException {
+        FlakyService service = new FlakyService(false, 600, 0) {
+            @Override
+            public ResponseMessage get(String path, Map<String, Object> args) {
+                throw new HttpException(400, "Invalid time", "");
+            }
+        };
+        Args args = new Args();
+        args.put("earliest_time", "-1d@d");
+        try {
+            service.exportResumable("search *", args);
+            fail("Expected the relative time to be rejected.");
+        } catch (IllegalArgumentException e) {
+            assertEquals(0, service.log.size());
+        }
+    }
+
+    @Test
+    public void testResumesJsonExport() throws IOException {
+        // The JSON reader fills a large buffer, so the connections break
+        // before the first event.
+        FlakyService service = new FlakyService(false, 500, 2);
+        JobExportArgs args = new JobExportArgs();
+        args.setOutputMode(JobExportArgs.OutputMode.JSON);
+        ResumableExport export = service.exportResumable("search *", args);
+        export.setReconnectPolicy(new ExponentialBackoffRetryPolicy(3, 0, 0));
+
+        assertEquals(expected(false), readAll(export));
+        assertEquals(3, service.log.size());
+    }
+
+    @Test
+    public void testGivesUpAfterRepeatedFailures() throws IOException {
+        FlakyService service = new FlakyService(false, 250, 10);
+        ResumableExport export = service.exportResumable("search *", (Map) null);
+        export.setReconnectPolicy(new ExponentialBackoffRetryPolicy(2, 0, 0));
+        try {
+            readAll(export);
+            fail("Expected the export to fail.");
+        } catch (RuntimeException e) {
+            assertEquals(2, export.getReconnectCount());
+        }
+    }
+
+    @Test
+    public void testFormatsTimeBounds() {
+        assertEquals("1354063414.271", ResumableExport.formatTime(1354063414271L));
+        assertEquals("-2.001", ResumableExport.formatTime(-1999));
+    }
+}
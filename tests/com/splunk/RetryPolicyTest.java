@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+
+    private static HttpException createException(int status, String retryAfter) {
+        ResponseMessage response = new ResponseMessage(
+                status, new ByteArrayInputStream(new byte[0]));
+        if (retryAfter != null)
+            response.getHeader().put("Retry-After", retryAfter);
+        return HttpException.create(response);
+    }
+
+    @Test
+    public void testRetriesTransientStatusesOfIdempotentRequests() {
+        RetryPolicy policy = new ExponentialBackoffRetryPolicy(3, 100, 1000);
+        RequestMessage get = new RequestMessage("GET");
+        RequestMessage post = new RequestMessage("POST");
+
+        for (int attempt = 1; attempt <= 3; attempt++) {
+            long delay = policy.getRetryDelay(get, attempt, createException(503, null));
+            assertTrue("Delay out of bounds: " + delay,
+                    delay >= 0 && delay <= 100L << (attempt - 1));
+        }
+        assertEquals(-1, policy.getRetryDelay(get, 4, createException(503, null)));
+        assertEquals(-1, policy.getRetryDelay(get, 1, createException(404, null)));
+        assertEquals(-1, policy.getRetryDelay(post, 1, createException(503, null)));
+    }
+
+    @Test
+    public void testHonorsRetryAfter() {
+        RetryPolicy policy = new ExponentialBackoffRetryPolicy(3, 100, 5000);
+        RequestMessage get = new RequestMessage("GET");
+
+        assertEquals(2000, policy.getRetryDelay(get, 1, createException(503, "2")));
+        assertEquals(-1, policy.getRetryDelay(get, 1, createException(429, "60")));
+    }
+
+    @Test
+    public void testRetriesConnectionFailuresButNotTimeouts() {
+        RetryPolicy policy = new ExponentialBackoffRetryPolicy();
+        RequestMessage get = new RequestMessage("GET");
+
+        IOException reset = new IOException("Connection reset");
+        assertTrue(policy.getRetryDelay(get, 1,
+                new RuntimeException(reset.getMessage(), reset)) >= 0);
+        IOException timeout = new SocketTimeoutException("Read timed out");
+        assertEquals(-1, policy.getRetryDelay(get, 1,
+                new RuntimeException(timeout.getMessage(), timeout)));
+        assertEquals(-1, policy.getRetryDelay(get, 1,
+                new IllegalStateException()));
+    }
+}
@@ -21,6 +21,9 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.HashSet;
+import java.util.Set;
+
 public class SavedSearchTest extends SDKTestCase {
     SavedSearchCollection savedSearches;
     String savedSearchName;
@@ -286,6 +289,23 @@ public class SavedSearchTest extends SDKTestCase {
         Assert.assertEquals(true, savedSearch.isDisabled());
     }
     
+    @Test
+    public void testStream() {
+        final Set<String> streamed = new HashSet<String>();
+        final String[] search = new String[1];
+        int count = savedSearches.stream(new ResourceHandler<SavedSearch>() {
+            public void handle(SavedSearch resource) {
+                streamed.add(resource.getName());
+                if (resource.getName().equals(savedSearchName))
+                    search[0] = resource.getSearch();
+            }
+        });
+
+        Assert.assertEquals(savedSearches.values().size(), count);
+        Assert.assertEquals(savedSearches.keySet(), streamed);
+        Assert.assertEquals(query, search[0]);
+    }
+
     @Test
     public void testScheduled() {
         SavedSearch savedSearch = this.savedSearches.create(createTemporaryName(), "search index=_internal | head 1");
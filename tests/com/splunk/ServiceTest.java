@@ -23,10 +23,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class ServiceTest extends SDKTestCase {
     private static final String QUERY = "search index=_internal | head 10";
@@ -112,6 +116,110 @@ public class ServiceTest extends SDKTestCase {
         Assert.assertEquals(info.getService(), service);
     }
 
+    @Test
+    public void testAsyncRequests() throws Exception {
+        List<Future<ResponseMessage>> responses = new ArrayList<Future<ResponseMessage>>();
+        for (int i = 0; i < 10; i++)
+            responses.add(service.getAsync("/services/server/info"));
+        for (Future<ResponseMessage> future : responses) {
+            ResponseMessage response = future.get();
+            Assert.assertEquals(200, response.getStatus());
+            response.close();
+        }
+
+        Future<? extends Entity> info = service.getInfo().refreshAsync();
+        Assert.assertEquals(service.getInfo().getVersion(), info.get().getString("version"));
+
+        Job job = service.getJobs().create(QUERY, new Args("exec_mode", "blocking"));
+        Assert.assertTrue(job.refreshAsync().get().isDone());
+        job.cancel();
+    }
+
+    @Test
+    public void testAsyncRequestFailure() throws Exception {
+        Future<ResponseMessage> response = service.getAsync("/services/this/does/not/exist");
+        try {
+            response.get();
+            Assert.fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof HttpException);
+            Assert.assertEquals(404, ((HttpException) e.getCause()).getStatus());
+        }
+    }
+
+    @Test
+    public void testCoalescedRequests() throws Exception {
+        service.setCoalesceRequests(true);
+        try {
+            long coalesced = service.getCoalescedCount();
+            List<Future<ResponseMessage>> responses = new ArrayList<Future<ResponseMessage>>();
+            for (int i = 0; i < 10; i++)
+                responses.add(service.getAsync("/services/server/info"));
+            String expected = null;
+            for (Future<ResponseMessage> future : responses) {
+                ResponseMessage response = future.get();
+                Assert.assertEquals(200, response.getStatus());
+                String content = streamToString(response.getContent());
+                if (expected == null)
+                    expected = content;
+                Assert.assertEquals(expected, content);
+            }
+            Assert.assertTrue(service.getCoalescedCount() > coalesced);
+
+            Future<ResponseMessage> missing = service.getAsync("/services/this/does/not/exist");
+            try {
+                missing.get();
+                Assert.fail("Expected ExecutionException");
+            } catch (ExecutionException e) {
+                Assert.assertEquals(404, ((HttpException) e.getCause()).getStatus());
+            }
+            Assert.assertEquals(0, service.getConnectionPool().getLeasedCount());
+        } finally {
+            service.setCoalesceRequests(false);
+        }
+    }
+
+    @Test
+    public void testExpiredSessionIsRenewed() {
+        Service s = new Service(
+                (String) command.opts.get("host"),
+                (Integer) command.opts.get("port"),
+                (String) command.opts.get("scheme"));
+        s.login((String) command.opts.get("username"), (String) command.opts.get("password"));
+
+        // Simulate an expired session.
+        s.removeAllCookies();
+        s.setToken("Splunk expired-session-key");
+
+        checkLoggedIn(s);
+        Assert.assertFalse("Splunk expired-session-key".equals(s.getToken()));
+    }
+
+    @Test
+    public void testSharedServiceAcrossThreads() throws Exception {
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread() {
+                @Override public void run() {
+                    try {
+                        for (int j = 0; j < 5; j++) {
+                            checkLoggedIn(service);
+                            service.getInfo().getVersion();
+                        }
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        Assert.assertEquals(Collections.emptyList(), failures);
+    }
+
     private void checkLoggedIn(Service service) {
         ResponseMessage response;
         response = service.get("/services/authentication/users");
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015 Splunk, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"): you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.splunk;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TransportTest {
+
+    // Answers every request in memory, echoing its content.
+    private static class EchoTransport implements Transport {
+        TransportRequest last;
+
+        public ResponseMessage send(TransportRequest request) throws IOException {
+            last = request;
+            request.connectionOpened(-1, 1000, -1);
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            if (request.hasContent())
+                request.writeContent(body);
+            request.responseStarted();
+
+            int status = request.getUrl().getPath().endsWith("/missing") ? 404 : 200;
+            Map<String, String> header = new HashMap<String, String>();
+            header.put("Content-Length", Integer.toString(body.size()));
+            request.addCookie("session=abc; Path=/");
+            return request.createResponse(status, header,
+                    new ByteArrayInputStream(body.toByteArray()));
+        }
+    }
+
+    // Holds one value, which POST requests set and GET requests return. The
+    // first GET is held until the gate opens.
+    private static class GatedTransport implements Transport {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+        final AtomicInteger gets = new AtomicInteger();
+        volatile String value = "old";
+
+        public ResponseMessage send(TransportRequest request) throws IOException {
+            String body;
+            if (request.getMethod().equals("GET")) {
+                body = value;
+                if (gets.getAndIncrement() == 0) {
+                    started.countDown();
+                    try {
+                        gate.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e.getMessage());
+                    }
+                }
+            } else {
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                request.writeContent(content);
+                value = content.toString("UTF-8").substring("value=".length());
+                body = value;
+            }
+            byte[] bytes = body.getBytes("UTF-8");
+            Map<String, String> header = new HashMap<String, String>();
+            header.put("Content-Length", Integer.toString(bytes.length));
+            return request.createResponse(200, header,
+                    new ByteArrayInputStream(bytes));
+        }
+    }
+
+    private static String read(InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = stream.read(buffer)) != -1)
+            out.write(buffer, 0, n);
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    public void testRequestsGoThroughTransport() throws IOException {
+        HttpService service = new HttpService("localhost", 8089);
+        EchoTransport transport = new EchoTransport();
+        service.setTransport(transport);
+        assertSame(transport, service.getTransport());
+
+        Map<String, Object> args = new HashMap<String, Object>();
+        args.put("search", "search *");
+        ResponseMessage response = service.post("/services/search/jobs", args);
+        assertEquals(200, response.getStatus());
+        assertEquals("search=search+*", read(response.getContent()));
+
+        TransportRequest request = transport.last;
+        assertEquals("POST", request.getMethod());
+        assertEquals("https://localhost:8089/services/search/jobs",
+                request.getUrl().toString());
+        assertEquals("application/x-www-form-urlencoded",
+                request.getHeader().get("content-type"));
+        assertTrue(request.getHeader().containsKey("User-Agent"));
+        assertNull(request.getHeader().get("Cookie"));
+
+        // Cookies reported by the transport are sent with later requests.
+        service.get("/services/server/info").close();
+        assertEquals("session=abc; ", transport.last.getHeader().get("Cookie"));
+
+        service.setTransport(null);
+        assertTrue(service.getTransport() != transport);
+    }
+
+    @Test
+    public void testErrorStatusesAndListeners() {
+        HttpService service = new HttpService("localhost", 8089);
+        service.setTransport(new EchoTransport());
+        final List<RequestEvent> events = new ArrayList<RequestEvent>();
+        service.addRequestListener(new RequestListener() {
+            public void requestStarted(RequestEvent event) {}
+
+            public void requestCompleted(RequestEvent event) {
+                events.add(event);
+            }
+        });
+
+        try {
+            service.get("/services/missing");
+            fail("Expected HttpException");
+        } catch (HttpException e) {
+            assertEquals(404, e.getStatus());
+        }
+        assertEquals(1, events.size());
+        RequestEvent event = events.get(0);
+        assertEquals(404, event.getStatus());
+        assertEquals(1000, event.getConnectNanos());
+        assertTrue(event.getTimeToFirstByteNanos() >= 0);
+    }
+
+    @Test
+    public void testCoalescedRequestsReadTheirWrites() throws Exception {
+        HttpService service = new HttpService("localhost", 8089);
+        GatedTransport transport = new GatedTransport();
+        service.setTransport(transport);
+        service.setCoalesceRequests(true);
+
+        Future<ResponseMessage> first = service.getAsync("/services/value");
+        assertTrue(transport.started.await(10, TimeUnit.SECONDS));
+        // An identical GET joins the one in flight.
+        Future<ResponseMessage> joined = service.getAsync("/services/value");
+        Thread.sleep(100);
+
+        // A GET sent after a write does not join the GET sent before it.
+        Map<String, Object> args = new HashMap<String, Object>();
+        args.put("value", "new");
+        service.post("/services/value", args).close();
+        Future<ResponseMessage> afterWrite = service.getAsync("/services/value");
+        assertEquals("new", read(afterWrite.get(10, TimeUnit.SECONDS).getContent()));
+
+        transport.gate.countDown();
+        assertEquals("old", read(first.get(10, TimeUnit.SECONDS).getContent()));
+        assertEquals("old", read(joined.get(10, TimeUnit.SECONDS).getContent()));
+        assertEquals(2, transport.gets.get());
+        assertEquals(1, service.getCoalescedCount());
+    }
+}